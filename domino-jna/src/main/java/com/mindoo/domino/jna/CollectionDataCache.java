@@ -205,8 +205,10 @@ public class CollectionDataCache implements Serializable {
 	 * in the cache. We can then copy the data of our current cache object.
 	 * 
 	 * @param entries entries to scan
+	 * @return number of entries that have been populated from the cache
 	 */
-	void populateEntryStubsWithData(List<NotesViewEntryData> entries) {
+	int populateEntryStubsWithData(List<NotesViewEntryData> entries) {
+		int populated = 0;
 		boolean hasAnyMissingData = false;
 		for (NotesViewEntryData currEntry : entries) {
 			if (!currEntry.hasAnyColumnValues()) {
@@ -227,6 +229,7 @@ public class CollectionDataCache implements Serializable {
 						if (cacheData!=null) {
 							//updating data of stub entry from cache
 							currEntry.updateFromCache(cacheData);
+							populated++;
 							
 							if (usageStatsPrim!=-1) {
 								usageStatsPrim++;
@@ -243,6 +246,7 @@ public class CollectionDataCache implements Serializable {
 				m_rwLock.readLock().unlock();
 			}
 		}
+		return populated;
 	}
 	
 	/**
@@ -166,6 +166,38 @@ public interface IItemTableData extends IItemValueTableData {
 	 */
 	public List<Integer> getAsIntegerList(String itemName, List<Integer> defaultValue);
 	
+	/**
+	 * Decodes a number or number list value into a caller supplied array without boxing.
+	 * Number range entries are written as two values (lower, upper).
+	 * 
+	 * @param itemName item name, case insensitive
+	 * @param target target array
+	 * @param offset offset in target array
+	 * @return total number of values (might be larger than the space in the target array, the values that do not fit are skipped) or -1 if the item does not exist or is not a number item
+	 */
+	public int getAsDoubleArray(String itemName, double[] target, int offset);
+	
+	/**
+	 * Decodes a timedate or timedate list value into a caller supplied array of packed innards
+	 * (see {@link com.mindoo.domino.jna.utils.NotesDateTimeUtils#packInnards(int, int)}).
+	 * Timedate range entries are written as two values (lower, upper).
+	 * 
+	 * @param itemName item name, case insensitive
+	 * @param target target array
+	 * @param offset offset in target array
+	 * @return total number of values (might be larger than the space in the target array, the values that do not fit are skipped) or -1 if the item does not exist or is not a timedate item
+	 */
+	public int getAsInnardsArray(String itemName, long[] target, int offset);
+	
+	/**
+	 * Passes a text or text list value to a sink without creating a {@link List}
+	 * 
+	 * @param itemName item name, case insensitive
+	 * @param sink sink to receive the values
+	 * @return number of values or -1 if the item does not exist or is not a text item
+	 */
+	public int getAsTextList(String itemName, ITextValueSink sink);
+	
 	/**
 	 * Converts the values to a Java {@link Map}
 	 * 
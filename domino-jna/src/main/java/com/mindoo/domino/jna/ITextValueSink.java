@@ -0,0 +1,22 @@
+package com.mindoo.domino.jna;
+
+/**
+ * Receives the entries of a text or text list item one by one, e.g. from
+ * {@link NotesNote#getItemValueTextList(String, ITextValueSink)}, without creating
+ * a {@link java.util.List} of {@link String} objects.
+ *
+ * @author Karsten Lehmann
+ */
+public interface ITextValueSink {
+
+	/**
+	 * Method is called for each text value. The {@link CharSequence} is reused for the
+	 * next value, so it is only valid during this call. Use {@link CharSequence#toString()}
+	 * to keep a copy.
+	 *
+	 * @param index index of the value in the text list
+	 * @param value text
+	 */
+	public void textValue(int index, CharSequence value);
+
+}
@@ -0,0 +1,348 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.mindoo.domino.jna.NotesDatabase.INoteOpenCallback;
+import com.mindoo.domino.jna.constants.GetNotes;
+import com.mindoo.domino.jna.constants.OpenNote;
+
+/**
+ * Loads many notes of a database with few server round trips by fetching them in batches
+ * via {@link NotesDatabase#getNotes(int[], EnumSet[], int[], EnumSet, NotesDatabase, NotesDatabase.IGetNotesCallback, INoteOpenCallback, NotesDatabase.IObjectAllocCallback, NotesDatabase.IObjectWriteCallback, NotesTimeDate, NotesDatabase.IFolderAddCallback)}
+ * (NSFDbGetNotes) instead of calling {@link NotesDatabase#openNoteById(int)} for each note.<br>
+ * <br>
+ * {@link #iterator(Iterator)} and {@link #stream(Iterator)} only keep one batch of notes in memory.
+ * NSFDbGetNotes only lends the note handles to its callback, so the delivered notes are in-memory
+ * copies (NSFNoteCopy). With {@link #setAutoRecycle(boolean)}, each note gets recycled
+ * as soon as the next one is requested.<br>
+ * {@link #forEach(Iterator, INoteOpenCallback)} avoids the copy and passes the notes to a callback
+ * while NSFDbGetNotes is running; the notes must not be used after the callback returns.<br>
+ * <br>
+ * Notes that cannot be opened (e.g. deleted in the meantime) are skipped.
+ *
+ * @author Karsten Lehmann
+ */
+public class NoteBatchLoader {
+	private static final int DEFAULT_BATCH_SIZE = 100;
+
+	private NotesDatabase m_db;
+	private int m_batchSize;
+	private EnumSet<OpenNote> m_openFlags;
+	private EnumSet<GetNotes> m_controlFlags;
+	private boolean m_autoRecycle;
+	private int m_batchesLoaded;
+	private int m_notesLoaded;
+	private int m_notesSkipped;
+
+	/**
+	 * Creates a new loader
+	 *
+	 * @param db database to read notes from
+	 */
+	public NoteBatchLoader(NotesDatabase db) {
+		if (db==null) {
+			throw new IllegalArgumentException("Database cannot be null");
+		}
+		m_db = db;
+		m_batchSize = DEFAULT_BATCH_SIZE;
+		m_openFlags = EnumSet.noneOf(OpenNote.class);
+		m_controlFlags = EnumSet.of(GetNotes.PRESERVE_ORDER, GetNotes.CONTINUE_ON_ERROR);
+	}
+
+	/**
+	 * Sets the number of notes to fetch per NSFDbGetNotes call
+	 *
+	 * @param batchSize batch size, default is 100
+	 * @return this loader
+	 */
+	public NoteBatchLoader setBatchSize(int batchSize) {
+		if (batchSize<1) {
+			throw new IllegalArgumentException("Batch size must be at least 1: "+batchSize);
+		}
+		m_batchSize = batchSize;
+		return this;
+	}
+
+	/**
+	 * Returns the number of notes to fetch per NSFDbGetNotes call
+	 *
+	 * @return batch size
+	 */
+	public int getBatchSize() {
+		return m_batchSize;
+	}
+
+	/**
+	 * Sets the flags used to open the notes
+	 *
+	 * @param openFlags open flags, empty by default
+	 * @return this loader
+	 */
+	public NoteBatchLoader setOpenFlags(EnumSet<OpenNote> openFlags) {
+		m_openFlags = openFlags==null ? EnumSet.noneOf(OpenNote.class) : openFlags.clone();
+		return this;
+	}
+
+	/**
+	 * Sets the flags that control NSFDbGetNotes
+	 *
+	 * @param controlFlags flags, {@link GetNotes#PRESERVE_ORDER} and {@link GetNotes#CONTINUE_ON_ERROR} by default
+	 * @return this loader
+	 */
+	public NoteBatchLoader setControlFlags(EnumSet<GetNotes> controlFlags) {
+		m_controlFlags = controlFlags==null ? EnumSet.noneOf(GetNotes.class) : controlFlags.clone();
+		return this;
+	}
+
+	/**
+	 * Use this method to recycle each note returned by {@link #iterator(Iterator)} / {@link #stream(Iterator)}
+	 * as soon as the next note is requested
+	 *
+	 * @param autoRecycle true to recycle
+	 * @return this loader
+	 */
+	public NoteBatchLoader setAutoRecycle(boolean autoRecycle) {
+		m_autoRecycle = autoRecycle;
+		return this;
+	}
+
+	/**
+	 * Returns whether each returned note is recycled as soon as the next note is requested
+	 *
+	 * @return true to recycle
+	 */
+	public boolean isAutoRecycle() {
+		return m_autoRecycle;
+	}
+
+	/**
+	 * Returns the number of NSFDbGetNotes calls done so far
+	 *
+	 * @return count
+	 */
+	public int getBatchesLoaded() {
+		return m_batchesLoaded;
+	}
+
+	/**
+	 * Returns the number of notes loaded so far
+	 *
+	 * @return count
+	 */
+	public int getNotesLoaded() {
+		return m_notesLoaded;
+	}
+
+	/**
+	 * Returns the number of notes that could not be opened
+	 *
+	 * @return count
+	 */
+	public int getNotesSkipped() {
+		return m_notesSkipped;
+	}
+
+	/**
+	 * Returns an iterator over the notes of an ID table
+	 *
+	 * @param idTable ID table
+	 * @return iterator
+	 */
+	public Iterator<NotesNote> iterator(NotesIDTable idTable) {
+		return iterator(Arrays.stream(idTable.toArray()).iterator());
+	}
+
+	/**
+	 * Returns an iterator over the notes with the specified note ids
+	 *
+	 * @param noteIds note ids
+	 * @return iterator
+	 */
+	public Iterator<NotesNote> iterator(Iterator<Integer> noteIds) {
+		return new BatchIterator(noteIds);
+	}
+
+	/**
+	 * Returns a sequential stream of the notes of an ID table
+	 *
+	 * @param idTable ID table
+	 * @return stream
+	 */
+	public Stream<NotesNote> stream(NotesIDTable idTable) {
+		return stream(Arrays.stream(idTable.toArray()).iterator());
+	}
+
+	/**
+	 * Returns a sequential stream of the notes with the specified note ids. Closing the
+	 * stream recycles the notes of the current batch that have not been consumed.
+	 *
+	 * @param noteIds note ids
+	 * @return stream
+	 */
+	public Stream<NotesNote> stream(Iterator<Integer> noteIds) {
+		final BatchIterator it = new BatchIterator(noteIds);
+		Spliterator<NotesNote> spliterator = Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+
+			@Override
+			public void run() {
+				it.close();
+			}
+		});
+	}
+
+	/**
+	 * Passes the notes with the specified note ids to a callback without copying them.
+	 * The notes are only valid during the callback invocation.
+	 *
+	 * @param noteIds note ids
+	 * @param callback callback
+	 */
+	public void forEach(Iterator<Integer> noteIds, final INoteOpenCallback callback) {
+		int[] batch;
+		while ((batch = nextBatch(noteIds)) != null) {
+			loadBatch(batch, new INoteOpenCallback() {
+
+				@Override
+				public void noteOpened(NotesNote note, int noteId, short status) {
+					if (status==0) {
+						m_notesLoaded++;
+						callback.noteOpened(note, noteId, status);
+					}
+					else {
+						m_notesSkipped++;
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Reads the next batch of note ids. A {@link PrimitiveIterator.OfInt} is read without boxing.
+	 *
+	 * @param noteIds note id iterator
+	 * @return ids or null if there are no more ids
+	 */
+	private int[] nextBatch(Iterator<Integer> noteIds) {
+		int[] batch = new int[m_batchSize];
+		int count = 0;
+		if (noteIds instanceof PrimitiveIterator.OfInt) {
+			PrimitiveIterator.OfInt intIds = (PrimitiveIterator.OfInt) noteIds;
+			while (count<m_batchSize && intIds.hasNext()) {
+				int currNoteId = intIds.nextInt();
+				if (currNoteId!=0) {
+					batch[count++] = currNoteId;
+				}
+			}
+		}
+		while (count<m_batchSize && noteIds.hasNext()) {
+			Integer currNoteId = noteIds.next();
+			if (currNoteId!=null && currNoteId.intValue()!=0) {
+				batch[count++] = currNoteId.intValue();
+			}
+		}
+		if (count==0) {
+			return null;
+		}
+		return count==m_batchSize ? batch : Arrays.copyOf(batch, count);
+	}
+
+	/**
+	 * Fetches a batch of notes with one NSFDbGetNotes call
+	 *
+	 * @param noteIds note ids
+	 * @param callback callback for each note
+	 */
+	private void loadBatch(int[] noteIds, INoteOpenCallback callback) {
+		@SuppressWarnings("unchecked")
+		EnumSet<OpenNote>[] openFlags = new EnumSet[noteIds.length];
+		Arrays.fill(openFlags, m_openFlags);
+		int[] sinceSeqNum = new int[noteIds.length];
+
+		m_db.getNotes(noteIds, openFlags, sinceSeqNum, m_controlFlags, null, null, callback, null, null, null, null);
+		m_batchesLoaded++;
+	}
+
+	/**
+	 * Iterator that loads one batch of notes at a time
+	 */
+	private class BatchIterator implements Iterator<NotesNote> {
+		private Iterator<Integer> m_noteIds;
+		private ArrayDeque<NotesNote> m_currentBatch;
+		private NotesNote m_lastReturned;
+
+		public BatchIterator(Iterator<Integer> noteIds) {
+			m_noteIds = noteIds;
+			m_currentBatch = new ArrayDeque<NotesNote>();
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (m_currentBatch.isEmpty()) {
+				int[] batch = nextBatch(m_noteIds);
+				if (batch==null) {
+					recycleLastReturned();
+					return false;
+				}
+
+				loadBatch(batch, new INoteOpenCallback() {
+
+					@Override
+					public void noteOpened(NotesNote note, int noteId, short status) {
+						if (status==0) {
+							m_currentBatch.add(note.copyInMemory());
+							m_notesLoaded++;
+						}
+						else {
+							m_notesSkipped++;
+						}
+					}
+				});
+			}
+			return true;
+		}
+
+		@Override
+		public NotesNote next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			recycleLastReturned();
+
+			NotesNote note = m_currentBatch.poll();
+			if (m_autoRecycle) {
+				m_lastReturned = note;
+			}
+			return note;
+		}
+
+		private void recycleLastReturned() {
+			if (m_lastReturned!=null) {
+				if (!m_lastReturned.isRecycled()) {
+					m_lastReturned.recycle();
+				}
+				m_lastReturned = null;
+			}
+		}
+
+		/**
+		 * Recycles the notes that have been loaded but not consumed
+		 */
+		public void close() {
+			recycleLastReturned();
+			NotesNote note;
+			while ((note = m_currentBatch.poll()) != null) {
+				note.recycle();
+			}
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.mindoo.domino.jna;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Result of an item level comparison between two revisions of a note, see
+ * {@link NotesNote#getItemChanges(NoteItemFingerprint)}
+ *
+ * @author Karsten Lehmann
+ */
+public class NoteItemChanges {
+	private NoteItemFingerprint m_fingerprint;
+	private Set<String> m_addedItems;
+	private Set<String> m_removedItems;
+	private Set<String> m_changedItems;
+
+	NoteItemChanges(NoteItemFingerprint fingerprint, Set<String> addedItems, Set<String> removedItems,
+			Set<String> changedItems) {
+		m_fingerprint = fingerprint;
+		m_addedItems = Collections.unmodifiableSet(addedItems);
+		m_removedItems = Collections.unmodifiableSet(removedItems);
+		m_changedItems = Collections.unmodifiableSet(changedItems);
+	}
+
+	/**
+	 * Returns the fingerprint of the current revision, which should be stored
+	 * to compute the changes of the next revision
+	 *
+	 * @return fingerprint
+	 */
+	public NoteItemFingerprint getFingerprint() {
+		return m_fingerprint;
+	}
+
+	/**
+	 * Returns the names of items that did not exist in the previous revision
+	 *
+	 * @return item names
+	 */
+	public Set<String> getAddedItems() {
+		return m_addedItems;
+	}
+
+	/**
+	 * Returns the names of items that existed in the previous revision, but not in the current one
+	 *
+	 * @return item names
+	 */
+	public Set<String> getRemovedItems() {
+		return m_removedItems;
+	}
+
+	/**
+	 * Returns the names of items with a different data type or value
+	 *
+	 * @return item names
+	 */
+	public Set<String> getChangedItems() {
+		return m_changedItems;
+	}
+
+	/**
+	 * Checks whether any item has been added, removed or changed
+	 *
+	 * @return true if changed
+	 */
+	public boolean hasChanges() {
+		return !m_addedItems.isEmpty() || !m_removedItems.isEmpty() || !m_changedItems.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "NoteItemChanges [added="+m_addedItems+", removed="+m_removedItems+", changed="+m_changedItems+"]";
+	}
+}
@@ -0,0 +1,300 @@
+package com.mindoo.domino.jna;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.mindoo.domino.jna.NotesNote.IItemCallback;
+import com.mindoo.domino.jna.errors.NotesError;
+
+/**
+ * Compact description of the items of a note revision, containing the data type, sequence number,
+ * value length and a 64 bit hash of the raw value bytes per item name. Items that occur multiple times
+ * in a note (e.g. large richtext or $FILE items) are combined into one entry.<br>
+ * <br>
+ * Store the fingerprint with {@link #toByteArray()} after syncing a note, and compare the next revision
+ * with {@link NotesNote#getItemChanges(NoteItemFingerprint)} to find out which items have changed.
+ * Value hashes are computed from the item value memory without decoding the values.
+ *
+ * @author Karsten Lehmann
+ */
+public class NoteItemFingerprint {
+	static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	static final long FNV_PRIME = 0x100000001b3L;
+	private static final int FORMAT_VERSION = 2;
+	/** the item sequence number is a BYTE, so it repeats after 256 note updates */
+	private static final int ITEM_SEQ_RANGE = 256;
+
+	private TreeMap<String,ItemInfo> m_items;
+	/** sequence number of the note (OID), -1 if unknown */
+	private int m_noteSeq = -1;
+
+	private NoteItemFingerprint() {
+		m_items = new TreeMap<String,ItemInfo>(String.CASE_INSENSITIVE_ORDER);
+	}
+
+	/**
+	 * Data of one item name
+	 */
+	private static class ItemInfo {
+		private String m_name;
+		private int m_type;
+		private int m_seq;
+		private int m_length;
+		private int m_instances;
+		private long m_hash;
+
+		private boolean sameMetadata(ItemInfo other) {
+			return m_type==other.m_type && m_length==other.m_length && m_instances==other.m_instances;
+		}
+	}
+
+	/**
+	 * Computes the fingerprint of a note
+	 *
+	 * @param note note
+	 * @return fingerprint
+	 */
+	static NoteItemFingerprint create(NotesNote note) {
+		return create(note, null);
+	}
+
+	/**
+	 * Computes the fingerprint of a note. If a previous fingerprint is specified, items with one instance that
+	 * have the same sequence number, data type and value length as in the previous fingerprint are not read again,
+	 * their previous hash is reused. Since the item sequence number is only a BYTE and wraps around, we only
+	 * do this if the note has been updated less than 256 times since the previous fingerprint.
+	 *
+	 * @param note note
+	 * @param previous previous fingerprint or null
+	 * @return fingerprint
+	 */
+	static NoteItemFingerprint create(NotesNote note, NoteItemFingerprint previous) {
+		final TreeMap<String,List<NotesItem>> itemsByName = new TreeMap<String,List<NotesItem>>(String.CASE_INSENSITIVE_ORDER);
+
+		note.getItems(new IItemCallback() {
+
+			@Override
+			public Action itemFound(NotesItem item) {
+				String itemName = item.getName();
+				List<NotesItem> items = itemsByName.get(itemName);
+				if (items==null) {
+					items = new ArrayList<NotesItem>(1);
+					itemsByName.put(itemName, items);
+				}
+				items.add(item);
+				return Action.Continue;
+			}
+		});
+
+		NoteItemFingerprint fingerprint = new NoteItemFingerprint();
+		fingerprint.m_noteSeq = note.getOID().getSequence();
+		byte[] buffer = null;
+
+		boolean canReuseHashes = false;
+		if (previous!=null && previous.m_noteSeq!=-1) {
+			long noteUpdates = (fingerprint.m_noteSeq & 0xffffffffL) - (previous.m_noteSeq & 0xffffffffL);
+			canReuseHashes = noteUpdates>=0 && noteUpdates<ITEM_SEQ_RANGE;
+		}
+
+		for (Entry<String,List<NotesItem>> currEntry : itemsByName.entrySet()) {
+			List<NotesItem> items = currEntry.getValue();
+
+			ItemInfo info = new ItemInfo();
+			info.m_name = currEntry.getKey();
+			info.m_type = items.get(0).getType();
+			info.m_instances = items.size();
+			for (NotesItem currItem : items) {
+				info.m_seq = Math.max(info.m_seq, currItem.getSeq());
+				info.m_length += currItem.getValueLength() - 2;
+			}
+
+			ItemInfo prevInfo = canReuseHashes ? previous.m_items.get(info.m_name) : null;
+			if (prevInfo!=null && info.m_instances==1 && prevInfo.m_seq==info.m_seq && info.sameMetadata(prevInfo)) {
+				//the sequence number is unchanged, so the item has not been written since the previous fingerprint
+				info.m_hash = prevInfo.m_hash;
+			}
+			else {
+				if (buffer==null) {
+					buffer = new byte[4096];
+				}
+				long hash = FNV_OFFSET_BASIS;
+				for (NotesItem currItem : items) {
+					hash = (hash ^ currItem.getValueHash(buffer)) * FNV_PRIME;
+				}
+				info.m_hash = hash;
+			}
+			fingerprint.m_items.put(info.m_name, info);
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * Compares this fingerprint with the fingerprint of an older revision
+	 *
+	 * @param previous previous fingerprint
+	 * @return changes
+	 */
+	public NoteItemChanges diff(NoteItemFingerprint previous) {
+		Set<String> added = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+		Set<String> removed = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+		Set<String> changed = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+
+		for (ItemInfo currInfo : m_items.values()) {
+			ItemInfo prevInfo = previous.m_items.get(currInfo.m_name);
+			if (prevInfo==null) {
+				added.add(currInfo.m_name);
+			}
+			else if (!currInfo.sameMetadata(prevInfo) || currInfo.m_hash!=prevInfo.m_hash) {
+				changed.add(currInfo.m_name);
+			}
+		}
+		for (String currPrevName : previous.m_items.keySet()) {
+			if (!m_items.containsKey(currPrevName)) {
+				removed.add(currPrevName);
+			}
+		}
+		return new NoteItemChanges(this, added, removed, changed);
+	}
+
+	/**
+	 * Returns the names of all items
+	 *
+	 * @return item names, sorted case insensitive
+	 */
+	public Set<String> getItemNames() {
+		return Collections.unmodifiableSet(m_items.keySet());
+	}
+
+	/**
+	 * Checks if the fingerprint contains an item
+	 *
+	 * @param itemName item name, case insensitive
+	 * @return true if item exists
+	 */
+	public boolean hasItem(String itemName) {
+		return m_items.containsKey(itemName);
+	}
+
+	/**
+	 * Returns the data type of an item
+	 *
+	 * @param itemName item name, case insensitive
+	 * @return data type or -1 if the item does not exist
+	 */
+	public int getItemType(String itemName) {
+		ItemInfo info = m_items.get(itemName);
+		return info==null ? -1 : info.m_type;
+	}
+
+	/**
+	 * Returns the sequence number of an item, the highest number if the item occurs multiple times
+	 *
+	 * @param itemName item name, case insensitive
+	 * @return sequence number or -1 if the item does not exist
+	 */
+	public int getItemSeq(String itemName) {
+		ItemInfo info = m_items.get(itemName);
+		return info==null ? -1 : info.m_seq;
+	}
+
+	/**
+	 * Returns the sequence number of the note when the fingerprint was computed
+	 *
+	 * @return sequence number or -1 if unknown
+	 */
+	public int getNoteSeq() {
+		return m_noteSeq;
+	}
+
+	/**
+	 * Returns the hash of the raw value bytes of an item
+	 *
+	 * @param itemName item name, case insensitive
+	 * @return hash or 0 if the item does not exist
+	 */
+	public long getItemHash(String itemName) {
+		ItemInfo info = m_items.get(itemName);
+		return info==null ? 0 : info.m_hash;
+	}
+
+	/**
+	 * Serializes the fingerprint, e.g. to store it in the sync target
+	 *
+	 * @return data
+	 */
+	public byte[] toByteArray() {
+		ByteArrayOutputStream bOut = new ByteArrayOutputStream(32 + m_items.size() * 40);
+		DataOutputStream dataOut = new DataOutputStream(bOut);
+		try {
+			dataOut.writeByte(FORMAT_VERSION);
+			dataOut.writeInt(m_noteSeq);
+			dataOut.writeInt(m_items.size());
+			for (ItemInfo currInfo : m_items.values()) {
+				dataOut.writeUTF(currInfo.m_name);
+				dataOut.writeShort(currInfo.m_type);
+				dataOut.writeShort(currInfo.m_seq);
+				dataOut.writeInt(currInfo.m_length);
+				dataOut.writeInt(currInfo.m_instances);
+				dataOut.writeLong(currInfo.m_hash);
+			}
+			dataOut.flush();
+		}
+		catch (IOException e) {
+			//does not happen for in-memory streams
+			throw new NotesError(0, "Error serializing item fingerprint", e);
+		}
+		return bOut.toByteArray();
+	}
+
+	/**
+	 * Restores a fingerprint serialized with {@link #toByteArray()}. Data of the first format
+	 * version has no note sequence number, so the next {@link NotesNote#getItemChanges(NoteItemFingerprint)}
+	 * call reads all item values.
+	 *
+	 * @param data data
+	 * @return fingerprint
+	 */
+	public static NoteItemFingerprint fromByteArray(byte[] data) {
+		DataInputStream dataIn = new DataInputStream(new ByteArrayInputStream(data));
+		try {
+			int version = dataIn.readUnsignedByte();
+			if (version!=1 && version!=FORMAT_VERSION) {
+				throw new IllegalArgumentException("Unsupported fingerprint format version: "+version);
+			}
+			NoteItemFingerprint fingerprint = new NoteItemFingerprint();
+			if (version>=2) {
+				fingerprint.m_noteSeq = dataIn.readInt();
+			}
+			int count = dataIn.readInt();
+			for (int i=0; i<count; i++) {
+				ItemInfo info = new ItemInfo();
+				info.m_name = dataIn.readUTF();
+				info.m_type = dataIn.readUnsignedShort();
+				info.m_seq = version>=2 ? dataIn.readUnsignedShort() : dataIn.readUnsignedByte();
+				info.m_length = dataIn.readInt();
+				info.m_instances = dataIn.readInt();
+				info.m_hash = dataIn.readLong();
+				fingerprint.m_items.put(info.m_name, info);
+			}
+			return fingerprint;
+		}
+		catch (IOException e) {
+			throw new IllegalArgumentException("Invalid fingerprint data", e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "NoteItemFingerprint [items="+m_items.size()+"]";
+	}
+}
@@ -1,18 +1,26 @@
 package com.mindoo.domino.jna;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
 
 import com.mindoo.domino.jna.NotesSearch.ISearchMatch;
 import com.mindoo.domino.jna.constants.NoteClass;
 import com.mindoo.domino.jna.constants.Search;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.gc.NotesGC;
 import com.mindoo.domino.jna.internal.TypedItemAccess;
+import com.mindoo.domino.jna.utils.NotesInitUtils;
 
 /**
  * Utility class that takes an {@link Iterator} of note ids and reads data
@@ -22,17 +30,39 @@ import com.mindoo.domino.jna.internal.TypedItemAccess;
  * requested data from the notes. NSFSearchExtended3 can run on
  * a specified IDTable of note ids instead of the whole database. For
  * performance reasons, we collect pages of note ids before calling
- * NSFSearchExtended3. The page size can be set in the constructor.
- * 
+ * NSFSearchExtended3. The page size can be set in the constructor.<br>
+ * <br>
+ * With {@link #setPageByteBudget(long)}, the number of note ids per page is computed from
+ * the average summary data size of the notes read so far, so that pages hold about the same
+ * amount of data independent of the document size. With {@link #setPrefetch(boolean)}, the
+ * next page is read on a helper thread while the current page is consumed. Use
+ * {@link #getPageStats()} to analyze the time spent reading and waiting for pages.
+ *
  * @author Karsten Lehmann
  */
-public class NoteSummaryIterator implements Iterator<NoteSummaryIterator.NoteData> {
-	private PagedNoteSummaryIterator m_pagedIterator;
-	private List<NoteSummaryIterator.NoteData> m_nextPage;
+public class NoteSummaryIterator implements Iterator<NoteSummaryIterator.NoteData>, AutoCloseable {
+	/** number of note ids in the first page when using a byte budget, used to measure the summary data size */
+	private static final int INITIAL_BUDGET_PAGE_SIZE = 100;
+	private static final Object END_OF_PAGES = new Object();
+
+	private NotesDatabase m_db;
+	private PageProducer m_producer;
+	private long m_pageByteBudget;
+	private boolean m_prefetch;
+
+	private boolean m_started;
+	private boolean m_done;
+	private volatile boolean m_closed;
+	private Page m_currPage;
+	private int m_currPagePos;
+	private List<PageStats> m_pageStats;
+
+	private PrefetchThread m_prefetchThread;
+	private SynchronousQueue<Object> m_prefetchQueue;
 
 	/**
 	 * Creates a new instance
-	 * 
+	 *
 	 * @param db database
 	 * @param pageSize number of note ids to collect internally before passing them to NSFSearchExtended3, e.g. 30000; the summary data for this amount of notes is stored in the Java heap
 	 * @param noteIdIt iterator of note ids to process
@@ -44,12 +74,12 @@ public class NoteSummaryIterator implements Iterator<NoteSummaryIterator.NoteDat
 			int skip, int count, Map<String,String> columnFormulas) {
 		this(db, pageSize, noteIdIt, skip, count, columnFormulas, EnumSet.of(NoteClass.DATA));
 	}
-	
+
 	/**
 	 * Creates a new instance
-	 * 
+	 *
 	 * @param db database
-	 * @param pageSize number of note ids to collect internally before passing them to NSFSearchExtended3, e.g. 500
+	 * @param pageSize number of note ids to collect internally before passing them to NSFSearchExtended3, e.g. 500; when using {@link #setPageByteBudget(long)}, this is the maximum page size
 	 * @param noteIdIt iterator of note ids to process
 	 * @param skip note ids to skip before processing them
 	 * @param count number of note ids to process
@@ -58,37 +88,172 @@ public class NoteSummaryIterator implements Iterator<NoteSummaryIterator.NoteDat
 	 */
 	public NoteSummaryIterator(NotesDatabase db, int pageSize, Iterator<Integer> noteIdIt,
 			int skip, int count, Map<String,String> columnFormulas, EnumSet<NoteClass> noteClasses) {
-		
-		m_pagedIterator = new PagedNoteSummaryIterator(db, pageSize, noteIdIt, skip, count, columnFormulas, noteClasses);
-		m_nextPage = fetchNextPage();
+
+		if (pageSize<1) {
+			throw new IllegalArgumentException("Page size must be 1 or higher: "+pageSize);
+		}
+		m_db = db;
+		m_producer = new PageProducer(pageSize, noteIdIt, skip, count, columnFormulas, noteClasses);
+		m_pageStats = new ArrayList<PageStats>();
 	}
-	
-	private List<NoteSummaryIterator.NoteData> fetchNextPage() {
-		if (m_pagedIterator.hasNext()) {
-			return m_pagedIterator.next();
+
+	private void checkNotStarted() {
+		if (m_started) {
+			throw new IllegalStateException("Iteration has already been started");
 		}
-		else {
+	}
+
+	/**
+	 * Limits the summary data per page instead of the number of notes. The number of note ids per
+	 * page is computed from the average summary buffer size of the notes read so far, starting with
+	 * a small first page, and never exceeds the page size passed in the constructor.
+	 * The budget is a target, a page with large documents can exceed it.<br>
+	 * <br>
+	 * Must be called before the iteration starts.
+	 *
+	 * @param bytes budget in bytes of summary data or 0 to only use the page size
+	 * @return this iterator
+	 */
+	public NoteSummaryIterator setPageByteBudget(long bytes) {
+		checkNotStarted();
+		if (bytes<0) {
+			throw new IllegalArgumentException("Page byte budget cannot be negative: "+bytes);
+		}
+		m_pageByteBudget = bytes;
+		return this;
+	}
+
+	public long getPageByteBudget() {
+		return m_pageByteBudget;
+	}
+
+	/**
+	 * Use this method to read the next page on a helper thread while the current page is consumed.<br>
+	 * The helper thread is initialized for Notes API calls and reopens the database (see {@link NotesDatabase#reopenDatabase()}).
+	 * Since iterators of Notes objects like {@link NotesIDTable} can only be used on the thread that created them, the
+	 * note ids to process are read from the iterator passed in the constructor on the calling thread when the iteration
+	 * starts and are stored in an int array. The helper thread stops at the end of the data or when {@link #close()} is called. Call {@link #close()} when stopping the iteration before its end and
+	 * before recycling the database.<br>
+	 * <br>
+	 * Must be called before the iteration starts.
+	 *
+	 * @param b true to prefetch pages
+	 * @return this iterator
+	 */
+	public NoteSummaryIterator setPrefetch(boolean b) {
+		checkNotStarted();
+		m_prefetch = b;
+		return this;
+	}
+
+	public boolean isPrefetch() {
+		return m_prefetch;
+	}
+
+	/**
+	 * Returns statistics about the pages read so far
+	 *
+	 * @return page stats in read order
+	 */
+	public List<PageStats> getPageStats() {
+		return Collections.unmodifiableList(m_pageStats);
+	}
+
+	/**
+	 * Stops the prefetch thread, if running
+	 */
+	@Override
+	public void close() {
+		m_closed = true;
+		m_currPage = null;
+		if (m_prefetchThread!=null) {
+			m_prefetchThread.interrupt();
+			try {
+				m_prefetchThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			m_prefetchThread = null;
+		}
+	}
+
+	/**
+	 * Makes sure {@link #m_currPage} contains an unread entry or is null at the end of the data
+	 */
+	private void ensurePage() {
+		m_started = true;
+
+		while (!m_done && (m_currPage==null || m_currPagePos >= m_currPage.m_entries.size())) {
+			m_currPage = fetchNextPage();
+			m_currPagePos = 0;
+			if (m_currPage==null) {
+				m_done = true;
+			}
+		}
+	}
+
+	private Page fetchNextPage() {
+		if (m_closed) {
 			return null;
 		}
+
+		long t0 = System.nanoTime();
+		Page page;
+
+		if (m_prefetch) {
+			if (m_prefetchThread==null) {
+				m_producer.snapshotNoteIds();
+				m_prefetchQueue = new SynchronousQueue<Object>();
+				m_prefetchThread = new PrefetchThread();
+				m_prefetchThread.setName("domino-jna-summary-prefetch");
+				m_prefetchThread.setDaemon(true);
+				m_prefetchThread.start();
+			}
+
+			Object item;
+			try {
+				item = m_prefetchQueue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new NotesError(0, "Interrupted while waiting for the next page", e);
+			}
+
+			if (item instanceof Throwable) {
+				close();
+				throw new NotesError(0, "Error reading summary data", (Throwable) item);
+			}
+			page = item==END_OF_PAGES ? null : (Page) item;
+		}
+		else {
+			page = m_producer.produceNextPage(m_db);
+		}
+
+		if (page!=null) {
+			page.m_stats.m_waitNanos = System.nanoTime() - t0;
+			m_pageStats.add(page.m_stats);
+		}
+		return page;
 	}
-	
+
 	@Override
 	public boolean hasNext() {
-		return m_nextPage!=null;
+		ensurePage();
+		return m_currPage!=null;
 	}
-	
+
 	@Override
 	public NoteData next() {
-		if (m_nextPage==null) {
+		ensurePage();
+		if (m_currPage==null) {
 			throw new NoSuchElementException();
 		}
-		NoteData data = m_nextPage.remove(0);
-		if (m_nextPage.isEmpty()) {
-			m_nextPage = fetchNextPage();
-		}
+		NoteData data = m_currPage.m_entries.get(m_currPagePos);
+		//release the reference so that consumed entries can be garbage collected
+		m_currPage.m_entries.set(m_currPagePos, null);
+		m_currPagePos++;
 		return data;
 	}
-	
+
 	/**
 	 * This object is returned by the iterator. It contains basic info about
 	 * the note like note id, UNID, modified date, sequence number, sequence time
@@ -97,33 +262,189 @@ public class NoteSummaryIterator implements Iterator<NoteSummaryIterator.NoteDat
 	public static class NoteData extends TypedItemAccess {
 		private NotesSearch.ISearchMatch m_searchMatch;
 		private TreeMap<String,Object> m_summaryData;
-		
+
 		private NoteData(NotesSearch.ISearchMatch searchMatch, TreeMap<String,Object> summaryData) {
 			m_searchMatch = searchMatch;
 			m_summaryData = summaryData;
 		}
-		
+
 		@Override
 		public Object get(String itemName) {
 			return m_summaryData.get(itemName);
 		}
-		
+
 		public boolean hasItem(String itemName) {
 			return m_summaryData.containsKey(itemName);
 		}
-		
+
 		public NotesSearch.ISearchMatch getSearchMatch() {
 			return m_searchMatch;
 		}
-		
+
 		public Map<String,Object> getAllSummaryData() {
 			return m_summaryData;
 		}
 
 	}
 
-	private class PagedNoteSummaryIterator implements Iterator<List<NoteSummaryIterator.NoteData>> {
-		private NotesDatabase m_db;
+	/**
+	 * Statistics about a page of summary data
+	 */
+	public static class PageStats {
+		private int m_pageIndex;
+		private int m_requestedNoteIds;
+		private int m_noteCount;
+		private long m_summaryBytes;
+		private long m_readNanos;
+		private long m_waitNanos;
+		private boolean m_prefetched;
+
+		private PageStats(int pageIndex, boolean prefetched) {
+			m_pageIndex = pageIndex;
+			m_prefetched = prefetched;
+		}
+
+		/**
+		 * Returns the index of the page, starting with 0
+		 *
+		 * @return index
+		 */
+		public int getPageIndex() {
+			return m_pageIndex;
+		}
+
+		/**
+		 * Returns the number of note ids searched for this page, including notes that
+		 * have been skipped because they did not exist or had a different note class
+		 *
+		 * @return count
+		 */
+		public int getRequestedNoteIds() {
+			return m_requestedNoteIds;
+		}
+
+		/**
+		 * Returns the number of entries in the page
+		 *
+		 * @return count
+		 */
+		public int getNoteCount() {
+			return m_noteCount;
+		}
+
+		/**
+		 * Returns the size of the summary buffers of the page
+		 *
+		 * @return bytes
+		 */
+		public long getSummaryBytes() {
+			return m_summaryBytes;
+		}
+
+		/**
+		 * Returns the time spent collecting note ids and reading the summary data
+		 *
+		 * @return duration in milliseconds
+		 */
+		public long getReadMillis() {
+			return m_readNanos / 1000000;
+		}
+
+		/**
+		 * Returns how long the consumer waited for the page; when prefetching,
+		 * this is lower than {@link #getReadMillis()} if the page has been read in the background
+		 *
+		 * @return duration in milliseconds
+		 */
+		public long getWaitMillis() {
+			return m_waitNanos / 1000000;
+		}
+
+		/**
+		 * Returns whether the page has been read on the prefetch thread
+		 *
+		 * @return true if prefetched
+		 */
+		public boolean isPrefetched() {
+			return m_prefetched;
+		}
+
+		@Override
+		public String toString() {
+			return "PageStats [index="+m_pageIndex+", requested="+m_requestedNoteIds+", notes="+m_noteCount+
+					", bytes="+m_summaryBytes+", read="+getReadMillis()+"ms, wait="+getWaitMillis()+"ms]";
+		}
+	}
+
+	/**
+	 * Entries of a page and their stats
+	 */
+	private static class Page {
+		private List<NoteData> m_entries;
+		private PageStats m_stats;
+	}
+
+	/**
+	 * Thread that reads the pages in advance and hands them to the consumer thread
+	 */
+	private class PrefetchThread extends Thread {
+
+		@Override
+		public void run() {
+			NotesInitUtils.notesInitThread();
+			try {
+				NotesGC.runWithAutoGC(new Callable<Object>() {
+
+					@Override
+					public Object call() throws Exception {
+						NotesDatabase db = m_db.reopenDatabase();
+						try {
+							while (!m_closed) {
+								Page page = m_producer.produceNextPage(db);
+								if (!handOver(page==null ? END_OF_PAGES : page) || page==null) {
+									break;
+								}
+							}
+						}
+						finally {
+							db.recycle();
+						}
+						return null;
+					}
+				});
+			}
+			catch (Throwable t) {
+				handOver(t);
+			}
+			finally {
+				NotesInitUtils.notesTermThread();
+			}
+		}
+
+		/**
+		 * Waits until the consumer takes the item
+		 *
+		 * @param item page, error or end marker
+		 * @return false if the iterator has been closed
+		 */
+		private boolean handOver(Object item) {
+			try {
+				while (!m_closed) {
+					if (m_prefetchQueue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+						return true;
+					}
+				}
+			} catch (InterruptedException e) {
+				//iterator closed
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Reads pages of summary data for the note ids of the iterator
+	 */
+	private class PageProducer {
 		private int m_pageSize;
 		private Iterator<Integer> m_noteIdIt;
 		private int m_skip;
@@ -133,56 +454,96 @@ public class NoteSummaryIterator implements Iterator<NoteSummaryIterator.NoteDat
 		private boolean m_done;
 		private Map<String,String> m_columnFormulas;
 		private EnumSet<NoteClass> m_noteClasses;
-		
-		private List<NoteData> m_nextPage;
-		
-		public PagedNoteSummaryIterator(NotesDatabase db, int pageSize, Iterator<Integer> noteIdIt,
+
+		private int m_pageIndex;
+		private long m_totalNotes;
+		private long m_totalSummaryBytes;
+
+		public PageProducer(int pageSize, Iterator<Integer> noteIdIt,
 				int skip, int count,
 				Map<String,String> columnFormulas, EnumSet<NoteClass> documentClasses) {
-			
-			m_db = db;
+
 			m_pageSize = pageSize;
 			m_noteIdIt = noteIdIt;
 			m_skip = skip;
 			m_count = count;
 			m_columnFormulas = columnFormulas;
 			m_noteClasses = documentClasses;
-			
-			m_nextPage = produceNextPage();
 		}
-		
-		@Override
-		public boolean hasNext() {
-			return m_nextPage!=null;
+
+		/**
+		 * Reads the note ids to process from the iterator into an int array, so that
+		 * pages can be produced on another thread
+		 */
+		public void snapshotNoteIds() {
+			int[] noteIds = new int[Math.max(16, Math.min(m_pageSize, 100000))];
+			int noteIdsCount = 0;
+
+			while (m_skipped < m_skip && m_noteIdIt.hasNext()) {
+				m_noteIdIt.next();
+				m_skipped++;
+			}
+			while (m_processed + noteIdsCount < m_count && m_noteIdIt.hasNext()) {
+				if (noteIdsCount == noteIds.length) {
+					noteIds = Arrays.copyOf(noteIds, noteIds.length * 2);
+				}
+				noteIds[noteIdsCount++] = m_noteIdIt.next();
+			}
+
+			m_noteIdIt = Arrays.stream(noteIds, 0, noteIdsCount).iterator();
 		}
-		
-		@Override
-		public List<NoteSummaryIterator.NoteData> next() {
-			if (m_nextPage==null) {
-				throw new NoSuchElementException();
+
+		/**
+		 * Computes the number of note ids for the next page
+		 *
+		 * @return count
+		 */
+		private int getNextPageSize() {
+			if (m_pageByteBudget<=0) {
+				return m_pageSize;
 			}
-			
-			List<NoteSummaryIterator.NoteData> page = m_nextPage;
-			m_nextPage = produceNextPage();
-			return page;
+			if (m_totalNotes==0) {
+				return Math.min(m_pageSize, INITIAL_BUDGET_PAGE_SIZE);
+			}
+			long avgNoteBytes = Math.max(1, m_totalSummaryBytes / m_totalNotes);
+			return (int) Math.max(1, Math.min(m_pageSize, m_pageByteBudget / avgNoteBytes));
 		}
-		
-		private List<NoteSummaryIterator.NoteData> produceNextPage() {
-			if (!m_noteIdIt.hasNext() || m_done) {
-				return null;
+
+		/**
+		 * Reads the next page with data, skipping pages where no note could be found
+		 *
+		 * @param db database to search
+		 * @return page or null if there is no more data
+		 */
+		public Page produceNextPage(NotesDatabase db) {
+			while (true) {
+				if (!m_noteIdIt.hasNext() || m_done) {
+					return null;
+				}
+
+				Page page = readPage(db);
+				if (!page.m_entries.isEmpty()) {
+					return page;
+				}
 			}
-			
-			NotesIDTable idTable = new NotesIDTable();
-			
+		}
+
+		private Page readPage(NotesDatabase db) {
+			long t0 = System.nanoTime();
+
+			Page page = new Page();
+			page.m_stats = new PageStats(m_pageIndex++, m_prefetch);
+
 			List<Integer> noteIdsInPage = new ArrayList<>();
-			
+
 			while (m_skipped < m_skip && m_noteIdIt.hasNext()) {
 				m_noteIdIt.next();
 				m_skipped++;
 			}
 
 			//collect ids for next page
-			for (int i=0; i<m_pageSize; i++) {
+			int pageSize = getNextPageSize();
+			for (int i=0; i<pageSize; i++) {
 				if (m_noteIdIt.hasNext()) {
 					if (m_processed < m_count) {
 						Integer noteId = m_noteIdIt.next();
@@ -198,80 +559,85 @@ public class NoteSummaryIterator implements Iterator<NoteSummaryIterator.NoteDat
 					break;
 				}
 			}
-			idTable.addNotes(noteIdsInPage);
-			
-			LinkedHashMap<Integer,NoteData> dataByNoteId = new LinkedHashMap<>();
-			
-			//read summary data for note ids to produce next page
-//			System.out.println("Fetching summary data for "+idTable.getCount()+" ids: "+noteIdsInPage);
-			
-			NotesSearch.search(m_db, idTable, "@true", m_columnFormulas, "-", EnumSet.of(Search.SUMMARY,
-					Search.SESSION_USERNAME),
-					m_noteClasses, null, new NotesSearch.SearchCallback() {
-						
-				private TreeMap<String,Object> getSummaryData(IItemTableData summaryBufferData) {
-					TreeMap<String,Object> data = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
-					summaryBufferData.setPreferNotesTimeDates(true);
-					
-					if (summaryBufferData!=null) {
-						for (String currItemName : m_columnFormulas.keySet()) {
-							Object currItemValue = summaryBufferData.get(currItemName);
-							data.put(currItemName, currItemValue);
+
+			final Map<Integer,NoteData> dataByNoteId = new HashMap<>();
+			final long[] summaryBytes = new long[1];
+
+			if (!noteIdsInPage.isEmpty()) {
+				NotesIDTable idTable = new NotesIDTable();
+				try {
+					idTable.addNotes(noteIdsInPage);
+
+					//read summary data for note ids to produce next page
+					NotesSearch.search(db, idTable, "@true", m_columnFormulas, "-", EnumSet.of(Search.SUMMARY,
+							Search.SESSION_USERNAME),
+							m_noteClasses, null, new NotesSearch.SearchCallback() {
+
+						private TreeMap<String,Object> getSummaryData(IItemTableData summaryBufferData) {
+							TreeMap<String,Object> data = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+							if (summaryBufferData!=null) {
+								summaryBufferData.setPreferNotesTimeDates(true);
+
+								for (String currItemName : m_columnFormulas.keySet()) {
+									Object currItemValue = summaryBufferData.get(currItemName);
+									data.put(currItemName, currItemValue);
+								}
+							}
+
+							return data;
 						}
-					}
-					
-					return data;
-				}
 
-				@Override
-				public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
-					TreeMap<String,Object> summaryData = getSummaryData(summaryBufferData);
+						@Override
+						public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+							TreeMap<String,Object> summaryData = getSummaryData(summaryBufferData);
 
-					NoteData docInfo = new NoteData(searchMatch, summaryData);
-					dataByNoteId.put(searchMatch.getNoteId(), docInfo);
+							NoteData docInfo = new NoteData(searchMatch, summaryData);
+							dataByNoteId.put(searchMatch.getNoteId(), docInfo);
+							summaryBytes[0] += searchMatch.getSummaryLength();
 
-					return Action.Continue;
-				}
+							return Action.Continue;
+						}
 
-				@Override
-				public Action deletionStubFound(NotesDatabase parentDb, ISearchMatch searchMatch,
-						IItemTableData summaryBufferData) {
+						@Override
+						public Action deletionStubFound(NotesDatabase parentDb, ISearchMatch searchMatch,
+								IItemTableData summaryBufferData) {
 
-					return Action.Continue;
-				}
+							return Action.Continue;
+						}
 
-				@Override
-				public Action noteFoundNotMatchingFormula(NotesDatabase parentDb, ISearchMatch searchMatch,
-						IItemTableData summaryBufferData) {
+						@Override
+						public Action noteFoundNotMatchingFormula(NotesDatabase parentDb, ISearchMatch searchMatch,
+								IItemTableData summaryBufferData) {
 
-					return Action.Continue;
+							return Action.Continue;
+						}
+					}
+
+							);
+				}
+				finally {
+					idTable.recycle();
 				}
 			}
 
-					);
-			idTable.recycle();
-			
-			List<NoteData> page = new ArrayList<NoteData>();
-			
+			//return the data in the order of the note id iterator
+			List<NoteData> entries = new ArrayList<NoteData>(dataByNoteId.size());
 			for (Integer currNoteId : noteIdsInPage) {
 				NoteData currNoteData = dataByNoteId.get(currNoteId);
 				if (currNoteData!=null) {
-					page.add(currNoteData);
+					entries.add(currNoteData);
 				}
 			}
 
-			//repeat search if we could not find any data
-			while (page!=null && page.isEmpty()) {
-				List<NoteData> nextPage = produceNextPage();
-				if (nextPage==null) {
-					return null;
-				}
-				else {
-					page.clear();
-					page.addAll(nextPage);
-				}
-			}
-			
+			m_totalNotes += entries.size();
+			m_totalSummaryBytes += summaryBytes[0];
+
+			page.m_entries = entries;
+			page.m_stats.m_requestedNoteIds = noteIdsInPage.size();
+			page.m_stats.m_noteCount = entries.size();
+			page.m_stats.m_summaryBytes = summaryBytes[0];
+			page.m_stats.m_readNanos = System.nanoTime() - t0;
 			return page;
 		}
 
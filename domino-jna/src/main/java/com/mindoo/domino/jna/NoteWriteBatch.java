@@ -0,0 +1,484 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+
+import com.mindoo.domino.jna.constants.ItemType;
+import com.mindoo.domino.jna.errors.INotesErrorConstants;
+import com.mindoo.domino.jna.errors.NotesErrorUtils;
+import com.mindoo.domino.jna.internal.DisposableMemory;
+import com.mindoo.domino.jna.internal.NotesNativeAPI32;
+import com.mindoo.domino.jna.internal.NotesNativeAPI64;
+import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
+import com.mindoo.domino.jna.utils.NotesStringUtils;
+import com.mindoo.domino.jna.utils.PlatformUtils;
+import com.sun.jna.Memory;
+
+/**
+ * Collects item writes for a {@link NotesNote} and applies them in one pass.<br>
+ * <br>
+ * {@link NotesNote#replaceItemValue(String, Object)} allocates a native memory block per item,
+ * checks for existing items with {@link NotesNote#hasItem(String)} and appends the value by BLOCKID.
+ * This class instead encodes all item names and values into a single buffer, copies it to native memory
+ * once and calls NSFItemDelete/NSFItemAppend directly with pointers into that buffer. Pure ASCII strings
+ * are encoded without LMBCS conversion.<br>
+ * <br>
+ * The batch can be reused for many notes, e.g. in import jobs: call {@link #applyTo(NotesNote)}
+ * and then {@link #clear()} before collecting the writes for the next note. The internal buffers are kept
+ * between runs.<br>
+ * <br>
+ * We support the value types of {@link NotesNote#replaceItemValue(String, EnumSet, Object)}. Strings,
+ * numbers, date/times, their lists and {@link NotesDateRange} values are encoded by the batch, all other
+ * types are passed to {@link NotesNote#replaceItemValue(String, EnumSet, Object)} /
+ * {@link NotesNote#appendItemValue(String, EnumSet, Object)} in the right order when the batch is applied.
+ *
+ * @author Karsten Lehmann
+ */
+public class NoteWriteBatch {
+	private static final int OP_REPLACE = 0;
+	private static final int OP_APPEND = 1;
+	private static final int OP_REMOVE = 2;
+
+	private byte[] m_buffer;
+	private int m_bufferLength;
+	private List<Entry> m_entries;
+
+	/**
+	 * Creates a new empty batch
+	 */
+	public NoteWriteBatch() {
+		m_buffer = new byte[4096];
+		m_entries = new ArrayList<Entry>();
+	}
+
+	/**
+	 * Removes all collected writes, keeping the internal buffers for the next note
+	 *
+	 * @return this batch
+	 */
+	public NoteWriteBatch clear() {
+		m_bufferLength = 0;
+		m_entries.clear();
+		return this;
+	}
+
+	/**
+	 * Returns the number of collected writes
+	 *
+	 * @return count
+	 */
+	public int size() {
+		return m_entries.size();
+	}
+
+	/**
+	 * Returns the size of the encoded item names and values
+	 *
+	 * @return bytes
+	 */
+	public int getEncodedSize() {
+		return m_bufferLength;
+	}
+
+	/**
+	 * Removes any existing item with the specified name and creates a new one with the
+	 * specified value, setting the {@link ItemType#SUMMARY} flag
+	 *
+	 * @param itemName item name
+	 * @param value value, see {@link NotesNote#replaceItemValue(String, Object)} for allowed types
+	 * @return this batch
+	 */
+	public NoteWriteBatch replaceItemValue(String itemName, Object value) {
+		return replaceItemValue(itemName, EnumSet.of(ItemType.SUMMARY), value);
+	}
+
+	/**
+	 * Removes any existing item with the specified name and creates a new one with the
+	 * specified item flags and value
+	 *
+	 * @param itemName item name
+	 * @param flags item flags
+	 * @param value value, see {@link NotesNote#replaceItemValue(String, EnumSet, Object)} for allowed types; use null to just remove the old item
+	 * @return this batch
+	 */
+	public NoteWriteBatch replaceItemValue(String itemName, EnumSet<ItemType> flags, Object value) {
+		if (value==null) {
+			return removeItem(itemName);
+		}
+		addEntry(OP_REPLACE, itemName, flags, value);
+		return this;
+	}
+
+	/**
+	 * Creates a new item with the specified value, setting the {@link ItemType#SUMMARY}
+	 * flag (does not overwrite items with the same name)
+	 *
+	 * @param itemName item name
+	 * @param value value, see {@link NotesNote#appendItemValue(String, Object)} for allowed types
+	 * @return this batch
+	 */
+	public NoteWriteBatch appendItemValue(String itemName, Object value) {
+		return appendItemValue(itemName, EnumSet.of(ItemType.SUMMARY), value);
+	}
+
+	/**
+	 * Creates a new item with the specified item flags and value (does not overwrite items with the same name)
+	 *
+	 * @param itemName item name
+	 * @param flags item flags
+	 * @param value value, see {@link NotesNote#appendItemValue(String, EnumSet, Object)} for allowed types
+	 * @return this batch
+	 */
+	public NoteWriteBatch appendItemValue(String itemName, EnumSet<ItemType> flags, Object value) {
+		if (value==null) {
+			throw new IllegalArgumentException("Value cannot be null");
+		}
+		addEntry(OP_APPEND, itemName, flags, value);
+		return this;
+	}
+
+	/**
+	 * Removes all items with the specified name
+	 *
+	 * @param itemName item name
+	 * @return this batch
+	 */
+	public NoteWriteBatch removeItem(String itemName) {
+		addEntry(OP_REMOVE, itemName, null, null);
+		return this;
+	}
+
+	private void addEntry(int op, String itemName, EnumSet<ItemType> flags, Object value) {
+		if (itemName==null || itemName.length()==0) {
+			throw new IllegalArgumentException("Item name cannot be empty");
+		}
+
+		Entry entry = new Entry();
+		entry.m_op = op;
+		entry.m_itemName = itemName;
+		entry.m_nameOffset = m_bufferLength;
+		entry.m_nameLength = writeLMBCS(itemName, true);
+
+		if (flags!=null) {
+			boolean keepLineBreaks = flags.contains(ItemType.KEEPLINEBREAKS);
+			EnumSet<ItemType> flagsWithoutPseudoFlags = flags.clone();
+			flagsWithoutPseudoFlags.remove(ItemType.KEEPLINEBREAKS);
+			entry.m_flags = ItemType.toBitMask(flagsWithoutPseudoFlags);
+			entry.m_origFlags = flags;
+
+			if (value!=null) {
+				int valueOffset = m_bufferLength;
+				int itemType = encodeValue(value, !keepLineBreaks);
+				if (itemType==0) {
+					//not supported by the batch encoder, let NotesNote write the item;
+					//check the type now, because applyTo deletes the old items before writing it
+					m_bufferLength = valueOffset;
+					if (!NotesNote.hasSupportedItemObjectType(value)) {
+						//drop the encoded item name as well
+						m_bufferLength = entry.m_nameOffset;
+						throw new IllegalArgumentException("Unsupported value type: "+NotesNote.dumpValueType(value));
+					}
+					entry.m_fallbackValue = value;
+				}
+				else {
+					entry.m_itemType = itemType;
+					entry.m_valueOffset = valueOffset;
+					entry.m_valueLength = m_bufferLength - valueOffset;
+				}
+			}
+		}
+		m_entries.add(entry);
+	}
+
+	/**
+	 * Writes all collected item changes to the note. The note is not saved.
+	 *
+	 * @param note target note
+	 */
+	public void applyTo(NotesNote note) {
+		note.checkHandle();
+
+		if (m_entries.isEmpty()) {
+			return;
+		}
+
+		DisposableMemory nativeBuffer = new DisposableMemory(Math.max(1, m_bufferLength));
+		try {
+			if (m_bufferLength>0) {
+				nativeBuffer.write(0, m_buffer, 0, m_bufferLength);
+			}
+
+			for (Entry currEntry : m_entries) {
+				Memory itemNameMem = (Memory) nativeBuffer.share(currEntry.m_nameOffset, currEntry.m_nameLength);
+				short nameLength = (short) (currEntry.m_nameLength & 0xffff);
+
+				if (currEntry.m_op == OP_REPLACE || currEntry.m_op == OP_REMOVE) {
+					deleteAllItems(note, itemNameMem, nameLength);
+				}
+
+				if (currEntry.m_op == OP_REMOVE) {
+					continue;
+				}
+
+				if (currEntry.m_fallbackValue!=null) {
+					note.appendItemValue(currEntry.m_itemName, currEntry.m_origFlags, currEntry.m_fallbackValue);
+					continue;
+				}
+
+				short result;
+				if (PlatformUtils.is64Bit()) {
+					result = NotesNativeAPI64.get().NSFItemAppend(note.getHandle64(), currEntry.m_flags, itemNameMem, nameLength,
+							(short) (currEntry.m_itemType & 0xffff), nativeBuffer.share(currEntry.m_valueOffset), currEntry.m_valueLength);
+				}
+				else {
+					result = NotesNativeAPI32.get().NSFItemAppend(note.getHandle32(), currEntry.m_flags, itemNameMem, nameLength,
+							(short) (currEntry.m_itemType & 0xffff), nativeBuffer.share(currEntry.m_valueOffset), currEntry.m_valueLength);
+				}
+				NotesErrorUtils.checkResult(result);
+			}
+		}
+		finally {
+			nativeBuffer.dispose();
+		}
+	}
+
+	private void deleteAllItems(NotesNote note, Memory itemNameMem, short nameLength) {
+		while (true) {
+			short result;
+			if (PlatformUtils.is64Bit()) {
+				result = NotesNativeAPI64.get().NSFItemDelete(note.getHandle64(), itemNameMem, nameLength);
+			}
+			else {
+				result = NotesNativeAPI32.get().NSFItemDelete(note.getHandle32(), itemNameMem, nameLength);
+			}
+			if (result==INotesErrorConstants.ERR_ITEM_NOT_FOUND) {
+				return;
+			}
+			NotesErrorUtils.checkResult(result);
+		}
+	}
+
+	/**
+	 * Encodes an item value into the buffer
+	 *
+	 * @param value value
+	 * @param replaceLineBreaks true to replace line breaks with \0 like {@link NotesNote} does
+	 * @return item type or 0 if the value type is not supported by the batch encoder
+	 */
+	private int encodeValue(Object value, boolean replaceLineBreaks) {
+		if (value instanceof String) {
+			writeLMBCS((String) value, replaceLineBreaks);
+			return NotesItem.TYPE_TEXT;
+		}
+		else if (value instanceof Number) {
+			writeDouble(((Number) value).doubleValue());
+			return NotesItem.TYPE_NUMBER;
+		}
+		else if (value instanceof Calendar || value instanceof Date || value instanceof NotesTimeDate) {
+			writeTimeDate(toInnards(value));
+			return NotesItem.TYPE_TIME;
+		}
+		else if (value instanceof NotesDateRange) {
+			writeWord(0);
+			writeWord(1);
+			writeTimeDate(((NotesDateRange) value).getStartDateTime().getInnards());
+			writeTimeDate(((NotesDateRange) value).getEndDateTime().getInnards());
+			return NotesItem.TYPE_TIME_RANGE;
+		}
+		else if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			if (list.size() > 65535) {
+				throw new IllegalArgumentException("List size must fit in a WORD ("+list.size()+">65535)");
+			}
+
+			if (list.isEmpty() || isListOf(list, String.class)) {
+				//LIST header, WORD lengths, then the text data; the lengths are filled in afterwards
+				writeWord(list.size());
+				int lengthsOffset = m_bufferLength;
+				ensureCapacity(2*list.size());
+				m_bufferLength += 2*list.size();
+
+				for (int i=0; i<list.size(); i++) {
+					int textLength = writeLMBCS((String) list.get(i), replaceLineBreaks);
+					if (textLength > 65535) {
+						throw new IllegalArgumentException("String list entry size must fit in a WORD ("+textLength+">65535)");
+					}
+					putWord(lengthsOffset + 2*i, textLength);
+				}
+				return NotesItem.TYPE_TEXT_LIST;
+			}
+			else if (isListOf(list, Number.class)) {
+				writeWord(list.size());
+				writeWord(0);
+				for (int i=0; i<list.size(); i++) {
+					writeDouble(((Number) list.get(i)).doubleValue());
+				}
+				return NotesItem.TYPE_NUMBER_RANGE;
+			}
+			else if (isDateList(list)) {
+				int listEntries = 0;
+				int rangeEntries = 0;
+				for (int i=0; i<list.size(); i++) {
+					if (list.get(i) instanceof NotesDateRange) {
+						rangeEntries++;
+					}
+					else {
+						listEntries++;
+					}
+				}
+				writeWord(listEntries);
+				writeWord(rangeEntries);
+				//list entries first, then TIMEDATE_PAIRs
+				for (int i=0; i<list.size(); i++) {
+					if (!(list.get(i) instanceof NotesDateRange)) {
+						writeTimeDate(toInnards(list.get(i)));
+					}
+				}
+				for (int i=0; i<list.size(); i++) {
+					if (list.get(i) instanceof NotesDateRange) {
+						NotesDateRange range = (NotesDateRange) list.get(i);
+						writeTimeDate(range.getStartDateTime().getInnards());
+						writeTimeDate(range.getEndDateTime().getInnards());
+					}
+				}
+				return NotesItem.TYPE_TIME_RANGE;
+			}
+		}
+		return 0;
+	}
+
+	private static boolean isListOf(List<?> list, Class<?> clazz) {
+		for (int i=0; i<list.size(); i++) {
+			if (!clazz.isInstance(list.get(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isDateList(List<?> list) {
+		for (int i=0; i<list.size(); i++) {
+			Object currObj = list.get(i);
+			if (!(currObj instanceof Calendar || currObj instanceof Date || currObj instanceof NotesTimeDate || currObj instanceof NotesDateRange)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int[] toInnards(Object value) {
+		if (value instanceof NotesTimeDate) {
+			return ((NotesTimeDate) value).getInnards();
+		}
+		Calendar calValue;
+		if (value instanceof Calendar) {
+			calValue = (Calendar) value;
+		}
+		else {
+			calValue = Calendar.getInstance();
+			calValue.setTime((Date) value);
+		}
+		boolean hasDate = NotesDateTimeUtils.hasDate(calValue);
+		boolean hasTime = NotesDateTimeUtils.hasTime(calValue);
+		return NotesDateTimeUtils.calendarToInnards(calValue, hasDate, hasTime);
+	}
+
+	/**
+	 * Writes a string in LMBCS format. Pure ASCII strings are copied directly,
+	 * all others are converted with {@link NotesStringUtils#toLMBCS(String, boolean, boolean)}.
+	 *
+	 * @param str string
+	 * @param replaceLineBreaks true to replace line breaks with \0
+	 * @return number of bytes written
+	 */
+	private int writeLMBCS(String str, boolean replaceLineBreaks) {
+		int len = str.length();
+		boolean isAscii = true;
+		for (int i=0; i<len; i++) {
+			char c = str.charAt(i);
+			if (c < 0x20 || c > 0x7e) {
+				isAscii = false;
+				break;
+			}
+		}
+
+		if (isAscii) {
+			ensureCapacity(len);
+			for (int i=0; i<len; i++) {
+				m_buffer[m_bufferLength++] = (byte) str.charAt(i);
+			}
+			return len;
+		}
+		else {
+			Memory strMem = NotesStringUtils.toLMBCS(str, false, replaceLineBreaks);
+			int strLen = strMem==null ? 0 : (int) strMem.size();
+			if (strLen>0) {
+				ensureCapacity(strLen);
+				strMem.read(0, m_buffer, m_bufferLength, strLen);
+				m_bufferLength += strLen;
+			}
+			return strLen;
+		}
+	}
+
+	private void writeTimeDate(int[] innards) {
+		writeInt(innards[0]);
+		writeInt(innards[1]);
+	}
+
+	private void writeDouble(double value) {
+		long bits = Double.doubleToRawLongBits(value);
+		writeInt((int) (bits & 0xffffffffL));
+		writeInt((int) (bits >>> 32));
+	}
+
+	private void writeInt(int value) {
+		ensureCapacity(4);
+		m_buffer[m_bufferLength++] = (byte) (value & 0xff);
+		m_buffer[m_bufferLength++] = (byte) ((value >>> 8) & 0xff);
+		m_buffer[m_bufferLength++] = (byte) ((value >>> 16) & 0xff);
+		m_buffer[m_bufferLength++] = (byte) ((value >>> 24) & 0xff);
+	}
+
+	private void writeWord(int value) {
+		ensureCapacity(2);
+		putWord(m_bufferLength, value);
+		m_bufferLength += 2;
+	}
+
+	private void putWord(int offset, int value) {
+		m_buffer[offset] = (byte) (value & 0xff);
+		m_buffer[offset+1] = (byte) ((value >>> 8) & 0xff);
+	}
+
+	private void ensureCapacity(int additionalBytes) {
+		if (m_bufferLength + additionalBytes > m_buffer.length) {
+			m_buffer = Arrays.copyOf(m_buffer, Math.max(m_buffer.length*2, m_bufferLength + additionalBytes));
+		}
+	}
+
+	/**
+	 * A single collected item write
+	 */
+	private static class Entry {
+		private int m_op;
+		private String m_itemName;
+		private int m_nameOffset;
+		private int m_nameLength;
+		private short m_flags;
+		private EnumSet<ItemType> m_origFlags;
+		private int m_itemType;
+		private int m_valueOffset;
+		private int m_valueLength;
+		private Object m_fallbackValue;
+	}
+
+	@Override
+	public String toString() {
+		return "NoteWriteBatch [writes="+m_entries.size()+", bytes="+m_bufferLength+"]";
+	}
+}
@@ -0,0 +1,82 @@
+package com.mindoo.domino.jna;
+
+import java.util.List;
+
+/**
+ * Describes a single aggregate to compute with {@link NotesCollection#aggregate(List, int)},
+ * e.g. the sum of the values of a column.
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesAggregateSpec {
+
+	/**
+	 * Aggregate function to compute
+	 */
+	public static enum Function {
+		/** Number of document rows in the group (the column is not evaluated) */
+		COUNT,
+		/** Sum of all number values of the column, number lists are added up element by element */
+		SUM,
+		/** Smallest number or date value of the column */
+		MIN,
+		/** Largest number or date value of the column */
+		MAX,
+		/** Average of all number values of the column */
+		AVG,
+		/** Number of distinct values of the column, list entries are counted separately */
+		DISTINCT_COUNT
+	}
+
+	private String m_columnName;
+	private Function m_function;
+
+	/**
+	 * Creates a new aggregate specification
+	 *
+	 * @param columnNameOrTitle programmatic column name or column title, may be null for {@link Function#COUNT}
+	 * @param function aggregate function
+	 */
+	public NotesAggregateSpec(String columnNameOrTitle, Function function) {
+		if (function==null) {
+			throw new IllegalArgumentException("Aggregate function cannot be null");
+		}
+		if (columnNameOrTitle==null && function!=Function.COUNT) {
+			throw new IllegalArgumentException("Column name cannot be null for aggregate function "+function);
+		}
+		m_columnName = columnNameOrTitle;
+		m_function = function;
+	}
+
+	/**
+	 * Convenience method to create a {@link Function#COUNT} specification
+	 *
+	 * @return spec
+	 */
+	public static NotesAggregateSpec count() {
+		return new NotesAggregateSpec(null, Function.COUNT);
+	}
+
+	/**
+	 * Returns the programmatic column name or column title
+	 *
+	 * @return column name or null for {@link Function#COUNT}
+	 */
+	public String getColumnName() {
+		return m_columnName;
+	}
+
+	/**
+	 * Returns the aggregate function
+	 *
+	 * @return function
+	 */
+	public Function getFunction() {
+		return m_function;
+	}
+
+	@Override
+	public String toString() {
+		return "NotesAggregateSpec [function="+m_function+", column="+m_columnName+"]";
+	}
+}
@@ -0,0 +1,328 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.mindoo.domino.jna.NotesAggregateSpec.Function;
+import com.mindoo.domino.jna.utils.LMBCSString;
+
+/**
+ * Result of {@link NotesCollection#aggregate(List, int)}: one {@link Group} per distinct category path
+ * (or a single group if no grouping has been requested) with the computed aggregate values
+ * in the order of the {@link NotesAggregateSpec} list.
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesAggregationResult {
+	private List<NotesAggregateSpec> m_specs;
+	private List<Group> m_groups;
+	private int m_groupByCategoryLevel;
+	private int m_entriesRead;
+	private boolean m_consistent = true;
+
+	NotesAggregationResult(List<NotesAggregateSpec> specs, int groupByCategoryLevel) {
+		m_specs = specs;
+		m_groupByCategoryLevel = groupByCategoryLevel;
+		m_groups = new ArrayList<Group>();
+	}
+
+	Group addGroup(List<Object> categoryValues) {
+		Group group = new Group(categoryValues);
+		m_groups.add(group);
+		return group;
+	}
+
+	void setEntriesRead(int entriesRead) {
+		m_entriesRead = entriesRead;
+	}
+
+	void setConsistent(boolean consistent) {
+		m_consistent = consistent;
+	}
+
+	/**
+	 * Returns the aggregate specifications
+	 *
+	 * @return specs
+	 */
+	public List<NotesAggregateSpec> getSpecs() {
+		return Collections.unmodifiableList(m_specs);
+	}
+
+	/**
+	 * Returns the number of category levels that have been used for grouping
+	 *
+	 * @return levels, 0 for a single group
+	 */
+	public int getGroupByCategoryLevel() {
+		return m_groupByCategoryLevel;
+	}
+
+	/**
+	 * Returns the groups in view order
+	 *
+	 * @return groups
+	 */
+	public List<Group> getGroups() {
+		return Collections.unmodifiableList(m_groups);
+	}
+
+	/**
+	 * Returns the number of view entries that had to be read to compute the result,
+	 * useful to check whether category descendant counts could be used
+	 *
+	 * @return number of entries
+	 */
+	public int getEntriesRead() {
+		return m_entriesRead;
+	}
+
+	/**
+	 * Returns false if the view index still changed while reading after the max number of
+	 * retries, see {@link NotesCollection#aggregate(List, int, int)}. In that case, the values are
+	 * approximate, because entries may have been skipped or read twice.
+	 *
+	 * @return true if the result reflects a single state of the view index
+	 */
+	public boolean isConsistent() {
+		return m_consistent;
+	}
+
+	@Override
+	public String toString() {
+		return "NotesAggregationResult [groups="+m_groups.size()+", entriesRead="+m_entriesRead+", consistent="+m_consistent+"]";
+	}
+
+	/**
+	 * Aggregate values for a single category path
+	 */
+	public class Group {
+		private List<Object> m_categoryValues;
+		private long m_docCount;
+		private double[] m_sum;
+		private long[] m_numCount;
+		private double[] m_min;
+		private double[] m_max;
+		private long[] m_minTime;
+		private long[] m_maxTime;
+		private int[][] m_minInnards;
+		private int[][] m_maxInnards;
+		private DistinctValues[] m_distinct;
+
+		private Group(List<Object> categoryValues) {
+			m_categoryValues = categoryValues;
+			int nrOfSpecs = m_specs.size();
+			m_sum = new double[nrOfSpecs];
+			m_numCount = new long[nrOfSpecs];
+			m_min = new double[nrOfSpecs];
+			m_max = new double[nrOfSpecs];
+			m_minTime = new long[nrOfSpecs];
+			m_maxTime = new long[nrOfSpecs];
+			m_minInnards = new int[nrOfSpecs][];
+			m_maxInnards = new int[nrOfSpecs][];
+			m_distinct = new DistinctValues[nrOfSpecs];
+
+			for (int i=0; i<nrOfSpecs; i++) {
+				if (m_specs.get(i).getFunction() == Function.DISTINCT_COUNT) {
+					m_distinct[i] = new DistinctValues();
+				}
+			}
+		}
+
+		void addDocuments(long count) {
+			m_docCount += count;
+		}
+
+		void addNumber(int specIdx, double value) {
+			if (m_numCount[specIdx]==0) {
+				m_min[specIdx] = value;
+				m_max[specIdx] = value;
+			}
+			else {
+				if (value < m_min[specIdx]) {
+					m_min[specIdx] = value;
+				}
+				if (value > m_max[specIdx]) {
+					m_max[specIdx] = value;
+				}
+			}
+			m_sum[specIdx] += value;
+			m_numCount[specIdx]++;
+		}
+
+		void addTime(int specIdx, long comparableValue, int innards0, int innards1) {
+			if (m_minInnards[specIdx]==null || comparableValue < m_minTime[specIdx]) {
+				m_minTime[specIdx] = comparableValue;
+				m_minInnards[specIdx] = new int[] {innards0, innards1};
+			}
+			if (m_maxInnards[specIdx]==null || comparableValue > m_maxTime[specIdx]) {
+				m_maxTime[specIdx] = comparableValue;
+				m_maxInnards[specIdx] = new int[] {innards0, innards1};
+			}
+		}
+
+		void addDistinctNumber(int specIdx, double value) {
+			m_distinct[specIdx].m_numbers.add(Double.doubleToLongBits(value));
+		}
+
+		void addDistinctTime(int specIdx, long comparableValue) {
+			m_distinct[specIdx].m_times.add(comparableValue);
+		}
+
+		void addDistinctText(int specIdx, LMBCSString value) {
+			DistinctValues distinct = m_distinct[specIdx];
+			if (distinct.m_texts==null) {
+				distinct.m_texts = new HashSet<LMBCSString>();
+			}
+			distinct.m_texts.add(value);
+		}
+
+		/**
+		 * Returns the category values of the group, one per category level
+		 *
+		 * @return values, empty for the overall group
+		 */
+		public List<Object> getCategoryValues() {
+			return Collections.unmodifiableList(m_categoryValues);
+		}
+
+		/**
+		 * Returns the number of document rows in this group
+		 *
+		 * @return count
+		 */
+		public long getDocumentCount() {
+			return m_docCount;
+		}
+
+		/**
+		 * Returns the aggregate value for a spec
+		 *
+		 * @param specIndex index in the spec list
+		 * @return {@link Long} for {@link Function#COUNT} and {@link Function#DISTINCT_COUNT}, {@link Double} for number
+		 * values, {@link NotesTimeDate} for MIN/MAX of date values or null if the column did not contain any suitable value
+		 */
+		public Object getValue(int specIndex) {
+			Function function = m_specs.get(specIndex).getFunction();
+			switch (function) {
+			case COUNT:
+				return Long.valueOf(m_docCount);
+			case DISTINCT_COUNT:
+				return Long.valueOf(m_distinct[specIndex].size());
+			case SUM:
+				return Double.valueOf(m_sum[specIndex]);
+			case AVG:
+				return m_numCount[specIndex]==0 ? null : Double.valueOf(m_sum[specIndex] / m_numCount[specIndex]);
+			case MIN:
+				if (m_minInnards[specIndex]!=null) {
+					return new NotesTimeDate(m_minInnards[specIndex]);
+				}
+				return m_numCount[specIndex]==0 ? null : Double.valueOf(m_min[specIndex]);
+			case MAX:
+				if (m_maxInnards[specIndex]!=null) {
+					return new NotesTimeDate(m_maxInnards[specIndex]);
+				}
+				return m_numCount[specIndex]==0 ? null : Double.valueOf(m_max[specIndex]);
+			default:
+				throw new IllegalArgumentException("Unsupported function: "+function);
+			}
+		}
+
+		/**
+		 * Returns a numeric aggregate value without boxing
+		 *
+		 * @param specIndex index in the spec list
+		 * @return value or {@link Double#NaN} if the column did not contain any number value (or for MIN/MAX of date values)
+		 */
+		public double getDouble(int specIndex) {
+			Function function = m_specs.get(specIndex).getFunction();
+			switch (function) {
+			case COUNT:
+				return m_docCount;
+			case DISTINCT_COUNT:
+				return m_distinct[specIndex].size();
+			case SUM:
+				return m_sum[specIndex];
+			case AVG:
+				return m_numCount[specIndex]==0 ? Double.NaN : m_sum[specIndex] / m_numCount[specIndex];
+			case MIN:
+				return m_numCount[specIndex]==0 ? Double.NaN : m_min[specIndex];
+			case MAX:
+				return m_numCount[specIndex]==0 ? Double.NaN : m_max[specIndex];
+			default:
+				throw new IllegalArgumentException("Unsupported function: "+function);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "Group [categories="+m_categoryValues+", documents="+m_docCount+"]";
+		}
+	}
+
+	/**
+	 * Distinct values of a DISTINCT_COUNT spec. Numbers and dates are stored as primitive
+	 * longs, so only text values create objects.
+	 */
+	private static class DistinctValues {
+		private LongHashSet m_numbers = new LongHashSet();
+		private LongHashSet m_times = new LongHashSet();
+		private Set<LMBCSString> m_texts;
+
+		public int size() {
+			return m_numbers.size() + m_times.size() + (m_texts==null ? 0 : m_texts.size());
+		}
+	}
+
+	/**
+	 * Minimal open addressing hash set for primitive long values
+	 */
+	private static class LongHashSet {
+		private long[] m_values = new long[16];
+		private boolean[] m_used = new boolean[16];
+		private int m_size;
+
+		public int size() {
+			return m_size;
+		}
+
+		public void add(long value) {
+			if (m_size >= (m_values.length >> 1)) {
+				grow();
+			}
+			if (insert(m_values, m_used, value)) {
+				m_size++;
+			}
+		}
+
+		private static boolean insert(long[] values, boolean[] used, long value) {
+			int mask = values.length - 1;
+			long hash = value * 0x9E3779B97F4A7C15L;
+			int idx = (int) (hash ^ (hash >>> 32)) & mask;
+			while (used[idx]) {
+				if (values[idx] == value) {
+					return false;
+				}
+				idx = (idx + 1) & mask;
+			}
+			used[idx] = true;
+			values[idx] = value;
+			return true;
+		}
+
+		private void grow() {
+			long[] newValues = new long[m_values.length << 1];
+			boolean[] newUsed = new boolean[newValues.length];
+			for (int i=0; i<m_values.length; i++) {
+				if (m_used[i]) {
+					insert(newValues, newUsed, m_values[i]);
+				}
+			}
+			m_values = newValues;
+			m_used = newUsed;
+		}
+	}
+}
@@ -1,5 +1,9 @@
 package com.mindoo.domino.jna;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
@@ -39,6 +43,8 @@ public class NotesAttachment {
 	private NotesBlockIdStruct m_itemBlockId;
 	private int m_rrv;
 	
+	private static final int DEFAULT_CHUNK_SIZE = 65535;
+	
 	NotesAttachment(String fileName, Compression compression, short fileFlags, int fileSize,
 			NotesTimeDate fileCreated, NotesTimeDate fileModified, NotesNote parentNote,
 			NotesBlockIdStruct itemBlockId, int rrv) {
@@ -196,7 +202,7 @@ public class NotesAttachment {
 		else {
 			while (true) {
 				int bytesToRead;
-				if ((offset+bufferSize) < m_fileSize) {
+				if ((currOffset+bufferSize) < m_fileSize) {
 					bytesToRead = bufferSize;
 				}
 				else {
@@ -336,6 +342,276 @@ public class NotesAttachment {
 		}
 	}
 	
+	/**
+	 * Opens an {@link InputStream} to read the whole attachment data, see
+	 * {@link #openInputStream(int, int, int)}
+	 * 
+	 * @return stream
+	 */
+	public InputStream openInputStream() {
+		return openInputStream(0, -1, DEFAULT_CHUNK_SIZE);
+	}
+	
+	/**
+	 * Opens an {@link InputStream} to read a range of the attachment data, e.g. for HTTP Range requests.<br>
+	 * <br>
+	 * The stream reads ahead <code>chunkSize</code> bytes with NSFDbReadObject and copies the data
+	 * directly from the locked native chunk into the arrays passed to {@link InputStream#read(byte[], int, int)},
+	 * so no intermediate <code>byte[]</code> is allocated per chunk. Reading happens on the calling thread,
+	 * so the stream must be used in the thread that owns the note and should be closed to free the current chunk.<br>
+	 * <br>
+	 * The method is only supported when the attachment has no compression. Otherwise
+	 * we will throw an {@link UnsupportedOperationException}.
+	 * 
+	 * @param offset offset to start reading
+	 * @param length number of bytes to read or -1 to read to the end of the file
+	 * @param chunkSize number of bytes to read from the database at once
+	 * @return stream
+	 */
+	public InputStream openInputStream(int offset, int length, int chunkSize) {
+		m_parentNote.checkHandle();
+		checkRange(offset, length, chunkSize);
+		
+		int end = length==-1 ? m_fileSize : (int) Math.min(m_fileSize, (long) offset + length);
+		return new AttachmentInputStream(offset, end, chunkSize);
+	}
+	
+	/**
+	 * Writes the whole attachment data to a channel, see
+	 * {@link #transferTo(WritableByteChannel, int, int, int)}
+	 * 
+	 * @param channel target channel
+	 * @return number of bytes written
+	 * @throws IOException in case of I/O errors writing to the channel
+	 */
+	public long transferTo(WritableByteChannel channel) throws IOException {
+		return transferTo(channel, 0, -1, DEFAULT_CHUNK_SIZE);
+	}
+	
+	/**
+	 * Writes a range of the attachment data to a channel, e.g. to serve HTTP Range requests or
+	 * to resume downloads.<br>
+	 * <br>
+	 * Each chunk read with NSFDbReadObject is passed to the channel as a {@link ByteBuffer} that
+	 * wraps the locked native memory, so the data is not copied into the Java heap.<br>
+	 * <br>
+	 * The method is only supported when the attachment has no compression. Otherwise
+	 * we will throw an {@link UnsupportedOperationException}.
+	 * 
+	 * @param channel target channel
+	 * @param offset offset to start reading
+	 * @param length number of bytes to write or -1 to write to the end of the file
+	 * @param chunkSize number of bytes to read from the database at once
+	 * @return number of bytes written
+	 * @throws IOException in case of I/O errors writing to the channel
+	 */
+	public long transferTo(WritableByteChannel channel, int offset, int length, int chunkSize) throws IOException {
+		m_parentNote.checkHandle();
+		checkRange(offset, length, chunkSize);
+		
+		int end = length==-1 ? m_fileSize : (int) Math.min(m_fileSize, (long) offset + length);
+		int currOffset = offset;
+		long written = 0;
+		
+		ObjectChunk chunk = new ObjectChunk();
+		try {
+			while (currOffset < end) {
+				int bytesToRead = Math.min(chunkSize, end - currOffset);
+				chunk.read(currOffset, bytesToRead);
+				
+				ByteBuffer buf = chunk.m_ptr.getByteBuffer(0, bytesToRead);
+				while (buf.hasRemaining()) {
+					written += channel.write(buf);
+				}
+				chunk.free();
+				currOffset += bytesToRead;
+			}
+		}
+		finally {
+			chunk.free();
+		}
+		return written;
+	}
+	
+	private void checkRange(int offset, int length, int chunkSize) {
+		if (getCompression() != Compression.NONE) {
+			throw new UnsupportedOperationException("This operation is only supported on attachments without compression.");
+		}
+		if (chunkSize<=0)
+			throw new IllegalArgumentException("Chunk size must be a positive number");
+		if (offset<0 || offset>m_fileSize)
+			throw new IllegalArgumentException("Offset "+offset+" is out of range (file size: "+m_fileSize+")");
+		if (length<-1)
+			throw new IllegalArgumentException("Invalid length: "+length);
+	}
+	
+	/**
+	 * Chunk of object data read with NSFDbReadObject, kept locked while in use
+	 */
+	private class ObjectChunk {
+		private long m_hBuffer64;
+		private int m_hBuffer32;
+		private Pointer m_ptr;
+		
+		/**
+		 * Frees the current chunk and reads the next one
+		 * 
+		 * @param offset object offset
+		 * @param length number of bytes to read
+		 */
+		private void read(int offset, int length) {
+			free();
+			
+			if (PlatformUtils.is64Bit()) {
+				LongByReference rethBuffer = new LongByReference();
+				short result = NotesNativeAPI64.get().NSFDbReadObject(m_parentNote.getParent().getHandle64(), m_rrv, offset, length, rethBuffer);
+				NotesErrorUtils.checkResult(result);
+				m_hBuffer64 = rethBuffer.getValue();
+				m_ptr = Mem64.OSLockObject(m_hBuffer64);
+			}
+			else {
+				IntByReference rethBuffer = new IntByReference();
+				short result = NotesNativeAPI32.get().NSFDbReadObject(m_parentNote.getParent().getHandle32(), m_rrv, offset, length, rethBuffer);
+				NotesErrorUtils.checkResult(result);
+				m_hBuffer32 = rethBuffer.getValue();
+				m_ptr = Mem32.OSLockObject(m_hBuffer32);
+			}
+		}
+		
+		private void free() {
+			if (m_ptr==null) {
+				return;
+			}
+			m_ptr = null;
+			
+			if (PlatformUtils.is64Bit()) {
+				Mem64.OSUnlockObject(m_hBuffer64);
+				short result = Mem64.OSMemFree(m_hBuffer64);
+				m_hBuffer64 = 0;
+				NotesErrorUtils.checkResult(result);
+			}
+			else {
+				Mem32.OSUnlockObject(m_hBuffer32);
+				short result = Mem32.OSMemFree(m_hBuffer32);
+				m_hBuffer32 = 0;
+				NotesErrorUtils.checkResult(result);
+			}
+		}
+	}
+	
+	/**
+	 * {@link InputStream} that reads the attachment data in chunks
+	 */
+	private class AttachmentInputStream extends InputStream {
+		private final int m_end;
+		private final int m_chunkSize;
+		private final ObjectChunk m_chunk;
+		/** file offset of the current chunk */
+		private int m_chunkOffset;
+		private int m_chunkLength;
+		/** read position in the current chunk */
+		private int m_chunkPos;
+		private boolean m_closed;
+		
+		private AttachmentInputStream(int offset, int end, int chunkSize) {
+			m_end = end;
+			m_chunkSize = chunkSize;
+			m_chunk = new ObjectChunk();
+			m_chunkOffset = offset;
+		}
+		
+		/**
+		 * Makes sure that the current chunk has unread data
+		 * 
+		 * @return false if the end of the range has been reached
+		 */
+		private boolean ensureData() throws IOException {
+			if (m_closed) {
+				throw new IOException("Stream is closed");
+			}
+			if (m_chunk.m_ptr!=null && m_chunkPos < m_chunkLength) {
+				return true;
+			}
+			int nextOffset = m_chunkOffset + m_chunkLength;
+			if (nextOffset >= m_end) {
+				m_chunk.free();
+				return false;
+			}
+			
+			m_parentNote.checkHandle();
+			int bytesToRead = Math.min(m_chunkSize, m_end - nextOffset);
+			m_chunk.read(nextOffset, bytesToRead);
+			m_chunkOffset = nextOffset;
+			m_chunkLength = bytesToRead;
+			m_chunkPos = 0;
+			return true;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			if (!ensureData()) {
+				return -1;
+			}
+			return m_chunk.m_ptr.getByte(m_chunkPos++) & 0xff;
+		}
+		
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (off<0 || len<0 || len>b.length-off) {
+				throw new IndexOutOfBoundsException();
+			}
+			if (len==0) {
+				return 0;
+			}
+			if (!ensureData()) {
+				return -1;
+			}
+			int count = Math.min(len, m_chunkLength - m_chunkPos);
+			m_chunk.m_ptr.read(m_chunkPos, b, off, count);
+			m_chunkPos += count;
+			return count;
+		}
+		
+		@Override
+		public long skip(long n) throws IOException {
+			if (n<=0) {
+				return 0;
+			}
+			if (m_closed) {
+				throw new IOException("Stream is closed");
+			}
+			long remainingInChunk = m_chunk.m_ptr==null ? 0 : m_chunkLength - m_chunkPos;
+			if (n <= remainingInChunk) {
+				m_chunkPos += n;
+				return n;
+			}
+			//skip without reading the skipped data from the database
+			int currPos = m_chunkOffset + (m_chunk.m_ptr==null ? m_chunkLength : m_chunkPos);
+			int newPos = (int) Math.min(m_end, currPos + n);
+			m_chunk.free();
+			m_chunkOffset = newPos;
+			m_chunkLength = 0;
+			m_chunkPos = 0;
+			return newPos - currPos;
+		}
+		
+		@Override
+		public int available() throws IOException {
+			if (m_closed || m_chunk.m_ptr==null) {
+				return 0;
+			}
+			return m_chunkLength - m_chunkPos;
+		}
+		
+		@Override
+		public void close() throws IOException {
+			if (!m_closed) {
+				m_closed = true;
+				m_chunk.free();
+			}
+		}
+	}
+	
 	/**
 	 * Deletes an attached file item from a note and also deallocates the disk space
 	 * used to store the attached file in the database.
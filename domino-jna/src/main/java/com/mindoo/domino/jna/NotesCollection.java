@@ -4,25 +4,38 @@ import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.text.Collator;
+import java.text.Normalizer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
 
 import com.mindoo.domino.jna.CollectionDataCache.CacheState;
 import com.mindoo.domino.jna.NotesCollection.ViewLookupCallback.Action;
 import com.mindoo.domino.jna.NotesSearch.ISearchMatch;
+import com.mindoo.domino.jna.NotesViewMetadataCache.ViewMetadata;
 import com.mindoo.domino.jna.NotesViewEntryData.CacheableViewEntryData;
 import com.mindoo.domino.jna.constants.FTSearch;
 import com.mindoo.domino.jna.constants.Find;
@@ -37,6 +50,7 @@ import com.mindoo.domino.jna.errors.NotesErrorUtils;
 import com.mindoo.domino.jna.gc.IRecyclableNotesObject;
 import com.mindoo.domino.jna.gc.NotesGC;
 import com.mindoo.domino.jna.internal.FTSearchResultsDecoder;
+import com.mindoo.domino.jna.internal.ItemDecoder;
 import com.mindoo.domino.jna.internal.Mem32;
 import com.mindoo.domino.jna.internal.Mem64;
 import com.mindoo.domino.jna.internal.NotesCallbacks;
@@ -50,6 +64,8 @@ import com.mindoo.domino.jna.internal.structs.NIFFindByKeyContextStruct;
 import com.mindoo.domino.jna.internal.structs.NotesCollectionDataStruct;
 import com.mindoo.domino.jna.internal.structs.NotesCollectionPositionStruct;
 import com.mindoo.domino.jna.internal.structs.NotesTimeDateStruct;
+import com.mindoo.domino.jna.utils.LMBCSString;
+import com.mindoo.domino.jna.utils.NotesInitUtils;
 import com.mindoo.domino.jna.utils.NotesStringUtils;
 import com.mindoo.domino.jna.utils.PlatformUtils;
 import com.mindoo.domino.jna.utils.StringTokenizerExt;
@@ -84,6 +100,9 @@ public class NotesCollection implements IRecyclableNotesObject {
 	private NotesDatabase m_parentDb;
 	private boolean m_autoUpdate;
 	private CollationInfo m_collationInfo;
+	private boolean m_lookupStatsEnabled;
+	private NotesCollectionLookupStats m_lookupStats;
+	private NotesCollectionLookupStats m_lastLookupStats;
 	
 	private List<String> m_columnItemNames;
 	private List<String> m_columnTitles;
@@ -96,6 +115,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 	private Map<Integer, String> m_columnTitlesByIndex;
 	private NotesNote m_viewNote;
 	private NotesViewFormat m_viewFormat;
+	private ViewMetadata m_designMetadata;
 
 	/**
 	 * Creates a new instance, 32 bit mode
@@ -173,10 +193,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 	 * @return formula
 	 */
 	public String getSelectionFormula() {
-		NotesNote note = getViewNote();
-		List<Object> formulaObj = note.getItemValue("$FORMULA");
-		String formula = formulaObj!=null && !formulaObj.isEmpty() ? formulaObj.get(0).toString() : "";
-		return formula;
+		return getDesignMetadata().getSelectionFormula();
 	}
 	
 	/**
@@ -192,12 +209,10 @@ public class NotesCollection implements IRecyclableNotesObject {
 	}
 	
 	private void decodeNameAndAliases() {
-		NotesNote viewNote = getViewNote();
-		
 		List<String> aliases = new ArrayList<String>();
 		String name = "";
 		
-		String title = viewNote.getItemValueString("$TITLE");
+		String title = getDesignMetadata().getTitle();
 		StringTokenizerExt st = new StringTokenizerExt(title, "|");
 		if (st.hasMoreTokens()) {
 			name = st.nextToken();
@@ -287,6 +302,90 @@ public class NotesCollection implements IRecyclableNotesObject {
 		m_autoUpdate = update;
 	}
 	
+	/**
+	 * Enables collecting {@link NotesCollectionLookupStats} for the lookups of this collection,
+	 * e.g. {@link #getAllEntries(String, int, EnumSet, int, EnumSet, ViewLookupCallback)} and
+	 * {@link #getAllEntriesByKey(EnumSet, EnumSet, ViewLookupCallback, Object...)}.
+	 * Statistics are also collected if global listeners have been registered via
+	 * {@link NotesCollectionLookupStats#addListener(NotesCollectionLookupStats.ILookupStatsListener)}.
+	 * 
+	 * @param enabled true to enable
+	 */
+	public void setLookupStatsEnabled(boolean enabled) {
+		m_lookupStatsEnabled = enabled;
+	}
+	
+	/**
+	 * Returns whether {@link NotesCollectionLookupStats} are collected for this collection
+	 * 
+	 * @return true if enabled
+	 */
+	public boolean isLookupStatsEnabled() {
+		return m_lookupStatsEnabled;
+	}
+	
+	/**
+	 * Returns the statistics of the last lookup
+	 * 
+	 * @return stats or null if stats are not collected
+	 */
+	public NotesCollectionLookupStats getLastLookupStats() {
+		return m_lastLookupStats;
+	}
+	
+	/**
+	 * Starts collecting statistics for a lookup if enabled and no other lookup
+	 * is already collecting data
+	 * 
+	 * @param lookupType name of lookup method
+	 * @return stats or null
+	 */
+	private NotesCollectionLookupStats startLookupStats(String lookupType) {
+		if (m_lookupStats!=null) {
+			//nested lookup, data is added to the outer stats object
+			return null;
+		}
+		if (!m_lookupStatsEnabled && !NotesCollectionLookupStats.hasListeners()) {
+			return null;
+		}
+		m_lookupStats = new NotesCollectionLookupStats(m_parentDb.getServer(), m_parentDb.getRelativeFilePath(),
+				getName(), getUNID(), lookupType);
+		return m_lookupStats;
+	}
+	
+	/**
+	 * Finishes collecting statistics and sends them to the global listeners
+	 * 
+	 * @param stats stats
+	 */
+	private void finishLookupStats(NotesCollectionLookupStats stats) {
+		m_lookupStats = null;
+		stats.lookupDone();
+		m_lastLookupStats = stats;
+		NotesCollectionLookupStats.fireLookupDone(stats);
+	}
+	
+	/**
+	 * Returns the size of a lookup buffer for the statistics
+	 * 
+	 * @param hBuffer buffer handle
+	 * @return size in bytes
+	 */
+	private int getLookupBufferSize(long hBuffer) {
+		if (hBuffer==0) {
+			return 0;
+		}
+		IntByReference retSize = new IntByReference();
+		short result;
+		if (PlatformUtils.is64Bit()) {
+			result = Mem64.OSMemGetSize(hBuffer, retSize);
+		}
+		else {
+			result = Mem32.OSMemGetSize((int) hBuffer, retSize);
+		}
+		return result==0 ? retSize.getValue() : 0;
+	}
+	
 	/**
 	 * Returns the index modified sequence number that can be used to track view changes.
 	 * The method calls {@link #getLastModifiedTime()} and returns part of the result (Innards[0]).
@@ -1354,6 +1453,45 @@ public class NotesCollection implements IRecyclableNotesObject {
 		}
 	}
 	
+	/**
+	 * Callback wrapper that adds callback durations, returned entries and retries
+	 * to a {@link NotesCollectionLookupStats} object
+	 */
+	private static class LookupStatsCallback<T> extends ViewLookupCallbackWrapper<T> {
+		private ViewLookupCallback<T> m_innerCallback;
+		private NotesCollectionLookupStats m_stats;
+		
+		public LookupStatsCallback(ViewLookupCallback<T> innerCallback, NotesCollectionLookupStats stats) {
+			super(innerCallback);
+			m_innerCallback = innerCallback;
+			m_stats = stats;
+		}
+		
+		@Override
+		public CollectionDataCache getDataCache() {
+			//use the cache instance of the wrapped callback, it is shared across lookups
+			return m_innerCallback.getDataCache();
+		}
+		
+		@Override
+		public Action entryRead(T result, NotesViewEntryData entryData) {
+			long t0 = System.nanoTime();
+			try {
+				return super.entryRead(result, entryData);
+			}
+			finally {
+				m_stats.addCallbackTime(System.nanoTime() - t0);
+				m_stats.addEntryReturned();
+			}
+		}
+		
+		@Override
+		public Action retryingReadBecauseViewIndexChanged(int nrOfRetries, long durationSinceStart) {
+			m_stats.addRetry();
+			return super.retryingReadBecauseViewIndexChanged(nrOfRetries, durationSinceStart);
+		}
+	}
+	
 	/**
 	 * Subclass of {@link ViewLookupCallback} that uses an optimized view lookup to
 	 * only read the value of a single collection column. This results in much
@@ -1891,194 +2029,673 @@ public class NotesCollection implements IRecyclableNotesObject {
 	}
 	
 	/**
-	 * Callback to dynamically locate the start position of a collection scan, e.g.
-	 * the position of a category entry. We use a callback to be able to react on
-	 * view index updates. Since a lookup may be repeated when the view index changes,
-	 * this callback may be called multiple times to return a fresh starting position
-	 * for the lookup.
+	 * Pipelined variant of {@link #getAllEntries(String, int, EnumSet, int, EnumSet, ViewLookupCallback)} for large
+	 * reads, e.g. view exports.<br>
+	 * <br>
+	 * The calling thread keeps issuing NIFReadEntries calls and copies each returned buffer once into
+	 * Java managed memory. Decoding the buffers into {@link NotesViewEntryData} objects (summary values
+	 * including the LMBCS string conversion, time-dates etc.) runs in parallel in a {@link ForkJoinPool}. The callback is still invoked in the calling
+	 * thread and receives the entries in view order.<br>
+	 * The method takes care of view index changes while reading view data and restarts reading if such a
+	 * change has been detected.<br>
+	 * <br>
+	 * Lookups with a {@link CollectionDataCache}, single column reads and the start position "last" are
+	 * not supported in this mode and fall back to the sequential method.
 	 * 
-	 * @author Karsten Lehmann
+	 * @param startPosStr start position; use "0" or null to start before the first entry; in that case set <code>skipCount</code> to 1 to start reading at the first view row
+	 * @param skipCount number entries to skip before reading
+	 * @param returnNav navigator to specify how to move in the collection
+	 * @param preloadEntryCount amount of entries that is read from the view per NIFReadEntries call
+	 * @param returnMask values to extract
+	 * @param decodePool pool to decode the buffers or null to use a shared pool; pool threads need to be initialized for Notes API calls (see {@link NotesInitUtils#notesInitThread()}), which the shared pool does
+	 * @param callback callback that is called for each entry read from the collection
+	 * @return lookup result
+	 * 
+	 * @param <T> type of lookup result object
 	 */
-	private static interface IStartPositionRetriever {
+	public <T> T getAllEntriesPipelined(String startPosStr, int skipCount, EnumSet<Navigate> returnNav,
+			int preloadEntryCount, EnumSet<ReadMask> returnMask, ForkJoinPool decodePool, ViewLookupCallback<T> callback) {
 		
-		/**
-		 * Implement this method to find the lookup start position
-		 * 
-		 * @return start position or null if not found
-		 */
-		public String getStartPosition();
+		if (callback.getDataCache()!=null || callback.getNameForSingleColumnRead()!=null || "last".equalsIgnoreCase(startPosStr)) {
+			return getAllEntries(startPosStr, skipCount, returnNav, preloadEntryCount, returnMask, callback);
+		}
 		
+		NotesCollectionLookupStats stats = startLookupStats("getAllEntriesPipelined");
+		if (stats==null) {
+			return getAllEntriesPipelinedInternal(startPosStr, skipCount, returnNav, preloadEntryCount, returnMask,
+					decodePool, callback);
+		}
+		try {
+			return getAllEntriesPipelinedInternal(startPosStr, skipCount, returnNav, preloadEntryCount, returnMask,
+					decodePool, new LookupStatsCallback<T>(callback, stats));
+		}
+		finally {
+			finishLookupStats(stats);
+		}
 	}
 	
 	/**
-	 * The method reads a number of entries from the collection/view. It internally takes care
-	 * of view index changes while reading view data and restarts reading if such a change has been
-	 * detected.
+	 * Implementation of {@link #getAllEntriesPipelined(String, int, EnumSet, int, EnumSet, ForkJoinPool, ViewLookupCallback)}
 	 * 
-	 * @param startPosRetriever callback to find the start position to read
+	 * @param startPosStr start position
 	 * @param skipCount number entries to skip before reading
 	 * @param returnNav navigator to specify how to move in the collection
-	 * @param preloadEntryCount amount of entries that is read from the view; if a filter is specified, this should be higher than returnCount
+	 * @param preloadEntryCount amount of entries that is read from the view per NIFReadEntries call
 	 * @param returnMask values to extract
+	 * @param decodePool pool to decode the buffers or null to use a shared pool
 	 * @param callback callback that is called for each entry read from the collection
 	 * @return lookup result
 	 * 
 	 * @param <T> type of lookup result object
 	 */
-	private <T> T getAllEntries(IStartPositionRetriever startPosRetriever, int skipCount, EnumSet<Navigate> returnNav,
-			int preloadEntryCount,
-			EnumSet<ReadMask> returnMask, ViewLookupCallback<T> callback) {
-		
-		EnumSet<ReadMask> useReturnMask = returnMask;
-
-		//decide whether we need to use the undocumented NIFReadEntriesExt
-		String readSingleColumnName = callback.getNameForSingleColumnRead();
-		if (readSingleColumnName!=null) {
-			//make sure that we actually read any column values
-			if (!useReturnMask.contains(ReadMask.SUMMARY) && !useReturnMask.contains(ReadMask.SUMMARYVALUES)) {
-				useReturnMask = useReturnMask.clone();
-				useReturnMask.add(ReadMask.SUMMARYVALUES);
-			}
-		}
+	private <T> T getAllEntriesPipelinedInternal(String startPosStr, int skipCount, EnumSet<Navigate> returnNav,
+			int preloadEntryCount, final EnumSet<ReadMask> returnMask, ForkJoinPool decodePool, ViewLookupCallback<T> callback) {
 		
-		CollectionDataCache dataCache = callback.getDataCache();
-		if (useReturnMask.equals(EnumSet.of(ReadMask.NOTEID))) {
-			//disable cache if all we need to read is the note id
-			dataCache = null;
-		}
+		checkHandle();
 		
-		Integer readSingleColumnIndex = readSingleColumnName==null ? null : getColumnValuesIndex(readSingleColumnName);
+		ForkJoinPool pool = decodePool==null ? getSharedDecodePool() : decodePool;
+		//limit the number of copied buffers waiting for the callback
+		int maxPagesInFlight = Math.max(2, 2 * pool.getParallelism());
 		
-		if (readSingleColumnName!=null) {
-			//TODO view row caching currently disabled for single column reads, needs more work
-			dataCache = null;
-		}
-
-		if (dataCache!=null) {
-			//if caching is used, make sure that we read the note id, because that's how we hash our data
-			if (!useReturnMask.contains(ReadMask.NOTEID) && !useReturnMask.contains(ReadMask.NOTEID)) {
-				useReturnMask = useReturnMask.clone();
-				useReturnMask.add(ReadMask.NOTEID);
-			}
-		}
-
 		long t0 = System.currentTimeMillis();
 		int runs = -1;
 		
 		while (true) {
 			runs++;
-			int initialIndexModified = getIndexModifiedSequenceNo();
-			
-			String startPosStr = startPosRetriever.getStartPosition();
-			if (StringUtil.isEmpty(startPosStr)) {
-				T result = callback.startingLookup();
-				result = callback.lookupDone(result);
-				return result;
-			}
+			final int initialIndexModified = getIndexModifiedSequenceNo();
 			
-			int indexModifiedAfterGettingStartPos = getIndexModifiedSequenceNo();
-
-			if (initialIndexModified != indexModifiedAfterGettingStartPos) {
-				//view index was changed while reading; restart scan
-				Action retryAction = callback.retryingReadBecauseViewIndexChanged(runs, System.currentTimeMillis() - t0);
-				if (retryAction==Action.Stop) {
-					return null;
-				}
-				update();
-				continue;
-			}
+			NotesCollectionPosition pos = new NotesCollectionPosition(StringUtil.isEmpty(startPosStr) ? "0" : startPosStr);
+			ArrayDeque<Future<DecodedPage>> pendingPages = new ArrayDeque<Future<DecodedPage>>();
 			
-			NotesCollectionPositionStruct pos = NotesCollectionPositionStruct.toPosition(("last".equalsIgnoreCase(startPosStr) || startPosStr==null) ? "0" : startPosStr);
-			NotesCollectionPosition posWrap = new NotesCollectionPosition(pos);
-
 			T result = callback.startingLookup();
 			
-			if (preloadEntryCount==0) {
-				//nothing to do
-				result = callback.lookupDone(result);
-				return result;
-			}
-			
 			boolean viewModified = false;
+			boolean stopped = false;
 			boolean firstLoopRun = true;
+			boolean hasMoreToDo = preloadEntryCount!=0;
 			
-			NotesTimeDate retDiffTime = null;
-			
-			NotesTimeDate diffTime = null;
-			NotesIDTable diffIDTable = null;
-			
-			if (dataCache!=null) {
-				CacheState cacheState = dataCache.getCacheState();
-				
-				//only use cache content if read masks are compatible
-				Map<Integer,CacheableViewEntryData> cacheEntries = cacheState.getCacheEntries();
-				if (cacheEntries!=null && !cacheEntries.isEmpty()) {
-					EnumSet<ReadMask> cacheReadMask = cacheState.getReadMask();
-					if (useReturnMask.equals(cacheReadMask)) {
-						diffTime = cacheState.getDiffTime();
-
-						diffIDTable = new NotesIDTable();
-						diffIDTable.addNotes(cacheEntries.keySet());
-					}
-				}
-			}
-			
-			List<NotesViewEntryData> entriesToUpdateCache = dataCache==null ? null : new ArrayList<NotesViewEntryData>();
+			final BufferCopy[] lastBufferCopy = new BufferCopy[1];
 			
-			boolean innerLoopLeftByViewMod = false;
-
-			while (true) {
-				if (preloadEntryCount==0) {
-					break;
-				}
-
-				int useSkipCount;
-				if (firstLoopRun) {
-					if ("last".equalsIgnoreCase(startPosStr)) {
-						//TODO make "last" work when called from getAllEntriesInCategory
+			try {
+				while (hasMoreToDo && !stopped) {
+					lastBufferCopy[0] = null;
+					
+					hasMoreToDo = readEntriesRaw(pos, returnNav, firstLoopRun ? skipCount : 1, returnNav, preloadEntryCount, returnMask,
+							new ILookupBufferVisitor() {
 						
-						//first jump to the end of the view
-						useSkipCount = Integer.MAX_VALUE;
+						@Override
+						public void visit(Pointer bufferPtr, int bufferLength, int numEntriesSkipped, int numEntriesReturned,
+								short signalFlags) {
+							//copy the data once so that the native buffer can be freed right away; direct
+							//buffer to direct buffer, so the bytes do not pass through the Java heap
+							Memory copy = new Memory(bufferLength);
+							copy.getByteBuffer(0, bufferLength).put(bufferPtr.getByteBuffer(0, bufferLength));
+							lastBufferCopy[0] = new BufferCopy(copy, numEntriesSkipped, numEntriesReturned, signalFlags);
+						}
+					});
+					firstLoopRun = false;
+					
+					if (initialIndexModified != getIndexModifiedSequenceNo()) {
+						viewModified = true;
+						break;
 					}
-					else {
-						useSkipCount = skipCount;
+					
+					final BufferCopy bufferCopy = lastBufferCopy[0];
+					if (bufferCopy==null) {
+						break;
 					}
-				}
-				else {
-					//just skip the last entry that we returned on the last NIFReadEntries call
-					useSkipCount = 1;
-				}
-				EnumSet<Navigate> skipNav = returnNav.clone();
-				if (firstLoopRun) {
-					if ("last".equalsIgnoreCase(startPosStr)) {
-						if (returnNav.contains(Navigate.CURRENT)) {
-							//navigate to the last entry of the view and return it
-							skipNav = EnumSet.of(Navigate.NEXT);
-						}
-						else {
-							//compute the skipNav by reversing the returnNav; e.g. for startPos="last"
-							//and returnNav=Navigate.PREV_SELECTED, we first jump to the end of the view
-							//with skipCount=INTEGER.MAX_VALUE Navigate.NEXT_SELECTED.
-							//Then we start reading n entries with Navigate.PREV_SELECTED,
-							//effectively returning the last n selected entries of the view
-							skipNav = EnumSet.noneOf(Navigate.class);
-							for (Navigate currNav : returnNav) {
-								skipNav.add(reverseNav(currNav));
+					
+					if (isAutoUpdate() && (bufferCopy.m_signalFlags & NotesConstants.SIGNAL_ANY_NONDATA_CONFLICT) != 0) {
+						//refresh the view and restart the lookup
+						viewModified = true;
+						break;
+					}
+					
+					pendingPages.add(pool.submit(new Callable<DecodedPage>() {
+
+						@Override
+						public DecodedPage call() throws Exception {
+							long decodeStart = System.nanoTime();
+							//convert the LMBCS strings right away, so that this work is done by the pool and
+							//not by the thread running the callback
+							NotesViewLookupResultData data;
+							if (PlatformUtils.is64Bit()) {
+								data = NotesLookupResultBufferDecoder.b64_decodeCollectionLookupResultBuffer(NotesCollection.this,
+										bufferCopy.m_buffer, bufferCopy.m_numEntriesSkipped, bufferCopy.m_numEntriesReturned, returnMask,
+										bufferCopy.m_signalFlags, null, initialIndexModified, null, false, false, null);
 							}
+							else {
+								data = NotesLookupResultBufferDecoder.b32_decodeCollectionLookupResultBuffer(NotesCollection.this,
+										bufferCopy.m_buffer, bufferCopy.m_numEntriesSkipped, bufferCopy.m_numEntriesReturned, returnMask,
+										bufferCopy.m_signalFlags, null, initialIndexModified, null, false, false, null);
+							}
+							return new DecodedPage(data, System.nanoTime() - decodeStart);
+						}
+					}));
+					
+					//hand over all decoded pages at the head of the queue, block if too many are waiting
+					while (!pendingPages.isEmpty() && (pendingPages.peek().isDone() || pendingPages.size() >= maxPagesInFlight)) {
+						if (deliverDecodedPage(pendingPages.poll(), result, callback) == Action.Stop) {
+							stopped = true;
+							break;
 						}
-						
-						//set NAVIGATE_CONTINUE to stop skipping on the last view element and not return an error
-						skipNav.add(Navigate.CONTINUE);
 					}
-					else {
-						skipNav = returnNav;
+				}
+				
+				if (!viewModified) {
+					while (!stopped && !pendingPages.isEmpty()) {
+						if (deliverDecodedPage(pendingPages.poll(), result, callback) == Action.Stop) {
+							stopped = true;
+						}
 					}
 				}
-				else {
-					skipNav = returnNav;
+			}
+			finally {
+				for (Future<DecodedPage> currPage : pendingPages) {
+					currPage.cancel(false);
 				}
-				NotesViewLookupResultData data;
-				data = readEntriesExt(posWrap, skipNav, useSkipCount, returnNav, preloadEntryCount, useReturnMask,
+			}
+			
+			if (viewModified) {
+				//view index was changed while reading; restart scan
+				Action retryAction = callback.retryingReadBecauseViewIndexChanged(runs, System.currentTimeMillis() - t0);
+				if (retryAction==Action.Stop) {
+					return null;
+				}
+				update();
+				continue;
+			}
+			
+			result = callback.lookupDone(result);
+			return result;
+		}
+	}
+	
+	/**
+	 * Waits for a decoded page and passes its entries to the callback
+	 * 
+	 * @param pageFuture future of decoded page
+	 * @param result lookup result
+	 * @param callback callback
+	 * @return {@link Action#Stop} if the callback stopped the lookup
+	 * 
+	 * @param <T> type of lookup result object
+	 */
+	private <T> Action deliverDecodedPage(Future<DecodedPage> pageFuture, T result, ViewLookupCallback<T> callback) {
+		DecodedPage page;
+		try {
+			page = pageFuture.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NotesError(0, "Interrupted while waiting for decoded view data", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new NotesError(0, "Error decoding view data", cause);
+		}
+		
+		if (m_lookupStats!=null) {
+			m_lookupStats.addDecoded(page.m_data.getEntries().size(), page.m_decodeNanos);
+		}
+		
+		for (NotesViewEntryData currEntry : page.m_data.getEntries()) {
+			if (callback.entryRead(result, currEntry) == Action.Stop) {
+				return Action.Stop;
+			}
+		}
+		return Action.Continue;
+	}
+	
+	/**
+	 * Copy of a NIFReadEntries buffer
+	 */
+	private static class BufferCopy {
+		private Memory m_buffer;
+		private int m_numEntriesSkipped;
+		private int m_numEntriesReturned;
+		private short m_signalFlags;
+		
+		public BufferCopy(Memory buffer, int numEntriesSkipped, int numEntriesReturned, short signalFlags) {
+			m_buffer = buffer;
+			m_numEntriesSkipped = numEntriesSkipped;
+			m_numEntriesReturned = numEntriesReturned;
+			m_signalFlags = signalFlags;
+		}
+	}
+	
+	/**
+	 * Decoded buffer with decode duration
+	 */
+	private static class DecodedPage {
+		private NotesViewLookupResultData m_data;
+		private long m_decodeNanos;
+		
+		public DecodedPage(NotesViewLookupResultData data, long decodeNanos) {
+			m_data = data;
+			m_decodeNanos = decodeNanos;
+		}
+	}
+	
+	private static volatile ForkJoinPool m_sharedDecodePool;
+	
+	/**
+	 * Returns the pool used by {@link #getAllEntriesPipelined(String, int, EnumSet, int, EnumSet, ForkJoinPool, ViewLookupCallback)}
+	 * if no pool is specified. Its threads are initialized for Notes API calls.
+	 * 
+	 * @return pool
+	 */
+	private static ForkJoinPool getSharedDecodePool() {
+		if (m_sharedDecodePool==null) {
+			synchronized (NotesCollection.class) {
+				if (m_sharedDecodePool==null) {
+					m_sharedDecodePool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), new ForkJoinWorkerThreadFactory() {
+						
+						@Override
+						public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+							ForkJoinWorkerThread thread = new NotesDecodeWorkerThread(pool);
+							thread.setName("domino-jna-view-decoder-" + thread.getPoolIndex());
+							return thread;
+						}
+					}, null, false);
+				}
+			}
+		}
+		return m_sharedDecodePool;
+	}
+	
+	/**
+	 * Pool thread that calls NotesInitThread / NotesTermThread, because decoding
+	 * text lists uses the C API
+	 */
+	private static class NotesDecodeWorkerThread extends ForkJoinWorkerThread {
+		
+		protected NotesDecodeWorkerThread(ForkJoinPool pool) {
+			super(pool);
+		}
+		
+		@Override
+		protected void onStart() {
+			super.onStart();
+			NotesInitUtils.notesInitThread();
+		}
+		
+		@Override
+		protected void onTermination(Throwable exception) {
+			try {
+				NotesInitUtils.notesTermThread();
+			}
+			finally {
+				super.onTermination(exception);
+			}
+		}
+	}
+	
+	/**
+	 * Creates a cursor for the specified entry that can be passed to
+	 * {@link #getAllEntriesAfterCursor(NotesCollectionCursor, EnumSet, int, EnumSet, ViewLookupCallback)}
+	 * to read the entries after it. Typically called for the last entry of a page.<br>
+	 * <br>
+	 * The entry should have been read with {@link ReadMask#NOTEID} and either {@link ReadMask#SUMMARY} or
+	 * {@link ReadMask#SUMMARYVALUES} so that the cursor can be re-located via note id and sort key when the
+	 * view index changes.
+	 * 
+	 * @param entry view entry, e.g. the last one of a page
+	 * @return cursor
+	 */
+	public NotesCollectionCursor createCursor(NotesViewEntryData entry) {
+		Object sortKey = null;
+		
+		if (entry.hasAnyColumnValues()) {
+			String sortItemName = getCurrentSortColumnName();
+			if (sortItemName==null) {
+				NotesCollationInfo defaultCollation = getCollationsInfo().getCollationInfo(0);
+				if (defaultCollation!=null && !defaultCollation.getDescriptors().isEmpty()) {
+					sortItemName = defaultCollation.getDescriptors().get(0).getName();
+				}
+			}
+			if (sortItemName!=null) {
+				Object sortValue = entry.get(sortItemName);
+				if (sortValue instanceof String || sortValue instanceof Number) {
+					sortKey = sortValue;
+				}
+			}
+		}
+		return new NotesCollectionCursor(getUNID(), entry.getPositionStr(), entry.getNoteId(), sortKey,
+				getIndexModifiedSequenceNo(), getCurrentSortColumnName(), getCurrentSortDirection());
+	}
+	
+	/**
+	 * Reads the entries after the entry the cursor has been created for (see {@link #createCursor(NotesViewEntryData)})
+	 * or from the start of the view if no cursor is specified.<br>
+	 * <br>
+	 * If the view index is unchanged, we continue reading directly at the cursor position with a skip count of 1, so
+	 * the cost of a page does not depend on its depth in the view. Otherwise we re-locate the last entry by its note id
+	 * or, if it is no longer in the view, by its sort key. Within a run of entries with the same sort key, we skip the
+	 * entries that collate before the cursor's note id, so that no entry of the run gets lost. If neither works, we fall
+	 * back to the stored position.<br>
+	 * <br>
+	 * The cursor must have been created while the collection had the same sorting as now (see
+	 * {@link #resortView(String, Direction)}), otherwise an {@link IllegalArgumentException} is thrown.
+	 * 
+	 * @param cursor cursor or null to start at the beginning of the view
+	 * @param returnNav navigator to specify how to move in the collection
+	 * @param count maximum number of entries to read in one NIF call; use the callback to limit the page size
+	 * @param returnMask values to extract
+	 * @param callback callback that is called for each entry read from the collection
+	 * @return lookup result
+	 * 
+	 * @param <T> type of lookup result object
+	 */
+	public <T> T getAllEntriesAfterCursor(final NotesCollectionCursor cursor, EnumSet<Navigate> returnNav, int count,
+			EnumSet<ReadMask> returnMask, ViewLookupCallback<T> callback) {
+		
+		if (cursor!=null && cursor.getViewUNID()!=null && !cursor.getViewUNID().equalsIgnoreCase(getUNID())) {
+			throw new IllegalArgumentException("Cursor has been created for view "+cursor.getViewUNID()+", not for "+getUNID());
+		}
+		if (cursor!=null) {
+			String sortColumn = getCurrentSortColumnName();
+			Direction sortDirection = getCurrentSortDirection();
+			boolean sameColumn = cursor.getSortColumn()==null ? sortColumn==null : cursor.getSortColumn().equalsIgnoreCase(sortColumn);
+			if (!sameColumn || cursor.getSortDirection()!=sortDirection) {
+				throw new IllegalArgumentException("Cursor has been created for sort column "+cursor.getSortColumn()+
+						" ("+cursor.getSortDirection()+"), the collection is sorted by "+sortColumn+" ("+sortDirection+")");
+			}
+		}
+		
+		return getAllEntries(new IStartPositionRetriever() {
+			
+			@Override
+			public String getStartPosition() {
+				if (cursor==null) {
+					return "0";
+				}
+				
+				if (cursor.getIndexModifiedSequenceNo() == getIndexModifiedSequenceNo()) {
+					return cursor.getPosition();
+				}
+				
+				//view index has changed, find the last entry of the previous page
+				if (cursor.getNoteId()!=0 && isNoteInView(cursor.getNoteId())) {
+					String pos = locateNote(cursor.getNoteId());
+					if (!StringUtil.isEmpty(pos)) {
+						return pos;
+					}
+				}
+				
+				if (cursor.getSortKey()!=null) {
+					return findCursorPositionInKeyRun(cursor);
+				}
+				
+				return cursor.getPosition();
+			}
+		}, 1, returnNav, count, returnMask, callback);
+	}
+	
+	/**
+	 * Finds the position to continue reading after a cursor whose entry is no longer in the view.
+	 * Domino collates entries with the same sort key by note id, so we skip the entries of the
+	 * key run that collate before the cursor's note id and return the last of them. If the run
+	 * is not ordered by note id, we return the entry before the run, which may return entries twice,
+	 * but never skips one.
+	 * 
+	 * @param cursor cursor
+	 * @return position of the last entry that has already been read
+	 */
+	private String findCursorPositionInKeyRun(NotesCollectionCursor cursor) {
+		List<NotesViewEntryData> keyRun = getAllEntriesByKey(EnumSet.of(Find.EQUAL),
+				EnumSet.of(ReadMask.NOTEID, ReadMask.INDEXPOSITION), new EntriesAsListCallback(Integer.MAX_VALUE),
+				cursor.getSortKey());
+		
+		String lastReadPos = null;
+		int lastNoteId = 0;
+		boolean orderedByNoteId = true;
+		for (NotesViewEntryData currEntry : keyRun) {
+			int currNoteId = currEntry.getNoteId();
+			if (currNoteId==cursor.getNoteId()) {
+				return currEntry.getPositionStr();
+			}
+			if (currNoteId < lastNoteId) {
+				orderedByNoteId = false;
+			}
+			lastNoteId = currNoteId;
+			if (currNoteId < cursor.getNoteId()) {
+				lastReadPos = currEntry.getPositionStr();
+			}
+		}
+		if (orderedByNoteId && lastReadPos!=null) {
+			return lastReadPos;
+		}
+		
+		//last entry with a lower key; we skip it and continue with the first entry of the run
+		FindResult findResult = findByKey(EnumSet.of(Find.LESS_THAN), cursor.getSortKey());
+		if (findResult==null || StringUtil.isEmpty(findResult.getPosition())) {
+			//all entries collate after the key
+			return "0";
+		}
+		return findResult.getPosition();
+	}
+	
+	/**
+	 * Callback to dynamically locate the start position of a collection scan, e.g.
+	 * the position of a category entry. We use a callback to be able to react on
+	 * view index updates. Since a lookup may be repeated when the view index changes,
+	 * this callback may be called multiple times to return a fresh starting position
+	 * for the lookup.
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	private static interface IStartPositionRetriever {
+		
+		/**
+		 * Implement this method to find the lookup start position
+		 * 
+		 * @return start position or null if not found
+		 */
+		public String getStartPosition();
+		
+	}
+	
+	/**
+	 * The method reads a number of entries from the collection/view. It internally takes care
+	 * of view index changes while reading view data and restarts reading if such a change has been
+	 * detected.
+	 * 
+	 * @param startPosRetriever callback to find the start position to read
+	 * @param skipCount number entries to skip before reading
+	 * @param returnNav navigator to specify how to move in the collection
+	 * @param preloadEntryCount amount of entries that is read from the view; if a filter is specified, this should be higher than returnCount
+	 * @param returnMask values to extract
+	 * @param callback callback that is called for each entry read from the collection
+	 * @return lookup result
+	 * 
+	 * @param <T> type of lookup result object
+	 */
+	private <T> T getAllEntries(IStartPositionRetriever startPosRetriever, int skipCount, EnumSet<Navigate> returnNav,
+			int preloadEntryCount,
+			EnumSet<ReadMask> returnMask, ViewLookupCallback<T> callback) {
+		
+		NotesCollectionLookupStats stats = startLookupStats("getAllEntries");
+		if (stats==null) {
+			return getAllEntriesInternal(startPosRetriever, skipCount, returnNav, preloadEntryCount, returnMask, callback);
+		}
+		try {
+			return getAllEntriesInternal(startPosRetriever, skipCount, returnNav, preloadEntryCount, returnMask,
+					new LookupStatsCallback<T>(callback, stats));
+		}
+		finally {
+			finishLookupStats(stats);
+		}
+	}
+	
+	/**
+	 * Implementation of {@link #getAllEntries(IStartPositionRetriever, int, EnumSet, int, EnumSet, ViewLookupCallback)}
+	 * 
+	 * @param startPosRetriever callback to find the start position to read
+	 * @param skipCount number entries to skip before reading
+	 * @param returnNav navigator to specify how to move in the collection
+	 * @param preloadEntryCount amount of entries that is read from the view; if a filter is specified, this should be higher than returnCount
+	 * @param returnMask values to extract
+	 * @param callback callback that is called for each entry read from the collection
+	 * @return lookup result
+	 * 
+	 * @param <T> type of lookup result object
+	 */
+	private <T> T getAllEntriesInternal(IStartPositionRetriever startPosRetriever, int skipCount, EnumSet<Navigate> returnNav,
+			int preloadEntryCount,
+			EnumSet<ReadMask> returnMask, ViewLookupCallback<T> callback) {
+		
+		EnumSet<ReadMask> useReturnMask = returnMask;
+
+		//decide whether we need to use the undocumented NIFReadEntriesExt
+		String readSingleColumnName = callback.getNameForSingleColumnRead();
+		if (readSingleColumnName!=null) {
+			//make sure that we actually read any column values
+			if (!useReturnMask.contains(ReadMask.SUMMARY) && !useReturnMask.contains(ReadMask.SUMMARYVALUES)) {
+				useReturnMask = useReturnMask.clone();
+				useReturnMask.add(ReadMask.SUMMARYVALUES);
+			}
+		}
+		
+		CollectionDataCache dataCache = callback.getDataCache();
+		if (useReturnMask.equals(EnumSet.of(ReadMask.NOTEID))) {
+			//disable cache if all we need to read is the note id
+			dataCache = null;
+		}
+		
+		Integer readSingleColumnIndex = readSingleColumnName==null ? null : getColumnValuesIndex(readSingleColumnName);
+		
+		if (readSingleColumnName!=null) {
+			//TODO view row caching currently disabled for single column reads, needs more work
+			dataCache = null;
+		}
+
+		if (dataCache!=null) {
+			//if caching is used, make sure that we read the note id, because that's how we hash our data
+			if (!useReturnMask.contains(ReadMask.NOTEID) && !useReturnMask.contains(ReadMask.NOTEID)) {
+				useReturnMask = useReturnMask.clone();
+				useReturnMask.add(ReadMask.NOTEID);
+			}
+		}
+
+		long t0 = System.currentTimeMillis();
+		int runs = -1;
+		
+		while (true) {
+			runs++;
+			int initialIndexModified = getIndexModifiedSequenceNo();
+			
+			String startPosStr = startPosRetriever.getStartPosition();
+			if (StringUtil.isEmpty(startPosStr)) {
+				T result = callback.startingLookup();
+				result = callback.lookupDone(result);
+				return result;
+			}
+			
+			int indexModifiedAfterGettingStartPos = getIndexModifiedSequenceNo();
+
+			if (initialIndexModified != indexModifiedAfterGettingStartPos) {
+				//view index was changed while reading; restart scan
+				Action retryAction = callback.retryingReadBecauseViewIndexChanged(runs, System.currentTimeMillis() - t0);
+				if (retryAction==Action.Stop) {
+					return null;
+				}
+				update();
+				continue;
+			}
+			
+			NotesCollectionPositionStruct pos = NotesCollectionPositionStruct.toPosition(("last".equalsIgnoreCase(startPosStr) || startPosStr==null) ? "0" : startPosStr);
+			NotesCollectionPosition posWrap = new NotesCollectionPosition(pos);
+
+			T result = callback.startingLookup();
+			
+			if (preloadEntryCount==0) {
+				//nothing to do
+				result = callback.lookupDone(result);
+				return result;
+			}
+			
+			boolean viewModified = false;
+			boolean firstLoopRun = true;
+			
+			NotesTimeDate retDiffTime = null;
+			
+			NotesTimeDate diffTime = null;
+			NotesIDTable diffIDTable = null;
+			
+			if (dataCache!=null) {
+				CacheState cacheState = dataCache.getCacheState();
+				
+				//only use cache content if read masks are compatible
+				Map<Integer,CacheableViewEntryData> cacheEntries = cacheState.getCacheEntries();
+				if (cacheEntries!=null && !cacheEntries.isEmpty()) {
+					EnumSet<ReadMask> cacheReadMask = cacheState.getReadMask();
+					if (useReturnMask.equals(cacheReadMask)) {
+						diffTime = cacheState.getDiffTime();
+
+						diffIDTable = new NotesIDTable();
+						diffIDTable.addNotes(cacheEntries.keySet());
+					}
+				}
+			}
+			
+			List<NotesViewEntryData> entriesToUpdateCache = dataCache==null ? null : new ArrayList<NotesViewEntryData>();
+			
+			boolean innerLoopLeftByViewMod = false;
+
+			while (true) {
+				if (preloadEntryCount==0) {
+					break;
+				}
+
+				int useSkipCount;
+				if (firstLoopRun) {
+					if ("last".equalsIgnoreCase(startPosStr)) {
+						//TODO make "last" work when called from getAllEntriesInCategory
+						
+						//first jump to the end of the view
+						useSkipCount = Integer.MAX_VALUE;
+					}
+					else {
+						useSkipCount = skipCount;
+					}
+				}
+				else {
+					//just skip the last entry that we returned on the last NIFReadEntries call
+					useSkipCount = 1;
+				}
+				EnumSet<Navigate> skipNav = returnNav.clone();
+				if (firstLoopRun) {
+					if ("last".equalsIgnoreCase(startPosStr)) {
+						if (returnNav.contains(Navigate.CURRENT)) {
+							//navigate to the last entry of the view and return it
+							skipNav = EnumSet.of(Navigate.NEXT);
+						}
+						else {
+							//compute the skipNav by reversing the returnNav; e.g. for startPos="last"
+							//and returnNav=Navigate.PREV_SELECTED, we first jump to the end of the view
+							//with skipCount=INTEGER.MAX_VALUE Navigate.NEXT_SELECTED.
+							//Then we start reading n entries with Navigate.PREV_SELECTED,
+							//effectively returning the last n selected entries of the view
+							skipNav = EnumSet.noneOf(Navigate.class);
+							for (Navigate currNav : returnNav) {
+								skipNav.add(reverseNav(currNav));
+							}
+						}
+						
+						//set NAVIGATE_CONTINUE to stop skipping on the last view element and not return an error
+						skipNav.add(Navigate.CONTINUE);
+					}
+					else {
+						skipNav = returnNav;
+					}
+				}
+				else {
+					skipNav = returnNav;
+				}
+				NotesViewLookupResultData data;
+				data = readEntriesExt(posWrap, skipNav, useSkipCount, returnNav, preloadEntryCount, useReturnMask,
 						diffTime, diffIDTable, readSingleColumnIndex);
 				
 				int indexModifiedAfterDataLookup = getIndexModifiedSequenceNo();
@@ -2107,7 +2724,10 @@ public class NotesCollection implements IRecyclableNotesObject {
 					//the summary data, because the corresponding cache entry was already
 					//up to date
 					List<NotesViewEntryData> entries = data.getEntries();
-					dataCache.populateEntryStubsWithData(entries);
+					int cacheHits = dataCache.populateEntryStubsWithData(entries);
+					if (m_lookupStats!=null) {
+						m_lookupStats.addCacheHits(cacheHits);
+					}
 					
 					entriesToUpdateCache.addAll(entries);
 				}
@@ -2433,6 +3053,30 @@ public class NotesCollection implements IRecyclableNotesObject {
 	 * @param <T> type of lookup result object
 	 */
 	public <T> T getAllEntriesByKey(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, ViewLookupCallback<T> callback, Object... keys) {
+		NotesCollectionLookupStats stats = startLookupStats("getAllEntriesByKey");
+		if (stats==null) {
+			return getAllEntriesByKeyInternal(findFlags, returnMask, callback, keys);
+		}
+		try {
+			return getAllEntriesByKeyInternal(findFlags, returnMask, new LookupStatsCallback<T>(callback, stats), keys);
+		}
+		finally {
+			finishLookupStats(stats);
+		}
+	}
+	
+	/**
+	 * Implementation of {@link #getAllEntriesByKey(EnumSet, EnumSet, ViewLookupCallback, Object...)}
+	 * 
+	 * @param findFlags find flags, see {@link Find}
+	 * @param returnMask values to be returned
+	 * @param callback callback that is called for each entry read from the collection
+	 * @param keys lookup keys
+	 * @return lookup result
+	 * 
+	 * @param <T> type of lookup result object
+	 */
+	private <T> T getAllEntriesByKeyInternal(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, ViewLookupCallback<T> callback, Object... keys) {
 		checkHandle();
 		
 		//for local databases, we can use an optimized lookup that locks the view during the lookup against index updates so that
@@ -2600,19 +3244,449 @@ public class NotesCollection implements IRecyclableNotesObject {
 					remainingEntries = remainingEntries - entries.size();
 				}
 				
-				if (viewModified) {
-					//refresh view and redo the whole lookup
-					Action retryAction = callback.retryingReadBecauseViewIndexChanged(runs, System.currentTimeMillis() - t0);
-					if (retryAction==Action.Stop) {
-						return null;
+				if (viewModified) {
+					//refresh view and redo the whole lookup
+					Action retryAction = callback.retryingReadBecauseViewIndexChanged(runs, System.currentTimeMillis() - t0);
+					if (retryAction==Action.Stop) {
+						return null;
+					}
+					update();
+					continue;
+				}
+			}
+			
+			result = callback.lookupDone(result);
+			return result;
+		}
+	}
+	
+	/**
+	 * Maximum number of view entries per lookup key that {@link #getAllEntriesByKeys(EnumSet, EnumSet, Collection)}
+	 * is willing to read sequentially. If the keys are more sparse, we do one lookup per key.
+	 */
+	private static final int BULK_LOOKUP_MAX_SWEEP_ENTRIES_PER_KEY = 32;
+
+	/**
+	 * Convenience function that returns the note ids of documents matching a
+	 * list of lookup keys in the collection. Uses {@link #getAllEntriesByKeys(EnumSet, EnumSet, Collection)}
+	 * internally.
+	 * 
+	 * @param findFlags find flags, see {@link #getAllEntriesByKeys(EnumSet, EnumSet, Collection)} for supported values
+	 * @param keys lookup keys for the first sorted column
+	 * @return map of lookup key and note ids in view order, contains an empty set for keys that were not found
+	 */
+	public Map<Object,LinkedHashSet<Integer>> getAllIdsByKeys(EnumSet<Find> findFlags, Collection<?> keys) {
+		Map<Object,List<NotesViewEntryData>> entriesByKey = getAllEntriesByKeys(findFlags, EnumSet.of(ReadMask.NOTEID), keys);
+		
+		Map<Object,LinkedHashSet<Integer>> idsByKey = new LinkedHashMap<Object,LinkedHashSet<Integer>>();
+		for (Entry<Object,List<NotesViewEntryData>> currEntry : entriesByKey.entrySet()) {
+			LinkedHashSet<Integer> noteIds = new LinkedHashSet<Integer>();
+			for (NotesViewEntryData currEntryData : currEntry.getValue()) {
+				noteIds.add(currEntryData.getNoteId());
+			}
+			idsByKey.put(currEntry.getKey(), noteIds);
+		}
+		return idsByKey;
+	}
+	
+	/**
+	 * Bulk version of {@link #getAllEntriesByKey(EnumSet, EnumSet, ViewLookupCallback, Object...)}
+	 * that looks up many keys for the first sorted column of the current collation.<br>
+	 * <br>
+	 * Instead of running one NIFFindByKey/NIFReadEntries combination per key, the method
+	 * sorts the keys like the view column, positions on the first key and reads the view
+	 * sequentially until it passes the last key, matching the read entries against the
+	 * key list in one pass.<br>
+	 * If the keys are sparse compared to the view entries between them (or the view is categorized or
+	 * the keys are not all strings or all numbers), the method falls back to one lookup per key.
+	 * Since the key order is computed with Java collation that may differ from the view collation,
+	 * a key not found by the sweep is only treated as missing if the column values read by the sweep
+	 * have the same order in Java and the key sorts between the first and the last of them.
+	 * Other keys not found by the sweep are looked up individually.
+	 * For multi-value columns, an entry matches a key if any of its values matches.<br>
+	 * <br>
+	 * Supported find flags are {@link Find#EQUAL}, {@link Find#FIRST_EQUAL}, {@link Find#CASE_INSENSITIVE}
+	 * and {@link Find#ACCENT_INSENSITIVE}.
+	 * 
+	 * @param findFlags find flags
+	 * @param returnMask values to be returned, {@link ReadMask#NOTEID} and {@link ReadMask#SUMMARYVALUES} get added if missing
+	 * @param keys lookup keys for the first sorted column
+	 * @return map of lookup key and matching entries in view order, contains an empty list for keys that were not found
+	 */
+	public Map<Object,List<NotesViewEntryData>> getAllEntriesByKeys(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask, Collection<?> keys) {
+		checkHandle();
+		
+		for (Find currFlag : findFlags) {
+			if (currFlag!=Find.EQUAL && currFlag!=Find.FIRST_EQUAL && currFlag!=Find.CASE_INSENSITIVE &&
+					currFlag!=Find.ACCENT_INSENSITIVE) {
+				throw new IllegalArgumentException("Unsupported find flag for bulk lookups: "+currFlag);
+			}
+		}
+		
+		Map<Object,List<NotesViewEntryData>> entriesByKey = new LinkedHashMap<Object,List<NotesViewEntryData>>();
+		for (Object currKey : keys) {
+			if (currKey==null) {
+				throw new IllegalArgumentException("Lookup keys cannot be null");
+			}
+			entriesByKey.put(currKey, new ArrayList<NotesViewEntryData>());
+		}
+		if (entriesByKey.isEmpty()) {
+			return entriesByKey;
+		}
+		
+		//Java collation of the keys may differ from the view collation, so keys that the sweep
+		//did not find and that are outside of the verified range it has read are looked up one by one
+		List<Object> keysToLookUp = sweepLookupByKeys(findFlags, returnMask, entriesByKey);
+		
+		EnumSet<Find> pointLookupFlags = findFlags.clone();
+		pointLookupFlags.add(Find.EQUAL);
+		
+		for (Object currKey : keysToLookUp) {
+			List<NotesViewEntryData> entries = getAllEntriesByKey(pointLookupFlags, returnMask,
+					new EntriesAsListCallback(Integer.MAX_VALUE), currKey);
+			if (entries!=null) {
+				entriesByKey.get(currKey).addAll(entries);
+			}
+		}
+		return entriesByKey;
+	}
+	
+	/**
+	 * Implementation of the sorted sweep for {@link #getAllEntriesByKeys(EnumSet, EnumSet, Collection)}
+	 * 
+	 * @param findFlags find flags
+	 * @param returnMask return mask
+	 * @param entriesByKey map with the lookup keys to be filled with the matching entries
+	 * @return keys that still need to be looked up one by one, all keys if the sweep has not been done because the keys are too sparse or cannot be compared in Java
+	 */
+	private List<Object> sweepLookupByKeys(EnumSet<Find> findFlags, EnumSet<ReadMask> returnMask,
+			Map<Object,List<NotesViewEntryData>> entriesByKey) {
+		
+		NotesCollationInfo activeCollation = getCollationsInfo().getCollationInfo(getCollation());
+		if (activeCollation==null || activeCollation.getDescriptors().isEmpty()) {
+			return new ArrayList<Object>(entriesByKey.keySet());
+		}
+		NotesCollateDescriptor sortDescriptor = activeCollation.getDescriptors().get(0);
+		if (sortDescriptor.isPermuted() || getColumnValuesIndex(sortDescriptor.getName())==-1) {
+			return new ArrayList<Object>(entriesByKey.keySet());
+		}
+		for (NotesViewColumn currCol : getColumns()) {
+			if (currCol.isCategory()) {
+				//positions and entry counts are only meaningful for flat views
+				return new ArrayList<Object>(entriesByKey.keySet());
+			}
+		}
+		
+		final boolean caseInsensitiveMatch = findFlags.contains(Find.CASE_INSENSITIVE);
+		final boolean accentInsensitiveMatch = findFlags.contains(Find.ACCENT_INSENSITIVE);
+		
+		//group the original keys by their normalized value
+		final Map<Object,List<Object>> keysByNormalizedValue = new HashMap<Object,List<Object>>();
+		boolean hasStrings = false;
+		boolean hasNumbers = false;
+		for (Object currKey : entriesByKey.keySet()) {
+			if (currKey instanceof String) {
+				hasStrings = true;
+			}
+			else if (currKey instanceof Number) {
+				hasNumbers = true;
+			}
+			else {
+				//dates and ranges cannot be compared reliably in Java
+				return new ArrayList<Object>(entriesByKey.keySet());
+			}
+			Object currNormalizedKey = normalizeLookupKey(currKey, caseInsensitiveMatch, accentInsensitiveMatch);
+			List<Object> keysForValue = keysByNormalizedValue.get(currNormalizedKey);
+			if (keysForValue==null) {
+				keysForValue = new ArrayList<Object>(1);
+				keysByNormalizedValue.put(currNormalizedKey, keysForValue);
+			}
+			keysForValue.add(currKey);
+		}
+		if (hasStrings && hasNumbers) {
+			return new ArrayList<Object>(entriesByKey.keySet());
+		}
+		
+		//sort the keys like the view column so that we know where to start and stop reading
+		List<Object> sortedKeys = new ArrayList<Object>(entriesByKey.keySet());
+		Comparator<Object> keyComparator;
+		if (hasStrings) {
+			final Collator collator = Collator.getInstance();
+			if (sortDescriptor.isCaseSensitiveSort()) {
+				collator.setStrength(Collator.TERTIARY);
+			}
+			else if (sortDescriptor.isAccentSensitiveSort()) {
+				collator.setStrength(Collator.SECONDARY);
+			}
+			else {
+				collator.setStrength(Collator.PRIMARY);
+			}
+			keyComparator = new Comparator<Object>() {
+
+				@Override
+				public int compare(Object o1, Object o2) {
+					return collator.compare((String) o1, (String) o2);
+				}
+			};
+		}
+		else {
+			keyComparator = new Comparator<Object>() {
+
+				@Override
+				public int compare(Object o1, Object o2) {
+					return Double.compare(((Number) o1).doubleValue(), ((Number) o2).doubleValue());
+				}
+			};
+		}
+		if (sortDescriptor.getDirection()==Direction.Descending) {
+			keyComparator = Collections.reverseOrder(keyComparator);
+		}
+		Collections.sort(sortedKeys, keyComparator);
+		final Comparator<Object> sortedKeyComparator = keyComparator;
+		final boolean stringKeys = hasStrings;
+		
+		final Object firstKey = sortedKeys.get(0);
+		final Object lastKey = sortedKeys.get(sortedKeys.size()-1);
+		final int keyCount = sortedKeys.size();
+		
+		//the view range to be read; recomputed when the view index changes
+		final String[] sweepStartPos = new String[1];
+		final int[] sweepEntryCount = new int[1];
+		final boolean[] useSweep = new boolean[] {true};
+		
+		IStartPositionRetriever startPosRetriever = new IStartPositionRetriever() {
+			private boolean m_probed;
+			private boolean m_probeResultAvailable;
+			
+			@Override
+			public String getStartPosition() {
+				if (m_probeResultAvailable) {
+					//first call by getAllEntries, reuse the result of the probe below
+					m_probeResultAvailable = false;
+					return sweepStartPos[0];
+				}
+				String startPos = computeStartPosition();
+				if (!m_probed) {
+					m_probed = true;
+					m_probeResultAvailable = true;
+				}
+				return startPos;
+			}
+			
+			private String computeStartPosition() {
+				sweepStartPos[0] = null;
+				
+				//"LESS_THAN" and "GREATER_THAN" refer to the display order of the view
+				FindResult firstResult = findByKey(EnumSet.of(Find.GREATER_THAN, Find.EQUAL), firstKey);
+				if (StringUtil.isEmpty(firstResult.getPosition())) {
+					//no entries at or after the first key
+					sweepEntryCount[0] = 0;
+					return null;
+				}
+				FindResult endResult = findByKey(EnumSet.of(Find.GREATER_THAN), lastKey);
+				
+				NotesCollectionPosition firstPos = new NotesCollectionPosition(firstResult.getPosition());
+				int endTumbler;
+				if (StringUtil.isEmpty(endResult.getPosition())) {
+					//last key is at the end of the view
+					endTumbler = getTopLevelEntries() + 1;
+				}
+				else {
+					NotesCollectionPosition endPos = new NotesCollectionPosition(endResult.getPosition());
+					if (endPos.getLevel()!=0) {
+						//categorized view, we cannot compute the entry count
+						useSweep[0] = false;
+						return null;
+					}
+					endTumbler = endPos.getTumbler(0);
+				}
+				if (firstPos.getLevel()!=0) {
+					useSweep[0] = false;
+					return null;
+				}
+				
+				int entryCount = endTumbler - firstPos.getTumbler(0);
+				if (entryCount > (long) keyCount * BULK_LOOKUP_MAX_SWEEP_ENTRIES_PER_KEY) {
+					//keys are too sparse
+					useSweep[0] = false;
+					return null;
+				}
+				
+				sweepEntryCount[0] = entryCount;
+				sweepStartPos[0] = firstResult.getPosition();
+				return sweepStartPos[0];
+			}
+		};
+		
+		//probe the range before reading anything
+		String startPos = startPosRetriever.getStartPosition();
+		if (!useSweep[0]) {
+			return new ArrayList<Object>(entriesByKey.keySet());
+		}
+		if (startPos==null) {
+			//no entries at or after the first key in view collation
+			return new ArrayList<Object>(entriesByKey.keySet());
+		}
+		
+		EnumSet<ReadMask> sweepReturnMask = returnMask.clone();
+		sweepReturnMask.add(ReadMask.NOTEID);
+		if (!sweepReturnMask.contains(ReadMask.SUMMARY)) {
+			sweepReturnMask.add(ReadMask.SUMMARYVALUES);
+		}
+		
+		final String sortItemName = sortDescriptor.getName();
+		
+		//first and last single column value read by the sweep and whether they were in Java order
+		final Object[] sweptRange = new Object[2];
+		final boolean[] sweptRangeOrdered = new boolean[] {true};
+		
+		//key lookups never return responses, so we only move between top level entries
+		Map<Object,List<NotesViewEntryData>> sweepResult = getAllEntries(startPosRetriever, 0,
+				EnumSet.of(Navigate.NEXT_PEER), sweepEntryCount[0], sweepReturnMask,
+				new ViewLookupCallback<Map<Object,List<NotesViewEntryData>>>() {
+			private int m_entriesRead;
+			
+			@Override
+			public Map<Object,List<NotesViewEntryData>> startingLookup() {
+				//lookup is restarted on view index changes
+				m_entriesRead = 0;
+				sweptRange[0] = null;
+				sweptRange[1] = null;
+				sweptRangeOrdered[0] = true;
+				return new HashMap<Object,List<NotesViewEntryData>>();
+			}
+
+			@Override
+			public Action entryRead(Map<Object,List<NotesViewEntryData>> result, NotesViewEntryData entryData) {
+				if (!useSweep[0] || m_entriesRead >= sweepEntryCount[0]) {
+					return Action.Stop;
+				}
+				m_entriesRead++;
+				
+				Object sortValue = entryData.get(sortItemName);
+				if (sortValue instanceof List) {
+					//multi-value column, an entry matches a key if any of its values does
+					Set<Object> matchedKeys = new HashSet<Object>();
+					for (Object currValue : (List<?>) sortValue) {
+						addSweepMatch(result, entryData, currValue, matchedKeys);
 					}
-					update();
-					continue;
 				}
+				else if (sortValue!=null) {
+					addSweepMatch(result, entryData, sortValue, null);
+					trackSweptRange(sortValue);
+				}
+				return m_entriesRead < sweepEntryCount[0] ? Action.Continue : Action.Stop;
 			}
 			
-			result = callback.lookupDone(result);
-			return result;
+			/**
+			 * Records the range of column values read so far and checks that the
+			 * view returns them in the order of the Java key comparator
+			 * 
+			 * @param value column value
+			 */
+			private void trackSweptRange(Object value) {
+				if (stringKeys ? !(value instanceof String) : !(value instanceof Number)) {
+					return;
+				}
+				if (sweptRange[0]==null) {
+					sweptRange[0] = value;
+				}
+				else if (sortedKeyComparator.compare(sweptRange[1], value) > 0) {
+					//view collation differs from the Java collation
+					sweptRangeOrdered[0] = false;
+				}
+				sweptRange[1] = value;
+			}
+			
+			/**
+			 * Adds an entry to the result lists of all keys matching a column value
+			 * 
+			 * @param result result map
+			 * @param entryData entry
+			 * @param value column value
+			 * @param matchedKeys keys the entry has already been added to or null
+			 */
+			private void addSweepMatch(Map<Object,List<NotesViewEntryData>> result, NotesViewEntryData entryData,
+					Object value, Set<Object> matchedKeys) {
+				if (value==null) {
+					return;
+				}
+				Object normalizedValue = normalizeLookupKey(value, caseInsensitiveMatch, accentInsensitiveMatch);
+				List<Object> matchingKeys = keysByNormalizedValue.get(normalizedValue);
+				if (matchingKeys==null) {
+					return;
+				}
+				for (Object currKey : matchingKeys) {
+					if (matchedKeys!=null && !matchedKeys.add(currKey)) {
+						continue;
+					}
+					List<NotesViewEntryData> entriesForKey = result.get(currKey);
+					if (entriesForKey==null) {
+						entriesForKey = new ArrayList<NotesViewEntryData>();
+						result.put(currKey, entriesForKey);
+					}
+					entriesForKey.add(entryData);
+				}
+			}
+
+			@Override
+			public Map<Object,List<NotesViewEntryData>> lookupDone(Map<Object,List<NotesViewEntryData>> result) {
+				return result;
+			}
+		});
+		
+		if (!useSweep[0] || sweepResult==null) {
+			//keys got sparse while the view index changed
+			return new ArrayList<Object>(entriesByKey.keySet());
+		}
+		
+		for (Entry<Object,List<NotesViewEntryData>> currEntry : sweepResult.entrySet()) {
+			entriesByKey.get(currEntry.getKey()).addAll(currEntry.getValue());
+		}
+		
+		//a key between the first and last read value would have been found by the sweep
+		//if the view had an entry for it, so only keys outside of that range need a lookup
+		List<Object> keysToLookUp = new ArrayList<Object>();
+		for (Entry<Object,List<NotesViewEntryData>> currEntry : entriesByKey.entrySet()) {
+			if (!currEntry.getValue().isEmpty()) {
+				continue;
+			}
+			Object currKey = currEntry.getKey();
+			boolean inSweptRange = sweptRangeOrdered[0] && sweptRange[0]!=null &&
+					sortedKeyComparator.compare(sweptRange[0], currKey) <= 0 &&
+					sortedKeyComparator.compare(currKey, sweptRange[1]) <= 0;
+			if (!inSweptRange) {
+				keysToLookUp.add(currKey);
+			}
+		}
+		return keysToLookUp;
+	}
+	
+	/**
+	 * Converts a lookup key or view column value into a value that can be used for
+	 * hash based matching in {@link #sweepLookupByKeys(EnumSet, EnumSet, Map)}
+	 * 
+	 * @param value key or column value
+	 * @param caseInsensitive true to ignore the case of strings
+	 * @param accentInsensitive true to ignore diacritical marks of strings
+	 * @return normalized value
+	 */
+	private static Object normalizeLookupKey(Object value, boolean caseInsensitive, boolean accentInsensitive) {
+		if (value instanceof String) {
+			String str = (String) value;
+			if (accentInsensitive) {
+				str = Normalizer.normalize(str, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+			}
+			if (caseInsensitive) {
+				str = str.toLowerCase(Locale.ENGLISH);
+			}
+			return str;
+		}
+		else if (value instanceof Number) {
+			return Double.valueOf(((Number) value).doubleValue());
+		}
+		else {
+			return value;
 		}
 	}
 	
@@ -2699,8 +3773,12 @@ public class NotesCollection implements IRecyclableNotesObject {
 			LongByReference retBuffer = new LongByReference();
 			IntByReference retSequence = new IntByReference();
 			
+			long nativeStart = m_lookupStats==null ? 0 : System.nanoTime();
 			result = NotesNativeAPI64.get().NIFFindByKeyExtended2(m_hCollection64, keyBuffer, findFlagsBitMask, returnMaskBitMask, retIndexPos, retNumMatches, retSignalFlags, retBuffer, retSequence);
 			
+			if (m_lookupStats!=null) {
+				m_lookupStats.addNativeRead(System.nanoTime() - nativeStart, getLookupBufferSize(retBuffer.getValue()));
+			}
 			if ((result & NotesConstants.ERR_MASK)==1028) {
 				return new NotesViewLookupResultData(null, new ArrayList<NotesViewEntryData>(0), 0, 0, retSignalFlags.getValue(), null, retSequence.getValue(), null);
 			}
@@ -2717,9 +3795,13 @@ public class NotesCollection implements IRecyclableNotesObject {
 					boolean convertStringsLazily = true;
 					boolean convertNotesTimeDateToCalendar = false;
 					
+					long decodeStart = m_lookupStats==null ? 0 : System.nanoTime();
 					NotesViewLookupResultData viewData = NotesLookupResultBufferDecoder.b64_decodeCollectionLookupResultBuffer(this, retBuffer.getValue(),
 							0, retNumMatches.getValue(), returnMask, retSignalFlags.getValue(), retIndexPos.toPosString(), retSequence.getValue(), null,
 							convertStringsLazily, convertNotesTimeDateToCalendar, null);
+					if (m_lookupStats!=null) {
+						m_lookupStats.addDecoded(viewData.getEntries().size(), System.nanoTime() - decodeStart);
+					}
 					return viewData;
 				}
 			}
@@ -2735,7 +3817,11 @@ public class NotesCollection implements IRecyclableNotesObject {
 			IntByReference retBuffer = new IntByReference();
 			IntByReference retSequence = new IntByReference();
 			
+			long nativeStart = m_lookupStats==null ? 0 : System.nanoTime();
 			result = NotesNativeAPI32.get().NIFFindByKeyExtended2(m_hCollection32, keyBuffer, findFlagsBitMask, returnMaskBitMask, retIndexPos, retNumMatches, retSignalFlags, retBuffer, retSequence);
+			if (m_lookupStats!=null) {
+				m_lookupStats.addNativeRead(System.nanoTime() - nativeStart, getLookupBufferSize(retBuffer.getValue()));
+			}
 			if ((result & NotesConstants.ERR_MASK)==1028) {
 				return new NotesViewLookupResultData(null, new ArrayList<NotesViewEntryData>(0), 0, 0, retSignalFlags.getValue(), null, retSequence.getValue(), null);
 			}
@@ -2752,9 +3838,13 @@ public class NotesCollection implements IRecyclableNotesObject {
 					boolean convertStringsLazily = true;
 					boolean convertNotesTimeDateToCalendar = false;
 					
+					long decodeStart = m_lookupStats==null ? 0 : System.nanoTime();
 					NotesViewLookupResultData viewData = NotesLookupResultBufferDecoder.b32_decodeCollectionLookupResultBuffer(this, retBuffer.getValue(),
 							0, retNumMatches.getValue(), returnMask, retSignalFlags.getValue(), retIndexPos.toPosString(), retSequence.getValue(), null,
 							convertStringsLazily, convertNotesTimeDateToCalendar, null);
+					if (m_lookupStats!=null) {
+						m_lookupStats.addDecoded(viewData.getEntries().size(), System.nanoTime() - decodeStart);
+					}
 					return viewData;
 				}
 			}
@@ -2931,128 +4021,644 @@ public class NotesCollection implements IRecyclableNotesObject {
 	 * If we cannot determine the number of notes, the function will return 1 for the count
 	 * value returned by {@link FindResult#getEntriesFound()}.
 	 * 
-	 * @param name name to look for
-	 * @param findFlags find flags, see {@link Find}
-	 * @return result
+	 * @param name name to look for
+	 * @param findFlags find flags, see {@link Find}
+	 * @return result
+	 */
+	public FindResult findByName(String name, EnumSet<Find> findFlags) {
+		checkHandle();
+		
+		Memory nameLMBCS = NotesStringUtils.toLMBCS(name, true);
+
+		IntByReference retNumMatches = new IntByReference();
+		NotesCollectionPositionStruct retIndexPos = NotesCollectionPositionStruct.newInstance();
+		short findFlagsBitMask = Find.toBitMask(findFlags);
+		short result;
+		if (PlatformUtils.is64Bit()) {
+			result = NotesNativeAPI64.get().NIFFindByName(m_hCollection64, nameLMBCS, findFlagsBitMask, retIndexPos, retNumMatches);
+		}
+		else {
+			result = NotesNativeAPI32.get().NIFFindByName(m_hCollection32, nameLMBCS, findFlagsBitMask, retIndexPos, retNumMatches);
+		}
+		if ((result & NotesConstants.ERR_MASK)==1028) {
+			return new FindResult("", 0, canFindExactNumberOfMatches(findFlags));
+		}
+
+		NotesErrorUtils.checkResult(result);
+
+		int nMatchesFound = retNumMatches.getValue();
+
+		int[] retTumbler = retIndexPos.Tumbler;
+		short retLevel = retIndexPos.Level;
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i<=retLevel; i++) {
+			if (sb.length()>0)
+				sb.append(".");
+
+			sb.append(retTumbler[i]);
+		}
+
+		String firstMatchPos = sb.toString();
+		return new FindResult(firstMatchPos, nMatchesFound, canFindExactNumberOfMatches(findFlags));
+	}
+
+	/**
+	 * If the specified find flag uses an inequality search like {@link Find#LESS_THAN}
+	 * or {@link Find#GREATER_THAN}, this method returns true, meaning that
+	 * the Notes API cannot return an exact number of matches.
+	 * 
+	 * @param findFlags find flags
+	 * @return true if exact number of matches can be returned
+	 */
+	public boolean canFindExactNumberOfMatches(EnumSet<Find> findFlags) {
+		if (findFlags.contains(Find.LESS_THAN)) {
+			return false;
+		}
+		else if (findFlags.contains(Find.GREATER_THAN)) {
+			return false;
+		}
+		else {
+			return true;
+		}
+	}
+	
+	/**
+	 * Container object for a collection lookup result
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	public static class FindResult {
+		private String m_position;
+		private int m_entriesFound;
+		private boolean m_hasExactNumberOfMatches;
+		
+		/**
+		 * Creates a new instance
+		 * 
+		 * @param position position of the first match
+		 * @param entriesFound number of entries found or 1 if hasExactNumberOfMatches is <code>false</code>
+		 * @param hasExactNumberOfMatches true if Notes was able to count the number of matches (e.g. for string key lookups with full or partial matches)
+		 */
+		public FindResult(String position, int entriesFound, boolean hasExactNumberOfMatches) {
+			m_position = position;
+			m_entriesFound = entriesFound;
+			m_hasExactNumberOfMatches = hasExactNumberOfMatches;
+		}
+
+		/**
+		 * Returns the number of entries found or 1 if hasExactNumberOfMatches is <code>false</code>
+		 * and any matches were found
+		 * 
+		 * @return count
+		 */
+		public int getEntriesFound() {
+			return m_entriesFound;
+		}
+
+		/**
+		 * Returns the position of the first match
+		 * 
+		 * @return position
+		 */
+		public String getPosition() {
+			return m_position;
+		}
+		
+		/**
+		 * Use this method to check whether Notes was able to count the number of matches
+		 * (e.g. for string key lookups with full or partial matches)
+		 * 
+		 * @return true if we have an exact match count
+		 */
+		public boolean hasExactNumberOfMatches() {
+			return m_hasExactNumberOfMatches;
+		}
+	}
+
+	/**
+	 * Returns the number of top level entries in the view
+	 * 
+	 * @return top level entries
+	 */
+	public int getTopLevelEntries() {
+		NotesViewLookupResultData lkData = readEntries(new NotesCollectionPosition("0"), EnumSet.of(Navigate.CURRENT), 0, EnumSet.of(Navigate.CURRENT), 0, EnumSet.of(ReadMask.COLLECTIONSTATS));
+		return lkData.getStats().getTopLevelEntries();
+	}
+	
+	/**
+	 * Computes aggregates like document counts, sums, min/max values or distinct value counts
+	 * of view columns, either for the whole view or per category.<br>
+	 * <br>
+	 * In contrast to reading all rows with {@link #getAllEntries(String, int, EnumSet, int, EnumSet, ViewLookupCallback)}
+	 * and summing up values in a callback, this method folds the column values directly from the
+	 * NIFReadEntries buffers into primitive accumulators without creating {@link NotesViewEntryData}
+	 * objects.<br>
+	 * If all specs use {@link NotesAggregateSpec.Function#COUNT}, we only read the note ids of the document rows
+	 * (plus the category values if grouping is requested) and count them; category rows are skipped. Column values
+	 * are not folded in this case.<br>
+	 * <br>
+	 * SUM and AVG use number columns, MIN and MAX number or date columns. Text values are only
+	 * used for DISTINCT_COUNT, where they are compared by their LMBCS data (case and accent sensitive).<br>
+	 * <br>
+	 * The descendant counts and column totals of category rows are not used: descendant counts include
+	 * response documents and subcategories, totals are only computed for columns with a totals
+	 * setting in the view design, and MIN, MAX and DISTINCT_COUNT have no equivalent there.
+	 * So we always read the document rows.<br>
+	 * <br>
+	 * Like the other read methods, the scan is restarted if the view index changes while reading, up to
+	 * 10 times (see {@link #aggregate(List, int, int)}).
+	 * 
+	 * @param columnSpecs aggregates to compute
+	 * @param groupByCategoryLevel 0 to compute a single group for the whole view, n to group by the first n category levels
+	 * @return result with one group per category path in view order
+	 */
+	public NotesAggregationResult aggregate(List<NotesAggregateSpec> columnSpecs, int groupByCategoryLevel) {
+		return aggregate(columnSpecs, groupByCategoryLevel, AGGREGATE_DEFAULT_MAX_RETRIES);
+	}
+	
+	/** Default number of scan restarts of {@link #aggregate(List, int)} */
+	private static final int AGGREGATE_DEFAULT_MAX_RETRIES = 10;
+	
+	/**
+	 * Computes aggregates like {@link #aggregate(List, int)} with a limit for the scan restarts
+	 * caused by view index changes. If the index still changes in the last allowed run, that run
+	 * is completed anyway and the result is flagged with {@link NotesAggregationResult#isConsistent()}
+	 * returning false, since entries may have been skipped or read twice.
+	 * 
+	 * @param columnSpecs aggregates to compute
+	 * @param groupByCategoryLevel 0 to compute a single group for the whole view, n to group by the first n category levels
+	 * @param maxRetries max number of restarts, 0 to never restart
+	 * @return result with one group per category path in view order
+	 */
+	public NotesAggregationResult aggregate(List<NotesAggregateSpec> columnSpecs, int groupByCategoryLevel, int maxRetries) {
+		checkHandle();
+		
+		if (maxRetries<0) {
+			throw new IllegalArgumentException("Max retries cannot be negative: "+maxRetries);
+		}
+		
+		if (columnSpecs==null || columnSpecs.isEmpty()) {
+			throw new IllegalArgumentException("No aggregate specs specified");
+		}
+		if (groupByCategoryLevel<0) {
+			throw new IllegalArgumentException("Category level cannot be negative: "+groupByCategoryLevel);
+		}
+		
+		int[] specColumnIndices = new int[columnSpecs.size()];
+		boolean countOnly = true;
+		for (int i=0; i<columnSpecs.size(); i++) {
+			NotesAggregateSpec currSpec = columnSpecs.get(i);
+			if (currSpec.getFunction() == NotesAggregateSpec.Function.COUNT) {
+				specColumnIndices[i] = -1;
+			}
+			else {
+				countOnly = false;
+				int colValuesIndex = getColumnValuesIndex(currSpec.getColumnName());
+				if (colValuesIndex==-1) {
+					throw new IllegalArgumentException("Column not found in view "+getName()+": "+currSpec.getColumnName());
+				}
+				if (colValuesIndex==65535) {
+					throw new IllegalArgumentException("Column "+currSpec.getColumnName()+" has a constant value that is not returned in the view data");
+				}
+				specColumnIndices[i] = colValuesIndex;
+			}
+		}
+		
+		List<Integer> categoryColumnIndicesList = new ArrayList<Integer>();
+		for (NotesViewColumn currCol : getColumns()) {
+			if (currCol.isCategory()) {
+				categoryColumnIndicesList.add(currCol.getColumnValuesIndex());
+			}
+		}
+		if (groupByCategoryLevel>0 && categoryColumnIndicesList.isEmpty()) {
+			throw new IllegalArgumentException("View "+getName()+" is not categorized");
+		}
+		int[] categoryColumnIndices = new int[categoryColumnIndicesList.size()];
+		for (int i=0; i<categoryColumnIndices.length; i++) {
+			categoryColumnIndices[i] = categoryColumnIndicesList.get(i);
+		}
+		
+		EnumSet<ReadMask> readMask = EnumSet.of(ReadMask.NOTEID, ReadMask.INDEXPOSITION);
+		if (!countOnly || groupByCategoryLevel>0) {
+			readMask.add(ReadMask.SUMMARYVALUES);
+		}
+
+		//category rows do not provide the values we need (see method comment), so we always read the document rows
+		EnumSet<Navigate> nav = EnumSet.of(Navigate.NEXT);
+		String startPosStr = "0";
+		int retries = 0;
+		
+		while (true) {
+			int initialIndexModified = getIndexModifiedSequenceNo();
+			boolean lastRun = retries >= maxRetries;
+			
+			AggregationContext ctx = new AggregationContext(new NotesAggregationResult(columnSpecs, groupByCategoryLevel),
+					columnSpecs, specColumnIndices, categoryColumnIndices, groupByCategoryLevel, countOnly, readMask);
+			NotesCollectionPosition pos = new NotesCollectionPosition(startPosStr);
+			
+			boolean viewModified = false;
+			boolean hasMoreToDo = true;
+			
+			while (hasMoreToDo) {
+				hasMoreToDo = readEntriesRaw(pos, nav, 1, nav, Integer.MAX_VALUE, readMask, ctx);
+				
+				if (!lastRun && initialIndexModified != getIndexModifiedSequenceNo()) {
+					viewModified = true;
+					break;
+				}
+			}
+			
+			if (viewModified) {
+				//view index was changed while reading; restart scan
+				retries++;
+				update();
+				continue;
+			}
+			
+			NotesAggregationResult result = ctx.getResult();
+			if (initialIndexModified != getIndexModifiedSequenceNo()) {
+				//retry limit reached, the last run has read a changing index
+				result.setConsistent(false);
+			}
+			return result;
+		}
+	}
+	
+	/**
+	 * Callback to process a NIFReadEntries buffer in place
+	 */
+	private static interface ILookupBufferVisitor {
+		
+		/**
+		 * Called with the locked lookup buffer; the buffer is freed after this call
+		 * 
+		 * @param bufferPtr buffer pointer
+		 * @param bufferLength length of the buffer in bytes
+		 * @param numEntriesSkipped number of entries skipped
+		 * @param numEntriesReturned number of entries in the buffer
+		 * @param signalFlags signal flags returned by NIFReadEntries
+		 */
+		void visit(Pointer bufferPtr, int bufferLength, int numEntriesSkipped, int numEntriesReturned, short signalFlags);
+		
+	}
+	
+	/**
+	 * Variant of {@link #readEntries(NotesCollectionPosition, EnumSet, int, EnumSet, int, EnumSet)}
+	 * that passes the raw lookup buffer to a visitor instead of decoding it into {@link NotesViewEntryData} objects
+	 * 
+	 * @param startPos start position for the scan; will be modified by the method to reflect the current position
+	 * @param skipNavigator navigator to use for the skip operation
+	 * @param skipCount number of entries to skip
+	 * @param returnNavigator navigator to use for the read operation
+	 * @param returnCount number of entries to read
+	 * @param returnMask bitmask of data to read
+	 * @param visitor visitor to process the buffer
+	 * @return true if there is more data to read
 	 */
-	public FindResult findByName(String name, EnumSet<Find> findFlags) {
+	private boolean readEntriesRaw(NotesCollectionPosition startPos, EnumSet<Navigate> skipNavigator, int skipCount,
+			EnumSet<Navigate> returnNavigator, int returnCount, EnumSet<ReadMask> returnMask, ILookupBufferVisitor visitor) {
 		checkHandle();
-		
-		Memory nameLMBCS = NotesStringUtils.toLMBCS(name, true);
 
-		IntByReference retNumMatches = new IntByReference();
-		NotesCollectionPositionStruct retIndexPos = NotesCollectionPositionStruct.newInstance();
-		short findFlagsBitMask = Find.toBitMask(findFlags);
+		IntByReference retNumEntriesSkipped = new IntByReference();
+		IntByReference retNumEntriesReturned = new IntByReference();
+		ShortByReference retSignalFlags = new ShortByReference();
+		ShortByReference retBufferLength = new ShortByReference();
+
+		short skipNavBitMask = Navigate.toBitMask(skipNavigator);
+		short returnNavBitMask = Navigate.toBitMask(returnNavigator);
+		int readMaskBitMask = ReadMask.toBitMask(returnMask);
+		
+		NotesCollectionPositionStruct startPosStruct = startPos.getAdapter(NotesCollectionPositionStruct.class);
+		
 		short result;
 		if (PlatformUtils.is64Bit()) {
-			result = NotesNativeAPI64.get().NIFFindByName(m_hCollection64, nameLMBCS, findFlagsBitMask, retIndexPos, retNumMatches);
+			LongByReference retBuffer = new LongByReference();
+			long nativeStart = m_lookupStats==null ? 0 : System.nanoTime();
+			result = NotesNativeAPI64.get().NIFReadEntries(m_hCollection64, startPosStruct, skipNavBitMask, skipCount,
+					returnNavBitMask, returnCount, readMaskBitMask, retBuffer, retBufferLength, retNumEntriesSkipped,
+					retNumEntriesReturned, retSignalFlags);
+			NotesErrorUtils.checkResult(result);
+			if (m_lookupStats!=null) {
+				m_lookupStats.addNativeRead(System.nanoTime() - nativeStart, retBufferLength.getValue() & 0xffff);
+			}
+			
+			long hBuffer = retBuffer.getValue();
+			if (hBuffer!=0) {
+				Pointer bufferPtr = Mem64.OSLockObject(hBuffer);
+				try {
+					int bufferLength = retBufferLength.getValue() & 0xffff;
+					if (bufferLength > 0) {
+						visitor.visit(bufferPtr, bufferLength, retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(),
+								retSignalFlags.getValue());
+					}
+				}
+				finally {
+					Mem64.OSUnlockObject(hBuffer);
+					result = Mem64.OSMemFree(hBuffer);
+					NotesErrorUtils.checkResult(result);
+				}
+			}
 		}
 		else {
-			result = NotesNativeAPI32.get().NIFFindByName(m_hCollection32, nameLMBCS, findFlagsBitMask, retIndexPos, retNumMatches);
-		}
-		if ((result & NotesConstants.ERR_MASK)==1028) {
-			return new FindResult("", 0, canFindExactNumberOfMatches(findFlags));
+			IntByReference retBuffer = new IntByReference();
+			long nativeStart = m_lookupStats==null ? 0 : System.nanoTime();
+			result = NotesNativeAPI32.get().NIFReadEntries(m_hCollection32, startPosStruct, skipNavBitMask, skipCount,
+					returnNavBitMask, returnCount, readMaskBitMask, retBuffer, retBufferLength, retNumEntriesSkipped,
+					retNumEntriesReturned, retSignalFlags);
+			NotesErrorUtils.checkResult(result);
+			if (m_lookupStats!=null) {
+				m_lookupStats.addNativeRead(System.nanoTime() - nativeStart, retBufferLength.getValue() & 0xffff);
+			}
+			
+			int hBuffer = retBuffer.getValue();
+			if (hBuffer!=0) {
+				Pointer bufferPtr = Mem32.OSLockObject(hBuffer);
+				try {
+					int bufferLength = retBufferLength.getValue() & 0xffff;
+					if (bufferLength > 0) {
+						visitor.visit(bufferPtr, bufferLength, retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(),
+								retSignalFlags.getValue());
+					}
+				}
+				finally {
+					Mem32.OSUnlockObject(hBuffer);
+					result = Mem32.OSMemFree(hBuffer);
+					NotesErrorUtils.checkResult(result);
+				}
+			}
 		}
-
-		NotesErrorUtils.checkResult(result);
-
-		int nMatchesFound = retNumMatches.getValue();
-
-		int[] retTumbler = retIndexPos.Tumbler;
-		short retLevel = retIndexPos.Level;
-		StringBuilder sb = new StringBuilder();
-		for (int i=0; i<=retLevel; i++) {
-			if (sb.length()>0)
-				sb.append(".");
-
-			sb.append(retTumbler[i]);
+		
+		if (retNumEntriesReturned.getValue()==0) {
+			return false;
 		}
-
-		String firstMatchPos = sb.toString();
-		return new FindResult(firstMatchPos, nMatchesFound, canFindExactNumberOfMatches(findFlags));
+		return (retSignalFlags.getValue() & NotesConstants.SIGNAL_MORE_TO_DO) == NotesConstants.SIGNAL_MORE_TO_DO;
 	}
-
+	
 	/**
-	 * If the specified find flag uses an inequality search like {@link Find#LESS_THAN}
-	 * or {@link Find#GREATER_THAN}, this method returns true, meaning that
-	 * the Notes API cannot return an exact number of matches.
-	 * 
-	 * @param findFlags find flags
-	 * @return true if exact number of matches can be returned
+	 * Walks the lookup buffers of {@link NotesCollection#aggregate(List, int)} and folds the
+	 * column values into the groups of a {@link NotesAggregationResult}
 	 */
-	public boolean canFindExactNumberOfMatches(EnumSet<Find> findFlags) {
-		if (findFlags.contains(Find.LESS_THAN)) {
-			return false;
+	private static class AggregationContext implements ILookupBufferVisitor {
+		private NotesAggregationResult m_result;
+		private NotesAggregateSpec.Function[] m_functions;
+		private int[] m_specColumnIndices;
+		private int[] m_categoryColumnIndices;
+		private int m_groupByLevel;
+		private boolean m_countOnly;
+		private boolean m_readSummary;
+		
+		private Object[] m_categoryPath;
+		private Map<List<Object>,NotesAggregationResult.Group> m_groupsByPath;
+		private NotesAggregationResult.Group m_currentGroup;
+		private int m_currentGroupDepth;
+		private int m_lastCategoryDepth;
+		private int[] m_valueOffsets = new int[0];
+		private int[] m_valueLengths = new int[0];
+		private int m_entriesRead;
+		
+		public AggregationContext(NotesAggregationResult result, List<NotesAggregateSpec> specs, int[] specColumnIndices,
+				int[] categoryColumnIndices, int groupByLevel, boolean countOnly, EnumSet<ReadMask> readMask) {
+			m_result = result;
+			m_functions = new NotesAggregateSpec.Function[specs.size()];
+			for (int i=0; i<m_functions.length; i++) {
+				m_functions[i] = specs.get(i).getFunction();
+			}
+			m_specColumnIndices = specColumnIndices;
+			m_categoryColumnIndices = categoryColumnIndices;
+			m_groupByLevel = groupByLevel;
+			m_countOnly = countOnly;
+			m_readSummary = readMask.contains(ReadMask.SUMMARYVALUES);
+			m_categoryPath = new Object[groupByLevel];
+			m_groupsByPath = new HashMap<List<Object>,NotesAggregationResult.Group>();
+			m_currentGroupDepth = -1;
 		}
-		else if (findFlags.contains(Find.GREATER_THAN)) {
-			return false;
+		
+		public NotesAggregationResult getResult() {
+			m_result.setEntriesRead(m_entriesRead);
+			return m_result;
 		}
-		else {
-			return true;
+		
+		@Override
+		public void visit(Pointer bufferPtr, int bufferLength, int numEntriesSkipped, int numEntriesReturned, short signalFlags) {
+			int bufferPos = 0;
+			
+			for (int i=0; i<numEntriesReturned; i++) {
+				m_entriesRead++;
+				
+				int noteId = bufferPtr.getInt(bufferPos);
+				bufferPos += 4;
+				
+				short level = bufferPtr.getShort(bufferPos);
+				int depth = level + 1;
+				bufferPos += 4 * (level + 2);
+				
+				int summaryPos = bufferPos;
+				int itemsCount = 0;
+				if (m_readSummary) {
+					int totalLength = bufferPtr.getShort(bufferPos) & 0xffff;
+					itemsCount = bufferPtr.getShort(bufferPos + 2) & 0xffff;
+					bufferPos += totalLength;
+				}
+				
+				if ((noteId & NotesConstants.NOTEID_CATEGORY_TOTAL) == NotesConstants.NOTEID_CATEGORY_TOTAL) {
+					//grand total row
+					continue;
+				}
+				
+				boolean isCategory = (noteId & NotesConstants.NOTEID_CATEGORY) == NotesConstants.NOTEID_CATEGORY;
+				if (isCategory) {
+					m_lastCategoryDepth = depth;
+					if (depth <= m_groupByLevel) {
+						computeValueOffsets(bufferPtr, summaryPos, itemsCount);
+						m_categoryPath[depth-1] = readCategoryValue(bufferPtr, itemsCount);
+						m_currentGroup = null;
+					}
+				}
+				else {
+					//response levels add to the depth, so limit it to the categories above the entry
+					NotesAggregationResult.Group group = getGroup(Math.min(depth - 1, m_lastCategoryDepth));
+					group.addDocuments(1);
+					
+					if (!m_countOnly) {
+						computeValueOffsets(bufferPtr, summaryPos, itemsCount);
+						
+						for (int s=0; s<m_functions.length; s++) {
+							int colIdx = m_specColumnIndices[s];
+							if (colIdx!=-1 && colIdx<itemsCount && m_valueOffsets[colIdx]!=-1) {
+								foldValue(group, s, bufferPtr, colIdx);
+							}
+						}
+					}
+				}
+			}
 		}
-	}
-	
-	/**
-	 * Container object for a collection lookup result
-	 * 
-	 * @author Karsten Lehmann
-	 */
-	public static class FindResult {
-		private String m_position;
-		private int m_entriesFound;
-		private boolean m_hasExactNumberOfMatches;
 		
 		/**
-		 * Creates a new instance
+		 * Returns the group for the current category path, creating it on first use. Documents
+		 * and responses at different depths below the same category share one group.
 		 * 
-		 * @param position position of the first match
-		 * @param entriesFound number of entries found or 1 if hasExactNumberOfMatches is <code>false</code>
-		 * @param hasExactNumberOfMatches true if Notes was able to count the number of matches (e.g. for string key lookups with full or partial matches)
+		 * @param categoryDepth number of categories above the entry
+		 * @return group
 		 */
-		public FindResult(String position, int entriesFound, boolean hasExactNumberOfMatches) {
-			m_position = position;
-			m_entriesFound = entriesFound;
-			m_hasExactNumberOfMatches = hasExactNumberOfMatches;
+		private NotesAggregationResult.Group getGroup(int categoryDepth) {
+			int groupDepth = Math.min(categoryDepth, m_groupByLevel);
+			if (m_currentGroup==null || m_currentGroupDepth!=groupDepth) {
+				List<Object> categoryValues = new ArrayList<Object>(groupDepth);
+				for (int i=0; i<groupDepth; i++) {
+					categoryValues.add(m_categoryPath[i]);
+				}
+				NotesAggregationResult.Group group = m_groupsByPath.get(categoryValues);
+				if (group==null) {
+					group = m_result.addGroup(categoryValues);
+					m_groupsByPath.put(categoryValues, group);
+				}
+				m_currentGroup = group;
+				m_currentGroupDepth = groupDepth;
+			}
+			return m_currentGroup;
 		}
-
+		
 		/**
-		 * Returns the number of entries found or 1 if hasExactNumberOfMatches is <code>false</code>
-		 * and any matches were found
+		 * Computes the buffer offsets (-1 for empty values) and data lengths of all summary values of an entry
 		 * 
-		 * @return count
+		 * @param bufferPtr buffer
+		 * @param summaryPos position of the ITEM_VALUE_TABLE
+		 * @param itemsCount number of values
 		 */
-		public int getEntriesFound() {
-			return m_entriesFound;
+		private void computeValueOffsets(Pointer bufferPtr, int summaryPos, int itemsCount) {
+			if (m_valueOffsets.length < itemsCount) {
+				m_valueOffsets = new int[itemsCount];
+				m_valueLengths = new int[itemsCount];
+			}
+			int lengthsPos = summaryPos + NotesConstants.itemValueTableSize;
+			int valuePos = lengthsPos + 2 * itemsCount;
+			for (int i=0; i<itemsCount; i++) {
+				//value lengths include the data type WORD
+				int valueLength = bufferPtr.getShort(lengthsPos + 2*i) & 0xffff;
+				m_valueOffsets[i] = valueLength==0 ? -1 : valuePos;
+				m_valueLengths[i] = valueLength==0 ? 0 : valueLength - 2;
+				valuePos += valueLength;
+			}
 		}
-
+		
 		/**
-		 * Returns the position of the first match
+		 * Decodes the value of a category row. Higher level category columns are empty
+		 * in lower level category rows, so we use the first non empty category column.
 		 * 
-		 * @return position
+		 * @param bufferPtr buffer
+		 * @param itemsCount number of values
+		 * @return value or null
 		 */
-		public String getPosition() {
-			return m_position;
+		private Object readCategoryValue(Pointer bufferPtr, int itemsCount) {
+			for (int colIdx : m_categoryColumnIndices) {
+				if (colIdx<itemsCount && m_valueOffsets[colIdx]!=-1) {
+					int offset = m_valueOffsets[colIdx];
+					int dataType = bufferPtr.getShort(offset) & 0xffff;
+					Pointer valuePtr = bufferPtr.share(offset + 2);
+					int valueLength = m_valueLengths[colIdx];
+					
+					if (dataType == NotesItem.TYPE_TEXT) {
+						return ItemDecoder.decodeTextValue(valuePtr, valueLength, false);
+					}
+					else if (dataType == NotesItem.TYPE_TEXT_LIST) {
+						return valueLength==0 ? Collections.emptyList() : ItemDecoder.decodeTextListValue(valuePtr, false);
+					}
+					else if (dataType == NotesItem.TYPE_NUMBER) {
+						return ItemDecoder.decodeNumber(valuePtr, valueLength);
+					}
+					else if (dataType == NotesItem.TYPE_NUMBER_RANGE) {
+						return ItemDecoder.decodeNumberList(valuePtr, valueLength);
+					}
+					else if (dataType == NotesItem.TYPE_TIME) {
+						return ItemDecoder.decodeTimeDateAsNotesTimeDate(valuePtr, valueLength);
+					}
+					else if (dataType == NotesItem.TYPE_TIME_RANGE) {
+						return ItemDecoder.decodeTimeDateListAsNotesTimeDate(valuePtr);
+					}
+					return null;
+				}
+			}
+			return null;
 		}
 		
 		/**
-		 * Use this method to check whether Notes was able to count the number of matches
-		 * (e.g. for string key lookups with full or partial matches)
+		 * Adds the value of a column to the accumulators of a spec
 		 * 
-		 * @return true if we have an exact match count
+		 * @param group group
+		 * @param specIdx index of spec
+		 * @param bufferPtr buffer
+		 * @param colIdx column values index
 		 */
-		public boolean hasExactNumberOfMatches() {
-			return m_hasExactNumberOfMatches;
+		private void foldValue(NotesAggregationResult.Group group, int specIdx, Pointer bufferPtr, int colIdx) {
+			int offset = m_valueOffsets[colIdx];
+			int dataType = bufferPtr.getShort(offset) & 0xffff;
+			int valuePos = offset + 2;
+			NotesAggregateSpec.Function function = m_functions[specIdx];
+			
+			if (dataType == NotesItem.TYPE_NUMBER) {
+				double numVal = bufferPtr.getDouble(valuePos);
+				if (function == NotesAggregateSpec.Function.DISTINCT_COUNT) {
+					group.addDistinctNumber(specIdx, numVal);
+				}
+				else {
+					group.addNumber(specIdx, numVal);
+				}
+			}
+			else if (dataType == NotesItem.TYPE_NUMBER_RANGE) {
+				int listEntries = bufferPtr.getShort(valuePos) & 0xffff;
+				int listPos = valuePos + NotesConstants.rangeSize;
+				for (int i=0; i<listEntries; i++) {
+					double numVal = bufferPtr.getDouble(listPos + 8*i);
+					if (function == NotesAggregateSpec.Function.DISTINCT_COUNT) {
+						group.addDistinctNumber(specIdx, numVal);
+					}
+					else {
+						group.addNumber(specIdx, numVal);
+					}
+				}
+			}
+			else if (dataType == NotesItem.TYPE_TIME) {
+				foldTimeValue(group, specIdx, function, bufferPtr.getInt(valuePos), bufferPtr.getInt(valuePos + 4));
+			}
+			else if (dataType == NotesItem.TYPE_TIME_RANGE) {
+				int listEntries = bufferPtr.getShort(valuePos) & 0xffff;
+				int listPos = valuePos + NotesConstants.rangeSize;
+				for (int i=0; i<listEntries; i++) {
+					int entryPos = listPos + NotesConstants.timeDateSize*i;
+					foldTimeValue(group, specIdx, function, bufferPtr.getInt(entryPos), bufferPtr.getInt(entryPos + 4));
+				}
+			}
+			else if (function == NotesAggregateSpec.Function.DISTINCT_COUNT) {
+				if (dataType == NotesItem.TYPE_TEXT) {
+					int valueLength = m_valueLengths[colIdx];
+					group.addDistinctText(specIdx, new LMBCSString(bufferPtr.getByteArray(valuePos, valueLength)));
+				}
+				else if (dataType == NotesItem.TYPE_TEXT_LIST) {
+					//LIST header with number of entries, followed by the entry lengths and the text data
+					int listEntries = bufferPtr.getShort(valuePos) & 0xffff;
+					int textPos = valuePos + 2 + 2*listEntries;
+					for (int i=0; i<listEntries; i++) {
+						int textLength = bufferPtr.getShort(valuePos + 2 + 2*i) & 0xffff;
+						group.addDistinctText(specIdx, new LMBCSString(bufferPtr.getByteArray(textPos, textLength)));
+						textPos += textLength;
+					}
+				}
+			}
+		}
+		
+		private void foldTimeValue(NotesAggregationResult.Group group, int specIdx, NotesAggregateSpec.Function function,
+				int innards0, int innards1) {
+			//Innards[1] contains the julian day in the lower 24 bits, Innards[0] the ticks (1/100 s) since midnight GMT
+			long ticks = innards0==NotesConstants.ALLDAY ? 0 : (innards0 & 0xffffffffL);
+			long comparableValue = (innards1 & 0xffffffL) * 8640000L + ticks;
+			
+			if (function == NotesAggregateSpec.Function.DISTINCT_COUNT) {
+				group.addDistinctTime(specIdx, comparableValue);
+			}
+			else if (function == NotesAggregateSpec.Function.MIN || function == NotesAggregateSpec.Function.MAX) {
+				group.addTime(specIdx, comparableValue, innards0, innards1);
+			}
 		}
-	}
-
-	/**
-	 * Returns the number of top level entries in the view
-	 * 
-	 * @return top level entries
-	 */
-	public int getTopLevelEntries() {
-		NotesViewLookupResultData lkData = readEntries(new NotesCollectionPosition("0"), EnumSet.of(Navigate.CURRENT), 0, EnumSet.of(Navigate.CURRENT), 0, EnumSet.of(ReadMask.COLLECTIONSTATS));
-		return lkData.getStats().getTopLevelEntries();
 	}
 	
 	/**
@@ -3087,6 +4693,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 		short result;
 		if (PlatformUtils.is64Bit()) {
 			LongByReference retBuffer = new LongByReference();
+			long nativeStart = m_lookupStats==null ? 0 : System.nanoTime();
 			result = NotesNativeAPI64.get().NIFReadEntries(m_hCollection64, // hCollection
 					startPosStruct, // IndexPos
 					skipNavBitMask, // SkipNavigator
@@ -3100,6 +4707,9 @@ public class NotesCollection implements IRecyclableNotesObject {
 					retNumEntriesReturned, // retNumEntriesReturned
 					retSignalFlags // retSignalFlags
 					);
+			if (m_lookupStats!=null) {
+				m_lookupStats.addNativeRead(System.nanoTime() - nativeStart, retBufferLength.getValue() & 0xffff);
+			}
 			NotesErrorUtils.checkResult(result);
 			
 			int indexModifiedSequenceNo = getIndexModifiedSequenceNo();
@@ -3112,14 +4722,19 @@ public class NotesCollection implements IRecyclableNotesObject {
 				boolean convertStringsLazily = true;
 				boolean convertNotesTimeDateToCalendar = false;
 				
+				long decodeStart = m_lookupStats==null ? 0 : System.nanoTime();
 				NotesViewLookupResultData viewData = NotesLookupResultBufferDecoder.b64_decodeCollectionLookupResultBuffer(this, retBuffer.getValue(),
 						retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), returnMask, retSignalFlags.getValue(), null,
 						indexModifiedSequenceNo, null, convertStringsLazily, convertNotesTimeDateToCalendar, null);
+				if (m_lookupStats!=null) {
+					m_lookupStats.addDecoded(viewData.getEntries().size(), System.nanoTime() - decodeStart);
+				}
 				return viewData;
 			}
 		}
 		else {
 			IntByReference retBuffer = new IntByReference();
+			long nativeStart = m_lookupStats==null ? 0 : System.nanoTime();
 			result = NotesNativeAPI32.get().NIFReadEntries(m_hCollection32, // hCollection
 					startPosStruct, // IndexPos
 					skipNavBitMask, // SkipNavigator
@@ -3133,6 +4748,9 @@ public class NotesCollection implements IRecyclableNotesObject {
 					retNumEntriesReturned, // retNumEntriesReturned
 					retSignalFlags // retSignalFlags
 					);
+			if (m_lookupStats!=null) {
+				m_lookupStats.addNativeRead(System.nanoTime() - nativeStart, retBufferLength.getValue() & 0xffff);
+			}
 			NotesErrorUtils.checkResult(result);
 			
 			int indexModifiedSequenceNo = getIndexModifiedSequenceNo();
@@ -3145,9 +4763,13 @@ public class NotesCollection implements IRecyclableNotesObject {
 				boolean convertStringsLazily = true;
 				boolean convertNotesTimeDateToCalendar = false;
 				
+				long decodeStart = m_lookupStats==null ? 0 : System.nanoTime();
 				NotesViewLookupResultData viewData = NotesLookupResultBufferDecoder.b32_decodeCollectionLookupResultBuffer(this, retBuffer.getValue(),
 						retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), returnMask, retSignalFlags.getValue(), null,
 						indexModifiedSequenceNo, null, convertStringsLazily, convertNotesTimeDateToCalendar, null);
+				if (m_lookupStats!=null) {
+					m_lookupStats.addDecoded(viewData.getEntries().size(), System.nanoTime() - decodeStart);
+				}
 				return viewData;
 			}
 		}
@@ -3209,6 +4831,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 		short result;
 		if (PlatformUtils.is64Bit()) {
 			LongByReference retBuffer = new LongByReference();
+			long nativeStart = m_lookupStats==null ? 0 : System.nanoTime();
 			result = NotesNativeAPI64.get().NIFReadEntriesExt(m_hCollection64, startPosStruct,
 					skipNavBitMask,
 					skipCount, returnNavBitMask, returnCount, readMaskBitMask,
@@ -3216,6 +4839,9 @@ public class NotesCollection implements IRecyclableNotesObject {
 					retNumEntriesSkipped, retNumEntriesReturned, retSignalFlags,
 					retDiffTimeStruct, retModifiedTimeStruct, retSequence);
 			
+			if (m_lookupStats!=null) {
+				m_lookupStats.addNativeRead(System.nanoTime() - nativeStart, retBufferLength.getValue() & 0xffff);
+			}
 			if ((result & NotesConstants.ERR_MASK)!=1028) {
 				NotesErrorUtils.checkResult(result);
 			}
@@ -3234,14 +4860,19 @@ public class NotesCollection implements IRecyclableNotesObject {
 				boolean convertStringsLazily = true;
 				boolean convertNotesTimeDateToCalendar = false;
 				
+				long decodeStart = m_lookupStats==null ? 0 : System.nanoTime();
 				NotesViewLookupResultData viewData = NotesLookupResultBufferDecoder.b64_decodeCollectionLookupResultBuffer(this, retBuffer.getValue(),
 						retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), returnMask, retSignalFlags.getValue(), null,
 						indexModifiedSequenceNo, retDiffTimeWrap, convertStringsLazily, convertNotesTimeDateToCalendar, singleColumnLookupName);
+				if (m_lookupStats!=null) {
+					m_lookupStats.addDecoded(viewData.getEntries().size(), System.nanoTime() - decodeStart);
+				}
 				return viewData;
 			}
 		}
 		else {
 			IntByReference retBuffer = new IntByReference();
+			long nativeStart = m_lookupStats==null ? 0 : System.nanoTime();
 			result = NotesNativeAPI32.get().NIFReadEntriesExt(m_hCollection32, startPosStruct,
 					skipNavBitMask,
 					skipCount, returnNavBitMask, returnCount, readMaskBitMask,
@@ -3249,6 +4880,9 @@ public class NotesCollection implements IRecyclableNotesObject {
 					retNumEntriesSkipped, retNumEntriesReturned, retSignalFlags,
 					retDiffTimeStruct, retModifiedTimeStruct, retSequence);
 
+			if (m_lookupStats!=null) {
+				m_lookupStats.addNativeRead(System.nanoTime() - nativeStart, retBufferLength.getValue() & 0xffff);
+			}
 			if ((result & NotesConstants.ERR_MASK)!=1028) {
 				NotesErrorUtils.checkResult(result);
 			}
@@ -3266,9 +4900,13 @@ public class NotesCollection implements IRecyclableNotesObject {
 				boolean convertStringsLazily = true;
 				boolean convertNotesTimeDateToCalendar = false;
 				
+				long decodeStart = m_lookupStats==null ? 0 : System.nanoTime();
 				NotesViewLookupResultData viewData = NotesLookupResultBufferDecoder.b32_decodeCollectionLookupResultBuffer(this, retBuffer.getValue(),
 						retNumEntriesSkipped.getValue(), retNumEntriesReturned.getValue(), returnMask, retSignalFlags.getValue(), null,
 						indexModifiedSequenceNo, retDiffTimeWrap, convertStringsLazily, convertNotesTimeDateToCalendar, singleColumnLookupName);
+				if (m_lookupStats!=null) {
+					m_lookupStats.addDecoded(viewData.getEntries().size(), System.nanoTime() - decodeStart);
+				}
 				return viewData;
 			}
 		}
@@ -3547,6 +5185,65 @@ public class NotesCollection implements IRecyclableNotesObject {
 		return m_viewNote;
 	}
 	
+	/**
+	 * Returns the decoded data of the view design note. Uses the JVM-wide {@link NotesViewMetadataCache}
+	 * if enabled, so that the design note only gets opened once per design change.
+	 * 
+	 * @return view design data
+	 */
+	private ViewMetadata getDesignMetadata() {
+		if (m_designMetadata==null) {
+			String cacheKey = null;
+			if (NotesViewMetadataCache.isEnabled()) {
+				NotesTimeDate sequenceTime = m_parentDb.getNoteInfoExt(m_viewNoteId).getSequenceTime();
+				cacheKey = NotesViewMetadataCache.getKey(m_parentDb.getReplicaID(), m_viewUNID, sequenceTime);
+				m_designMetadata = NotesViewMetadataCache.get(cacheKey);
+			}
+			
+			if (m_designMetadata==null) {
+				m_designMetadata = readDesignMetadata();
+				if (cacheKey!=null) {
+					NotesViewMetadataCache.put(cacheKey, m_designMetadata);
+				}
+			}
+		}
+		return m_designMetadata;
+	}
+	
+	/**
+	 * Reads and decodes the items of the view design note
+	 * 
+	 * @return view design data
+	 */
+	private ViewMetadata readDesignMetadata() {
+		NotesNote viewNote = getViewNote();
+		
+		String title = viewNote.getItemValueString("$TITLE");
+		
+		List<Object> formulaObj = viewNote.getItemValue("$FORMULA");
+		String formula = formulaObj!=null && !formulaObj.isEmpty() ? formulaObj.get(0).toString() : "";
+		
+		String designFlags = viewNote.getItemValueString(NotesConstants.DESIGN_FLAGS);
+		
+		Map<Integer,NotesCollationInfo> collations = new TreeMap<Integer,NotesCollationInfo>();
+		int colNo = 0;
+		while (viewNote.hasItem("$Collation"+(colNo==0 ? "" : colNo))) {
+			List<Object> collationInfoList = viewNote.getItemValue("$Collation"+(colNo==0 ? "" : colNo));
+			if (collationInfoList!=null && !collationInfoList.isEmpty()) {
+				collations.put(colNo, (NotesCollationInfo) collationInfoList.get(0));
+			}
+			colNo++;
+		}
+		
+		NotesViewFormat format = null;
+		List<Object> viewFormatList = viewNote.getItemValue("$VIEWFORMAT");
+		if (viewFormatList!=null && !viewFormatList.isEmpty()) {
+			format = (NotesViewFormat) viewFormatList.get(0);
+		}
+		
+		return new ViewMetadata(title==null ? "" : title, formula, designFlags==null ? "" : designFlags, format, collations);
+	}
+	
 	/**
 	 * New method to read information about view columns and sortings using C methods
 	 */
@@ -3562,44 +5259,35 @@ public class NotesCollection implements IRecyclableNotesObject {
 		m_columnTitlesLCByIndex = new TreeMap<Integer, String>();
 		m_columnTitlesByIndex = new TreeMap<Integer, String>();
 
-		NotesNote viewNote = getViewNote();
+		ViewMetadata metadata = getDesignMetadata();
 		
 		//read collations
 		CollationInfo collationInfo = new CollationInfo();
 
-		int colNo = 0;
-		boolean readCollations = false;
-		
-		while (viewNote.hasItem("$Collation"+(colNo==0 ? "" : colNo))) {
-			List<Object> collationInfoList = viewNote.getItemValue("$Collation"+(colNo==0 ? "" : colNo));
-			if (collationInfoList!=null && !collationInfoList.isEmpty()) {
-				readCollations = true;
-				
-				NotesCollationInfo colInfo = (NotesCollationInfo) collationInfoList.get(0);
+		for (Entry<Integer,NotesCollationInfo> currEntry : metadata.getCollations().entrySet()) {
+			int colNo = currEntry.getKey();
+			NotesCollationInfo colInfo = currEntry.getValue();
+			
+			List<NotesCollateDescriptor> collateDescList = colInfo.getDescriptors();
+			if (!collateDescList.isEmpty()) {
+				NotesCollateDescriptor firstCollateDesc = collateDescList.get(0);
+				String currItemName = firstCollateDesc.getName();
+				Direction currDirection = firstCollateDesc.getDirection();
 				
-				List<NotesCollateDescriptor> collateDescList = colInfo.getDescriptors();
-				if (!collateDescList.isEmpty()) {
-					NotesCollateDescriptor firstCollateDesc = collateDescList.get(0);
-					String currItemName = firstCollateDesc.getName();
-					Direction currDirection = firstCollateDesc.getDirection();
-					
-					collationInfo.addCollation((short) colNo, currItemName, currDirection);
-				}
+				collationInfo.addCollation((short) colNo, currItemName, currDirection, colInfo);
 			}
-			colNo++;
 		}
 		
 		m_collationInfo = collationInfo;
 
-		if (!readCollations) {
+		if (metadata.getCollations().isEmpty()) {
 			throw new AssertionError("View note with UNID "+m_viewUNID+" contains collations");
 		}
 		
 		
 		//read view columns
-		List<Object> viewFormatList = viewNote.getItemValue("$VIEWFORMAT");
-		if (viewFormatList!=null && !viewFormatList.isEmpty()) {
-			NotesViewFormat format = (NotesViewFormat) viewFormatList.get(0);
+		NotesViewFormat format = metadata.getViewFormat();
+		if (format!=null) {
 			m_viewFormat = format;
 			List<NotesViewColumn> columns = format.getColumns();
 			
@@ -3656,6 +5344,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 		private Map<String,Short> m_descendingLookup;
 		private Map<Short,String> m_collationSortItem;
 		private Map<Short,Direction> m_collationSorting;
+		private Map<Short,NotesCollationInfo> m_collationInfos;
 		private int m_nrOfCollations;
 		
 		/**
@@ -3666,6 +5355,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 			m_descendingLookup = new HashMap<String,Short>();
 			m_collationSortItem = new HashMap<Short, String>();
 			m_collationSorting = new HashMap<Short, NotesCollection.Direction>();
+			m_collationInfos = new HashMap<Short, NotesCollationInfo>();
 		}
 		
 		/**
@@ -3674,8 +5364,9 @@ public class NotesCollection implements IRecyclableNotesObject {
 		 * @param collation collation index
 		 * @param itemName sort item name
 		 * @param direction sort direction
+		 * @param info decoded collation with all sort descriptors
 		 */
-		void addCollation(short collation, String itemName, Direction direction) {
+		void addCollation(short collation, String itemName, Direction direction, NotesCollationInfo info) {
 			String itemNameLC = itemName.toLowerCase();
 			if (direction == Direction.Ascending) {
 				m_ascendingLookup.put(itemNameLC, Short.valueOf(collation));
@@ -3686,6 +5377,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 			m_nrOfCollations = Math.max(m_nrOfCollations, collation);
 			m_collationSorting.put(collation, direction);
 			m_collationSortItem.put(collation, itemNameLC);
+			m_collationInfos.put(collation, info);
 		}
 		
 		/**
@@ -3730,6 +5422,16 @@ public class NotesCollection implements IRecyclableNotesObject {
 			return sortItem;
 		}
 		
+		/**
+		 * Returns the decoded collation with all its sort descriptors
+		 * 
+		 * @param collation collation index
+		 * @return collation or null if unknown
+		 */
+		public NotesCollationInfo getCollationInfo(int collation) {
+			return m_collationInfos.get(Short.valueOf((short)collation));
+		}
+		
 		/**
 		 * Returns the sort direction of a collation
 		 * 
@@ -3832,8 +5534,7 @@ public class NotesCollection implements IRecyclableNotesObject {
 	 * @return true if folder
 	 */
 	public boolean isFolder() {
-		NotesNote viewNote = getViewNote();
-		String flags = viewNote.getItemValueString(NotesConstants.DESIGN_FLAGS);
+		String flags = getDesignMetadata().getDesignFlags();
 		return flags.contains(NotesConstants.DESIGN_FLAG_FOLDER_VIEW);
 	}
 	
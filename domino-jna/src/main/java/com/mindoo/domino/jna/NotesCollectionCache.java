@@ -0,0 +1,203 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.mindoo.domino.jna.NotesDatabase.NoteInfoExt;
+import com.mindoo.domino.jna.constants.OpenCollection;
+
+/**
+ * Cache of open {@link NotesCollection} handles for one {@link NotesDatabase},
+ * see {@link NotesDatabase#enableCollectionCache(int)}.<br>
+ * <br>
+ * Idle collections are pooled by view note id, open flags and user. Every checkout compares
+ * the sequence number of the view design note with the one we had when the collection
+ * was opened, so that design changes are picked up, and calls {@link NotesCollection#update()}
+ * before the collection is returned.
+ * 
+ * @author Karsten Lehmann
+ */
+class NotesCollectionCache {
+	private NotesDatabase m_parentDb;
+	private int m_maxIdlePerView;
+	/** view note ids by lowercase view name or UNID */
+	private Map<String,Integer> m_viewNoteIdsByName;
+	/** idle collections by pool key */
+	private Map<String,Deque<PooledCollection>> m_idleCollections;
+	/** checked out collections */
+	private Map<NotesCollection,PooledCollection> m_checkedOut;
+	private long m_hits;
+	private long m_misses;
+	
+	NotesCollectionCache(NotesDatabase parentDb, int maxIdlePerView) {
+		if (maxIdlePerView<1) {
+			throw new IllegalArgumentException("Pool size must be at least 1");
+		}
+		m_parentDb = parentDb;
+		m_maxIdlePerView = maxIdlePerView;
+		m_viewNoteIdsByName = new TreeMap<String,Integer>(String.CASE_INSENSITIVE_ORDER);
+		m_idleCollections = new HashMap<String,Deque<PooledCollection>>();
+		m_checkedOut = new IdentityHashMap<NotesCollection,PooledCollection>();
+	}
+	
+	/**
+	 * Returns an open collection from the pool or opens a new one
+	 * 
+	 * @param viewNameOrUNID view name, alias or design note UNID
+	 * @param openFlagSet open flags
+	 * @return collection or null if not found
+	 */
+	synchronized NotesCollection checkout(String viewNameOrUNID, EnumSet<OpenCollection> openFlagSet) {
+		int viewNoteId = findViewNoteId(viewNameOrUNID);
+		if (viewNoteId==0) {
+			return null;
+		}
+		
+		NoteInfoExt viewNoteInfo = m_parentDb.getNoteInfoExt(viewNoteId);
+		if (!viewNoteInfo.exists() || viewNoteInfo.isDeleted()) {
+			//view has been deleted, maybe replaced by a new one with the same name
+			m_viewNoteIdsByName.remove(viewNameOrUNID);
+			viewNoteId = findViewNoteId(viewNameOrUNID);
+			if (viewNoteId==0) {
+				return null;
+			}
+			viewNoteInfo = m_parentDb.getNoteInfoExt(viewNoteId);
+		}
+		int designSequence = viewNoteInfo.getSequence();
+		
+		String poolKey = getPoolKey(viewNoteId, openFlagSet);
+		Deque<PooledCollection> idle = m_idleCollections.get(poolKey);
+		if (idle!=null) {
+			PooledCollection pooled;
+			while ((pooled = idle.pollFirst())!=null) {
+				if (pooled.m_collection.isRecycled()) {
+					//recycled by NotesGC or by the caller
+					continue;
+				}
+				if (pooled.m_designSequence!=designSequence) {
+					//view design has changed
+					pooled.m_collection.recycle();
+					continue;
+				}
+				pooled.m_collection.update();
+				m_checkedOut.put(pooled.m_collection, pooled);
+				m_hits++;
+				return pooled.m_collection;
+			}
+		}
+		
+		m_misses++;
+		NotesCollection col = m_parentDb.openCollection(viewNoteId, openFlagSet);
+		m_checkedOut.put(col, new PooledCollection(col, poolKey, designSequence));
+		return col;
+	}
+	
+	/**
+	 * Returns a collection to the pool. If the pool for the view is full or the collection has
+	 * not been checked out via {@link #checkout(String, EnumSet)}, it gets recycled.
+	 * 
+	 * @param col collection
+	 */
+	synchronized void checkin(NotesCollection col) {
+		PooledCollection pooled = m_checkedOut.remove(col);
+		if (col.isRecycled()) {
+			return;
+		}
+		if (pooled==null) {
+			col.recycle();
+			return;
+		}
+		
+		//make sure the next reader gets the collection in its initial state
+		col.clearSearch();
+		col.resetViewSortingToDefault();
+		
+		Deque<PooledCollection> idle = m_idleCollections.get(pooled.m_poolKey);
+		if (idle==null) {
+			idle = new ArrayDeque<PooledCollection>();
+			m_idleCollections.put(pooled.m_poolKey, idle);
+		}
+		if (idle.size() >= m_maxIdlePerView) {
+			col.recycle();
+		}
+		else {
+			idle.addFirst(pooled);
+		}
+	}
+	
+	/**
+	 * Recycles all idle collections and clears the name lookup cache. Collections that are
+	 * currently checked out are recycled when they get checked in.
+	 */
+	synchronized void clear() {
+		for (Deque<PooledCollection> currIdle : m_idleCollections.values()) {
+			for (PooledCollection currPooled : currIdle) {
+				if (!currPooled.m_collection.isRecycled()) {
+					currPooled.m_collection.recycle();
+				}
+			}
+		}
+		m_idleCollections.clear();
+		m_viewNoteIdsByName.clear();
+		
+		//unknown collections get recycled on checkin
+		m_checkedOut.clear();
+	}
+	
+	/**
+	 * Returns the number of checkouts served from the pool
+	 * 
+	 * @return hits
+	 */
+	synchronized long getHits() {
+		return m_hits;
+	}
+	
+	/**
+	 * Returns the number of checkouts that opened a new collection
+	 * 
+	 * @return misses
+	 */
+	synchronized long getMisses() {
+		return m_misses;
+	}
+	
+	private int findViewNoteId(String viewNameOrUNID) {
+		Integer viewNoteId = m_viewNoteIdsByName.get(viewNameOrUNID);
+		if (viewNoteId==null) {
+			if (viewNameOrUNID.length()==32 && viewNameOrUNID.matches("[0-9a-fA-F]+")) {
+				viewNoteId = m_parentDb.toNoteId(viewNameOrUNID);
+			}
+			else {
+				viewNoteId = m_parentDb.findCollection(viewNameOrUNID);
+			}
+			if (viewNoteId!=0) {
+				m_viewNoteIdsByName.put(viewNameOrUNID, viewNoteId);
+			}
+		}
+		return viewNoteId;
+	}
+	
+	private String getPoolKey(int viewNoteId, EnumSet<OpenCollection> openFlagSet) {
+		short openFlags = openFlagSet==null ? 0 : OpenCollection.toBitMask(openFlagSet);
+		String user = m_parentDb.getContextUser();
+		return viewNoteId + "|" + openFlags + "|" + (user==null ? "" : user);
+	}
+	
+	private static class PooledCollection {
+		private NotesCollection m_collection;
+		private String m_poolKey;
+		private int m_designSequence;
+		
+		public PooledCollection(NotesCollection collection, String poolKey, int designSequence) {
+			m_collection = collection;
+			m_poolKey = poolKey;
+			m_designSequence = designSequence;
+		}
+	}
+}
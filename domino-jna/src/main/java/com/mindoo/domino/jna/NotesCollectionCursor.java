@@ -0,0 +1,230 @@
+package com.mindoo.domino.jna;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.EnumSet;
+
+import com.mindoo.domino.jna.NotesCollection.Direction;
+import com.mindoo.domino.jna.NotesCollection.ViewLookupCallback;
+
+/**
+ * Opaque cursor to page through a {@link NotesCollection} without growing skip counts,
+ * e.g. for REST APIs.<br>
+ * <br>
+ * The cursor stores the position, note id and sort key of the last entry of a page together with
+ * the index modified sequence number and the sort column/direction of the view. The next page is read with
+ * {@link NotesCollection#getAllEntriesAfterCursor(NotesCollectionCursor, EnumSet, int, EnumSet, ViewLookupCallback)}
+ * with a skip count of 1 from that position, so deep pages cost the same as the first page.
+ * If the view index has changed in the meantime, the position gets re-located via the note id
+ * or the sort key. A cursor can only be used with the sorting that was active when it was created.<br>
+ * <br>
+ * Use {@link #toString()} to get a URL safe string representation and {@link #parse(String)}
+ * to restore the cursor.
+ * 
+ * @author Karsten Lehmann
+ */
+public class NotesCollectionCursor {
+	private static final String VERSION = "2";
+	
+	private String m_viewUNID;
+	private String m_position;
+	private int m_noteId;
+	private Object m_sortKey;
+	private int m_indexModifiedSequenceNo;
+	private String m_sortColumn;
+	private Direction m_sortDirection;
+	private String m_toString;
+	
+	/**
+	 * Creates a new cursor
+	 * 
+	 * @param viewUNID UNID of the view design note
+	 * @param position position of the last entry read
+	 * @param noteId note id of the last entry read, for categories the category note id with {@link com.mindoo.domino.jna.internal.NotesConstants#NOTEID_CATEGORY} set
+	 * @param sortKey value of the first sorted column of the last entry read ({@link String} or {@link Number}) or null
+	 * @param indexModifiedSequenceNo index modified sequence number when the entry was read
+	 */
+	public NotesCollectionCursor(String viewUNID, String position, int noteId, Object sortKey, int indexModifiedSequenceNo) {
+		this(viewUNID, position, noteId, sortKey, indexModifiedSequenceNo, null, null);
+	}
+	
+	/**
+	 * Creates a new cursor
+	 * 
+	 * @param viewUNID UNID of the view design note
+	 * @param position position of the last entry read
+	 * @param noteId note id of the last entry read, for categories the category note id with {@link com.mindoo.domino.jna.internal.NotesConstants#NOTEID_CATEGORY} set
+	 * @param sortKey value of the first sorted column of the last entry read ({@link String} or {@link Number}) or null
+	 * @param indexModifiedSequenceNo index modified sequence number when the entry was read
+	 * @param sortColumn programmatic name of the column the view has been resorted by or null for the default sorting
+	 * @param sortDirection direction of the resort or null for the default sorting
+	 */
+	public NotesCollectionCursor(String viewUNID, String position, int noteId, Object sortKey, int indexModifiedSequenceNo,
+			String sortColumn, Direction sortDirection) {
+		if (sortKey!=null && !(sortKey instanceof String) && !(sortKey instanceof Number)) {
+			throw new IllegalArgumentException("Unsupported sort key type: "+sortKey.getClass().getName());
+		}
+		m_viewUNID = viewUNID;
+		m_position = position;
+		m_noteId = noteId;
+		m_sortKey = sortKey instanceof Number ? Double.valueOf(((Number)sortKey).doubleValue()) : sortKey;
+		m_indexModifiedSequenceNo = indexModifiedSequenceNo;
+		m_sortColumn = sortColumn==null || sortColumn.length()==0 ? null : sortColumn;
+		m_sortDirection = m_sortColumn==null ? null : sortDirection;
+	}
+	
+	/**
+	 * Restores a cursor from its string representation returned by {@link #toString()}
+	 * 
+	 * @param cursorStr cursor string
+	 * @return cursor
+	 * @throws IllegalArgumentException if the string is not a valid cursor
+	 */
+	public static NotesCollectionCursor parse(String cursorStr) {
+		String decoded;
+		try {
+			decoded = new String(Base64.getUrlDecoder().decode(cursorStr), StandardCharsets.UTF_8);
+		}
+		catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid cursor: "+cursorStr, e);
+		}
+		
+		//sort key is last, because it may contain the separator character
+		String[] parts = decoded.split("\\|", 8);
+		if (parts.length!=8 || !VERSION.equals(parts[0])) {
+			throw new IllegalArgumentException("Invalid cursor: "+cursorStr);
+		}
+		
+		try {
+			String viewUNID = parts[1];
+			String position = parts[2];
+			int noteId = Integer.parseUnsignedInt(parts[3], 16);
+			int indexModifiedSequenceNo = Integer.parseInt(parts[4]);
+			String sortColumn = parts[5];
+			Direction sortDirection;
+			if (parts[6].length()==0) {
+				sortDirection = null;
+			}
+			else if ("a".equals(parts[6])) {
+				sortDirection = Direction.Ascending;
+			}
+			else if ("d".equals(parts[6])) {
+				sortDirection = Direction.Descending;
+			}
+			else {
+				throw new IllegalArgumentException("Invalid cursor: "+cursorStr);
+			}
+			
+			Object sortKey;
+			String sortKeyStr = parts[7];
+			if (sortKeyStr.length()==0) {
+				sortKey = null;
+			}
+			else if (sortKeyStr.startsWith("s:")) {
+				sortKey = sortKeyStr.substring(2);
+			}
+			else if (sortKeyStr.startsWith("n:")) {
+				sortKey = Double.valueOf(sortKeyStr.substring(2));
+			}
+			else {
+				throw new IllegalArgumentException("Invalid cursor: "+cursorStr);
+			}
+			return new NotesCollectionCursor(viewUNID, position, noteId, sortKey, indexModifiedSequenceNo,
+					sortColumn, sortDirection);
+		}
+		catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid cursor: "+cursorStr, e);
+		}
+	}
+	
+	/**
+	 * Returns the UNID of the view design note
+	 * 
+	 * @return UNID
+	 */
+	public String getViewUNID() {
+		return m_viewUNID;
+	}
+	
+	/**
+	 * Returns the position of the last entry read
+	 * 
+	 * @return position string like "1.2.3"
+	 */
+	public String getPosition() {
+		return m_position;
+	}
+	
+	/**
+	 * Returns the note id of the last entry read
+	 * 
+	 * @return note id, for category entries the category note id with {@link com.mindoo.domino.jna.internal.NotesConstants#NOTEID_CATEGORY} set
+	 */
+	public int getNoteId() {
+		return m_noteId;
+	}
+	
+	/**
+	 * Returns the value of the first sorted column of the last entry read
+	 * 
+	 * @return {@link String}, {@link Double} or null if not available
+	 */
+	public Object getSortKey() {
+		return m_sortKey;
+	}
+	
+	/**
+	 * Returns the index modified sequence number of the view when the last entry was read
+	 * 
+	 * @return sequence number
+	 */
+	public int getIndexModifiedSequenceNo() {
+		return m_indexModifiedSequenceNo;
+	}
+	
+	/**
+	 * Returns the programmatic name of the column the view had been resorted by when the cursor was created
+	 * 
+	 * @return column name or null for the default sorting
+	 */
+	public String getSortColumn() {
+		return m_sortColumn;
+	}
+	
+	/**
+	 * Returns the direction of the resort when the cursor was created
+	 * 
+	 * @return direction or null for the default sorting
+	 */
+	public Direction getSortDirection() {
+		return m_sortDirection;
+	}
+	
+	/**
+	 * Returns a URL safe string representation of this cursor that can be passed to {@link #parse(String)}
+	 * 
+	 * @return cursor string
+	 */
+	@Override
+	public String toString() {
+		if (m_toString==null) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(VERSION).append('|')
+			.append(m_viewUNID==null ? "" : m_viewUNID).append('|')
+			.append(m_position==null ? "" : m_position).append('|')
+			.append(Integer.toHexString(m_noteId)).append('|')
+			.append(m_indexModifiedSequenceNo).append('|')
+			.append(m_sortColumn==null ? "" : m_sortColumn).append('|')
+			.append(m_sortDirection==null ? "" : (m_sortDirection==Direction.Ascending ? "a" : "d")).append('|');
+			
+			if (m_sortKey instanceof String) {
+				sb.append("s:").append((String) m_sortKey);
+			}
+			else if (m_sortKey instanceof Double) {
+				sb.append("n:").append(m_sortKey.toString());
+			}
+			m_toString = Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		return m_toString;
+	}
+}
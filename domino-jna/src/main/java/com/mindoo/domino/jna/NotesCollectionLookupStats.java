@@ -0,0 +1,296 @@
+package com.mindoo.domino.jna;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Statistics about a single lookup call on a {@link NotesCollection}, e.g.
+ * {@link NotesCollection#getAllEntries(String, int, java.util.EnumSet, int, java.util.EnumSet, NotesCollection.ViewLookupCallback)}
+ * or {@link NotesCollection#getAllEntriesByKey(java.util.EnumSet, java.util.EnumSet, NotesCollection.ViewLookupCallback, Object...)}.<br>
+ * <br>
+ * Statistics are collected if {@link NotesCollection#setLookupStatsEnabled(boolean)} has been called
+ * for the collection (read them via {@link NotesCollection#getLastLookupStats()}) or if at least
+ * one global listener has been registered via {@link #addListener(ILookupStatsListener)}.
+ * Listeners are invoked in the thread that did the lookup, so they should return quickly.
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesCollectionLookupStats {
+	private static final List<ILookupStatsListener> m_listeners = new CopyOnWriteArrayList<ILookupStatsListener>();
+
+	private String m_server;
+	private String m_filePath;
+	private String m_viewName;
+	private String m_viewUNID;
+	private String m_lookupType;
+	private long m_startTime;
+	private long m_startNanos;
+
+	private int m_nifReadCount;
+	private long m_bytesTransferred;
+	private int m_entriesDecoded;
+	private int m_entriesReturned;
+	private long m_nativeTimeNanos;
+	private long m_decodeTimeNanos;
+	private long m_callbackTimeNanos;
+	private int m_retryCount;
+	private int m_cacheHits;
+	private long m_totalTimeNanos;
+
+	/**
+	 * Callback interface to receive the statistics of all collection lookups
+	 */
+	public static interface ILookupStatsListener {
+
+		/**
+		 * Method is called when a lookup is done
+		 *
+		 * @param stats lookup statistics
+		 */
+		public void lookupDone(NotesCollectionLookupStats stats);
+
+	}
+
+	/**
+	 * Registers a global listener that receives the statistics of all lookups
+	 *
+	 * @param listener listener
+	 */
+	public static void addListener(ILookupStatsListener listener) {
+		if (listener==null) {
+			throw new IllegalArgumentException("Listener cannot be null");
+		}
+		m_listeners.add(listener);
+	}
+
+	/**
+	 * Removes a global listener
+	 *
+	 * @param listener listener
+	 */
+	public static void removeListener(ILookupStatsListener listener) {
+		m_listeners.remove(listener);
+	}
+
+	/**
+	 * Checks whether global listeners have been registered
+	 *
+	 * @return true if listeners exist
+	 */
+	static boolean hasListeners() {
+		return !m_listeners.isEmpty();
+	}
+
+	/**
+	 * Sends the statistics to all global listeners
+	 *
+	 * @param stats stats
+	 */
+	static void fireLookupDone(NotesCollectionLookupStats stats) {
+		for (ILookupStatsListener currListener : m_listeners) {
+			try {
+				currListener.lookupDone(stats);
+			}
+			catch (Exception e) {
+				//don't let a broken listener break the lookup
+				e.printStackTrace();
+			}
+		}
+	}
+
+	NotesCollectionLookupStats(String server, String filePath, String viewName, String viewUNID, String lookupType) {
+		m_server = server;
+		m_filePath = filePath;
+		m_viewName = viewName;
+		m_viewUNID = viewUNID;
+		m_lookupType = lookupType;
+		m_startTime = System.currentTimeMillis();
+		m_startNanos = System.nanoTime();
+	}
+
+	void addNativeRead(long durationNanos, int bytes) {
+		m_nifReadCount++;
+		m_nativeTimeNanos += durationNanos;
+		m_bytesTransferred += bytes;
+	}
+
+	void addDecoded(int entries, long durationNanos) {
+		m_entriesDecoded += entries;
+		m_decodeTimeNanos += durationNanos;
+	}
+
+	void addCallbackTime(long durationNanos) {
+		m_callbackTimeNanos += durationNanos;
+	}
+
+	void addEntryReturned() {
+		m_entriesReturned++;
+	}
+
+	void addRetry() {
+		m_retryCount++;
+	}
+
+	void addCacheHits(int hits) {
+		m_cacheHits += hits;
+	}
+
+	void lookupDone() {
+		m_totalTimeNanos = System.nanoTime() - m_startNanos;
+	}
+
+	/**
+	 * Returns the server of the database
+	 *
+	 * @return server, empty for local databases
+	 */
+	public String getServer() {
+		return m_server;
+	}
+
+	/**
+	 * Returns the filepath of the database
+	 *
+	 * @return filepath
+	 */
+	public String getFilePath() {
+		return m_filePath;
+	}
+
+	/**
+	 * Returns the view name
+	 *
+	 * @return name
+	 */
+	public String getViewName() {
+		return m_viewName;
+	}
+
+	/**
+	 * Returns the UNID of the view design note
+	 *
+	 * @return UNID
+	 */
+	public String getViewUNID() {
+		return m_viewUNID;
+	}
+
+	/**
+	 * Returns the name of the lookup method, e.g. "getAllEntries" or "getAllEntriesByKey"
+	 *
+	 * @return lookup type
+	 */
+	public String getLookupType() {
+		return m_lookupType;
+	}
+
+	/**
+	 * Returns the start time of the lookup
+	 *
+	 * @return time in milliseconds since the epoch
+	 */
+	public long getStartTime() {
+		return m_startTime;
+	}
+
+	/**
+	 * Returns the number of NIFReadEntries / NIFFindByKeyExtended2 calls
+	 *
+	 * @return count
+	 */
+	public int getNIFReadCount() {
+		return m_nifReadCount;
+	}
+
+	/**
+	 * Returns the size of all lookup buffers returned by NIF
+	 *
+	 * @return bytes
+	 */
+	public long getBytesTransferred() {
+		return m_bytesTransferred;
+	}
+
+	/**
+	 * Returns the number of entries that have been decoded from the lookup buffers
+	 *
+	 * @return count
+	 */
+	public int getEntriesDecoded() {
+		return m_entriesDecoded;
+	}
+
+	/**
+	 * Returns the number of entries that have been passed to the lookup callback,
+	 * which is lower than {@link #getEntriesDecoded()} if the callback stopped the lookup early
+	 * or data had to be re-read after index changes
+	 *
+	 * @return count
+	 */
+	public int getEntriesReturned() {
+		return m_entriesReturned;
+	}
+
+	/**
+	 * Returns the time spent in native NIF calls
+	 *
+	 * @return nanoseconds
+	 */
+	public long getNativeTimeNanos() {
+		return m_nativeTimeNanos;
+	}
+
+	/**
+	 * Returns the time spent decoding lookup buffers
+	 *
+	 * @return nanoseconds
+	 */
+	public long getDecodeTimeNanos() {
+		return m_decodeTimeNanos;
+	}
+
+	/**
+	 * Returns the time spent in the lookup callback
+	 *
+	 * @return nanoseconds
+	 */
+	public long getCallbackTimeNanos() {
+		return m_callbackTimeNanos;
+	}
+
+	/**
+	 * Returns the number of times the lookup was restarted because the view index changed
+	 *
+	 * @return count
+	 */
+	public int getRetryCount() {
+		return m_retryCount;
+	}
+
+	/**
+	 * Returns the number of entries that have been filled from the {@link CollectionDataCache}
+	 *
+	 * @return count
+	 */
+	public int getCacheHits() {
+		return m_cacheHits;
+	}
+
+	/**
+	 * Returns the total duration of the lookup
+	 *
+	 * @return nanoseconds
+	 */
+	public long getTotalTimeNanos() {
+		return m_totalTimeNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "NotesCollectionLookupStats [view="+m_viewName+", type="+m_lookupType+", nifReads="+m_nifReadCount+
+				", bytes="+m_bytesTransferred+", decoded="+m_entriesDecoded+", returned="+m_entriesReturned+
+				", nativeMs="+(m_nativeTimeNanos/1000000)+", decodeMs="+(m_decodeTimeNanos/1000000)+
+				", callbackMs="+(m_callbackTimeNanos/1000000)+", retries="+m_retryCount+", cacheHits="+m_cacheHits+
+				", totalMs="+(m_totalTimeNanos/1000000)+"]";
+	}
+}
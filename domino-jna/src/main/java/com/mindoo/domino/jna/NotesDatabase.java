@@ -142,6 +142,7 @@ public class NotesDatabase implements IRecyclableNotesObject {
 	boolean m_passNamesListToDbOpen;
 	private boolean m_passNamesListToViewOpen;
 	private DbMode m_dbMode;
+	private NotesCollectionCache m_collectionCache;
 	
 	/**
 	 * Opens a database either as server or on behalf of a specified user
@@ -1297,6 +1298,11 @@ public class NotesDatabase implements IRecyclableNotesObject {
 	@Override
 	public void recycle() {
 		if (!m_noRecycleDb) {
+			if (m_collectionCache!=null) {
+				m_collectionCache.clear();
+				m_collectionCache = null;
+			}
+			
 			if (PlatformUtils.is64Bit()) {
 				if (m_hDB64!=0) {
 					short result = NotesNativeAPI64.get().NSFDbClose(m_hDB64);
@@ -1470,6 +1476,111 @@ public class NotesDatabase implements IRecyclableNotesObject {
 		return openCollectionWithExternalData(this, viewNoteId, openFlagSet);
 	}
 
+	/**
+	 * Enables a cache of open {@link NotesCollection} handles for this database.
+	 * Collections retrieved via {@link #checkoutCollection(String, EnumSet)} are returned to the
+	 * cache with {@link #checkinCollection(NotesCollection)} instead of being recycled, so that
+	 * the next checkout can skip the design lookup, NIFOpenCollection and the view format/collation
+	 * decoding.<br>
+	 * <br>
+	 * Cached collections are invalidated when the sequence number of the view design note changes
+	 * and get refreshed with {@link NotesCollection#update()} on checkout.
+	 * 
+	 * @param maxIdlePerView maximum number of idle collections to keep per view, open flags and user (more than one if collections are read in a nested way)
+	 */
+	public void enableCollectionCache(int maxIdlePerView) {
+		checkHandle();
+		
+		if (m_collectionCache!=null) {
+			m_collectionCache.clear();
+		}
+		m_collectionCache = new NotesCollectionCache(this, maxIdlePerView);
+	}
+	
+	/**
+	 * Disables the collection cache enabled via {@link #enableCollectionCache(int)} and
+	 * recycles all idle collections
+	 */
+	public void disableCollectionCache() {
+		if (m_collectionCache!=null) {
+			m_collectionCache.clear();
+			m_collectionCache = null;
+		}
+	}
+	
+	/**
+	 * Checks whether the collection cache has been enabled via {@link #enableCollectionCache(int)}
+	 * 
+	 * @return true if enabled
+	 */
+	public boolean isCollectionCacheEnabled() {
+		return m_collectionCache!=null;
+	}
+	
+	/**
+	 * Returns an open collection from the collection cache (see {@link #enableCollectionCache(int)})
+	 * or opens it if the cache is disabled or has no idle collection for the view.<br>
+	 * <br>
+	 * Call {@link #checkinCollection(NotesCollection)} when you are done reading the
+	 * collection instead of {@link NotesCollection#recycle()}.
+	 * 
+	 * @param viewNameOrUNID view name, alias or UNID of the view design note
+	 * @param openFlagSet open flags, see {@link OpenCollection}
+	 * @return collection or null if not found
+	 */
+	public NotesCollection checkoutCollection(String viewNameOrUNID, EnumSet<OpenCollection> openFlagSet) {
+		checkHandle();
+		
+		if (m_collectionCache==null) {
+			if (viewNameOrUNID.length()==32 && viewNameOrUNID.matches("[0-9a-fA-F]+")) {
+				return openCollectionByUNID(viewNameOrUNID, openFlagSet);
+			}
+			else {
+				return openCollectionByName(viewNameOrUNID, openFlagSet);
+			}
+		}
+		return m_collectionCache.checkout(viewNameOrUNID, openFlagSet);
+	}
+	
+	/**
+	 * Returns a collection retrieved via {@link #checkoutCollection(String, EnumSet)} to the
+	 * collection cache. The collection gets recycled if the cache is disabled or already
+	 * contains enough idle collections for the view.<br>
+	 * An active FT search is cleared and the view sorting is reset to the default.
+	 * 
+	 * @param col collection
+	 */
+	public void checkinCollection(NotesCollection col) {
+		if (m_collectionCache==null) {
+			if (!col.isRecycled()) {
+				col.recycle();
+			}
+		}
+		else {
+			m_collectionCache.checkin(col);
+		}
+	}
+	
+	/**
+	 * Returns the number of {@link #checkoutCollection(String, EnumSet)} calls
+	 * that could be served from the collection cache
+	 * 
+	 * @return hits or 0 if the cache is disabled
+	 */
+	public long getCollectionCacheHits() {
+		return m_collectionCache==null ? 0 : m_collectionCache.getHits();
+	}
+	
+	/**
+	 * Returns the number of {@link #checkoutCollection(String, EnumSet)} calls
+	 * that had to open a new collection
+	 * 
+	 * @return misses or 0 if the cache is disabled
+	 */
+	public long getCollectionCacheMisses() {
+		return m_collectionCache==null ? 0 : m_collectionCache.getMisses();
+	}
+	
 	/**
 	 * Converts bytes in memory to a UNID
 	 * 
@@ -2057,6 +2168,8 @@ public class NotesDatabase implements IRecyclableNotesObject {
 				return new NotesIDTable();
 			}
 			NotesErrorUtils.checkResult(result);
+			retUntilStruct.read();
+			retUntil.setTime(retUntilStruct.Innards);
 			return new NotesIDTable(rethTable.getValue(), false);
 		}
 		else {
@@ -2066,6 +2179,8 @@ public class NotesDatabase implements IRecyclableNotesObject {
 				return new NotesIDTable();
 			}
 			NotesErrorUtils.checkResult(result);
+			retUntilStruct.read();
+			retUntil.setTime(retUntilStruct.Innards);
 			return new NotesIDTable(rethTable.getValue(), false);
 		}
 	}
@@ -11,11 +11,13 @@ import com.mindoo.domino.jna.constants.CDRecordType;
 import com.mindoo.domino.jna.errors.NotesError;
 import com.mindoo.domino.jna.errors.NotesErrorUtils;
 import com.mindoo.domino.jna.internal.DisposableMemory;
+import com.mindoo.domino.jna.internal.ItemDecoder;
 import com.mindoo.domino.jna.internal.Mem32;
 import com.mindoo.domino.jna.internal.Mem64;
 import com.mindoo.domino.jna.internal.NotesConstants;
 import com.mindoo.domino.jna.internal.NotesNativeAPI32;
 import com.mindoo.domino.jna.internal.NotesNativeAPI64;
+import com.mindoo.domino.jna.internal.TextValueDecoder;
 import com.mindoo.domino.jna.internal.structs.NotesBlockIdStruct;
 import com.mindoo.domino.jna.internal.structs.NotesTimeDateStruct;
 import com.mindoo.domino.jna.utils.NotesStringUtils;
@@ -271,6 +273,105 @@ public class NotesItem {
 		return values;
 	}
 
+	/**
+	 * Reads the values of a number or number list item into a caller supplied array without
+	 * boxing them, see {@link NotesNote#getItemValueDoubleArray(String, double[], int)}
+	 * 
+	 * @param target target array
+	 * @param offset offset in target array
+	 * @return total number of values (might be larger than the space in the target array) or -1 if this is not a number item
+	 */
+	public int getValueDoubleArray(final double[] target, final int offset) {
+		m_parentNote.checkHandle();
+		
+		return m_parentNote.readItemValue(m_dataType, m_valueBlockId, getValueLength(), new NotesNote.IItemValueReader() {
+			
+			@Override
+			public int read(int dataType, Pointer valueDataPtr, int valueDataLength) {
+				return ItemDecoder.decodeNumbersInto(dataType, valueDataPtr, valueDataLength, target, offset);
+			}
+		});
+	}
+	
+	/**
+	 * Reads the values of a timedate or timedate list item into a caller supplied array of
+	 * packed innards, see {@link NotesNote#getItemValueInnardsArray(String, long[], int)}
+	 * 
+	 * @param target target array
+	 * @param offset offset in target array
+	 * @return total number of values (might be larger than the space in the target array) or -1 if this is not a timedate item
+	 */
+	public int getValueInnardsArray(final long[] target, final int offset) {
+		m_parentNote.checkHandle();
+		
+		return m_parentNote.readItemValue(m_dataType, m_valueBlockId, getValueLength(), new NotesNote.IItemValueReader() {
+			
+			@Override
+			public int read(int dataType, Pointer valueDataPtr, int valueDataLength) {
+				return ItemDecoder.decodeTimeDatesInto(dataType, valueDataPtr, valueDataLength, target, offset);
+			}
+		});
+	}
+	
+	/**
+	 * Passes the values of a text or text list item to a sink without creating a {@link List},
+	 * see {@link NotesNote#getItemValueTextList(String, ITextValueSink)}
+	 * 
+	 * @param sink sink to receive the values
+	 * @return number of values or -1 if this is not a text item
+	 */
+	public int getValueTextList(final ITextValueSink sink) {
+		m_parentNote.checkHandle();
+		
+		final TextValueDecoder decoder = m_parentNote.acquireTextValueDecoder();
+		try {
+			return m_parentNote.readItemValue(m_dataType, m_valueBlockId, getValueLength(), new NotesNote.IItemValueReader() {
+				
+				@Override
+				public int read(int dataType, Pointer valueDataPtr, int valueDataLength) {
+					return decoder.decode(dataType, valueDataPtr, valueDataLength, sink);
+				}
+			});
+		}
+		finally {
+			m_parentNote.releaseTextValueDecoder(decoder);
+		}
+	}
+	
+	/**
+	 * Computes a 64 bit FNV-1a hash of the raw item value bytes without decoding them,
+	 * see {@link NoteItemFingerprint}
+	 * 
+	 * @param buffer scratch buffer used to copy the value in chunks
+	 * @return hash
+	 */
+	long getValueHash(final byte[] buffer) {
+		m_parentNote.checkHandle();
+		
+		final long[] hash = new long[] {NoteItemFingerprint.FNV_OFFSET_BASIS};
+		
+		m_parentNote.readItemValue(m_dataType, m_valueBlockId, getValueLength(), new NotesNote.IItemValueReader() {
+			
+			@Override
+			public int read(int dataType, Pointer valueDataPtr, int valueDataLength) {
+				long h = hash[0];
+				int offset = 0;
+				while (offset < valueDataLength) {
+					int len = Math.min(buffer.length, valueDataLength - offset);
+					valueDataPtr.read(offset, buffer, 0, len);
+					for (int i=0; i<len; i++) {
+						h ^= (buffer[i] & 0xff);
+						h *= NoteItemFingerprint.FNV_PRIME;
+					}
+					offset += len;
+				}
+				hash[0] = h;
+				return valueDataLength;
+			}
+		});
+		return hash[0];
+	}
+	
 	//shared memory buffer for text item values
 	private static Memory MAX_TEXT_ITEM_VALUE = new Memory(65535);
 	static {
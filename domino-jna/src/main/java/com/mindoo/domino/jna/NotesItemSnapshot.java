@@ -0,0 +1,559 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import com.mindoo.domino.jna.errors.UnsupportedItemValueError;
+import com.mindoo.domino.jna.internal.NotesConstants;
+import com.mindoo.domino.jna.internal.TextValueDecoder;
+import com.mindoo.domino.jna.internal.TypedItemAccess;
+import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
+import com.mindoo.domino.jna.utils.NotesStringUtils;
+
+/**
+ * Copy of item values of a {@link NotesNote} produced by {@link NotesNote#snapshotItems(String...)}.<br>
+ * <br>
+ * The raw item values (data type WORD and value data) are stored in a single byte array
+ * and indexed by item name, so reading values from the snapshot does not need any item lookups
+ * in the note (only text values need to be converted from LMBCS). Decoded values are cached.<br>
+ * <br>
+ * The snapshot is independent from the note handle and can still be used after the note
+ * has been recycled. For items with multiple occurrences (e.g. $FILE), the methods
+ * of this class return the value of the first item, like {@link NotesNote#getItemValue(String)}.<br>
+ * <br>
+ * We support the following data types: {@link NotesItem#TYPE_TEXT}, {@link NotesItem#TYPE_TEXT_LIST},
+ * {@link NotesItem#TYPE_NUMBER}, {@link NotesItem#TYPE_NUMBER_RANGE}, {@link NotesItem#TYPE_TIME},
+ * {@link NotesItem#TYPE_TIME_RANGE} and {@link NotesItem#TYPE_UNAVAILABLE}. Reading other types throws an
+ * {@link UnsupportedItemValueError}; use {@link #getItemValueRaw(String)} or the note instead.
+ *
+ * @author Karsten Lehmann
+ */
+public class NotesItemSnapshot extends TypedItemAccess {
+	private int m_noteId;
+	private boolean m_preferNotesTimeDates;
+	private byte[] m_arena;
+	private int m_arenaLength;
+	private int m_itemCount;
+	private String[] m_names;
+	private int[] m_types;
+	private int[] m_offsets;
+	private int[] m_lengths;
+	private boolean[] m_summary;
+	private List<Object>[] m_decodedValues;
+	private TreeMap<String,Integer> m_firstItemByName;
+	private TextValueDecoder m_textValueDecoder;
+
+	@SuppressWarnings("unchecked")
+	NotesItemSnapshot(int noteId, boolean preferNotesTimeDates) {
+		m_noteId = noteId;
+		m_preferNotesTimeDates = preferNotesTimeDates;
+		m_arena = new byte[1024];
+		m_names = new String[16];
+		m_types = new int[16];
+		m_offsets = new int[16];
+		m_lengths = new int[16];
+		m_summary = new boolean[16];
+		m_decodedValues = new List[16];
+		m_firstItemByName = new TreeMap<String,Integer>(String.CASE_INSENSITIVE_ORDER);
+	}
+
+	/**
+	 * Reserves space for an item value in the arena
+	 *
+	 * @param itemName item name
+	 * @param dataType data type
+	 * @param summary true if the item has the summary flag
+	 * @param valueLength item value length plus 2 bytes for the data type WORD
+	 * @return offset in {@link #getArena()} to write the value to
+	 */
+	int addItem(String itemName, int dataType, boolean summary, int valueLength) {
+		if (m_itemCount == m_names.length) {
+			int newSize = m_names.length * 2;
+			m_names = Arrays.copyOf(m_names, newSize);
+			m_types = Arrays.copyOf(m_types, newSize);
+			m_offsets = Arrays.copyOf(m_offsets, newSize);
+			m_lengths = Arrays.copyOf(m_lengths, newSize);
+			m_summary = Arrays.copyOf(m_summary, newSize);
+			m_decodedValues = Arrays.copyOf(m_decodedValues, newSize);
+		}
+		if (m_arenaLength + valueLength > m_arena.length) {
+			m_arena = Arrays.copyOf(m_arena, Math.max(m_arena.length * 2, m_arenaLength + valueLength));
+		}
+
+		int idx = m_itemCount++;
+		m_names[idx] = itemName;
+		m_types[idx] = dataType;
+		m_offsets[idx] = m_arenaLength;
+		m_lengths[idx] = valueLength;
+		m_summary[idx] = summary;
+
+		if (!m_firstItemByName.containsKey(itemName)) {
+			m_firstItemByName.put(itemName, idx);
+		}
+		m_arenaLength += valueLength;
+		return m_offsets[idx];
+	}
+
+	byte[] getArena() {
+		return m_arena;
+	}
+
+	/**
+	 * Returns the note id of the note the snapshot was taken from
+	 *
+	 * @return note id
+	 */
+	public int getNoteId() {
+		return m_noteId;
+	}
+
+	/**
+	 * Returns the number of items in the snapshot, including multiple occurrences of the same item name
+	 *
+	 * @return number of items
+	 */
+	public int getItemCount() {
+		return m_itemCount;
+	}
+
+	/**
+	 * Returns the size of the copied item values
+	 *
+	 * @return bytes
+	 */
+	public int getSizeInBytes() {
+		return m_arenaLength;
+	}
+
+	/**
+	 * Returns the distinct names of the items in the snapshot
+	 *
+	 * @return item names, sorted case insensitive
+	 */
+	public List<String> getItemNames() {
+		return new ArrayList<String>(m_firstItemByName.keySet());
+	}
+
+	/**
+	 * Checks whether the snapshot contains an item
+	 *
+	 * @param itemName item name
+	 * @return true if item exists
+	 */
+	public boolean hasItem(String itemName) {
+		return m_firstItemByName.containsKey(itemName);
+	}
+
+	/**
+	 * Returns the data type of an item
+	 *
+	 * @param itemName item name
+	 * @return type, e.g. {@link NotesItem#TYPE_TEXT} or {@link NotesItem#TYPE_INVALID_OR_UNKNOWN} if the item does not exist
+	 */
+	public int getItemType(String itemName) {
+		Integer idx = m_firstItemByName.get(itemName);
+		return idx==null ? NotesItem.TYPE_INVALID_OR_UNKNOWN : m_types[idx.intValue()];
+	}
+
+	/**
+	 * Checks whether the summary flag was set for an item
+	 *
+	 * @param itemName item name
+	 * @return true if summary
+	 */
+	public boolean isSummary(String itemName) {
+		Integer idx = m_firstItemByName.get(itemName);
+		return idx==null ? false : m_summary[idx.intValue()];
+	}
+
+	/**
+	 * Returns a copy of the raw item value
+	 *
+	 * @param itemName item name
+	 * @return value data including the data type WORD or null if the item does not exist
+	 */
+	public byte[] getItemValueRaw(String itemName) {
+		Integer idx = m_firstItemByName.get(itemName);
+		if (idx==null) {
+			return null;
+		}
+		int offset = m_offsets[idx.intValue()];
+		return Arrays.copyOfRange(m_arena, offset, offset + m_lengths[idx.intValue()]);
+	}
+
+	@Override
+	public Object get(String itemName) {
+		return getItemValue(itemName);
+	}
+
+	/**
+	 * Decodes the value of an item. The returned list has the same content as the one of
+	 * {@link NotesNote#getItemValue(String)}.
+	 *
+	 * @param itemName item name
+	 * @return value list, empty if the item does not exist
+	 */
+	public List<Object> getItemValue(String itemName) {
+		Integer idx = m_firstItemByName.get(itemName);
+		if (idx==null) {
+			return Collections.emptyList();
+		}
+		int itemIdx = idx.intValue();
+		List<Object> values = m_decodedValues[itemIdx];
+		if (values==null) {
+			values = decodeValue(itemIdx);
+			m_decodedValues[itemIdx] = values;
+		}
+		return values;
+	}
+
+	/**
+	 * Reads the value of a text item. For text lists, the first value is returned.
+	 *
+	 * @param itemName item name
+	 * @return text or empty string if the item does not exist or is not a text item
+	 */
+	public String getItemValueString(String itemName) {
+		List<?> values = getItemValue(itemName);
+		if (values.isEmpty()) {
+			return "";
+		}
+		Object firstVal = values.get(0);
+		return firstVal instanceof String ? (String) firstVal : "";
+	}
+
+	/**
+	 * Reads the values of a text or text list item
+	 *
+	 * @param itemName item name
+	 * @return values, empty if the item does not exist
+	 */
+	public List<String> getItemValueStringList(String itemName) {
+		return getAsStringList(itemName, Collections.<String>emptyList());
+	}
+
+	/**
+	 * Reads the value of a number item. For number lists, the first value is returned.
+	 *
+	 * @param itemName item name
+	 * @return number or 0 if the item does not exist or is not a number item
+	 */
+	public double getItemValueDouble(String itemName) {
+		Integer idx = m_firstItemByName.get(itemName);
+		if (idx==null) {
+			return 0;
+		}
+		int itemIdx = idx.intValue();
+		if (m_types[itemIdx] == NotesItem.TYPE_NUMBER && m_lengths[itemIdx] >= 10) {
+			//no need to box the value
+			return getDouble(m_offsets[itemIdx] + 2);
+		}
+		Double dbl = getAsDouble(itemName, null);
+		return dbl==null ? 0 : dbl.doubleValue();
+	}
+
+	/**
+	 * Reads the value of a number item as long
+	 *
+	 * @param itemName item name
+	 * @return number or 0 if the item does not exist or is not a number item
+	 */
+	public long getItemValueLong(String itemName) {
+		return (long) getItemValueDouble(itemName);
+	}
+
+	/**
+	 * Reads the value of a number item as int
+	 *
+	 * @param itemName item name
+	 * @return number or 0 if the item does not exist or is not a number item
+	 */
+	public int getItemValueInteger(String itemName) {
+		return (int) getItemValueDouble(itemName);
+	}
+
+	/**
+	 * Reads the value of a timedate item as {@link NotesTimeDate}
+	 *
+	 * @param itemName item name
+	 * @return time date value or null if the item does not exist or is not a timedate item
+	 */
+	public NotesTimeDate getItemValueAsTimeDate(String itemName) {
+		Integer idx = m_firstItemByName.get(itemName);
+		if (idx==null) {
+			return null;
+		}
+		int itemIdx = idx.intValue();
+		if (m_types[itemIdx] == NotesItem.TYPE_TIME && m_lengths[itemIdx] >= 2 + NotesConstants.timeDateSize) {
+			int offset = m_offsets[itemIdx] + 2;
+			return new NotesTimeDate(new int[] {getInt(offset), getInt(offset+4)});
+		}
+		NotesTimeDate td = getAsTimeDate(itemName, null);
+		if (td==null) {
+			Calendar cal = getAsCalendar(itemName, null);
+			if (cal!=null) {
+				td = new NotesTimeDate(cal);
+			}
+		}
+		return td;
+	}
+
+	/**
+	 * Reads the value of a timedate item as {@link Calendar}
+	 *
+	 * @param itemName item name
+	 * @return time date value or null if the item does not exist or is not a timedate item
+	 */
+	public Calendar getItemValueDateTime(String itemName) {
+		NotesTimeDate td = getItemValueAsTimeDate(itemName);
+		return td==null ? null : td.toCalendar();
+	}
+
+	/**
+	 * Decodes a number or number list value straight from the snapshot data into a caller supplied array
+	 * 
+	 * @param itemName item name
+	 * @param target target array
+	 * @param offset offset in target array
+	 * @return total number of values (might be larger than the space in the target array, the values that do not fit are skipped) or -1 if the item does not exist or is not a number item
+	 */
+	@Override
+	public int getAsDoubleArray(String itemName, double[] target, int offset) {
+		Integer idx = m_firstItemByName.get(itemName);
+		if (idx==null) {
+			return -1;
+		}
+		int itemIdx = idx.intValue();
+		int valueOffset = m_offsets[itemIdx] + 2;
+		int valueLength = m_lengths[itemIdx] - 2;
+
+		if (m_types[itemIdx] == NotesItem.TYPE_NUMBER) {
+			if (offset < target.length) {
+				target[offset] = getDouble(valueOffset);
+			}
+			return 1;
+		}
+		else if (m_types[itemIdx] == NotesItem.TYPE_NUMBER_RANGE) {
+			if (valueLength<=0) {
+				return 0;
+			}
+			//list entries and NUMBER_PAIRs are consecutive doubles
+			int total = getWord(valueOffset) + 2*getWord(valueOffset + 2);
+			int toRead = Math.min(total, Math.max(0, target.length - offset));
+			int entryOffset = valueOffset + NotesConstants.rangeSize;
+			for (int i=0; i<toRead; i++) {
+				target[offset + i] = getDouble(entryOffset);
+				entryOffset += 8;
+			}
+			return total;
+		}
+		return -1;
+	}
+
+	/**
+	 * Decodes a timedate or timedate list value straight from the snapshot data into a caller supplied array
+	 * of packed innards (see {@link NotesDateTimeUtils#packInnards(int, int)})
+	 * 
+	 * @param itemName item name
+	 * @param target target array
+	 * @param offset offset in target array
+	 * @return total number of values (might be larger than the space in the target array, the values that do not fit are skipped) or -1 if the item does not exist or is not a timedate item
+	 */
+	@Override
+	public int getAsInnardsArray(String itemName, long[] target, int offset) {
+		Integer idx = m_firstItemByName.get(itemName);
+		if (idx==null) {
+			return -1;
+		}
+		int itemIdx = idx.intValue();
+		int valueOffset = m_offsets[itemIdx] + 2;
+		int valueLength = m_lengths[itemIdx] - 2;
+
+		if (m_types[itemIdx] == NotesItem.TYPE_TIME) {
+			if (offset < target.length) {
+				target[offset] = NotesDateTimeUtils.packInnards(getInt(valueOffset), getInt(valueOffset+4));
+			}
+			return 1;
+		}
+		else if (m_types[itemIdx] == NotesItem.TYPE_TIME_RANGE) {
+			if (valueLength<=0) {
+				return 0;
+			}
+			//list entries and TIMEDATE_PAIRs are consecutive TIMEDATEs
+			int total = getWord(valueOffset) + 2*getWord(valueOffset + 2);
+			int toRead = Math.min(total, Math.max(0, target.length - offset));
+			int entryOffset = valueOffset + NotesConstants.rangeSize;
+			for (int i=0; i<toRead; i++) {
+				target[offset + i] = NotesDateTimeUtils.packInnards(getInt(entryOffset), getInt(entryOffset+4));
+				entryOffset += NotesConstants.timeDateSize;
+			}
+			return total;
+		}
+		return -1;
+	}
+
+	/**
+	 * Passes a text or text list value straight from the snapshot data to a sink
+	 * 
+	 * @param itemName item name
+	 * @param sink sink to receive the values
+	 * @return number of values or -1 if the item does not exist or is not a text item
+	 */
+	@Override
+	public int getAsTextList(String itemName, ITextValueSink sink) {
+		Integer idx = m_firstItemByName.get(itemName);
+		if (idx==null) {
+			return -1;
+		}
+		int itemIdx = idx.intValue();
+		int valueOffset = m_offsets[itemIdx] + 2;
+		int valueLength = m_lengths[itemIdx] - 2;
+
+		if (m_types[itemIdx] == NotesItem.TYPE_TEXT || m_types[itemIdx] == NotesItem.TYPE_TEXT_LIST) {
+			if (m_textValueDecoder==null) {
+				m_textValueDecoder = new TextValueDecoder();
+			}
+			if (m_types[itemIdx] == NotesItem.TYPE_TEXT) {
+				return m_textValueDecoder.decodeText(m_arena, valueOffset, Math.max(0, valueLength), sink);
+			}
+			else {
+				return m_textValueDecoder.decodeTextList(m_arena, valueOffset, Math.max(0, valueLength), sink);
+			}
+		}
+		return -1;
+	}
+
+	private List<Object> decodeValue(int itemIdx) {
+		int offset = m_offsets[itemIdx];
+		int length = m_lengths[itemIdx];
+		if (length < 2) {
+			return Collections.emptyList();
+		}
+
+		int dataType = getWord(offset);
+		int valueOffset = offset + 2;
+		int valueLength = length - 2;
+
+		if (dataType == NotesItem.TYPE_TEXT) {
+			String txtVal = valueLength==0 ? "" : NotesStringUtils.fromLMBCS(Arrays.copyOfRange(m_arena, valueOffset, valueOffset + valueLength));
+			return Arrays.asList((Object) txtVal);
+		}
+		else if (dataType == NotesItem.TYPE_TEXT_LIST) {
+			if (valueLength==0) {
+				return Collections.emptyList();
+			}
+			//LIST header, WORD length per entry, then the text data
+			int listCount = getWord(valueOffset);
+			List<Object> textList = new ArrayList<Object>(listCount);
+			int textOffset = valueOffset + 2 + 2*listCount;
+			for (int i=0; i<listCount; i++) {
+				int textLength = getWord(valueOffset + 2 + 2*i);
+				if (textLength==0) {
+					textList.add("");
+				}
+				else {
+					textList.add(NotesStringUtils.fromLMBCS(Arrays.copyOfRange(m_arena, textOffset, textOffset + textLength)));
+				}
+				textOffset += textLength;
+			}
+			return textList;
+		}
+		else if (dataType == NotesItem.TYPE_NUMBER) {
+			return Arrays.asList((Object) Double.valueOf(getDouble(valueOffset)));
+		}
+		else if (dataType == NotesItem.TYPE_NUMBER_RANGE) {
+			int listEntries = getWord(valueOffset);
+			int rangeEntries = getWord(valueOffset + 2);
+			int entryOffset = valueOffset + NotesConstants.rangeSize;
+
+			List<Object> numberValues = new ArrayList<Object>(listEntries + rangeEntries);
+			for (int i=0; i<listEntries; i++) {
+				numberValues.add(Double.valueOf(getDouble(entryOffset)));
+				entryOffset += 8;
+			}
+			for (int i=0; i<rangeEntries; i++) {
+				numberValues.add(new double[] {getDouble(entryOffset), getDouble(entryOffset+8)});
+				entryOffset += NotesConstants.numberPairSize;
+			}
+			return numberValues;
+		}
+		else if (dataType == NotesItem.TYPE_TIME) {
+			int[] innards = new int[] {getInt(valueOffset), getInt(valueOffset+4)};
+			return Arrays.asList(toTimeValue(innards));
+		}
+		else if (dataType == NotesItem.TYPE_TIME_RANGE) {
+			int listEntries = getWord(valueOffset);
+			int rangeEntries = getWord(valueOffset + 2);
+			int entryOffset = valueOffset + NotesConstants.rangeSize;
+
+			List<Object> timeValues = new ArrayList<Object>(listEntries + rangeEntries);
+			for (int i=0; i<listEntries; i++) {
+				int[] innards = new int[] {getInt(entryOffset), getInt(entryOffset+4)};
+				timeValues.add(toTimeValue(innards));
+				entryOffset += NotesConstants.timeDateSize;
+			}
+			for (int i=0; i<rangeEntries; i++) {
+				int[] lowerInnards = new int[] {getInt(entryOffset), getInt(entryOffset+4)};
+				int[] upperInnards = new int[] {getInt(entryOffset+8), getInt(entryOffset+12)};
+				if (m_preferNotesTimeDates) {
+					timeValues.add(new NotesDateRange(new NotesTimeDate(lowerInnards), new NotesTimeDate(upperInnards)));
+				}
+				else {
+					timeValues.add(new Calendar[] {(Calendar) toTimeValue(lowerInnards), (Calendar) toTimeValue(upperInnards)});
+				}
+				entryOffset += NotesConstants.timeDatePairSize;
+			}
+			return timeValues;
+		}
+		else if (dataType == NotesItem.TYPE_UNAVAILABLE) {
+			return Collections.emptyList();
+		}
+		else {
+			throw new UnsupportedItemValueError("Data type for value of item "+m_names[itemIdx]+" is not supported in item snapshots: "+dataType);
+		}
+	}
+
+	private Object toTimeValue(int[] innards) {
+		if (m_preferNotesTimeDates) {
+			return new NotesTimeDate(innards);
+		}
+		Calendar cal = NotesDateTimeUtils.innardsToCalendar(innards);
+		if (cal==null) {
+			//invalid TimeDate detected; we produce a "null" value like NotesNote does
+			Calendar nullCal = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+			nullCal.set(Calendar.YEAR, 1);
+			nullCal.set(Calendar.MONTH, 1);
+			nullCal.set(Calendar.DAY_OF_MONTH, 1);
+			nullCal.set(Calendar.HOUR, 0);
+			nullCal.set(Calendar.MINUTE, 0);
+			nullCal.set(Calendar.SECOND, 0);
+			nullCal.set(Calendar.MILLISECOND, 0);
+			return nullCal;
+		}
+		return cal;
+	}
+
+	private int getWord(int offset) {
+		return (m_arena[offset] & 0xff) | ((m_arena[offset+1] & 0xff) << 8);
+	}
+
+	private int getInt(int offset) {
+		return (m_arena[offset] & 0xff) | ((m_arena[offset+1] & 0xff) << 8) |
+				((m_arena[offset+2] & 0xff) << 16) | ((m_arena[offset+3] & 0xff) << 24);
+	}
+
+	private double getDouble(int offset) {
+		long bits = (getInt(offset) & 0xffffffffL) | (((long) getInt(offset+4)) << 32);
+		return Double.longBitsToDouble(bits);
+	}
+
+	@Override
+	public String toString() {
+		return "NotesItemSnapshot [noteid="+m_noteId+", items="+m_itemCount+", bytes="+m_arenaLength+"]";
+	}
+}
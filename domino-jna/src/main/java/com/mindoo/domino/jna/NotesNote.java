@@ -4,8 +4,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
@@ -19,7 +22,9 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
@@ -61,6 +66,7 @@ import com.mindoo.domino.jna.internal.NotesConstants;
 import com.mindoo.domino.jna.internal.NotesNativeAPI32;
 import com.mindoo.domino.jna.internal.NotesNativeAPI64;
 import com.mindoo.domino.jna.internal.ReadOnlyMemory;
+import com.mindoo.domino.jna.internal.TextValueDecoder;
 import com.mindoo.domino.jna.internal.ViewFormatDecoder;
 import com.mindoo.domino.jna.internal.Win32NotesCallbacks;
 import com.mindoo.domino.jna.internal.structs.NoteIdStruct;
@@ -114,6 +120,9 @@ import lotus.domino.NotesException;
  * @author Karsten Lehmann
  */
 public class NotesNote implements IRecyclableNotesObject {
+	private static final double[] EMPTY_DOUBLE_ARRAY = new double[0];
+	private static final long[] EMPTY_LONG_ARRAY = new long[0];
+	
 	private int m_hNote32;
 	private long m_hNote64;
 	private boolean m_noRecycle;
@@ -121,6 +130,7 @@ public class NotesNote implements IRecyclableNotesObject {
 	private Document m_legacyDocRef;
 	private EnumSet<NoteClass> m_noteClass;
 	private boolean m_preferNotesTimeDates;
+	private TextValueDecoder m_textValueDecoder;
 	
 	/**
 	 * Creates a new instance
@@ -1643,6 +1653,237 @@ public class NotesNote implements IRecyclableNotesObject {
 		return new NotesTimeDate(innards);
 	}
 	
+	/**
+	 * Reads the values of a number or number list item into a caller supplied array without
+	 * boxing them. Number range entries are written as two values (lower, upper).
+	 * 
+	 * @param itemName item name
+	 * @param target target array
+	 * @param offset offset in target array
+	 * @return total number of values (might be larger than the space in the target array, the values that do not fit are skipped) or -1 if the item does not exist or is not a number item
+	 */
+	public int getItemValueDoubleArray(String itemName, final double[] target, final int offset) {
+		return readFirstItemValue(itemName, new IItemValueReader() {
+			
+			@Override
+			public int read(int dataType, Pointer valueDataPtr, int valueDataLength) {
+				return ItemDecoder.decodeNumbersInto(dataType, valueDataPtr, valueDataLength, target, offset);
+			}
+		});
+	}
+	
+	/**
+	 * Reads the values of a number or number list item as double array without
+	 * boxing them. Number range entries are returned as two values (lower, upper).
+	 * 
+	 * @param itemName item name
+	 * @return values, empty array if the item does not exist or is not a number item
+	 */
+	public double[] getItemValueDoubleArray(String itemName) {
+		final double[][] retValues = new double[1][];
+		
+		readFirstItemValue(itemName, new IItemValueReader() {
+			
+			@Override
+			public int read(int dataType, Pointer valueDataPtr, int valueDataLength) {
+				int count = ItemDecoder.decodeNumbersInto(dataType, valueDataPtr, valueDataLength, EMPTY_DOUBLE_ARRAY, 0);
+				if (count>0) {
+					retValues[0] = new double[count];
+					ItemDecoder.decodeNumbersInto(dataType, valueDataPtr, valueDataLength, retValues[0], 0);
+				}
+				return count;
+			}
+		});
+		return retValues[0]==null ? EMPTY_DOUBLE_ARRAY : retValues[0];
+	}
+	
+	/**
+	 * Reads the values of a timedate or timedate list item into a caller supplied array without
+	 * creating {@link NotesTimeDate} or {@link Calendar} objects. Each value is stored as packed innards,
+	 * see {@link NotesDateTimeUtils#packInnards(int, int)} and {@link NotesDateTimeUtils#unpackInnards(long)}.
+	 * Timedate range entries are written as two values (lower, upper).
+	 * 
+	 * @param itemName item name
+	 * @param target target array
+	 * @param offset offset in target array
+	 * @return total number of values (might be larger than the space in the target array, the values that do not fit are skipped) or -1 if the item does not exist or is not a timedate item
+	 */
+	public int getItemValueInnardsArray(String itemName, final long[] target, final int offset) {
+		return readFirstItemValue(itemName, new IItemValueReader() {
+			
+			@Override
+			public int read(int dataType, Pointer valueDataPtr, int valueDataLength) {
+				return ItemDecoder.decodeTimeDatesInto(dataType, valueDataPtr, valueDataLength, target, offset);
+			}
+		});
+	}
+	
+	/**
+	 * Reads the values of a timedate or timedate list item as packed innards,
+	 * see {@link #getItemValueInnardsArray(String, long[], int)}
+	 * 
+	 * @param itemName item name
+	 * @return values, empty array if the item does not exist or is not a timedate item
+	 */
+	public long[] getItemValueInnardsArray(String itemName) {
+		final long[][] retValues = new long[1][];
+		
+		readFirstItemValue(itemName, new IItemValueReader() {
+			
+			@Override
+			public int read(int dataType, Pointer valueDataPtr, int valueDataLength) {
+				int count = ItemDecoder.decodeTimeDatesInto(dataType, valueDataPtr, valueDataLength, EMPTY_LONG_ARRAY, 0);
+				if (count>0) {
+					retValues[0] = new long[count];
+					ItemDecoder.decodeTimeDatesInto(dataType, valueDataPtr, valueDataLength, retValues[0], 0);
+				}
+				return count;
+			}
+		});
+		return retValues[0]==null ? EMPTY_LONG_ARRAY : retValues[0];
+	}
+	
+	/**
+	 * Passes the values of a text or text list item to a sink without creating a {@link List}.
+	 * The sink receives a reused {@link CharSequence}; pure ASCII values are copied without
+	 * LMBCS conversion.
+	 * 
+	 * @param itemName item name
+	 * @param sink sink to receive the values
+	 * @return number of values or -1 if the item does not exist or is not a text item
+	 */
+	public int getItemValueTextList(String itemName, final ITextValueSink sink) {
+		final TextValueDecoder decoder = acquireTextValueDecoder();
+		try {
+			return readFirstItemValue(itemName, new IItemValueReader() {
+				
+				@Override
+				public int read(int dataType, Pointer valueDataPtr, int valueDataLength) {
+					return decoder.decode(dataType, valueDataPtr, valueDataLength, sink);
+				}
+			});
+		}
+		finally {
+			releaseTextValueDecoder(decoder);
+		}
+	}
+	
+	/**
+	 * Returns a decoder for text values with buffers that are reused for all items of this note.
+	 * The decoder is removed from the note until {@link #releaseTextValueDecoder(TextValueDecoder)}
+	 * is called, so a sink that reads other text items of the note while it is being called gets
+	 * its own decoder.
+	 * 
+	 * @return decoder
+	 */
+	TextValueDecoder acquireTextValueDecoder() {
+		TextValueDecoder decoder = m_textValueDecoder;
+		if (decoder==null) {
+			return new TextValueDecoder();
+		}
+		m_textValueDecoder = null;
+		return decoder;
+	}
+	
+	/**
+	 * Returns a decoder to the note for reuse
+	 * 
+	 * @param decoder decoder returned by {@link #acquireTextValueDecoder()}
+	 */
+	void releaseTextValueDecoder(TextValueDecoder decoder) {
+		m_textValueDecoder = decoder;
+	}
+	
+	/**
+	 * Callback to read an item value while its memory is locked
+	 */
+	static interface IItemValueReader {
+		
+		/**
+		 * Implement this method to decode the value
+		 * 
+		 * @param dataType data type
+		 * @param valueDataPtr pointer to the value data (after the data type WORD)
+		 * @param valueDataLength length of value data
+		 * @return result
+		 */
+		public int read(int dataType, Pointer valueDataPtr, int valueDataLength);
+		
+	}
+	
+	/**
+	 * Looks up the first item with the specified name with a single NSFItemInfo call and
+	 * passes its locked value to a reader
+	 * 
+	 * @param itemName item name
+	 * @param reader reader
+	 * @return result of the reader or -1 if the item does not exist
+	 */
+	private int readFirstItemValue(String itemName, IItemValueReader reader) {
+		checkHandle();
+		
+		Memory itemNameMem = NotesStringUtils.toLMBCS(itemName, false);
+		
+		NotesBlockIdStruct.ByReference itemBlockId = NotesBlockIdStruct.ByReference.newInstance();
+		NotesBlockIdStruct.ByReference valueBlockId = NotesBlockIdStruct.ByReference.newInstance();
+		ShortByReference retDataType = new ShortByReference();
+		IntByReference retValueLen = new IntByReference();
+		
+		short result;
+		if (PlatformUtils.is64Bit()) {
+			result = NotesNativeAPI64.get().NSFItemInfo(m_hNote64, itemNameMem, (short) (itemNameMem.size() & 0xffff),
+					itemBlockId, retDataType, valueBlockId, retValueLen);
+		}
+		else {
+			result = NotesNativeAPI32.get().NSFItemInfo(m_hNote32, itemNameMem, (short) (itemNameMem.size() & 0xffff),
+					itemBlockId, retDataType, valueBlockId, retValueLen);
+		}
+		
+		if (result == INotesErrorConstants.ERR_ITEM_NOT_FOUND) {
+			return -1;
+		}
+		NotesErrorUtils.checkResult(result);
+		
+		int dataType = retDataType.getValue() & 0xffff;
+		int valueLength = retValueLen.getValue();
+		
+		return readItemValue(dataType, valueBlockId, valueLength, reader);
+	}
+	
+	/**
+	 * Locks an item value and passes it to a reader
+	 * 
+	 * @param dataType data type
+	 * @param valueBlockId value block id
+	 * @param valueLength item value length plus 2 bytes for the data type WORD
+	 * @param reader reader
+	 * @return result of the reader
+	 */
+	int readItemValue(int dataType, NotesBlockIdStruct valueBlockId, int valueLength, IItemValueReader reader) {
+		Pointer poolPtr;
+		if (PlatformUtils.is64Bit()) {
+			poolPtr = Mem64.OSLockObject((long) valueBlockId.pool);
+		}
+		else {
+			poolPtr = Mem32.OSLockObject(valueBlockId.pool);
+		}
+		
+		try {
+			int block = (valueBlockId.block & 0xffff);
+			//skip the data type WORD
+			Pointer valueDataPtr = poolPtr.share(block + 2);
+			return reader.read(dataType, valueDataPtr, valueLength - 2);
+		}
+		finally {
+			if (PlatformUtils.is64Bit()) {
+				Mem64.OSUnlockObject((long) valueBlockId.pool);
+			}
+			else {
+				Mem32.OSUnlockObject(valueBlockId.pool);
+			}
+		}
+	}
+	
 	/**
 	 * Decodes an item value
 	 * 
@@ -2032,14 +2273,94 @@ public class NotesNote implements IRecyclableNotesObject {
 	 * file to be written to disk first like {@link #attachFile(String, String, Compression)},
 	 * but creates and auto-resizes an NSF binary object based on the data written in
 	 * {@link IAttachmentProducer#produceAttachment(OutputStream)}.
-	 * 
+	 *
 	 * @param producer attachment producer
 	 * @param uniqueFileNameInNote filename that will be stored internally with the attachment, displayed when the attachment is not part of any richtext item (called "V2 attachment" in the Domino help), and subsequently used when selecting which attachment to extract or detach.  Note that these operations may be carried out both from the workstation application Attachments dialog box and programmatically, so try to choose meaningful filenames as opposed to attach.001, attach002, etc., whenever possible. This function will be sure that the filename is really unique by appending _2, _3 etc. to the base filename, followed by the extension; use the returned NotesAttachment to get the filename we picked
 	 * @param fileCreated file creation date
 	 * @param fileModified file modified date
 	 * @return attachment object just created, e.g. to pass into {@link RichTextBuilder#addFileHotspot(NotesAttachment, String)}
 	 */
-	public NotesAttachment attachFile(IAttachmentProducer producer, String uniqueFileNameInNote, 
+	public NotesAttachment attachFile(final IAttachmentProducer producer, String uniqueFileNameInNote,
+			Date fileCreated, Date fileModified) {
+
+		//use a default initial object size of 1000 bytes if nothing is specified
+		int estimatedSize = producer.getSizeEstimation()<1 ? 1000 : producer.getSizeEstimation();
+
+		return attachFile(new IObjectDataWriter() {
+
+			@Override
+			public void writeData(NSFObjectOutputStream out) throws IOException {
+				try {
+					producer.produceAttachment(out);
+				}
+				finally {
+					out.close();
+				}
+			}
+		}, uniqueFileNameInNote, estimatedSize, fileCreated, fileModified);
+	}
+
+	/**
+	 * Creates a new attachment from an {@link InputStream} of unknown length, e.g. an
+	 * HTTP upload, without writing it to a temporary file first.<br>
+	 * <br>
+	 * The data is copied in chunks into a reusable native buffer and written to an NSF
+	 * binary object whose allocation grows while reading, so memory usage does not depend
+	 * on the file size. The stream is read to the end, but not closed.
+	 *
+	 * @param in stream to read the file data
+	 * @param uniqueFileNameInNote filename that will be stored internally with the attachment, see {@link #attachFile(IAttachmentProducer, String, Date, Date)}
+	 * @param fileCreated file creation date
+	 * @param fileModified file modified date
+	 * @return attachment object just created
+	 */
+	public NotesAttachment attachFile(final InputStream in, String uniqueFileNameInNote,
+			Date fileCreated, Date fileModified) {
+
+		return attachFile(new IObjectDataWriter() {
+
+			@Override
+			public void writeData(NSFObjectOutputStream out) throws IOException {
+				out.transferFrom(in);
+			}
+		}, uniqueFileNameInNote, 1000, fileCreated, fileModified);
+	}
+
+	/**
+	 * Creates a new attachment from a {@link ReadableByteChannel} of unknown length.<br>
+	 * <br>
+	 * The channel reads directly into the native buffer that is passed to NSFDbWriteObject,
+	 * so the data is not copied into the Java heap. The channel needs to be in blocking mode
+	 * and is read to the end, but not closed.
+	 *
+	 * @param channel channel to read the file data
+	 * @param uniqueFileNameInNote filename that will be stored internally with the attachment, see {@link #attachFile(IAttachmentProducer, String, Date, Date)}
+	 * @param fileCreated file creation date
+	 * @param fileModified file modified date
+	 * @return attachment object just created
+	 */
+	public NotesAttachment attachFile(final ReadableByteChannel channel, String uniqueFileNameInNote,
+			Date fileCreated, Date fileModified) {
+
+		return attachFile(new IObjectDataWriter() {
+
+			@Override
+			public void writeData(NSFObjectOutputStream out) throws IOException {
+				out.transferFrom(channel);
+			}
+		}, uniqueFileNameInNote, 1000, fileCreated, fileModified);
+	}
+
+	/**
+	 * Callback to write the data of a new attachment
+	 */
+	private static interface IObjectDataWriter {
+
+		public void writeData(NSFObjectOutputStream out) throws IOException;
+
+	}
+
+	private NotesAttachment attachFile(IObjectDataWriter writer, String uniqueFileNameInNote, int estimatedSize,
 			Date fileCreated, Date fileModified) {
 		checkHandle();
 
@@ -2047,10 +2368,61 @@ public class NotesNote implements IRecyclableNotesObject {
 		//implementation for Huffman that produced compatible result and no implementation at all
 		//for LZ1 (tried LZW, but that did not work either)
 		final Compression compression = Compression.NONE;
-		
+
 		//make sure that the unique filename is really unique, since it will be used to return the NotesAttachment object
+		String reallyUniqueFileName = getUniqueAttachmentFileName(uniqueFileNameInNote);
+
+		NSFObjectOutputStream out = new NSFObjectOutputStream(estimatedSize, ATTACHMENT_WRITE_BUFFER_SIZE);
+		int fileSize;
+		try {
+			writer.writeData(out);
+			fileSize = out.finish();
+		}
+		catch (Exception e) {
+			NotesError writeError = new NotesError(0, "Error writing binary NSF DB object for file "+reallyUniqueFileName, e);
+			//delete the object in case of errors
+			abortQuietly(out, writeError);
+			throw writeError;
+		}
+
+		try {
+			appendFileObjectItem(out.getRRV(), reallyUniqueFileName, fileSize, compression, fileCreated, fileModified);
+		}
+		catch (NotesError e) {
+			abortQuietly(out, e);
+			throw e;
+		}
+
+		//load and return created attachment
+		NotesAttachment att = getAttachment(reallyUniqueFileName);
+		return att;
+	}
+
+	/**
+	 * Deletes the NSF object of an attachment that could not be written. Errors
+	 * are added as suppressed exceptions to the original error so that they do not hide it.
+	 *
+	 * @param out stream of the NSF object
+	 * @param originalError error that caused the abort
+	 */
+	private static void abortQuietly(NSFObjectOutputStream out, Throwable originalError) {
+		try {
+			out.abort();
+		}
+		catch (Throwable t) {
+			originalError.addSuppressed(t);
+		}
+	}
+
+	/**
+	 * Appends _2, _3 etc. to a filename until it does not match an existing attachment name
+	 *
+	 * @param fileName filename
+	 * @return unique filename
+	 */
+	private String getUniqueAttachmentFileName(String fileName) {
 		List<Object> existingFileItems = FormulaExecution.evaluate("@AttachmentNames", this);
-		String reallyUniqueFileName = uniqueFileNameInNote;
+		String reallyUniqueFileName = fileName;
 		if (existingFileItems.contains(reallyUniqueFileName)) {
 			String newFileName=reallyUniqueFileName;
 			int idx = 1;
@@ -2067,154 +2439,82 @@ public class NotesNote implements IRecyclableNotesObject {
 				reallyUniqueFileName = newFileName;
 			}
 		}
-		
-		//use a default initial object size of 1000 bytes if nothing is specified
-		final int estimatedSize = producer.getSizeEstimation()<1 ? 1000 : producer.getSizeEstimation();
-		
-		final int bufferSize = 30000;
-		final byte[] buffer = new byte[bufferSize];
-		final AtomicInteger currBufferOffset = new AtomicInteger(0);
-
-		final AtomicInteger currFileSize = new AtomicInteger(0);
+		return reallyUniqueFileName;
+	}
 
+	/**
+	 * Appends a $FILE item that references a binary NSF object with file data
+	 *
+	 * @param rrv object id
+	 * @param reallyUniqueFileName filename
+	 * @param fileSize file size
+	 * @param compression compression of the object data
+	 * @param fileCreated file creation date
+	 * @param fileModified file modified date
+	 */
+	private void appendFileObjectItem(int rrv, String reallyUniqueFileName, int fileSize, Compression compression,
+			Date fileCreated, Date fileModified) {
 		Memory fileItemNameMem = NotesStringUtils.toLMBCS("$FILE", false);
 		Memory reallyUniqueFileNameMem = NotesStringUtils.toLMBCS(reallyUniqueFileName, false);
 
 		short result;
 		if (PlatformUtils.is64Bit()) {
-			//allocate memory buffer used to transfer written data to the NSF binary object
-			final LongByReference retBufferHandle = new LongByReference();
-			result = Mem64.OSMemAlloc((short) 0, bufferSize, retBufferHandle);
+			//allocate memory for the $FILE item value:
+			//datatype WORD + FILEOBJECT structure + unique filename
+			int sizeOfFileObjectWithFileName = (int) (2 + NotesConstants.fileObjectSize + reallyUniqueFileNameMem.size());
+			LongByReference retFileObjectWithFileNameHandle = new LongByReference();
+			result = Mem64.OSMemAlloc((short) 0, sizeOfFileObjectWithFileName, retFileObjectWithFileNameHandle);
 			NotesErrorUtils.checkResult(result);
-			final IntByReference rtnRRV = new IntByReference();
-			try {
-				short type = 0; // 0 = attachment, store in DAOS if available
-
-				//allocate binary object with initial size
-				result = NotesNativeAPI64.get().NSFDbAllocObjectExtended2(getParent().getHandle64(), estimatedSize,
-						NotesConstants.NOTE_CLASS_DOCUMENT, (short) 0, type, rtnRRV);
-				NotesErrorUtils.checkResult(result);
-
-				try {
-					//call producer to write file data
-					OutputStream nsfObjectOutputStream = new OutputStream() {
 
-						@Override
-						public void write(int b) throws IOException {
-							//write byte value at current buffer array position
-							int iCurrBufferOffset = currBufferOffset.get();
-							buffer[iCurrBufferOffset] = (byte) (b & 0xff);
-
-							//check if buffer full
-							if ((iCurrBufferOffset+1) == bufferSize) {
-								//check if we need to grow the NSF object
-								int newObjectSize = currFileSize.get() + bufferSize;
-								if (newObjectSize > estimatedSize) {
-									short result = NotesNativeAPI64.get().NSFDbReallocObject(getParent().getHandle64(),
-											rtnRRV.getValue(), newObjectSize);
-									NotesErrorUtils.checkResult(result);
-								}
+			//produce FILEOBJECT data structure
+			Pointer ptrFileObjectWithDatatype = Mem64.OSLockObject(retFileObjectWithFileNameHandle.getValue());
+			try {
+				//write datatype WORD
+				ptrFileObjectWithDatatype.setShort(0, (short) (NotesItem.TYPE_OBJECT & 0xffff));
+				NotesFileObjectStruct fileObjectStruct = NotesFileObjectStruct.newInstance(ptrFileObjectWithDatatype.share(2));
+				fileObjectStruct.CompressionType = (short) (compression.getValue() & 0xffff);
+				fileObjectStruct.FileAttributes = 0;
+				fileObjectStruct.FileCreated = NotesTimeDateStruct.newInstance(fileCreated);
+				fileObjectStruct.FileModified = NotesTimeDateStruct.newInstance(fileModified);
+				fileObjectStruct.FileNameLength = (short) (reallyUniqueFileNameMem.size() & 0xffff);
+				fileObjectStruct.FileSize = fileSize;
+				fileObjectStruct.Flags = 0;
+				fileObjectStruct.Header.RRV = rrv;
+				fileObjectStruct.Header.ObjectType = NotesConstants.OBJECT_FILE;
 
-								//copy buffer array data into memory buffer
-								Pointer ptrBuffer = Mem64.OSLockObject(retBufferHandle.getValue());
-								try {
-									ptrBuffer.write(0, buffer, 0, bufferSize);
-								}
-								finally {
-									Mem64.OSUnlockObject(retBufferHandle.getValue());
-								}
+				fileObjectStruct.write();
 
-								//write memory buffer to NSF object
-								short result = NotesNativeAPI64.get().NSFDbWriteObject(
-										getParent().getHandle64(),
-										rtnRRV.getValue(),
-										retBufferHandle.getValue(),
-										currFileSize.get(), bufferSize);
-								NotesErrorUtils.checkResult(result);
-
-								//increment NSF object offset by bufferSize
-								currFileSize.addAndGet(bufferSize);
-								//reset currBufferOffset
-								currBufferOffset.set(0);
-							}
-							else {
-								//buffer not full yet
-								
-								//increment buffer offset
-								currBufferOffset.incrementAndGet();
-							}
-						}
+				//append unique filename
+				ptrFileObjectWithDatatype.share(2 + NotesConstants.fileObjectSize).write(0, reallyUniqueFileNameMem.getByteArray(0, (int) reallyUniqueFileNameMem.size()), 0, (int) reallyUniqueFileNameMem.size());
+			}
+			finally {
+				Mem64.OSUnlockObject(retFileObjectWithFileNameHandle.getValue());
+			}
 
-					};
-
-					try {
-						if (compression == Compression.NONE) {
-							producer.produceAttachment(nsfObjectOutputStream);
-						}
-						else {
-							throw new IllegalArgumentException("Unsupported compression: "+compression);
-						}
-					}
-					finally {
-						nsfObjectOutputStream.close();
-					}
-					
-					int iCurrBufferOffset = currBufferOffset.get();
-					if (iCurrBufferOffset>0) {
-						//we need to write the remaining buffer data to the NSF object
-						
-						//set the correct total filesize
-						int finalFileSize = currFileSize.get() + iCurrBufferOffset;
-						result = NotesNativeAPI64.get().NSFDbReallocObject(getParent().getHandle64(),
-								rtnRRV.getValue(), finalFileSize);
-						NotesErrorUtils.checkResult(result);
-
-						//copy buffer array data into memory buffer
-						Pointer ptrBuffer = Mem64.OSLockObject(retBufferHandle.getValue());
-						try {
-							ptrBuffer.write(0, buffer, 0, iCurrBufferOffset);
-						}
-						finally {
-							Mem64.OSUnlockObject(retBufferHandle.getValue());
-						}
-						
-						//write memory buffer to NSF object
-						result = NotesNativeAPI64.get().NSFDbWriteObject(
-								getParent().getHandle64(),
-								rtnRRV.getValue(),
-								retBufferHandle.getValue(),
-								currFileSize.get(), iCurrBufferOffset);
-						NotesErrorUtils.checkResult(result);
-
-						currFileSize.set(finalFileSize);
-					}
-					else if (estimatedSize != currFileSize.get()) {
-						//make sure the object has the right size
-						result = NotesNativeAPI64.get().NSFDbReallocObject(getParent().getHandle64(),
-								rtnRRV.getValue(), currFileSize.get());
-						NotesErrorUtils.checkResult(result);
-					}
-				}
-				catch (Exception e) {
-					//delete the object in case of errors
-					result = NotesNativeAPI64.get().NSFDbFreeObject(getParent().getHandle64(), rtnRRV.getValue());
-					NotesErrorUtils.checkResult(result);
-					throw new NotesError(0, "Error writing binary NSF DB object for file "+reallyUniqueFileName, e);
-				}
-			}
-			finally {
-				Mem64.OSMemFree(retBufferHandle.getValue());
-			}
+			NotesBlockIdStruct.ByValue bhValue = NotesBlockIdStruct.ByValue.newInstance();
+			bhValue.pool = (int) retFileObjectWithFileNameHandle.getValue();
 
+			int fDealloc = 1;
+			//transfers ownership if the item value buffer to the note
+			result = NotesNativeAPI64.get().NSFItemAppendObject(m_hNote64,
+					NotesConstants.ITEM_SUMMARY,
+					fileItemNameMem,
+					(short) (fileItemNameMem.size() & 0xffff),
+					bhValue,
+					sizeOfFileObjectWithFileName,
+					fDealloc);
+			NotesErrorUtils.checkResult(result);
+		}
+		else {
 			//allocate memory for the $FILE item value:
 			//datatype WORD + FILEOBJECT structure + unique filename
 			int sizeOfFileObjectWithFileName = (int) (2 + NotesConstants.fileObjectSize + reallyUniqueFileNameMem.size());
-			LongByReference retFileObjectWithFileNameHandle = new LongByReference();
-			result = Mem64.OSMemAlloc((short) 0, sizeOfFileObjectWithFileName, retFileObjectWithFileNameHandle);
+			IntByReference retFileObjectWithFileNameHandle = new IntByReference();
+			result = Mem32.OSMemAlloc((short) 0, sizeOfFileObjectWithFileName, retFileObjectWithFileNameHandle);
 			NotesErrorUtils.checkResult(result);
-			
+
 			//produce FILEOBJECT data structure
-			Pointer ptrFileObjectWithDatatype = Mem64.OSLockObject(retFileObjectWithFileNameHandle.getValue());
+			Pointer ptrFileObjectWithDatatype = Mem32.OSLockObject(retFileObjectWithFileNameHandle.getValue());
 			try {
 				//write datatype WORD
 				ptrFileObjectWithDatatype.setShort(0, (short) (NotesItem.TYPE_OBJECT & 0xffff));
@@ -2224,26 +2524,26 @@ public class NotesNote implements IRecyclableNotesObject {
 				fileObjectStruct.FileCreated = NotesTimeDateStruct.newInstance(fileCreated);
 				fileObjectStruct.FileModified = NotesTimeDateStruct.newInstance(fileModified);
 				fileObjectStruct.FileNameLength = (short) (reallyUniqueFileNameMem.size() & 0xffff);
-				fileObjectStruct.FileSize = currFileSize.get();
+				fileObjectStruct.FileSize = fileSize;
 				fileObjectStruct.Flags = 0;
-				fileObjectStruct.Header.RRV = rtnRRV.getValue();
+				fileObjectStruct.Header.RRV = rrv;
 				fileObjectStruct.Header.ObjectType = NotesConstants.OBJECT_FILE;
-				
+
 				fileObjectStruct.write();
-				
+
 				//append unique filename
 				ptrFileObjectWithDatatype.share(2 + NotesConstants.fileObjectSize).write(0, reallyUniqueFileNameMem.getByteArray(0, (int) reallyUniqueFileNameMem.size()), 0, (int) reallyUniqueFileNameMem.size());
 			}
 			finally {
-				Mem64.OSUnlockObject(retFileObjectWithFileNameHandle.getValue());
+				Mem32.OSUnlockObject(retFileObjectWithFileNameHandle.getValue());
 			}
-			
+
 			NotesBlockIdStruct.ByValue bhValue = NotesBlockIdStruct.ByValue.newInstance();
 			bhValue.pool = (int) retFileObjectWithFileNameHandle.getValue();
 
 			int fDealloc = 1;
 			//transfers ownership if the item value buffer to the note
-			result = NotesNativeAPI64.get().NSFItemAppendObject(m_hNote64,
+			result = NotesNativeAPI32.get().NSFItemAppendObject(m_hNote32,
 					NotesConstants.ITEM_SUMMARY,
 					fileItemNameMem,
 					(short) (fileItemNameMem.size() & 0xffff),
@@ -2252,181 +2552,307 @@ public class NotesNote implements IRecyclableNotesObject {
 					fDealloc);
 			NotesErrorUtils.checkResult(result);
 		}
-		else {
-			//allocate memory buffer used to transfer written data to the NSF binary object
-			final IntByReference retBufferHandle = new IntByReference();
-			result = Mem32.OSMemAlloc((short) 0, bufferSize, retBufferHandle);
-			NotesErrorUtils.checkResult(result);
-			final IntByReference rtnRRV = new IntByReference();
-			try {
-				short type = 0; // 0 = attachment, store in DAOS if available
+	}
+
+	/** size of the native buffer used to write attachment data to NSF objects */
+	private static final int ATTACHMENT_WRITE_BUFFER_SIZE = 65535;
+
+	/** maximum number of bytes that an NSF object allocation grows at once */
+	private static final int MAX_OBJECT_GROW_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * {@link OutputStream} that writes into a new binary NSF object.<br>
+	 * <br>
+	 * Data is collected in a native buffer allocated with OSMemAlloc, which is passed to
+	 * NSFDbWriteObject when it is full. The object allocation is doubled when it is too small
+	 * (by at most 64 MB at once) to keep the number of NSFDbReallocObject
+	 * calls low for unknown file sizes, and trimmed to the written size in {@link #finish()}.
+	 */
+	private class NSFObjectOutputStream extends OutputStream {
+		private int m_bufferSize;
+		private long m_hBuffer64;
+		private int m_hBuffer32;
+		private Pointer m_bufferPtr;
+		private int m_bufferPos;
+		private byte[] m_singleByteBuffer;
+		private int m_singleByteBufferPos;
+		private int m_rrv;
+		private int m_allocatedSize;
+		private int m_objectSize;
+		private boolean m_finished;
+
+		public NSFObjectOutputStream(int initialSize, int bufferSize) {
+			m_bufferSize = bufferSize;
+			m_allocatedSize = initialSize;
+			//single byte writes are collected on the heap and copied in bulk
+			m_singleByteBuffer = new byte[Math.min(bufferSize, 4096)];
+
+			short type = 0; // 0 = attachment, store in DAOS if available
+			short result;
+
+			if (PlatformUtils.is64Bit()) {
+				//allocate memory buffer used to transfer written data to the NSF binary object
+				LongByReference retBufferHandle = new LongByReference();
+				result = Mem64.OSMemAlloc((short) 0, bufferSize, retBufferHandle);
+				NotesErrorUtils.checkResult(result);
+				m_hBuffer64 = retBufferHandle.getValue();
 
 				//allocate binary object with initial size
-				result = NotesNativeAPI32.get().NSFDbAllocObjectExtended2(getParent().getHandle32(), estimatedSize,
+				IntByReference rtnRRV = new IntByReference();
+				result = NotesNativeAPI64.get().NSFDbAllocObjectExtended2(getParent().getHandle64(), initialSize,
 						NotesConstants.NOTE_CLASS_DOCUMENT, (short) 0, type, rtnRRV);
+				if (result!=0) {
+					freeBuffer();
+				}
+				NotesErrorUtils.checkResult(result);
+				m_rrv = rtnRRV.getValue();
+			}
+			else {
+				//allocate memory buffer used to transfer written data to the NSF binary object
+				IntByReference retBufferHandle = new IntByReference();
+				result = Mem32.OSMemAlloc((short) 0, bufferSize, retBufferHandle);
 				NotesErrorUtils.checkResult(result);
+				m_hBuffer32 = retBufferHandle.getValue();
 
-				try {
-					//call producer to write file data
-					OutputStream nsfObjectOutputStream = new OutputStream() {
+				//allocate binary object with initial size
+				IntByReference rtnRRV = new IntByReference();
+				result = NotesNativeAPI32.get().NSFDbAllocObjectExtended2(getParent().getHandle32(), initialSize,
+						NotesConstants.NOTE_CLASS_DOCUMENT, (short) 0, type, rtnRRV);
+				if (result!=0) {
+					freeBuffer();
+				}
+				NotesErrorUtils.checkResult(result);
+				m_rrv = rtnRRV.getValue();
+			}
+		}
 
+		public int getRRV() {
+			return m_rrv;
+		}
 
-						@Override
-						public void write(int b) throws IOException {
-							//write byte value at current buffer array position
-							int iCurrBufferOffset = currBufferOffset.get();
-							buffer[iCurrBufferOffset] = (byte) (b & 0xff);
-
-							//check if buffer full
-							if ((iCurrBufferOffset+1) == bufferSize) {
-								//check if we need to grow the NSF object
-								int newObjectSize = currFileSize.get() + bufferSize;
-								if (newObjectSize > estimatedSize) {
-									short result = NotesNativeAPI32.get().NSFDbReallocObject(getParent().getHandle32(),
-											rtnRRV.getValue(), newObjectSize);
-									NotesErrorUtils.checkResult(result);
-								}
+		private void checkOpen() {
+			if (m_finished) {
+				throw new IllegalStateException("NSF object has already been written");
+			}
+		}
 
-								//copy buffer array data into memory buffer
-								Pointer ptrBuffer = Mem32.OSLockObject(retBufferHandle.getValue());
-								try {
-									ptrBuffer.write(0, buffer, 0, bufferSize);
-								}
-								finally {
-									Mem32.OSUnlockObject(retBufferHandle.getValue());
-								}
+		/**
+		 * Locks the native buffer if not already done
+		 */
+		private void lockBuffer() {
+			if (m_bufferPtr==null) {
+				m_bufferPtr = PlatformUtils.is64Bit() ? Mem64.OSLockObject(m_hBuffer64) : Mem32.OSLockObject(m_hBuffer32);
+			}
+		}
 
-								//write memory buffer to NSF object
-								short result = NotesNativeAPI32.get().NSFDbWriteObject(
-										getParent().getHandle32(),
-										rtnRRV.getValue(),
-										retBufferHandle.getValue(),
-										currFileSize.get(), bufferSize);
-								NotesErrorUtils.checkResult(result);
-
-								//increment NSF object offset by bufferSize
-								currFileSize.addAndGet(bufferSize);
-								//reset currBufferOffset
-								currBufferOffset.set(0);
-							}
-							else {
-								//buffer not full yet
-								
-								//increment buffer offset
-								currBufferOffset.incrementAndGet();
-							}
-						}
-					};
-					
-					try {
-						if (compression == Compression.NONE) {
-							producer.produceAttachment(nsfObjectOutputStream);
-						}
-						else {
-							throw new IllegalArgumentException("Unsupported compression: "+compression);
-						}
-					}
-					finally {
-						nsfObjectOutputStream.close();
-					}
+		private void unlockBuffer() {
+			if (m_bufferPtr!=null) {
+				if (PlatformUtils.is64Bit()) {
+					Mem64.OSUnlockObject(m_hBuffer64);
+				}
+				else {
+					Mem32.OSUnlockObject(m_hBuffer32);
+				}
+				m_bufferPtr = null;
+			}
+		}
 
-					int iCurrBufferOffset = currBufferOffset.get();
-					if (iCurrBufferOffset>0) {
-						//we need to write the remaining buffer data to the NSF object
-						
-						//set the correct total filesize
-						int finalFileSize = currFileSize.get() + iCurrBufferOffset;
-						result = NotesNativeAPI32.get().NSFDbReallocObject(getParent().getHandle32(),
-								rtnRRV.getValue(), finalFileSize);
-						NotesErrorUtils.checkResult(result);
-
-						//copy buffer array data into memory buffer
-						Pointer ptrBuffer = Mem32.OSLockObject(retBufferHandle.getValue());
-						try {
-							ptrBuffer.write(0, buffer, 0, iCurrBufferOffset);
-						}
-						finally {
-							Mem32.OSUnlockObject(retBufferHandle.getValue());
-						}
-						
-						//write memory buffer to NSF object
-						result = NotesNativeAPI32.get().NSFDbWriteObject(
-								getParent().getHandle32(),
-								rtnRRV.getValue(),
-								retBufferHandle.getValue(),
-								currFileSize.get(), iCurrBufferOffset);
-						NotesErrorUtils.checkResult(result);
-
-						currFileSize.set(finalFileSize);
-					}
-					else if (estimatedSize != currFileSize.get()) {
-						//make sure the object has the right size
-						result = NotesNativeAPI32.get().NSFDbReallocObject(getParent().getHandle32(),
-								rtnRRV.getValue(), currFileSize.get());
-						NotesErrorUtils.checkResult(result);
-					}
+		private void freeBuffer() {
+			unlockBuffer();
+			if (PlatformUtils.is64Bit()) {
+				if (m_hBuffer64!=0) {
+					Mem64.OSMemFree(m_hBuffer64);
+					m_hBuffer64 = 0;
 				}
-				catch (Exception e) {
-					//delete the object in case of errors
-					result = NotesNativeAPI32.get().NSFDbFreeObject(getParent().getHandle32(), rtnRRV.getValue());
-					NotesErrorUtils.checkResult(result);
-					throw new NotesError(0, "Error writing binary NSF DB object for file "+reallyUniqueFileName, e);
+			}
+			else {
+				if (m_hBuffer32!=0) {
+					Mem32.OSMemFree(m_hBuffer32);
+					m_hBuffer32 = 0;
 				}
 			}
-			finally {
-				Mem32.OSMemFree(retBufferHandle.getValue());
+		}
+
+		/**
+		 * Copies the bytes collected by {@link #write(int)} to the native buffer
+		 */
+		private void copySingleBytes() {
+			if (m_singleByteBufferPos==0) {
+				return;
 			}
+			lockBuffer();
+			m_bufferPtr.write(m_bufferPos, m_singleByteBuffer, 0, m_singleByteBufferPos);
+			m_bufferPos += m_singleByteBufferPos;
+			m_singleByteBufferPos = 0;
+		}
 
-			//allocate memory for the $FILE item value:
-			//datatype WORD + FILEOBJECT structure + unique filename
-			int sizeOfFileObjectWithFileName = (int) (2 + NotesConstants.fileObjectSize + reallyUniqueFileNameMem.size());
-			IntByReference retFileObjectWithFileNameHandle = new IntByReference();
-			result = Mem32.OSMemAlloc((short) 0, sizeOfFileObjectWithFileName, retFileObjectWithFileNameHandle);
+		@Override
+		public void write(int b) throws IOException {
+			checkOpen();
+			m_singleByteBuffer[m_singleByteBufferPos++] = (byte) (b & 0xff);
+
+			if (m_bufferPos + m_singleByteBufferPos == m_bufferSize) {
+				flushBuffer();
+			}
+			else if (m_singleByteBufferPos == m_singleByteBuffer.length) {
+				copySingleBytes();
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			checkOpen();
+			if (off<0 || len<0 || len>b.length-off)
+				throw new IndexOutOfBoundsException();
+
+			//keep the order of previous single byte writes
+			copySingleBytes();
+
+			//copy whole ranges into the native buffer instead of writing byte by byte
+			while (len>0) {
+				int count = Math.min(len, m_bufferSize - m_bufferPos);
+				lockBuffer();
+				m_bufferPtr.write(m_bufferPos, b, off, count);
+				m_bufferPos += count;
+				off += count;
+				len -= count;
+
+				if (m_bufferPos == m_bufferSize) {
+					flushBuffer();
+				}
+			}
+		}
+
+		/**
+		 * Reads a stream to the end and writes its data
+		 *
+		 * @param in stream
+		 * @throws IOException in case of I/O errors
+		 */
+		public void transferFrom(InputStream in) throws IOException {
+			byte[] chunk = new byte[m_bufferSize];
+			int len;
+			while ((len = in.read(chunk)) != -1) {
+				write(chunk, 0, len);
+			}
+		}
+
+		/**
+		 * Reads a channel to the end and writes its data. The channel reads directly
+		 * into the native buffer.
+		 *
+		 * @param channel channel
+		 * @throws IOException in case of I/O errors
+		 */
+		public void transferFrom(ReadableByteChannel channel) throws IOException {
+			checkOpen();
+			copySingleBytes();
+			while (true) {
+				lockBuffer();
+				ByteBuffer buf = m_bufferPtr.getByteBuffer(m_bufferPos, m_bufferSize - m_bufferPos);
+				int len = channel.read(buf);
+				if (len == -1) {
+					break;
+				}
+				m_bufferPos += len;
+
+				if (m_bufferPos == m_bufferSize) {
+					flushBuffer();
+				}
+			}
+		}
+
+		/**
+		 * Writes the buffer content to the NSF object
+		 */
+		private void flushBuffer() {
+			copySingleBytes();
+			if (m_bufferPos==0) {
+				return;
+			}
+			unlockBuffer();
+
+			long newObjectSize = (long) m_objectSize + m_bufferPos;
+			if (newObjectSize > Integer.MAX_VALUE) {
+				throw new NotesError(0, "Attachment data exceeds the maximum size of "+Integer.MAX_VALUE+" bytes");
+			}
+			if (newObjectSize > m_allocatedSize) {
+				//grow the NSF object, doubling its size to reduce realloc calls
+				long grownSize = (long) m_allocatedSize + Math.min(m_allocatedSize, MAX_OBJECT_GROW_SIZE);
+				reallocObject((int) Math.min(Integer.MAX_VALUE, Math.max(newObjectSize, grownSize)));
+			}
+
+			short result;
+			if (PlatformUtils.is64Bit()) {
+				result = NotesNativeAPI64.get().NSFDbWriteObject(getParent().getHandle64(), m_rrv, m_hBuffer64,
+						m_objectSize, m_bufferPos);
+			}
+			else {
+				result = NotesNativeAPI32.get().NSFDbWriteObject(getParent().getHandle32(), m_rrv, m_hBuffer32,
+						m_objectSize, m_bufferPos);
+			}
 			NotesErrorUtils.checkResult(result);
-			
-			//produce FILEOBJECT data structure
-			Pointer ptrFileObjectWithDatatype = Mem32.OSLockObject(retFileObjectWithFileNameHandle.getValue());
+
+			m_objectSize = (int) newObjectSize;
+			m_bufferPos = 0;
+		}
+
+		private void reallocObject(int newSize) {
+			short result;
+			if (PlatformUtils.is64Bit()) {
+				result = NotesNativeAPI64.get().NSFDbReallocObject(getParent().getHandle64(), m_rrv, newSize);
+			}
+			else {
+				result = NotesNativeAPI32.get().NSFDbReallocObject(getParent().getHandle32(), m_rrv, newSize);
+			}
+			NotesErrorUtils.checkResult(result);
+			m_allocatedSize = newSize;
+		}
+
+		@Override
+		public void close() throws IOException {
+			//object is completed in finish() or deleted in abort()
+		}
+
+		/**
+		 * Writes the remaining buffer content, trims the object to the written size
+		 * and frees the native buffer
+		 *
+		 * @return object size
+		 */
+		public int finish() {
+			checkOpen();
 			try {
-				//write datatype WORD
-				ptrFileObjectWithDatatype.setShort(0, (short) (NotesItem.TYPE_OBJECT & 0xffff));
-				NotesFileObjectStruct fileObjectStruct = NotesFileObjectStruct.newInstance(ptrFileObjectWithDatatype.share(2));
-				fileObjectStruct.CompressionType = (short) (compression.getValue() & 0xffff);
-				fileObjectStruct.FileAttributes = 0;
-				fileObjectStruct.FileCreated = NotesTimeDateStruct.newInstance(fileCreated);
-				fileObjectStruct.FileModified = NotesTimeDateStruct.newInstance(fileModified);
-				fileObjectStruct.FileNameLength = (short) (reallyUniqueFileNameMem.size() & 0xffff);
-				fileObjectStruct.FileSize = currFileSize.get();
-				fileObjectStruct.Flags = 0;
-				fileObjectStruct.Header.RRV = rtnRRV.getValue();
-				fileObjectStruct.Header.ObjectType = NotesConstants.OBJECT_FILE;
-				
-				fileObjectStruct.write();
-				
-				//append unique filename
-				ptrFileObjectWithDatatype.share(2 + NotesConstants.fileObjectSize).write(0, reallyUniqueFileNameMem.getByteArray(0, (int) reallyUniqueFileNameMem.size()), 0, (int) reallyUniqueFileNameMem.size());
+				flushBuffer();
+
+				if (m_allocatedSize != m_objectSize) {
+					//make sure the object has the right size
+					reallocObject(m_objectSize);
+				}
 			}
 			finally {
-				Mem32.OSUnlockObject(retFileObjectWithFileNameHandle.getValue());
+				freeBuffer();
 			}
-			
-			NotesBlockIdStruct.ByValue bhValue = NotesBlockIdStruct.ByValue.newInstance();
-			bhValue.pool = (int) retFileObjectWithFileNameHandle.getValue();
+			m_finished = true;
+			return m_objectSize;
+		}
 
-			int fDealloc = 1;
-			//transfers ownership if the item value buffer to the note
-			result = NotesNativeAPI32.get().NSFItemAppendObject(m_hNote32,
-					NotesConstants.ITEM_SUMMARY,
-					fileItemNameMem,
-					(short) (fileItemNameMem.size() & 0xffff),
-					bhValue,
-					sizeOfFileObjectWithFileName,
-					fDealloc);
+		/**
+		 * Frees the native buffer and deletes the NSF object
+		 */
+		public void abort() {
+			freeBuffer();
+			m_finished = true;
+
+			short result;
+			if (PlatformUtils.is64Bit()) {
+				result = NotesNativeAPI64.get().NSFDbFreeObject(getParent().getHandle64(), m_rrv);
+			}
+			else {
+				result = NotesNativeAPI32.get().NSFDbFreeObject(getParent().getHandle32(), m_rrv);
+			}
 			NotesErrorUtils.checkResult(result);
 		}
-		
-		//load and return created attachment
-		NotesAttachment att = getAttachment(reallyUniqueFileName);
-		return att;
 	}
 	
 	/**
@@ -2821,6 +3247,111 @@ public class NotesNote implements IRecyclableNotesObject {
 		}
 	}
 
+	/**
+	 * Copies the values of several items into a {@link NotesItemSnapshot} with a single scan through
+	 * the item list of the note. Reading values from the snapshot does not need any further item
+	 * lookups, which is faster than calling {@link #getItemValue(String)} for each item when
+	 * many items are read.
+	 * 
+	 * @param itemNames names of items to copy (case insensitive) or none to copy all items
+	 * @return snapshot
+	 */
+	public NotesItemSnapshot snapshotItems(String... itemNames) {
+		checkHandle();
+		
+		final Set<String> itemNamesToCopy;
+		if (itemNames==null || itemNames.length==0) {
+			itemNamesToCopy = null;
+		}
+		else {
+			itemNamesToCopy = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+			itemNamesToCopy.addAll(Arrays.asList(itemNames));
+		}
+		
+		final NotesItemSnapshot snapshot = new NotesItemSnapshot(getNoteId(), isPreferNotesTimeDates());
+		
+		getItems((String) null, new IItemCallback() {
+			
+			@Override
+			public Action itemFound(NotesItem item) {
+				String itemName = item.getName();
+				if (itemNamesToCopy!=null && !itemNamesToCopy.contains(itemName)) {
+					return Action.Continue;
+				}
+				
+				int valueLength = item.getValueLength();
+				int offset = snapshot.addItem(itemName, item.getType(), item.isSummary(), valueLength);
+				if (valueLength==0) {
+					return Action.Continue;
+				}
+				
+				NotesBlockIdStruct valueBlockId = item.getValueBlockId();
+				Pointer poolPtr;
+				if (PlatformUtils.is64Bit()) {
+					poolPtr = Mem64.OSLockObject((long) valueBlockId.pool);
+				}
+				else {
+					poolPtr = Mem32.OSLockObject(valueBlockId.pool);
+				}
+				try {
+					int block = (valueBlockId.block & 0xffff);
+					poolPtr.read(block, snapshot.getArena(), offset, valueLength);
+				}
+				finally {
+					if (PlatformUtils.is64Bit()) {
+						Mem64.OSUnlockObject((long) valueBlockId.pool);
+					}
+					else {
+						Mem32.OSUnlockObject(valueBlockId.pool);
+					}
+				}
+				return Action.Continue;
+			}
+		});
+		
+		return snapshot;
+	}
+	
+	/**
+	 * Computes a fingerprint of all items of this note with data type, sequence number and
+	 * a hash of the raw value bytes per item. Store it with {@link NoteItemFingerprint#toByteArray()}
+	 * to detect item changes in later revisions with {@link #getItemChanges(NoteItemFingerprint)}.
+	 * 
+	 * @return fingerprint
+	 */
+	public NoteItemFingerprint getItemFingerprint() {
+		checkHandle();
+		return NoteItemFingerprint.create(this);
+	}
+	
+	/**
+	 * Compares the items of this note with a fingerprint of a previous revision and returns the
+	 * added, removed and changed item names.<br>
+	 * <br>
+	 * Item values are compared by hashing their raw value bytes. Items with a single instance
+	 * whose sequence number, data type and value length are unchanged have not been written
+	 * since the previous revision, so their values are not read at all, unless the note has been
+	 * updated 256 times or more since then (the item sequence number is a BYTE).
+	 * 
+	 * @param previous fingerprint of the previous revision
+	 * @return changes, contains the fingerprint of this revision for the next comparison
+	 */
+	public NoteItemChanges getItemChanges(NoteItemFingerprint previous) {
+		checkHandle();
+		NoteItemFingerprint current = NoteItemFingerprint.create(this, previous);
+		return current.diff(previous);
+	}
+	
+	/**
+	 * Compares the items of this note with another revision of the note
+	 * 
+	 * @param previousRevision previous revision
+	 * @return changes
+	 */
+	public NoteItemChanges getItemChanges(NotesNote previousRevision) {
+		return getItemChanges(previousRevision.getItemFingerprint());
+	}
+	
 	/**
 	 * Returns a {@link IRichTextNavigator} to traverse the CD record structure of a richtext item
 	 * back and forth
@@ -3378,6 +3909,35 @@ public class NotesNote implements IRecyclableNotesObject {
 		}
 	}
 	
+	/**
+	 * Creates an in-memory copy of this note with the same note id, OID and parent database
+	 * (using NSFNoteCopy). Used to keep notes that NSFDbGetNotes only lends to its callback.
+	 * 
+	 * @return copy
+	 */
+	NotesNote copyInMemory() {
+		checkHandle();
+		
+		if (PlatformUtils.is64Bit()) {
+			LongByReference rethDstNote = new LongByReference();
+			short result = NotesNativeAPI64.get().NSFNoteCopy(m_hNote64, rethDstNote);
+			NotesErrorUtils.checkResult(result);
+			
+			NotesNote copyNote = new NotesNote(m_parentDb, rethDstNote.getValue());
+			NotesGC.__objectCreated(NotesNote.class, copyNote);
+			return copyNote;
+		}
+		else {
+			IntByReference rethDstNote = new IntByReference();
+			short result = NotesNativeAPI32.get().NSFNoteCopy(m_hNote32, rethDstNote);
+			NotesErrorUtils.checkResult(result);
+			
+			NotesNote copyNote = new NotesNote(m_parentDb, rethDstNote.getValue());
+			NotesGC.__objectCreated(NotesNote.class, copyNote);
+			return copyNote;
+		}
+	}
+	
 	public NotesNote copyToDatabase(NotesDatabase targetDb) {
 		checkHandle();
 
@@ -3492,7 +4052,7 @@ public class NotesNote implements IRecyclableNotesObject {
 		return replaceItemValue(itemName, EnumSet.of(ItemType.SUMMARY), value);
 	}
 
-	private static String dumpValueType(Object value) {
+	static String dumpValueType(Object value) {
 		if (value instanceof List) {
 			List valueList = (List) value;
 			StringBuilder sb = new StringBuilder();
@@ -3549,8 +4109,15 @@ public class NotesNote implements IRecyclableNotesObject {
 			return null;
 	}
 	
+	/**
+	 * Checks if a value can be written with {@link #appendItemValue(String, EnumSet, Object)},
+	 * also used by {@link NoteWriteBatch} to reject values before anything is written
+	 * 
+	 * @param value value
+	 * @return true if supported
+	 */
 	@SuppressWarnings("rawtypes")
-	private boolean hasSupportedItemObjectType(Object value) {
+	static boolean hasSupportedItemObjectType(Object value) {
 		if (value==null) {
 			return true;
 		}
@@ -4525,7 +5092,7 @@ public class NotesNote implements IRecyclableNotesObject {
 		return convertedList;
 	}
 	
-	private boolean isStringList(List<?> list) {
+	private static boolean isStringList(List<?> list) {
 		if (list==null || list.isEmpty()) {
 			return false;
 		}
@@ -4537,7 +5104,7 @@ public class NotesNote implements IRecyclableNotesObject {
 		return true;
 	}
 
-	private boolean isCalendarOrCalendarArrayList(List<?> list) {
+	private static boolean isCalendarOrCalendarArrayList(List<?> list) {
 		if (list==null || list.isEmpty()) {
 			return false;
 		}
@@ -4581,7 +5148,7 @@ public class NotesNote implements IRecyclableNotesObject {
 		return true;
 	}
 	
-	private boolean isNumberOrNumberArrayList(List<?> list) {
+	private static boolean isNumberOrNumberArrayList(List<?> list) {
 		if (list==null || list.isEmpty()) {
 			return false;
 		}
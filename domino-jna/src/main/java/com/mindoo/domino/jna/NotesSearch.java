@@ -1,13 +1,27 @@
 package com.mindoo.domino.jna;
 
+import java.lang.ref.WeakReference;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.mindoo.domino.jna.NotesDatabase.DbMode;
 import com.mindoo.domino.jna.NotesSearch.SearchCallback.Action;
@@ -19,6 +33,7 @@ import com.mindoo.domino.jna.errors.FormulaCompilationError;
 import com.mindoo.domino.jna.errors.INotesErrorConstants;
 import com.mindoo.domino.jna.errors.NotesError;
 import com.mindoo.domino.jna.errors.NotesErrorUtils;
+import com.mindoo.domino.jna.gc.NotesGC;
 import com.mindoo.domino.jna.internal.Mem32;
 import com.mindoo.domino.jna.internal.Mem64;
 import com.mindoo.domino.jna.internal.NotesCallbacks;
@@ -32,6 +47,7 @@ import com.mindoo.domino.jna.internal.Win32NotesCallbacks;
 import com.mindoo.domino.jna.internal.structs.NotesTimeDateStruct;
 import com.mindoo.domino.jna.sync.NotesOriginatorIdData;
 import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
+import com.mindoo.domino.jna.utils.NotesInitUtils;
 import com.mindoo.domino.jna.utils.NotesStringUtils;
 import com.mindoo.domino.jna.utils.PlatformUtils;
 import com.mindoo.domino.jna.utils.StringUtil;
@@ -857,6 +873,472 @@ public class NotesSearch {
 		}
 	}
 	
+	/**
+	 * Runs an NSF search and returns the results as a {@link Stream}.<br>
+	 * <br>
+	 * The native search is run on a separate producer thread that reopens the database
+	 * (see {@link NotesDatabase#reopenDatabase()}) and feeds a bounded queue, so the
+	 * search is paused when the consumer falls behind. Each result is copied into an immutable
+	 * {@link SearchMatch} including the summary buffer values (if {@link Search#SUMMARY} is
+	 * used), so the objects can be kept after the search has moved on.<br>
+	 * <br>
+	 * <b>The stream must be closed (e.g. with try-with-resources) when the caller is done.</b>
+	 * Closing the stream stops the native search with {@link Action#Stop}. Short-circuiting operations
+	 * like <code>findFirst()</code> or <code>limit(n)</code> stop consuming the queue; the producer
+	 * stops the search as well as soon as the stream is closed or no longer referenced.<br>
+	 * <br>
+	 * Errors of the search, e.g. a {@link FormulaCompilationError}, are rethrown in the consumer thread.
+	 * The note ids of the <code>searchFilter</code> ID table are copied when the stream is created.
+	 * 
+	 * @param db database to search in
+	 * @param searchFilter optional search scope as {@link NotesIDTable} or null
+	 * @param formula formula or null
+	 * @param viewTitle optional view title that will be returned for "@ ViewTitle" within the formula or null
+	 * @param searchFlags flags to control searching ({@link Search})
+	 * @param noteClasses noteclasses to search
+	 * @param since The date of the earliest modified note that is matched or null
+	 * @return stream of search matches
+	 */
+	public static Stream<SearchMatch> stream(NotesDatabase db, NotesIDTable searchFilter, String formula, String viewTitle,
+			EnumSet<Search> searchFlags, EnumSet<NoteClass> noteClasses, NotesTimeDate since) {
+		return stream(db, searchFilter, formula, null, viewTitle, searchFlags, noteClasses, since, 1000);
+	}
+	
+	/**
+	 * Runs an NSF search and returns the results as a {@link Stream}. See
+	 * {@link #stream(NotesDatabase, NotesIDTable, String, String, EnumSet, EnumSet, NotesTimeDate)}
+	 * for details.
+	 * 
+	 * @param db database to search in
+	 * @param searchFilter optional search scope as {@link NotesIDTable} or null
+	 * @param formula formula or null
+	 * @param columnFormulas map with programmatic column names (key) and formulas (value) with keys sorted in column order or null to output all items
+	 * @param viewTitle optional view title that will be returned for "@ ViewTitle" within the formula or null
+	 * @param searchFlags flags to control searching ({@link Search})
+	 * @param noteClasses noteclasses to search
+	 * @param since The date of the earliest modified note that is matched or null
+	 * @param queueSize max number of search matches buffered between producer and consumer
+	 * @return stream of search matches
+	 */
+	public static Stream<SearchMatch> stream(NotesDatabase db, NotesIDTable searchFilter, String formula, Map<String,String> columnFormulas,
+			String viewTitle, EnumSet<Search> searchFlags, EnumSet<NoteClass> noteClasses, NotesTimeDate since, int queueSize) {
+		if (db==null) {
+			throw new IllegalArgumentException("Database cannot be null");
+		}
+		if (db.isRecycled()) {
+			throw new NotesError(0, "Database already recycled");
+		}
+		if (queueSize<1) {
+			throw new IllegalArgumentException("Queue size must be at least 1: "+queueSize);
+		}
+		
+		//ID table handles can only be used by the thread that owns them, so we pass the note ids
+		int[] searchFilterIds = searchFilter==null ? null : searchFilter.toArray();
+		
+		SearchStreamSpliterator spliterator = new SearchStreamSpliterator(db, searchFilterIds, formula,
+				columnFormulas==null ? null : new LinkedHashMap<String,String>(columnFormulas),
+				viewTitle, searchFlags==null ? EnumSet.noneOf(Search.class) : EnumSet.copyOf(searchFlags),
+				noteClasses==null ? EnumSet.noneOf(NoteClass.class) : EnumSet.copyOf(noteClasses), since, queueSize);
+		
+		return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+	}
+	
+	/**
+	 * Spliterator reading search matches from a bounded queue that is filled by a producer thread
+	 */
+	private static class SearchStreamSpliterator extends Spliterators.AbstractSpliterator<SearchMatch> {
+		private final BlockingQueue<Object> m_queue;
+		private final SearchProducerThread m_producer;
+		private boolean m_closed;
+		private boolean m_finished;
+		private boolean m_started;
+		
+		private SearchStreamSpliterator(NotesDatabase db, int[] searchFilterIds, String formula, Map<String,String> columnFormulas,
+				String viewTitle, EnumSet<Search> searchFlags, EnumSet<NoteClass> noteClasses, NotesTimeDate since, int queueSize) {
+			super(Long.MAX_VALUE, Spliterator.NONNULL | Spliterator.IMMUTABLE);
+			m_queue = new ArrayBlockingQueue<Object>(queueSize);
+			m_producer = new SearchProducerThread(this, m_queue, db, searchFilterIds, formula, columnFormulas,
+					viewTitle, searchFlags, noteClasses, since);
+			m_producer.setDaemon(true);
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super SearchMatch> action) {
+			if (m_finished) {
+				return false;
+			}
+			if (m_closed) {
+				throw new IllegalStateException("Stream has been closed");
+			}
+			if (!m_started) {
+				//start the search lazily on the first read
+				m_started = true;
+				m_producer.start();
+			}
+			
+			Object item;
+			try {
+				item = m_queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				close();
+				throw new NotesError(0, "Interrupted while waiting for search results", e);
+			}
+			
+			if (item==SearchProducerThread.END_OF_SEARCH) {
+				m_finished = true;
+				return false;
+			}
+			else if (item instanceof Throwable) {
+				m_finished = true;
+				Throwable t = (Throwable) item;
+				if (t instanceof RuntimeException) {
+					throw (RuntimeException) t;
+				}
+				else if (t instanceof Error) {
+					throw (Error) t;
+				}
+				else {
+					throw new NotesError(0, "Error running search", t);
+				}
+			}
+			
+			action.accept((SearchMatch) item);
+			return true;
+		}
+		
+		/**
+		 * Stops the search and releases queued matches
+		 */
+		private void close() {
+			m_closed = true;
+			m_finished = true;
+			m_producer.cancel();
+			m_queue.clear();
+		}
+	}
+	
+	/**
+	 * Thread running the native search. It only keeps a weak reference to the
+	 * {@link SearchStreamSpliterator}, so that a stream that has been abandoned by a
+	 * short-circuiting operation without being closed cancels the search as well.
+	 */
+	private static class SearchProducerThread extends Thread {
+		private static final Object END_OF_SEARCH = new Object();
+		
+		private final WeakReference<SearchStreamSpliterator> m_consumer;
+		private final BlockingQueue<Object> m_queue;
+		private final NotesDatabase m_db;
+		private final int[] m_searchFilterIds;
+		private final String m_formula;
+		private final Map<String,String> m_columnFormulas;
+		private final String m_viewTitle;
+		private final EnumSet<Search> m_searchFlags;
+		private final EnumSet<NoteClass> m_noteClasses;
+		private final NotesTimeDate m_since;
+		private volatile boolean m_cancelled;
+		
+		private SearchProducerThread(SearchStreamSpliterator consumer, BlockingQueue<Object> queue, NotesDatabase db,
+				int[] searchFilterIds, String formula, Map<String,String> columnFormulas, String viewTitle,
+				EnumSet<Search> searchFlags, EnumSet<NoteClass> noteClasses, NotesTimeDate since) {
+			m_consumer = new WeakReference<SearchStreamSpliterator>(consumer);
+			m_queue = queue;
+			m_db = db;
+			m_searchFilterIds = searchFilterIds;
+			m_formula = formula;
+			m_columnFormulas = columnFormulas;
+			m_viewTitle = viewTitle;
+			m_searchFlags = searchFlags;
+			m_noteClasses = noteClasses;
+			m_since = since;
+		}
+		
+		/**
+		 * Makes the search callback return {@link Action#Stop} for the next note
+		 */
+		private void cancel() {
+			m_cancelled = true;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				NotesInitUtils.notesInitThread();
+				try {
+					NotesGC.runWithAutoGC(new Callable<Object>() {
+
+						@Override
+						public Object call() throws Exception {
+							NotesDatabase db = m_db.reopenDatabase();
+							NotesIDTable searchFilter = m_searchFilterIds==null ? null : new NotesIDTable(m_searchFilterIds);
+							try {
+								search(db, searchFilter, m_formula, m_columnFormulas, m_viewTitle, m_searchFlags, m_noteClasses, m_since, new SearchCallback() {
+									
+									@Override
+									public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch,
+											IItemTableData summaryBufferData) {
+										if (m_cancelled) {
+											return Action.Stop;
+										}
+										return handOver(new SearchMatch(SearchMatch.MatchType.Match, searchMatch, summaryBufferData)) ? Action.Continue : Action.Stop;
+									}
+									
+									@Override
+									public Action noteFoundNotMatchingFormula(NotesDatabase parentDb, ISearchMatch searchMatch,
+											IItemTableData summaryBufferData) {
+										if (m_cancelled) {
+											return Action.Stop;
+										}
+										return handOver(new SearchMatch(SearchMatch.MatchType.NoMatch, searchMatch, summaryBufferData)) ? Action.Continue : Action.Stop;
+									}
+									
+									@Override
+									public Action deletionStubFound(NotesDatabase parentDb, ISearchMatch searchMatch,
+											IItemTableData summaryBufferData) {
+										if (m_cancelled) {
+											return Action.Stop;
+										}
+										return handOver(new SearchMatch(SearchMatch.MatchType.DeletionStub, searchMatch, summaryBufferData)) ? Action.Continue : Action.Stop;
+									}
+								});
+							}
+							finally {
+								if (searchFilter!=null) {
+									searchFilter.recycle();
+								}
+								db.recycle();
+							}
+							return null;
+						}
+					});
+				}
+				finally {
+					NotesInitUtils.notesTermThread();
+				}
+				handOver(END_OF_SEARCH);
+			}
+			catch (Throwable t) {
+				handOver(t);
+			}
+		}
+		
+		/**
+		 * Waits until there is space in the queue
+		 * 
+		 * @param item search match, error or end marker
+		 * @return false if the stream has been closed or is no longer referenced
+		 */
+		private boolean handOver(Object item) {
+			try {
+				while (!m_cancelled) {
+					if (m_queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+						return true;
+					}
+					if (m_consumer.get()==null) {
+						//stream has been abandoned without being closed
+						m_cancelled = true;
+					}
+				}
+			} catch (InterruptedException e) {
+				//stream closed
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * Immutable copy of a search result produced by
+	 * {@link NotesSearch#stream(NotesDatabase, NotesIDTable, String, String, EnumSet, EnumSet, NotesTimeDate)},
+	 * containing the search match data and the decoded summary buffer values.
+	 * Date/time values are returned as {@link NotesTimeDate}.
+	 * 
+	 * @author Karsten Lehmann
+	 */
+	public static class SearchMatch implements ISearchMatch {
+		public enum MatchType {
+			/** note matches the formula */
+			Match,
+			/** note does not match the formula (only returned for searches with a <code>since</code> date) */
+			NoMatch,
+			/** deletion stub (only returned for searches with a <code>since</code> date) */
+			DeletionStub
+		}
+		
+		private final MatchType m_matchType;
+		private final ISearchMatch m_searchMatch;
+		private final String[] m_itemNames;
+		private final Object[] m_itemValues;
+		
+		private SearchMatch(MatchType matchType, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+			m_matchType = matchType;
+			m_searchMatch = searchMatch;
+			
+			if (summaryBufferData==null) {
+				m_itemNames = null;
+				m_itemValues = null;
+			}
+			else {
+				//decode all values now, the summary buffer is freed after the callback
+				summaryBufferData.setPreferNotesTimeDates(true);
+				Map<String,Object> valuesByName = summaryBufferData.asMap(true);
+				m_itemNames = summaryBufferData.getItemNames();
+				m_itemValues = new Object[m_itemNames.length];
+				for (int i=0; i<m_itemNames.length; i++) {
+					Object currValue = valuesByName.get(m_itemNames[i]);
+					if (currValue instanceof List) {
+						currValue = Collections.unmodifiableList((List<?>) currValue);
+					}
+					m_itemValues[i] = currValue;
+				}
+			}
+		}
+		
+		/**
+		 * Returns the reason why the search returned the note
+		 * 
+		 * @return match type
+		 */
+		public MatchType getMatchType() {
+			return m_matchType;
+		}
+		
+		/**
+		 * Returns whether the summary buffer has been read for this note
+		 * 
+		 * @return true if summary data is available
+		 */
+		public boolean hasSummary() {
+			return m_itemNames!=null;
+		}
+		
+		/**
+		 * Returns the names of the summary buffer items
+		 * 
+		 * @return names, empty if {@link Search#SUMMARY} was not used
+		 */
+		public List<String> getSummaryItemNames() {
+			return m_itemNames==null ? Collections.<String>emptyList() : Collections.unmodifiableList(Arrays.asList(m_itemNames));
+		}
+		
+		/**
+		 * Returns a summary buffer value
+		 * 
+		 * @param itemName item name, case insensitive
+		 * @return value or null if not found
+		 */
+		public Object getSummaryValue(String itemName) {
+			if (m_itemNames!=null) {
+				for (int i=0; i<m_itemNames.length; i++) {
+					if (m_itemNames[i].equalsIgnoreCase(itemName)) {
+						return m_itemValues[i];
+					}
+				}
+			}
+			return null;
+		}
+		
+		/**
+		 * Returns the summary buffer values as a map with case insensitive keys
+		 * 
+		 * @return map, empty if {@link Search#SUMMARY} was not used
+		 */
+		public Map<String,Object> getSummary() {
+			Map<String,Object> summary = new TreeMap<String,Object>(String.CASE_INSENSITIVE_ORDER);
+			if (m_itemNames!=null) {
+				for (int i=0; i<m_itemNames.length; i++) {
+					summary.put(m_itemNames[i], m_itemValues[i]);
+				}
+			}
+			return Collections.unmodifiableMap(summary);
+		}
+		
+		@Override
+		public int[] getGIDFileInnards() {
+			return m_searchMatch.getGIDFileInnards().clone();
+		}
+
+		@Override
+		public int[] getGIDNoteInnards() {
+			return m_searchMatch.getGIDNoteInnards().clone();
+		}
+
+		@Override
+		public int getNoteId() {
+			return m_searchMatch.getNoteId();
+		}
+
+		@Override
+		public int[] getOIDFileInnards() {
+			return m_searchMatch.getOIDFileInnards().clone();
+		}
+
+		@Override
+		public int[] getOIDNoteInnards() {
+			return m_searchMatch.getOIDNoteInnards().clone();
+		}
+
+		@Override
+		public int getSeq() {
+			return m_searchMatch.getSeq();
+		}
+
+		@Override
+		public int[] getSeqTimeInnards() {
+			return m_searchMatch.getSeqTimeInnards().clone();
+		}
+
+		@Override
+		public EnumSet<NoteClass> getNoteClass() {
+			return EnumSet.copyOf(m_searchMatch.getNoteClass());
+		}
+
+		@Override
+		public EnumSet<NoteFlags> getFlags() {
+			return EnumSet.copyOf(m_searchMatch.getFlags());
+		}
+
+		@Override
+		public boolean matchesFormula() {
+			return m_searchMatch.matchesFormula();
+		}
+
+		@Override
+		public int getSummaryLength() {
+			return m_searchMatch.getSummaryLength();
+		}
+
+		@Override
+		public NotesOriginatorIdData getOIDData() {
+			return m_searchMatch.getOIDData();
+		}
+
+		@Override
+		public String getUNID() {
+			return m_searchMatch.getUNID();
+		}
+
+		@Override
+		public NotesTimeDate getDbCreated() {
+			return m_searchMatch.getDbCreated();
+		}
+
+		@Override
+		public NotesTimeDate getNoteModified() {
+			return m_searchMatch.getNoteModified();
+		}
+
+		@Override
+		public NotesTimeDate getSeqTime() {
+			return m_searchMatch.getSeqTime();
+		}
+		
+		@Override
+		public String toString() {
+			return "SearchMatch [type="+m_matchType+", unid="+getUNID()+", noteid="+getNoteId()+
+					", class="+getNoteClass()+", summary="+getSummary()+"]";
+		}
+	}
+	
 	/**
 	 * Callback interface to process database search results
 	 * 
@@ -0,0 +1,232 @@
+package com.mindoo.domino.jna;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mindoo.domino.jna.internal.SizeLimitedLRUCache;
+
+/**
+ * JVM-wide cache of decoded view design data (name, aliases, selection formula, {@link NotesViewFormat}
+ * with the {@link NotesViewColumn} list and the {@link NotesCollationInfo} of all collations).<br>
+ * <br>
+ * The cache is used by {@link NotesCollection} so that column and collation lookups like
+ * {@link NotesCollection#getColumns()}, {@link NotesCollection#getColumnValuesIndex(String)} or
+ * {@link NotesCollection#isCategoryColumn(String)} do not have to open and decode the view design
+ * note every time a collection is opened.<br>
+ * Entries are keyed by database replica id, view UNID and the sequence time of the view design note,
+ * so design changes produce new cache entries and old ones get evicted by the LRU algorithm.
+ * 
+ * @author Karsten Lehmann
+ */
+public class NotesViewMetadataCache {
+	private static final int DEFAULT_MAX_SIZE_BYTES = 10000000;
+	
+	private static volatile boolean m_enabled = true;
+	private static volatile SizeLimitedLRUCache<String,ViewMetadata> m_cache = createCache(DEFAULT_MAX_SIZE_BYTES);
+	private static final AtomicLong m_hits = new AtomicLong();
+	private static final AtomicLong m_misses = new AtomicLong();
+	
+	private static SizeLimitedLRUCache<String,ViewMetadata> createCache(int maxSizeBytes) {
+		return new SizeLimitedLRUCache<String,ViewMetadata>(maxSizeBytes) {
+
+			@Override
+			protected int computeSize(String key, ViewMetadata value) {
+				return key.length()*2 + value.getEstimatedSize();
+			}
+		};
+	}
+	
+	/**
+	 * Enables or disables the cache (enabled by default). Disabling the cache also clears it.
+	 * 
+	 * @param enabled true to enable
+	 */
+	public static void setEnabled(boolean enabled) {
+		m_enabled = enabled;
+		if (!enabled) {
+			m_cache.clear();
+		}
+	}
+	
+	/**
+	 * Checks whether the cache is enabled
+	 * 
+	 * @return true if enabled
+	 */
+	public static boolean isEnabled() {
+		return m_enabled;
+	}
+	
+	/**
+	 * Changes the maximum size of the cache. Existing cache entries are discarded.
+	 * 
+	 * @param maxSizeBytes estimated size in bytes
+	 */
+	public static void setMaxSize(int maxSizeBytes) {
+		m_cache = createCache(maxSizeBytes);
+	}
+	
+	/**
+	 * Returns the estimated size of all cache entries
+	 * 
+	 * @return size in bytes
+	 */
+	public static long getCurrentSize() {
+		return m_cache.getCurrentCacheSizeInUnits();
+	}
+	
+	/**
+	 * Removes all entries from the cache
+	 */
+	public static void clear() {
+		m_cache.clear();
+	}
+	
+	/**
+	 * Returns the number of lookups that could be served from the cache
+	 * 
+	 * @return hits
+	 */
+	public static long getHitCount() {
+		return m_hits.get();
+	}
+	
+	/**
+	 * Returns the number of lookups that required reading the view design note
+	 * 
+	 * @return misses
+	 */
+	public static long getMissCount() {
+		return m_misses.get();
+	}
+	
+	/**
+	 * Returns the ratio of cache hits and all lookups
+	 * 
+	 * @return hit rate between 0 and 1
+	 */
+	public static double getHitRate() {
+		long hits = m_hits.get();
+		long total = hits + m_misses.get();
+		return total==0 ? 0 : ((double) hits) / total;
+	}
+	
+	/**
+	 * Resets the hit and miss counters
+	 */
+	public static void resetStats() {
+		m_hits.set(0);
+		m_misses.set(0);
+	}
+	
+	/**
+	 * Builds the cache key
+	 * 
+	 * @param replicaId database replica id
+	 * @param viewUNID view UNID
+	 * @param sequenceTime sequence time of the view design note
+	 * @return key
+	 */
+	static String getKey(String replicaId, String viewUNID, NotesTimeDate sequenceTime) {
+		int[] innards = sequenceTime.getInnards();
+		return replicaId + "|" + viewUNID + "|" + Integer.toHexString(innards[1]) + "/" + Integer.toHexString(innards[0]);
+	}
+	
+	/**
+	 * Looks up cached view design data
+	 * 
+	 * @param key key, see {@link #getKey(String, String, NotesTimeDate)}
+	 * @return data or null if not cached
+	 */
+	static ViewMetadata get(String key) {
+		ViewMetadata metadata = m_cache.get(key);
+		if (metadata==null) {
+			m_misses.incrementAndGet();
+		}
+		else {
+			m_hits.incrementAndGet();
+		}
+		return metadata;
+	}
+	
+	/**
+	 * Stores view design data in the cache
+	 * 
+	 * @param key key, see {@link #getKey(String, String, NotesTimeDate)}
+	 * @param metadata data
+	 */
+	static void put(String key, ViewMetadata metadata) {
+		if (m_enabled) {
+			m_cache.put(key, metadata);
+		}
+	}
+	
+	/**
+	 * Immutable container for the decoded data of a view design note
+	 */
+	static class ViewMetadata {
+		private String m_title;
+		private String m_selectionFormula;
+		private String m_designFlags;
+		private NotesViewFormat m_viewFormat;
+		private Map<Integer,NotesCollationInfo> m_collations;
+		private int m_estimatedSize;
+		
+		/**
+		 * Creates a new instance
+		 * 
+		 * @param title $TITLE value with name and aliases
+		 * @param selectionFormula $FORMULA value
+		 * @param designFlags $Flags value
+		 * @param viewFormat decoded $VIEWFORMAT
+		 * @param collations decoded $Collation items by collation number
+		 */
+		ViewMetadata(String title, String selectionFormula, String designFlags, NotesViewFormat viewFormat,
+				Map<Integer,NotesCollationInfo> collations) {
+			m_title = title;
+			m_selectionFormula = selectionFormula;
+			m_designFlags = designFlags;
+			m_viewFormat = viewFormat;
+			m_collations = Collections.unmodifiableMap(collations);
+			
+			int size = 100 + (title.length() + selectionFormula.length() + designFlags.length()) * 2;
+			if (viewFormat!=null) {
+				List<NotesViewColumn> columns = viewFormat.getColumns();
+				for (NotesViewColumn currCol : columns) {
+					//flat estimate for flags and the compiled column formula
+					size += 300 + (currCol.getItemName().length() + currCol.getTitle().length()) * 2;
+				}
+			}
+			for (NotesCollationInfo currCollation : collations.values()) {
+				size += 50 + currCollation.getDescriptors().size() * 100;
+			}
+			m_estimatedSize = size;
+		}
+		
+		String getTitle() {
+			return m_title;
+		}
+		
+		String getSelectionFormula() {
+			return m_selectionFormula;
+		}
+		
+		String getDesignFlags() {
+			return m_designFlags;
+		}
+		
+		NotesViewFormat getViewFormat() {
+			return m_viewFormat;
+		}
+		
+		Map<Integer,NotesCollationInfo> getCollations() {
+			return m_collations;
+		}
+		
+		int getEstimatedSize() {
+			return m_estimatedSize;
+		}
+	}
+}
@@ -0,0 +1,405 @@
+package com.mindoo.domino.jna;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.mindoo.domino.jna.NotesSearch.ISearchMatch;
+import com.mindoo.domino.jna.NotesSearch.SearchCallback;
+import com.mindoo.domino.jna.constants.NoteClass;
+import com.mindoo.domino.jna.constants.Search;
+import com.mindoo.domino.jna.errors.FormulaCompilationError;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.internal.NotesConstants;
+import com.mindoo.domino.jna.utils.NotesInitUtils;
+
+/**
+ * Runs a formula search like {@link NotesSearch#search(NotesDatabase, NotesIDTable, String, String, EnumSet, EnumSet, NotesTimeDate, SearchCallback)}
+ * on multiple threads.<br>
+ * <br>
+ * The note ids to search (either passed as {@link NotesIDTable} or read via
+ * {@link NotesDatabase#getModifiedNoteTable(EnumSet, NotesTimeDate, NotesTimeDate)}) are split
+ * into ascending partitions of similar size. Worker threads that are initialized for Notes API calls
+ * and have their own {@link NotesDatabase} instance take partitions from a shared queue and run
+ * NSFSearchExtended3 with the partition as ID table filter, so that formula evaluation scales with
+ * the number of CPU cores. There are more partitions than threads so that workers finishing early
+ * pick up remaining work.<br>
+ * <br>
+ * By default, the {@link SearchCallback} methods are called one at a time (synchronized on the
+ * callback), so existing callbacks can be used unchanged. With {@link #setConcurrentCallbacks(boolean)},
+ * the callback is called concurrently from all workers and needs to be thread-safe.
+ * Results are not delivered in note id order. Returning {@link SearchCallback.Action#Stop}
+ * stops all workers.<br>
+ * <br>
+ * The <code>parentDb</code> argument of the callback methods is the database instance of the worker thread
+ * and must not be used outside of the callback.
+ *
+ * @author Karsten Lehmann
+ */
+public class ParallelNotesSearch {
+	private String m_server;
+	private String m_filePath;
+	private String m_asUserCanonical;
+	private int m_threadCount;
+	private int m_partitionsPerThread = 4;
+	private int m_minPartitionSize = 1000;
+	private boolean m_concurrentCallbacks;
+
+	/**
+	 * Creates a new search
+	 *
+	 * @param server database server
+	 * @param filePath database filepath
+	 * @param asUserCanonical user context to open the database or null/empty string to open as ID owner, see {@link NotesDatabase#NotesDatabase(String, String, String)}
+	 */
+	public ParallelNotesSearch(String server, String filePath, String asUserCanonical) {
+		m_server = server;
+		m_filePath = filePath;
+		m_asUserCanonical = asUserCanonical;
+		m_threadCount = Math.max(1, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Sets the number of search threads (number of CPU cores by default)
+	 *
+	 * @param threadCount thread count
+	 * @return this search
+	 */
+	public ParallelNotesSearch setThreadCount(int threadCount) {
+		if (threadCount<1) {
+			throw new IllegalArgumentException("Thread count must be 1 or higher: "+threadCount);
+		}
+		m_threadCount = threadCount;
+		return this;
+	}
+
+	public int getThreadCount() {
+		return m_threadCount;
+	}
+
+	/**
+	 * Sets the number of partitions created per thread (4 by default). More partitions
+	 * balance the load better when matches are unevenly distributed, fewer partitions
+	 * reduce the per-search overhead.
+	 *
+	 * @param partitionsPerThread partitions per thread
+	 * @return this search
+	 */
+	public ParallelNotesSearch setPartitionsPerThread(int partitionsPerThread) {
+		if (partitionsPerThread<1) {
+			throw new IllegalArgumentException("Partitions per thread must be 1 or higher: "+partitionsPerThread);
+		}
+		m_partitionsPerThread = partitionsPerThread;
+		return this;
+	}
+
+	public int getPartitionsPerThread() {
+		return m_partitionsPerThread;
+	}
+
+	/**
+	 * Sets the minimum number of note ids per partition (1000 by default), so that small
+	 * searches do not start more threads than useful
+	 *
+	 * @param minPartitionSize minimum partition size
+	 * @return this search
+	 */
+	public ParallelNotesSearch setMinPartitionSize(int minPartitionSize) {
+		if (minPartitionSize<1) {
+			throw new IllegalArgumentException("Minimum partition size must be 1 or higher: "+minPartitionSize);
+		}
+		m_minPartitionSize = minPartitionSize;
+		return this;
+	}
+
+	public int getMinPartitionSize() {
+		return m_minPartitionSize;
+	}
+
+	/**
+	 * Use this method to call the {@link SearchCallback} concurrently from all search threads
+	 * instead of one at a time
+	 *
+	 * @param b true for concurrent calls, callback must be thread-safe
+	 * @return this search
+	 */
+	public ParallelNotesSearch setConcurrentCallbacks(boolean b) {
+		m_concurrentCallbacks = b;
+		return this;
+	}
+
+	public boolean isConcurrentCallbacks() {
+		return m_concurrentCallbacks;
+	}
+
+	/**
+	 * Searches the database in parallel, see
+	 * {@link NotesSearch#search(NotesDatabase, NotesIDTable, String, String, EnumSet, EnumSet, NotesTimeDate, SearchCallback)}
+	 *
+	 * @param searchFilter optional search scope as {@link NotesIDTable} or null to search all notes of the specified note classes
+	 * @param formula formula or null
+	 * @param viewTitle optional view title that will be returned for "@ ViewTitle" within the formula or null
+	 * @param searchFlags flags to control searching ({@link Search})
+	 * @param noteClasses noteclasses to search
+	 * @param since The date of the earliest modified note that is matched or null
+	 * @param callback callback to be called for every found note
+	 * @return The earliest ending time/date of the partition searches, to be used as "Since" argument in a subsequent search
+	 * @throws FormulaCompilationError if formula syntax is invalid
+	 */
+	public NotesTimeDate search(NotesIDTable searchFilter, String formula, String viewTitle,
+			EnumSet<Search> searchFlags, EnumSet<NoteClass> noteClasses, NotesTimeDate since,
+			SearchCallback callback) throws FormulaCompilationError {
+		return search(searchFilter, formula, null, viewTitle, searchFlags, noteClasses, since, callback);
+	}
+
+	/**
+	 * Searches the database in parallel, see
+	 * {@link NotesSearch#search(NotesDatabase, NotesIDTable, String, Map, String, EnumSet, EnumSet, NotesTimeDate, SearchCallback)}.<br>
+	 * <br>
+	 * Without <code>searchFilter</code>, the note ids are read with {@link NotesDatabase#getModifiedNoteTable(EnumSet, NotesTimeDate, NotesTimeDate)}
+	 * using the <code>since</code> date (or all notes if <code>since</code> is null). Ids of deleted notes are included so that
+	 * deletion stubs are reported as well if {@link Search#NOTIFYDELETIONS} is set.
+	 *
+	 * @param searchFilter optional search scope as {@link NotesIDTable} or null to search all notes of the specified note classes
+	 * @param formula formula or null
+	 * @param columnFormulas map with programmatic column names (key) and formulas (value) with keys sorted in column order or null to output all items
+	 * @param viewTitle optional view title that will be returned for "@ ViewTitle" within the formula or null
+	 * @param searchFlags flags to control searching ({@link Search})
+	 * @param noteClasses noteclasses to search
+	 * @param since The date of the earliest modified note that is matched or null
+	 * @param callback callback to be called for every found note
+	 * @return The earliest ending time/date of the partition searches, to be used as "Since" argument in a subsequent search
+	 * @throws FormulaCompilationError if formula syntax is invalid
+	 */
+	public NotesTimeDate search(NotesIDTable searchFilter, final String formula, final Map<String,String> columnFormulas,
+			final String viewTitle, final EnumSet<Search> searchFlags, final EnumSet<NoteClass> noteClasses,
+			final NotesTimeDate since, SearchCallback callback) throws FormulaCompilationError {
+
+		int[] noteIds;
+		NotesTimeDate retUntil = null;
+
+		if (searchFilter!=null) {
+			noteIds = searchFilter.toArray();
+		}
+		else {
+			NotesDatabase db = new NotesDatabase(m_server, m_filePath, m_asUserCanonical);
+			try {
+				NotesTimeDate modifiedSince = since;
+				if (modifiedSince==null) {
+					modifiedSince = new NotesTimeDate();
+					modifiedSince.setMinimum();
+				}
+				retUntil = new NotesTimeDate();
+				NotesIDTable idTable = db.getModifiedNoteTable(noteClasses, modifiedSince, retUntil);
+				try {
+					noteIds = idTable.toArray();
+				}
+				finally {
+					idTable.recycle();
+				}
+			}
+			finally {
+				db.recycle();
+			}
+
+			//remove the deletion flag, NSFSearch finds the stubs by their note id
+			for (int i=0; i<noteIds.length; i++) {
+				noteIds[i] = (int) (noteIds[i] & ~NotesConstants.RRV_DELETED);
+			}
+			Arrays.sort(noteIds);
+		}
+
+		final ConcurrentLinkedQueue<int[]> partitions = createPartitions(noteIds);
+		if (partitions.isEmpty()) {
+			return retUntil!=null ? retUntil : since;
+		}
+
+		final AtomicBoolean stopped = new AtomicBoolean();
+		final AtomicReference<Throwable> firstError = new AtomicReference<Throwable>();
+		final List<NotesTimeDate> endTimes = new ArrayList<NotesTimeDate>();
+		final SearchCallback workerCallback = new PartitionCallback(callback, stopped, !m_concurrentCallbacks);
+
+		int threadCount = Math.min(m_threadCount, partitions.size());
+		List<Thread> workers = new ArrayList<Thread>(threadCount);
+		for (int i=0; i<threadCount; i++) {
+			Thread worker = new Thread() {
+				@Override
+				public void run() {
+					try {
+						NotesInitUtils.notesInitThread();
+						try {
+							NotesGC.runWithAutoGC(new Callable<Object>() {
+
+								@Override
+								public Object call() throws Exception {
+									NotesDatabase db = new NotesDatabase(m_server, m_filePath, m_asUserCanonical);
+									try {
+										int[] currPartition;
+										while (!stopped.get() && (currPartition = partitions.poll()) != null) {
+											NotesIDTable filter = new NotesIDTable(currPartition);
+											try {
+												NotesTimeDate endTime = NotesSearch.search(db, filter, formula, columnFormulas, viewTitle,
+														searchFlags, noteClasses, since, workerCallback);
+												synchronized (endTimes) {
+													endTimes.add(endTime);
+												}
+											}
+											finally {
+												filter.recycle();
+											}
+										}
+									}
+									finally {
+										db.recycle();
+									}
+									return null;
+								}
+							});
+						}
+						finally {
+							NotesInitUtils.notesTermThread();
+						}
+					}
+					catch (Throwable t) {
+						//also covers a failed thread initialization, so the error is rethrown to the caller
+						firstError.compareAndSet(null, t);
+						stopped.set(true);
+					}
+				}
+			};
+			worker.setName("domino-jna-parallel-search-"+i);
+			worker.setDaemon(true);
+			workers.add(worker);
+			worker.start();
+		}
+
+		for (Thread currWorker : workers) {
+			try {
+				currWorker.join();
+			} catch (InterruptedException e) {
+				stopped.set(true);
+				Thread.currentThread().interrupt();
+				throw new NotesError(0, "Interrupted while waiting for the search threads", e);
+			}
+		}
+
+		Throwable t = firstError.get();
+		if (t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		}
+		else if (t instanceof Error) {
+			throw (Error) t;
+		}
+		else if (t!=null) {
+			throw new NotesError(0, "Error searching database "+m_server+"!!"+m_filePath, t);
+		}
+
+		NotesTimeDate earliestEndTime = retUntil;
+		for (NotesTimeDate currEndTime : endTimes) {
+			if (earliestEndTime==null || currEndTime.isBefore(earliestEndTime)) {
+				earliestEndTime = currEndTime;
+			}
+		}
+		return earliestEndTime;
+	}
+
+	/**
+	 * Splits sorted note ids into contiguous partitions
+	 *
+	 * @param noteIds note ids
+	 * @return partitions
+	 */
+	private ConcurrentLinkedQueue<int[]> createPartitions(int[] noteIds) {
+		ConcurrentLinkedQueue<int[]> partitions = new ConcurrentLinkedQueue<int[]>();
+		if (noteIds.length==0) {
+			return partitions;
+		}
+
+		int partitionCount = Math.max(1, Math.min(m_threadCount * m_partitionsPerThread, noteIds.length / m_minPartitionSize));
+		int partitionSize = (noteIds.length + partitionCount - 1) / partitionCount;
+		for (int start=0; start<noteIds.length; start+=partitionSize) {
+			int end = Math.min(noteIds.length, start + partitionSize);
+			partitions.add(Arrays.copyOfRange(noteIds, start, end));
+		}
+		return partitions;
+	}
+
+	/**
+	 * Callback wrapper that passes results to the caller's callback and stops all
+	 * partition searches when one of them returns {@link SearchCallback.Action#Stop}
+	 */
+	private static class PartitionCallback extends SearchCallback {
+		private SearchCallback m_callback;
+		private AtomicBoolean m_stopped;
+		private boolean m_serialize;
+
+		public PartitionCallback(SearchCallback callback, AtomicBoolean stopped, boolean serialize) {
+			m_callback = callback;
+			m_stopped = stopped;
+			m_serialize = serialize;
+		}
+
+		private Action toAction(Action action) {
+			if (action==Action.Stop) {
+				m_stopped.set(true);
+			}
+			return m_stopped.get() ? Action.Stop : Action.Continue;
+		}
+
+		@Override
+		public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+			if (m_stopped.get()) {
+				return Action.Stop;
+			}
+			if (m_serialize) {
+				synchronized (m_callback) {
+					if (m_stopped.get()) {
+						return Action.Stop;
+					}
+					return toAction(m_callback.noteFound(parentDb, searchMatch, summaryBufferData));
+				}
+			}
+			return toAction(m_callback.noteFound(parentDb, searchMatch, summaryBufferData));
+		}
+
+		@Override
+		public Action deletionStubFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+			if (m_stopped.get()) {
+				return Action.Stop;
+			}
+			if (m_serialize) {
+				synchronized (m_callback) {
+					if (m_stopped.get()) {
+						return Action.Stop;
+					}
+					return toAction(m_callback.deletionStubFound(parentDb, searchMatch, summaryBufferData));
+				}
+			}
+			return toAction(m_callback.deletionStubFound(parentDb, searchMatch, summaryBufferData));
+		}
+
+		@Override
+		public Action noteFoundNotMatchingFormula(NotesDatabase parentDb, ISearchMatch searchMatch,
+				IItemTableData summaryBufferData) {
+			if (m_stopped.get()) {
+				return Action.Stop;
+			}
+			if (m_serialize) {
+				synchronized (m_callback) {
+					if (m_stopped.get()) {
+						return Action.Stop;
+					}
+					return toAction(m_callback.noteFoundNotMatchingFormula(parentDb, searchMatch, summaryBufferData));
+				}
+			}
+			return toAction(m_callback.noteFoundNotMatchingFormula(parentDb, searchMatch, summaryBufferData));
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package com.mindoo.domino.jna.attachments;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress and throughput counters of an {@link AttachmentExtractor} run. The counters
+ * are updated concurrently by the extraction threads and can be read at any time.
+ *
+ * @author Karsten Lehmann
+ */
+public class AttachmentExtractionStats {
+	private final long m_startNanos;
+	private volatile long m_endNanos;
+	private final AtomicLong m_notesTotal = new AtomicLong();
+	private final AtomicLong m_notesSkipped = new AtomicLong();
+	private final AtomicLong m_notesProcessed = new AtomicLong();
+	private final AtomicLong m_notesFailed = new AtomicLong();
+	private final AtomicLong m_attachmentsWritten = new AtomicLong();
+	private final AtomicLong m_attachmentsDuplicate = new AtomicLong();
+	private final AtomicLong m_attachmentsFailed = new AtomicLong();
+	private final AtomicLong m_bytesRead = new AtomicLong();
+	private final int m_maxErrors;
+	private final List<Exception> m_errors;
+
+	AttachmentExtractionStats(int maxErrors) {
+		m_startNanos = System.nanoTime();
+		m_maxErrors = maxErrors;
+		m_errors = new ArrayList<Exception>();
+	}
+
+	void notesQueued(int count) {
+		m_notesTotal.addAndGet(count);
+	}
+
+	void noteSkipped() {
+		m_notesSkipped.incrementAndGet();
+	}
+
+	void noteProcessed() {
+		m_notesProcessed.incrementAndGet();
+	}
+
+	void noteFailed(Exception e) {
+		m_notesFailed.incrementAndGet();
+		addError(e);
+	}
+
+	void attachmentWritten(long bytes, boolean duplicate) {
+		m_bytesRead.addAndGet(bytes);
+		if (duplicate) {
+			m_attachmentsDuplicate.incrementAndGet();
+		}
+		else {
+			m_attachmentsWritten.incrementAndGet();
+		}
+	}
+
+	void attachmentFailed(Exception e) {
+		m_attachmentsFailed.incrementAndGet();
+		addError(e);
+	}
+
+	void addError(Exception e) {
+		synchronized (m_errors) {
+			if (m_errors.size() < m_maxErrors) {
+				m_errors.add(e);
+			}
+		}
+	}
+
+	void finished() {
+		m_endNanos = System.nanoTime();
+	}
+
+	/**
+	 * Returns the number of notes handed to the extraction threads
+	 *
+	 * @return count
+	 */
+	public long getNotesTotal() {
+		return m_notesTotal.get();
+	}
+
+	/**
+	 * Returns the number of notes skipped because the progress journal marks them as done
+	 *
+	 * @return count
+	 */
+	public long getNotesSkipped() {
+		return m_notesSkipped.get();
+	}
+
+	/**
+	 * Returns the number of notes whose attachments have all been extracted
+	 *
+	 * @return count
+	 */
+	public long getNotesProcessed() {
+		return m_notesProcessed.get();
+	}
+
+	/**
+	 * Returns the number of notes that could not be processed completely; they are retried in the next run
+	 *
+	 * @return count
+	 */
+	public long getNotesFailed() {
+		return m_notesFailed.get();
+	}
+
+	/**
+	 * Returns the number of stored attachments
+	 *
+	 * @return count
+	 */
+	public long getAttachmentsWritten() {
+		return m_attachmentsWritten.get();
+	}
+
+	/**
+	 * Returns the number of attachments that have been dropped because the same content was already stored
+	 *
+	 * @return count
+	 */
+	public long getAttachmentsDuplicate() {
+		return m_attachmentsDuplicate.get();
+	}
+
+	/**
+	 * Returns the number of attachments that could not be extracted
+	 *
+	 * @return count
+	 */
+	public long getAttachmentsFailed() {
+		return m_attachmentsFailed.get();
+	}
+
+	/**
+	 * Returns the number of attachment bytes read from the database
+	 *
+	 * @return bytes
+	 */
+	public long getBytesRead() {
+		return m_bytesRead.get();
+	}
+
+	/**
+	 * Returns the first errors of the run
+	 *
+	 * @return errors
+	 */
+	public List<Exception> getErrors() {
+		synchronized (m_errors) {
+			return new ArrayList<Exception>(m_errors);
+		}
+	}
+
+	/**
+	 * Returns the duration of the run so far, or the total duration after it has finished
+	 *
+	 * @return duration in milliseconds
+	 */
+	public long getElapsedMillis() {
+		long end = m_endNanos!=0 ? m_endNanos : System.nanoTime();
+		return (end - m_startNanos) / 1000000;
+	}
+
+	/**
+	 * Returns the read throughput
+	 *
+	 * @return bytes per second
+	 */
+	public double getBytesPerSecond() {
+		long elapsed = getElapsedMillis();
+		if (elapsed==0) {
+			return 0;
+		}
+		return getBytesRead() * 1000.0 / elapsed;
+	}
+
+	@Override
+	public String toString() {
+		return "AttachmentExtractionStats [notes="+getNotesProcessed()+"/"+getNotesTotal()+", skipped="+getNotesSkipped()+
+				", failed="+getNotesFailed()+", attachments="+getAttachmentsWritten()+", duplicates="+getAttachmentsDuplicate()+
+				", attachmentsFailed="+getAttachmentsFailed()+", bytes="+getBytesRead()+", elapsed="+getElapsedMillis()+"ms]";
+	}
+}
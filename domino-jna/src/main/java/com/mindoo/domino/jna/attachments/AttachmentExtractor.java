@@ -0,0 +1,644 @@
+package com.mindoo.domino.jna.attachments;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import com.mindoo.domino.jna.IItemTableData;
+import com.mindoo.domino.jna.NotesAttachment;
+import com.mindoo.domino.jna.NotesAttachment.IDataCallback;
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesIDTable;
+import com.mindoo.domino.jna.NotesItem;
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.NotesNote.IItemCallback;
+import com.mindoo.domino.jna.NotesSearch;
+import com.mindoo.domino.jna.NotesSearch.ISearchMatch;
+import com.mindoo.domino.jna.NotesSearch.SearchCallback;
+import com.mindoo.domino.jna.constants.Compression;
+import com.mindoo.domino.jna.constants.NoteClass;
+import com.mindoo.domino.jna.constants.Search;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.utils.NotesInitUtils;
+import com.mindoo.domino.jna.utils.StringUtil;
+
+/**
+ * Extracts the file attachments of many notes in parallel.<br>
+ * <br>
+ * The note ids to process are either passed as {@link NotesIDTable} or computed with a selection
+ * formula. They are split into batches and handed to a pool of worker threads via a bounded queue.
+ * Each worker is initialized for Notes API calls, opens its own {@link NotesDatabase} instance and
+ * streams the attachment data of its notes to an {@link IAttachmentTarget}, e.g. a
+ * {@link DirectoryAttachmentTarget}. Uncompressed attachments are written straight from native
+ * memory (see {@link NotesAttachment#transferTo(WritableByteChannel)}), compressed ones are
+ * decompressed by the C API while reading. If a worker thread fails, no more batches are queued and
+ * the error is thrown.<br>
+ * <br>
+ * While writing, a SHA-256 hash of the content is computed and passed to
+ * {@link IAttachmentTarget#committed(AttachmentInfo, String)}, so that targets can deduplicate
+ * identical files.<br>
+ * <br>
+ * With {@link #setJournalFile(Path)}, progress is appended to a journal file: one line per extracted
+ * attachment (<code>A&lt;tab&gt;noteid&lt;tab&gt;unid&lt;tab&gt;sha256&lt;tab&gt;size&lt;tab&gt;filename</code>) followed by one line
+ * per completed note (<code>N&lt;tab&gt;noteid</code>). When the extraction is restarted with the same journal file,
+ * notes that are already marked as completed are skipped. Notes that failed are not marked and are
+ * retried in the next run.
+ *
+ * @author Karsten Lehmann
+ */
+public class AttachmentExtractor {
+	private static final int[] END_OF_INPUT = new int[0];
+	private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+	private String m_server;
+	private String m_filePath;
+	private String m_asUserCanonical;
+	private int m_threadCount;
+	private int m_batchSize = 50;
+	private int m_maxErrors = 100;
+	private Path m_journalFile;
+	private IProgressListener m_progressListener;
+
+	/**
+	 * Creates a new extractor
+	 *
+	 * @param server database server
+	 * @param filePath database filepath
+	 * @param asUserCanonical user context to open the database or null/empty string to open as ID owner, see {@link NotesDatabase#NotesDatabase(String, String, String)}
+	 */
+	public AttachmentExtractor(String server, String filePath, String asUserCanonical) {
+		m_server = server;
+		m_filePath = filePath;
+		m_asUserCanonical = asUserCanonical;
+		m_threadCount = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Callback to report extraction progress
+	 */
+	public static interface IProgressListener {
+
+		/**
+		 * Method is called after each processed note. Calls are made from the worker threads,
+		 * but never concurrently.
+		 *
+		 * @param stats current stats
+		 */
+		public void progress(AttachmentExtractionStats stats);
+
+	}
+
+	/**
+	 * Sets the number of worker threads that read attachments (between 1 and 4 by default, depending on the CPU count)
+	 *
+	 * @param threadCount thread count
+	 * @return this extractor
+	 */
+	public AttachmentExtractor setThreadCount(int threadCount) {
+		if (threadCount<1) {
+			throw new IllegalArgumentException("Thread count must be 1 or higher: "+threadCount);
+		}
+		m_threadCount = threadCount;
+		return this;
+	}
+
+	public int getThreadCount() {
+		return m_threadCount;
+	}
+
+	/**
+	 * Sets the number of note ids handed to a worker thread at once (50 by default)
+	 *
+	 * @param batchSize batch size
+	 * @return this extractor
+	 */
+	public AttachmentExtractor setBatchSize(int batchSize) {
+		if (batchSize<1) {
+			throw new IllegalArgumentException("Batch size must be 1 or higher: "+batchSize);
+		}
+		m_batchSize = batchSize;
+		return this;
+	}
+
+	public int getBatchSize() {
+		return m_batchSize;
+	}
+
+	/**
+	 * Sets the maximum number of errors collected in the {@link AttachmentExtractionStats} (100 by default)
+	 *
+	 * @param maxErrors max errors
+	 * @return this extractor
+	 */
+	public AttachmentExtractor setMaxErrors(int maxErrors) {
+		m_maxErrors = maxErrors;
+		return this;
+	}
+
+	/**
+	 * Sets a journal file to record the progress and skip completed notes when the
+	 * extraction is restarted
+	 *
+	 * @param journalFile journal file or null to disable the journal
+	 * @return this extractor
+	 */
+	public AttachmentExtractor setJournalFile(Path journalFile) {
+		m_journalFile = journalFile;
+		return this;
+	}
+
+	public Path getJournalFile() {
+		return m_journalFile;
+	}
+
+	/**
+	 * Sets a listener to receive progress information
+	 *
+	 * @param listener listener or null
+	 * @return this extractor
+	 */
+	public AttachmentExtractor setProgressListener(IProgressListener listener) {
+		m_progressListener = listener;
+		return this;
+	}
+
+	/**
+	 * Extracts the attachments of all documents matching a selection formula
+	 *
+	 * @param formula selection formula, e.g. "Form=\"Invoice\"" or "@all"
+	 * @param target attachment target
+	 * @return extraction stats
+	 * @throws IOException in case of I/O errors reading or writing the journal file
+	 */
+	public AttachmentExtractionStats extract(String formula, IAttachmentTarget target) throws IOException {
+		if (StringUtil.isEmpty(formula)) {
+			throw new IllegalArgumentException("Formula cannot be empty");
+		}
+
+		final List<Integer> noteIds = new ArrayList<Integer>();
+		NotesDatabase db = new NotesDatabase(m_server, m_filePath, m_asUserCanonical);
+		try {
+			NotesSearch.search(db, null, "("+formula+") & @Attachments > 0", "-", EnumSet.noneOf(Search.class),
+					EnumSet.of(NoteClass.DOCUMENT), null, new SearchCallback() {
+
+				@Override
+				public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch,
+						IItemTableData summaryBufferData) {
+					noteIds.add(searchMatch.getNoteId());
+					return Action.Continue;
+				}
+			});
+		}
+		finally {
+			db.recycle();
+		}
+
+		int[] noteIdsArr = new int[noteIds.size()];
+		for (int i=0; i<noteIdsArr.length; i++) {
+			noteIdsArr[i] = noteIds.get(i);
+		}
+		return extract(noteIdsArr, target);
+	}
+
+	/**
+	 * Extracts the attachments of the notes in an ID table
+	 *
+	 * @param noteIds note ids
+	 * @param target attachment target
+	 * @return extraction stats
+	 * @throws IOException in case of I/O errors reading or writing the journal file
+	 */
+	public AttachmentExtractionStats extract(NotesIDTable noteIds, IAttachmentTarget target) throws IOException {
+		return extract(noteIds.toArray(), target);
+	}
+
+	/**
+	 * Extracts the attachments of a list of notes.<br>
+	 * <br>
+	 * Errors reading single notes or attachments are counted and collected in the returned
+	 * {@link AttachmentExtractionStats}; the extraction continues with the next note.
+	 *
+	 * @param noteIds note ids
+	 * @param target attachment target
+	 * @return extraction stats
+	 * @throws IOException in case of I/O errors reading or writing the journal file
+	 */
+	public AttachmentExtractionStats extract(int[] noteIds, IAttachmentTarget target) throws IOException {
+		final AttachmentExtractionStats stats = new AttachmentExtractionStats(m_maxErrors);
+		final BlockingQueue<int[]> queue = new ArrayBlockingQueue<int[]>(m_threadCount * 2);
+
+		Set<Integer> completedNoteIds = m_journalFile==null ? new HashSet<Integer>() : readJournal(m_journalFile);
+		Journal journal = m_journalFile==null ? null : new Journal(m_journalFile);
+
+		List<ExtractionWorker> workers = new ArrayList<ExtractionWorker>(m_threadCount);
+		try {
+			for (int i=0; i<m_threadCount; i++) {
+				ExtractionWorker worker = new ExtractionWorker(queue, target, journal, stats);
+				worker.setName("domino-jna-attachment-extractor-"+i);
+				worker.setDaemon(true);
+				workers.add(worker);
+				worker.start();
+			}
+
+			int[] batch = new int[m_batchSize];
+			int batchLen = 0;
+			for (int currNoteId : noteIds) {
+				if (completedNoteIds.contains(currNoteId)) {
+					stats.noteSkipped();
+					continue;
+				}
+				batch[batchLen++] = currNoteId;
+				if (batchLen == m_batchSize) {
+					putBatch(queue, batch, workers, stats);
+					batch = new int[m_batchSize];
+					batchLen = 0;
+				}
+			}
+			if (batchLen > 0) {
+				int[] lastBatch = new int[batchLen];
+				System.arraycopy(batch, 0, lastBatch, 0, batchLen);
+				putBatch(queue, lastBatch, workers, stats);
+			}
+		}
+		finally {
+			//let the workers finish the queued batches
+			for (int i=0; i<workers.size(); i++) {
+				putBatch(queue, END_OF_INPUT, workers, null);
+			}
+			for (ExtractionWorker currWorker : workers) {
+				try {
+					currWorker.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new NotesError(0, "Interrupted while waiting for the extraction threads", e);
+				}
+			}
+			if (journal!=null) {
+				journal.close();
+			}
+			stats.finished();
+		}
+
+		return stats;
+	}
+
+	/**
+	 * Hands a batch to the workers, waiting while the queue is full
+	 *
+	 * @param queue queue
+	 * @param batch batch
+	 * @param workers worker threads
+	 * @param stats stats to count the queued notes or null for the end marker, which is dropped if no worker is running anymore
+	 */
+	private void putBatch(BlockingQueue<int[]> queue, int[] batch, List<ExtractionWorker> workers, AttachmentExtractionStats stats) {
+		try {
+			while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+				boolean anyRunning = false;
+				for (ExtractionWorker currWorker : workers) {
+					if (stats!=null && currWorker.m_failure!=null) {
+						throw new NotesError(0, "Extraction thread "+currWorker.getName()+" has failed", currWorker.m_failure);
+					}
+					anyRunning |= currWorker.isAlive();
+				}
+				if (!anyRunning) {
+					if (stats!=null) {
+						throw new NotesError(0, "No extraction thread is running");
+					}
+					return;
+				}
+			}
+			if (stats!=null) {
+				stats.notesQueued(batch.length);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NotesError(0, "Interrupted while waiting for the extraction threads", e);
+		}
+	}
+
+	/**
+	 * Reads the ids of completed notes from a journal file
+	 *
+	 * @param journalFile journal file
+	 * @return note ids
+	 * @throws IOException in case of I/O errors
+	 */
+	private static Set<Integer> readJournal(Path journalFile) throws IOException {
+		Set<Integer> noteIds = new HashSet<Integer>();
+		if (!Files.exists(journalFile)) {
+			return noteIds;
+		}
+
+		try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("N\t")) {
+					try {
+						noteIds.add(Integer.parseInt(line.substring(2).trim()));
+					}
+					catch (NumberFormatException e) {
+						//incomplete line written before a crash
+					}
+				}
+			}
+		}
+		return noteIds;
+	}
+
+	/**
+	 * Append-only progress journal shared by the worker threads
+	 */
+	private static class Journal {
+		private Writer m_writer;
+
+		public Journal(Path journalFile) throws IOException {
+			m_writer = new BufferedWriter(Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+					StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE));
+		}
+
+		/**
+		 * Writes the entries of a completed note and flushes the journal
+		 *
+		 * @param noteId note id
+		 * @param entries attachment entries
+		 * @throws IOException in case of I/O errors
+		 */
+		public synchronized void noteCompleted(int noteId, List<String> entries) throws IOException {
+			for (String currEntry : entries) {
+				m_writer.write(currEntry);
+				m_writer.write('\n');
+			}
+			m_writer.write("N\t"+noteId+"\n");
+			m_writer.flush();
+		}
+
+		public synchronized void close() throws IOException {
+			m_writer.close();
+		}
+	}
+
+	/**
+	 * Worker thread that takes note id batches from the queue and extracts their attachments
+	 */
+	private class ExtractionWorker extends Thread {
+		private BlockingQueue<int[]> m_queue;
+		private IAttachmentTarget m_target;
+		private Journal m_journal;
+		private AttachmentExtractionStats m_stats;
+		private volatile Throwable m_failure;
+
+		public ExtractionWorker(BlockingQueue<int[]> queue, IAttachmentTarget target, Journal journal,
+				AttachmentExtractionStats stats) {
+			m_queue = queue;
+			m_target = target;
+			m_journal = journal;
+			m_stats = stats;
+		}
+
+		@Override
+		public void run() {
+			try {
+				NotesInitUtils.notesInitThread();
+				try {
+					runExtraction();
+				}
+				finally {
+					NotesInitUtils.notesTermThread();
+				}
+			}
+			catch (Throwable e) {
+				//makes the producer stop instead of waiting for a free queue slot
+				m_failure = e;
+				m_stats.addError(e instanceof Exception ? (Exception) e : new NotesError(0, "Extraction thread failed", e));
+			}
+		}
+
+		private void runExtraction() throws Exception {
+			NotesGC.runWithAutoGC(new Callable<Object>() {
+
+				@Override
+				public Object call() throws Exception {
+					NotesDatabase db = null;
+					try {
+						db = new NotesDatabase(m_server, m_filePath, m_asUserCanonical);
+					}
+					catch (Exception e) {
+						m_stats.addError(e);
+					}
+
+					MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+					while (true) {
+						int[] batch = m_queue.take();
+						if (batch == END_OF_INPUT) {
+							break;
+						}
+						for (int currNoteId : batch) {
+							if (db==null) {
+								//keep draining the queue so that the producer does not block
+								m_stats.noteFailed(new NotesError(0, "Database could not be opened"));
+								continue;
+							}
+							extractNote(db, currNoteId, digest);
+						}
+					}
+					return null;
+				}
+			});
+		}
+
+		private void extractNote(NotesDatabase db, int noteId, MessageDigest digest) {
+			NotesNote note = null;
+			try {
+				note = db.openNoteById(noteId);
+				String unid = note.getUNID();
+
+				final List<NotesAttachment> attachments = new ArrayList<NotesAttachment>();
+				note.getItems("$FILE", new IItemCallback() {
+
+					@Override
+					public Action itemFound(NotesItem item) {
+						List<Object> values = item.getValues();
+						if (values!=null && !values.isEmpty() && values.get(0) instanceof NotesAttachment) {
+							attachments.add((NotesAttachment) values.get(0));
+						}
+						return Action.Continue;
+					}
+				});
+
+				List<String> journalEntries = new ArrayList<String>(attachments.size());
+				boolean allExtracted = true;
+
+				for (NotesAttachment currAtt : attachments) {
+					AttachmentInfo info = new AttachmentInfo(noteId, unid, currAtt);
+					try {
+						String sha256 = extractAttachment(currAtt, info, digest);
+						journalEntries.add("A\t"+noteId+"\t"+unid+"\t"+sha256+"\t"+info.getFileSize()+"\t"+
+								info.getFileName().replace('\t', ' ').replace('\n', ' ').replace('\r', ' '));
+					}
+					catch (Exception e) {
+						allExtracted = false;
+						m_stats.attachmentFailed(new NotesError(0, "Error extracting "+info, e));
+					}
+				}
+
+				if (allExtracted) {
+					if (m_journal!=null) {
+						m_journal.noteCompleted(noteId, journalEntries);
+					}
+					m_stats.noteProcessed();
+				}
+				else {
+					m_stats.noteFailed(new NotesError(0, "Not all attachments could be extracted from note "+noteId));
+				}
+			}
+			catch (Exception e) {
+				m_stats.noteFailed(new NotesError(0, "Error processing note "+noteId, e));
+			}
+			finally {
+				if (note!=null) {
+					note.recycle();
+				}
+			}
+
+			if (m_progressListener!=null) {
+				synchronized (AttachmentExtractor.this) {
+					m_progressListener.progress(m_stats);
+				}
+			}
+		}
+
+		/**
+		 * Streams an attachment to the target
+		 *
+		 * @param att attachment
+		 * @param info attachment metadata
+		 * @param digest digest to compute the content hash
+		 * @return hex encoded SHA-256 hash
+		 * @throws IOException in case of I/O errors
+		 */
+		private String extractAttachment(NotesAttachment att, AttachmentInfo info, MessageDigest digest) throws IOException {
+			digest.reset();
+
+			WritableByteChannel targetChannel = m_target.open(info);
+			DigestingChannel channel = new DigestingChannel(targetChannel, digest);
+			String sha256;
+			boolean stored;
+			boolean success = false;
+			try {
+				if (att.getCompression() == Compression.NONE) {
+					att.transferTo(channel);
+				}
+				else {
+					final IOException[] writeError = new IOException[1];
+					final DigestingChannel fChannel = channel;
+					att.readData(new IDataCallback() {
+
+						@Override
+						public Action read(byte[] data) {
+							try {
+								ByteBuffer buf = ByteBuffer.wrap(data);
+								while (buf.hasRemaining()) {
+									fChannel.write(buf);
+								}
+								return Action.Continue;
+							} catch (IOException e) {
+								writeError[0] = e;
+								return Action.Stop;
+							}
+						}
+					});
+					if (writeError[0]!=null) {
+						throw writeError[0];
+					}
+				}
+				targetChannel.close();
+
+				sha256 = toHex(digest.digest());
+				stored = m_target.committed(info, sha256);
+				success = true;
+			}
+			finally {
+				if (!success) {
+					try {
+						targetChannel.close();
+					}
+					catch (IOException e) {
+						//ignore, already failing
+					}
+					m_target.aborted(info);
+				}
+			}
+
+			m_stats.attachmentWritten(channel.getBytesWritten(), !stored);
+			return sha256;
+		}
+	}
+
+	private static String toHex(byte[] data) {
+		char[] chars = new char[data.length * 2];
+		for (int i=0; i<data.length; i++) {
+			chars[i*2] = HEX_CHARS[(data[i] >> 4) & 0xf];
+			chars[i*2+1] = HEX_CHARS[data[i] & 0xf];
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Channel wrapper that updates a {@link MessageDigest} with the written bytes
+	 */
+	private static class DigestingChannel implements WritableByteChannel {
+		private WritableByteChannel m_channel;
+		private MessageDigest m_digest;
+		private long m_bytesWritten;
+
+		public DigestingChannel(WritableByteChannel channel, MessageDigest digest) {
+			m_channel = channel;
+			m_digest = digest;
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			ByteBuffer written = src.duplicate();
+			int len = m_channel.write(src);
+			if (len > 0) {
+				written.limit(written.position() + len);
+				m_digest.update(written);
+				m_bytesWritten += len;
+			}
+			return len;
+		}
+
+		public long getBytesWritten() {
+			return m_bytesWritten;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return m_channel.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {
+			m_channel.close();
+		}
+	}
+}
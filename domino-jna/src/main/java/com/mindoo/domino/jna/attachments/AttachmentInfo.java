@@ -0,0 +1,101 @@
+package com.mindoo.domino.jna.attachments;
+
+import java.util.Calendar;
+
+import com.mindoo.domino.jna.NotesAttachment;
+import com.mindoo.domino.jna.constants.Compression;
+
+/**
+ * Metadata of an attachment processed by the {@link AttachmentExtractor}. In contrast to
+ * {@link NotesAttachment}, the object does not reference the note and can be used after
+ * the note has been recycled.
+ *
+ * @author Karsten Lehmann
+ */
+public class AttachmentInfo {
+	private int m_noteId;
+	private String m_unid;
+	private String m_fileName;
+	private int m_fileSize;
+	private Compression m_compression;
+	private Calendar m_fileCreated;
+	private Calendar m_fileModified;
+
+	AttachmentInfo(int noteId, String unid, NotesAttachment att) {
+		m_noteId = noteId;
+		m_unid = unid;
+		m_fileName = att.getFileName();
+		m_fileSize = att.getFileSize();
+		m_compression = att.getCompression();
+		m_fileCreated = att.getFileCreated();
+		m_fileModified = att.getFileModified();
+	}
+
+	/**
+	 * Returns the note id of the parent note
+	 *
+	 * @return note id
+	 */
+	public int getNoteId() {
+		return m_noteId;
+	}
+
+	/**
+	 * Returns the UNID of the parent note
+	 *
+	 * @return UNID
+	 */
+	public String getUNID() {
+		return m_unid;
+	}
+
+	/**
+	 * Returns the filename of the attachment
+	 *
+	 * @return filename
+	 */
+	public String getFileName() {
+		return m_fileName;
+	}
+
+	/**
+	 * Returns the uncompressed file size
+	 *
+	 * @return size
+	 */
+	public int getFileSize() {
+		return m_fileSize;
+	}
+
+	/**
+	 * Returns the compression type of the stored object
+	 *
+	 * @return compression
+	 */
+	public Compression getCompression() {
+		return m_compression;
+	}
+
+	/**
+	 * Returns the creation date
+	 *
+	 * @return date
+	 */
+	public Calendar getFileCreated() {
+		return m_fileCreated;
+	}
+
+	/**
+	 * Returns the last modified date
+	 *
+	 * @return date
+	 */
+	public Calendar getFileModified() {
+		return m_fileModified;
+	}
+
+	@Override
+	public String toString() {
+		return "AttachmentInfo [noteId="+m_noteId+", unid="+m_unid+", fileName="+m_fileName+", fileSize="+m_fileSize+"]";
+	}
+}
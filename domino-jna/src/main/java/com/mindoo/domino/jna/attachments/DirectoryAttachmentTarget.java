@@ -0,0 +1,147 @@
+package com.mindoo.domino.jna.attachments;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link IAttachmentTarget} that writes attachments to a directory.<br>
+ * <br>
+ * Data is first written to a temporary file in the ".tmp" subdirectory and moved to its
+ * final location when complete, so a directory never contains partially written files.
+ * <ul>
+ * <li>without deduplication, attachments are stored as <code>&lt;UNID&gt;/&lt;filename&gt;</code></li>
+ * <li>with deduplication, attachments are stored by content as <code>&lt;first 2 hash chars&gt;/&lt;SHA-256 hash&gt;</code>,
+ * so identical files are only stored once; the progress journal of the {@link AttachmentExtractor}
+ * contains the mapping from UNID and filename to hash</li>
+ * </ul>
+ *
+ * @author Karsten Lehmann
+ */
+public class DirectoryAttachmentTarget implements IAttachmentTarget {
+	private Path m_dir;
+	private Path m_tmpDir;
+	private boolean m_deduplicate;
+	private Map<AttachmentInfo,Path> m_tmpFiles;
+
+	/**
+	 * Creates a new target
+	 *
+	 * @param dir target directory, created if it does not exist
+	 * @param deduplicate true to store identical content only once
+	 * @throws IOException in case of I/O errors creating the directory
+	 */
+	public DirectoryAttachmentTarget(Path dir, boolean deduplicate) throws IOException {
+		m_dir = dir;
+		m_tmpDir = dir.resolve(".tmp");
+		m_deduplicate = deduplicate;
+		m_tmpFiles = new ConcurrentHashMap<AttachmentInfo,Path>();
+		Files.createDirectories(m_tmpDir);
+	}
+
+	public Path getDirectory() {
+		return m_dir;
+	}
+
+	public boolean isDeduplicate() {
+		return m_deduplicate;
+	}
+
+	/**
+	 * Returns the location of an attachment in the target directory
+	 *
+	 * @param info attachment metadata
+	 * @param sha256 content hash
+	 * @return path
+	 */
+	public Path getPath(AttachmentInfo info, String sha256) {
+		if (m_deduplicate) {
+			return m_dir.resolve(sha256.substring(0, 2)).resolve(sha256);
+		}
+		else {
+			return m_dir.resolve(info.getUNID()).resolve(toSafeFileName(info.getFileName()));
+		}
+	}
+
+	@Override
+	public WritableByteChannel open(AttachmentInfo info) throws IOException {
+		Path tmpFile = m_tmpDir.resolve(UUID.randomUUID().toString());
+		FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		m_tmpFiles.put(info, tmpFile);
+		return channel;
+	}
+
+	@Override
+	public boolean committed(AttachmentInfo info, String sha256) throws IOException {
+		Path tmpFile = m_tmpFiles.remove(info);
+		if (tmpFile==null) {
+			throw new IllegalStateException("No open file found for "+info);
+		}
+
+		Path targetFile = getPath(info, sha256);
+		Files.createDirectories(targetFile.getParent());
+
+		if (m_deduplicate) {
+			if (Files.exists(targetFile)) {
+				Files.delete(tmpFile);
+				return false;
+			}
+			try {
+				Files.move(tmpFile, targetFile, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (FileAlreadyExistsException e) {
+				//another thread stored the same content in the meantime
+				Files.delete(tmpFile);
+				return false;
+			}
+		}
+		else {
+			Files.move(tmpFile, targetFile, StandardCopyOption.REPLACE_EXISTING);
+		}
+		return true;
+	}
+
+	@Override
+	public void aborted(AttachmentInfo info) {
+		Path tmpFile = m_tmpFiles.remove(info);
+		if (tmpFile!=null) {
+			try {
+				Files.deleteIfExists(tmpFile);
+			} catch (IOException e) {
+				//ignore, the file is overwritten in the next run
+			}
+		}
+	}
+
+	/**
+	 * Replaces characters that are not allowed in filenames on common platforms
+	 *
+	 * @param fileName filename
+	 * @return safe filename
+	 */
+	private static String toSafeFileName(String fileName) {
+		StringBuilder sb = new StringBuilder(fileName.length());
+		for (int i=0; i<fileName.length(); i++) {
+			char c = fileName.charAt(i);
+			if (c<0x20 || c=='/' || c=='\\' || c==':' || c=='*' || c=='?' || c=='"' || c=='<' || c=='>' || c=='|') {
+				sb.append('_');
+			}
+			else {
+				sb.append(c);
+			}
+		}
+		String safeName = sb.toString();
+		if (safeName.isEmpty() || ".".equals(safeName) || "..".equals(safeName)) {
+			return "_"+safeName;
+		}
+		return safeName;
+	}
+}
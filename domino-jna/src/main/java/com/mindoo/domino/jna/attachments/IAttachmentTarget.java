@@ -0,0 +1,46 @@
+package com.mindoo.domino.jna.attachments;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Destination for attachments written by the {@link AttachmentExtractor}. Methods
+ * are called concurrently from the extraction threads, so implementations need
+ * to be thread-safe.
+ *
+ * @author Karsten Lehmann
+ */
+public interface IAttachmentTarget {
+
+	/**
+	 * Opens a channel to write the data of an attachment. The channel is closed by the extractor.
+	 *
+	 * @param info attachment metadata
+	 * @return channel
+	 * @throws IOException in case of I/O errors
+	 */
+	public WritableByteChannel open(AttachmentInfo info) throws IOException;
+
+	/**
+	 * Method is called after the attachment data has been written completely and the channel is closed
+	 *
+	 * @param info attachment metadata
+	 * @param sha256 hex encoded SHA-256 hash of the attachment content
+	 * @return true if the content has been stored, false if it was dropped as duplicate
+	 * @throws IOException in case of I/O errors
+	 */
+	public default boolean committed(AttachmentInfo info, String sha256) throws IOException {
+		return true;
+	}
+
+	/**
+	 * Method is called when writing the attachment failed after {@link #open(AttachmentInfo)} or
+	 * {@link #committed(AttachmentInfo, String)} threw an exception, e.g. to remove partially written data.
+	 * The channel is already closed.
+	 *
+	 * @param info attachment metadata
+	 */
+	public default void aborted(AttachmentInfo info) {
+	}
+
+}
@@ -0,0 +1,267 @@
+package com.mindoo.domino.jna.formula;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.mindoo.domino.jna.NotesSearch;
+
+/**
+ * JVM-wide LRU cache for compiled formulas, used by {@link NotesSearch} (and the
+ * methods based on it like {@link com.mindoo.domino.jna.NotesIDTable#filter(com.mindoo.domino.jna.NotesDatabase, String)}
+ * and {@link com.mindoo.domino.jna.NotesCollection#select(String, boolean)}) and by {@link FormulaExecution}
+ * to skip NSFFormulaCompile for formulas that have been compiled before.<br>
+ * <br>
+ * The compiled formulas are stored as byte arrays, keyed by formula text and the programmatic
+ * names and formulas of additional columns. The cache is bounded by the total size
+ * of the compiled formulas (1 MB by default); least recently used entries are evicted first.
+ * Use {@link #getStats()} to check the hit rate.
+ *
+ * @author Karsten Lehmann
+ */
+public class CompiledFormulaCache {
+	private static final LinkedHashMap<Key,byte[]> m_cache = new LinkedHashMap<Key,byte[]>(16, 0.75f, true);
+	private static volatile boolean m_enabled = true;
+	private static long m_maxSizeInBytes = 1024 * 1024;
+	private static long m_sizeInBytes;
+	private static long m_hits;
+	private static long m_misses;
+	private static long m_evictions;
+
+	private CompiledFormulaCache() {
+	}
+
+	/**
+	 * Enables or disables the cache; disabling clears the cache
+	 *
+	 * @param enabled true to enable (default)
+	 */
+	public static void setEnabled(boolean enabled) {
+		m_enabled = enabled;
+		if (!enabled) {
+			clear();
+		}
+	}
+
+	public static boolean isEnabled() {
+		return m_enabled;
+	}
+
+	/**
+	 * Sets the maximum total size of all cached compiled formulas
+	 *
+	 * @param bytes max size in bytes
+	 */
+	public static void setMaxSizeInBytes(long bytes) {
+		if (bytes<0) {
+			throw new IllegalArgumentException("Max size cannot be negative: "+bytes);
+		}
+		synchronized (m_cache) {
+			m_maxSizeInBytes = bytes;
+			evict();
+		}
+	}
+
+	public static long getMaxSizeInBytes() {
+		synchronized (m_cache) {
+			return m_maxSizeInBytes;
+		}
+	}
+
+	/**
+	 * Removes all cached formulas and resets the statistics
+	 */
+	public static void clear() {
+		synchronized (m_cache) {
+			m_cache.clear();
+			m_sizeInBytes = 0;
+			m_hits = 0;
+			m_misses = 0;
+			m_evictions = 0;
+		}
+	}
+
+	/**
+	 * Returns a snapshot of the cache statistics
+	 *
+	 * @return stats
+	 */
+	public static CacheStats getStats() {
+		synchronized (m_cache) {
+			return new CacheStats(m_hits, m_misses, m_evictions, m_cache.size(), m_sizeInBytes);
+		}
+	}
+
+	/**
+	 * Looks up a compiled formula
+	 *
+	 * @param formula formula text
+	 * @param columnFormulas programmatic column names and formulas merged into the compiled formula in key order or null
+	 * @param search true for formulas compiled for NSFSearch, false for formulas compiled for NSFComputeStart (line breaks are encoded differently)
+	 * @return compiled formula (shared array, must not be modified) or null if not cached
+	 */
+	public static byte[] get(String formula, Map<String,String> columnFormulas, boolean search) {
+		if (!m_enabled) {
+			return null;
+		}
+
+		Key key = new Key(formula, columnFormulas, search);
+		synchronized (m_cache) {
+			byte[] compiledFormula = m_cache.get(key);
+			if (compiledFormula==null) {
+				m_misses++;
+				return null;
+			}
+			m_hits++;
+			return compiledFormula;
+		}
+	}
+
+	/**
+	 * Adds a compiled formula to the cache
+	 *
+	 * @param formula formula text
+	 * @param columnFormulas programmatic column names and formulas merged into the compiled formula in key order or null
+	 * @param search true for formulas compiled for NSFSearch, false for formulas compiled for NSFComputeStart
+	 * @param compiledFormula compiled formula, must not be modified afterwards
+	 */
+	public static void put(String formula, Map<String,String> columnFormulas, boolean search, byte[] compiledFormula) {
+		if (!m_enabled || compiledFormula==null || compiledFormula.length==0) {
+			return;
+		}
+
+		Key key = new Key(formula, columnFormulas, search);
+		synchronized (m_cache) {
+			if (compiledFormula.length > m_maxSizeInBytes) {
+				return;
+			}
+			byte[] oldValue = m_cache.put(key, compiledFormula);
+			if (oldValue!=null) {
+				m_sizeInBytes -= oldValue.length;
+			}
+			m_sizeInBytes += compiledFormula.length;
+			evict();
+		}
+	}
+
+	/**
+	 * Removes least recently used entries until the cache size is within its limit
+	 */
+	private static void evict() {
+		Iterator<Entry<Key,byte[]>> entriesIt = m_cache.entrySet().iterator();
+		while (m_sizeInBytes > m_maxSizeInBytes && entriesIt.hasNext()) {
+			Entry<Key,byte[]> currEntry = entriesIt.next();
+			m_sizeInBytes -= currEntry.getValue().length;
+			entriesIt.remove();
+			m_evictions++;
+		}
+	}
+
+	/**
+	 * Cache key consisting of formula and column formulas
+	 */
+	private static class Key {
+		private final String m_formula;
+		private final String[] m_columns;
+		private final boolean m_search;
+		private final int m_hashCode;
+
+		private Key(String formula, Map<String,String> columnFormulas, boolean search) {
+			m_formula = formula;
+			m_search = search;
+
+			if (columnFormulas==null) {
+				m_columns = null;
+			}
+			else {
+				m_columns = new String[columnFormulas.size() * 2];
+				int idx = 0;
+				for (Entry<String,String> currEntry : columnFormulas.entrySet()) {
+					m_columns[idx++] = currEntry.getKey();
+					m_columns[idx++] = currEntry.getValue();
+				}
+			}
+
+			int hashCode = formula==null ? 0 : formula.hashCode();
+			hashCode = 31 * hashCode + Arrays.hashCode(m_columns);
+			hashCode = 31 * hashCode + (search ? 1 : 0);
+			m_hashCode = hashCode;
+		}
+
+		@Override
+		public int hashCode() {
+			return m_hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this==obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return m_hashCode==other.m_hashCode && m_search==other.m_search &&
+					(m_formula==null ? other.m_formula==null : m_formula.equals(other.m_formula)) &&
+					Arrays.equals(m_columns, other.m_columns);
+		}
+	}
+
+	/**
+	 * Snapshot of the cache statistics
+	 */
+	public static class CacheStats {
+		private long m_hits;
+		private long m_misses;
+		private long m_evictions;
+		private int m_entryCount;
+		private long m_sizeInBytes;
+
+		private CacheStats(long hits, long misses, long evictions, int entryCount, long sizeInBytes) {
+			m_hits = hits;
+			m_misses = misses;
+			m_evictions = evictions;
+			m_entryCount = entryCount;
+			m_sizeInBytes = sizeInBytes;
+		}
+
+		public long getHits() {
+			return m_hits;
+		}
+
+		public long getMisses() {
+			return m_misses;
+		}
+
+		public long getEvictions() {
+			return m_evictions;
+		}
+
+		public int getEntryCount() {
+			return m_entryCount;
+		}
+
+		public long getSizeInBytes() {
+			return m_sizeInBytes;
+		}
+
+		/**
+		 * Returns the ratio of lookups that found a compiled formula
+		 *
+		 * @return hit rate between 0 and 1
+		 */
+		public double getHitRate() {
+			long lookups = m_hits + m_misses;
+			return lookups==0 ? 0 : (double) m_hits / lookups;
+		}
+
+		@Override
+		public String toString() {
+			return "CacheStats [hits="+m_hits+", misses="+m_misses+", hitRate="+getHitRate()+
+					", evictions="+m_evictions+", entries="+m_entryCount+", size="+m_sizeInBytes+"]";
+		}
+	}
+}
@@ -16,6 +16,7 @@ import com.mindoo.domino.jna.errors.NotesErrorUtils;
 import com.mindoo.domino.jna.errors.UnsupportedItemValueError;
 import com.mindoo.domino.jna.gc.IRecyclableNotesObject;
 import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.internal.FormulaCompiler;
 import com.mindoo.domino.jna.internal.ItemDecoder;
 import com.mindoo.domino.jna.internal.Mem32;
 import com.mindoo.domino.jna.internal.Mem64;
@@ -59,47 +60,60 @@ public class FormulaExecution implements IRecyclableNotesObject, IAdaptable {
 	public FormulaExecution(String formula) throws FormulaCompilationError {
 		m_formula = formula;
 		
-		Memory formulaName = null;
-		short formulaNameLength = 0;
-		Memory formulaText = NotesStringUtils.toLMBCS(formula, false, false);
-		short formulaTextLength = (short) formulaText.size();
-
 		short computeFlags = 0;
 
+		//reuse compiled formula if available
+		byte[] cachedFormula = CompiledFormulaCache.get(formula, null, false);
+		
 		if (PlatformUtils.is64Bit()) {
 			m_hFormula64 = 0;
 			
-			LongByReference rethFormula = new LongByReference();
-			ShortByReference retFormulaLength = new ShortByReference();
-			ShortByReference retCompileError = new ShortByReference();
-			ShortByReference retCompileErrorLine = new ShortByReference();
-			ShortByReference retCompileErrorColumn = new ShortByReference();
-			ShortByReference retCompileErrorOffset = new ShortByReference();
-			ShortByReference retCompileErrorLength = new ShortByReference();
-			
-			short result = NotesNativeAPI64.get().NSFFormulaCompile(formulaName, formulaNameLength, formulaText,
-					formulaTextLength, rethFormula, retFormulaLength, retCompileError, retCompileErrorLine,
-					retCompileErrorColumn, retCompileErrorOffset, retCompileErrorLength);
+			if (cachedFormula!=null) {
+				m_hFormula64 = FormulaCompiler.b64_toHandle(cachedFormula);
+				m_compiledFormulaLength = cachedFormula.length;
+			}
+			else {
+				Memory formulaName = null;
+				short formulaNameLength = 0;
+				Memory formulaText = NotesStringUtils.toLMBCS(formula, false, false);
+				short formulaTextLength = (short) formulaText.size();
 
-			if (result == INotesErrorConstants.ERR_FORMULA_COMPILATION) {
-				String errMsg = NotesErrorUtils.errToString(result);
+				LongByReference rethFormula = new LongByReference();
+				ShortByReference retFormulaLength = new ShortByReference();
+				ShortByReference retCompileError = new ShortByReference();
+				ShortByReference retCompileErrorLine = new ShortByReference();
+				ShortByReference retCompileErrorColumn = new ShortByReference();
+				ShortByReference retCompileErrorOffset = new ShortByReference();
+				ShortByReference retCompileErrorLength = new ShortByReference();
+				
+				short result = NotesNativeAPI64.get().NSFFormulaCompile(formulaName, formulaNameLength, formulaText,
+						formulaTextLength, rethFormula, retFormulaLength, retCompileError, retCompileErrorLine,
+						retCompileErrorColumn, retCompileErrorOffset, retCompileErrorLength);
+
+				if (result == INotesErrorConstants.ERR_FORMULA_COMPILATION) {
+					String errMsg = NotesErrorUtils.errToString(result);
 
-				throw new FormulaCompilationError(result, errMsg, formula,
-						retCompileError.getValue(),
-						retCompileErrorLine.getValue(),
-						retCompileErrorColumn.getValue(),
-						retCompileErrorOffset.getValue(),
-						retCompileErrorLength.getValue());
+					throw new FormulaCompilationError(result, errMsg, formula,
+							retCompileError.getValue(),
+							retCompileErrorLine.getValue(),
+							retCompileErrorColumn.getValue(),
+							retCompileErrorOffset.getValue(),
+							retCompileErrorLength.getValue());
+				}
+				NotesErrorUtils.checkResult(result);
+				m_hFormula64 = rethFormula.getValue();
+				m_compiledFormulaLength = (int) (retFormulaLength.getValue() & 0xffff);
 			}
-			NotesErrorUtils.checkResult(result);
-			m_hFormula64 = rethFormula.getValue();
-			m_compiledFormulaLength = (int) (retFormulaLength.getValue() & 0xffff);
 			
 			LongByReference rethCompute = new LongByReference();
 			
 			m_ptrCompiledFormula = Mem64.OSLockObject(m_hFormula64);
 			
-			result = NotesNativeAPI64.get().NSFComputeStart(computeFlags, m_ptrCompiledFormula, rethCompute);
+			if (cachedFormula==null) {
+				CompiledFormulaCache.put(formula, null, false, m_ptrCompiledFormula.getByteArray(0, m_compiledFormulaLength));
+			}
+			
+			short result = NotesNativeAPI64.get().NSFComputeStart(computeFlags, m_ptrCompiledFormula, rethCompute);
 			NotesErrorUtils.checkResult(result);
 			
 			m_hCompute64 = rethCompute.getValue();
@@ -109,37 +123,52 @@ public class FormulaExecution implements IRecyclableNotesObject, IAdaptable {
 		else {
 			m_hFormula32 = 0;
 			
-			IntByReference rethFormula = new IntByReference();
-			ShortByReference retFormulaLength = new ShortByReference();
-			ShortByReference retCompileError = new ShortByReference();
-			ShortByReference retCompileErrorLine = new ShortByReference();
-			ShortByReference retCompileErrorColumn = new ShortByReference();
-			ShortByReference retCompileErrorOffset = new ShortByReference();
-			ShortByReference retCompileErrorLength = new ShortByReference();
+			if (cachedFormula!=null) {
+				m_hFormula32 = FormulaCompiler.b32_toHandle(cachedFormula);
+				m_compiledFormulaLength = cachedFormula.length;
+			}
+			else {
+				Memory formulaName = null;
+				short formulaNameLength = 0;
+				Memory formulaText = NotesStringUtils.toLMBCS(formula, false, false);
+				short formulaTextLength = (short) formulaText.size();
+
+				IntByReference rethFormula = new IntByReference();
+				ShortByReference retFormulaLength = new ShortByReference();
+				ShortByReference retCompileError = new ShortByReference();
+				ShortByReference retCompileErrorLine = new ShortByReference();
+				ShortByReference retCompileErrorColumn = new ShortByReference();
+				ShortByReference retCompileErrorOffset = new ShortByReference();
+				ShortByReference retCompileErrorLength = new ShortByReference();
 
-			short result = NotesNativeAPI32.get().NSFFormulaCompile(formulaName, formulaNameLength, formulaText,
-					formulaTextLength, rethFormula, retFormulaLength, retCompileError, retCompileErrorLine,
-					retCompileErrorColumn, retCompileErrorOffset, retCompileErrorLength);
+				short result = NotesNativeAPI32.get().NSFFormulaCompile(formulaName, formulaNameLength, formulaText,
+						formulaTextLength, rethFormula, retFormulaLength, retCompileError, retCompileErrorLine,
+						retCompileErrorColumn, retCompileErrorOffset, retCompileErrorLength);
 
-			if (result == INotesErrorConstants.ERR_FORMULA_COMPILATION) {
-				String errMsg = NotesErrorUtils.errToString(result);
+				if (result == INotesErrorConstants.ERR_FORMULA_COMPILATION) {
+					String errMsg = NotesErrorUtils.errToString(result);
 
-				throw new FormulaCompilationError(result, errMsg, formula,
-						retCompileError.getValue(),
-						retCompileErrorLine.getValue(),
-						retCompileErrorColumn.getValue(),
-						retCompileErrorOffset.getValue(),
-						retCompileErrorLength.getValue());
+					throw new FormulaCompilationError(result, errMsg, formula,
+							retCompileError.getValue(),
+							retCompileErrorLine.getValue(),
+							retCompileErrorColumn.getValue(),
+							retCompileErrorOffset.getValue(),
+							retCompileErrorLength.getValue());
+				}
+				NotesErrorUtils.checkResult(result);
+				m_hFormula32 = rethFormula.getValue();
+				m_compiledFormulaLength = (int) (retFormulaLength.getValue() & 0xffff);
 			}
-			NotesErrorUtils.checkResult(result);
-			m_hFormula32 = rethFormula.getValue();
-			m_compiledFormulaLength = (int) (retFormulaLength.getValue() & 0xffff);
 			
 			IntByReference rethCompute = new IntByReference();
 			
 			m_ptrCompiledFormula = Mem32.OSLockObject(m_hFormula32);
 			
-			result = NotesNativeAPI32.get().NSFComputeStart(computeFlags, m_ptrCompiledFormula, rethCompute);
+			if (cachedFormula==null) {
+				CompiledFormulaCache.put(formula, null, false, m_ptrCompiledFormula.getByteArray(0, m_compiledFormulaLength));
+			}
+			
+			short result = NotesNativeAPI32.get().NSFComputeStart(computeFlags, m_ptrCompiledFormula, rethCompute);
 			NotesErrorUtils.checkResult(result);
 			
 			m_hCompute32 = rethCompute.getValue();
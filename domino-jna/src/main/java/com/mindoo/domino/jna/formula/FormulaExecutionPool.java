@@ -0,0 +1,296 @@
+package com.mindoo.domino.jna.formula;
+
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesIDTable;
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.constants.OpenNote;
+import com.mindoo.domino.jna.errors.FormulaCompilationError;
+import com.mindoo.domino.jna.formula.FormulaExecution.FormulaExecutionResult;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.gc.NotesGC.IDisposableCustomValue;
+
+/**
+ * Pool of compiled and started {@link FormulaExecution} instances.<br>
+ * <br>
+ * The static {@link FormulaExecution#evaluate(String, NotesNote)} methods compile the formula,
+ * start a compute context and free both for every call. This pool keeps the compute
+ * contexts of recently used formulas open for the current Notes thread, so that repeated
+ * evaluations of the same formula do not pay the setup cost.<br>
+ * <br>
+ * Compute contexts are bound to the thread that created them. That's why the pool stores them
+ * per {@link NotesGC#runWithAutoGC(Callable)} block: the pool instance can be shared
+ * between threads, but each thread gets its own {@link FormulaExecution} objects which are
+ * recycled when its auto GC block ends or when the least recently used formula gets evicted
+ * from the per-thread pool.
+ *
+ * @author Karsten Lehmann
+ */
+public class FormulaExecutionPool {
+	private static final AtomicLong m_poolIdCounter = new AtomicLong();
+
+	private final String m_customValueKey;
+	private volatile int m_maxFormulasPerThread;
+	private volatile boolean m_preferNotesTimeDates;
+
+	/**
+	 * Creates a new pool keeping up to 50 formulas per thread
+	 */
+	public FormulaExecutionPool() {
+		this(50);
+	}
+
+	/**
+	 * Creates a new pool
+	 *
+	 * @param maxFormulasPerThread max number of compute contexts kept open per thread
+	 */
+	public FormulaExecutionPool(int maxFormulasPerThread) {
+		if (maxFormulasPerThread<1) {
+			throw new IllegalArgumentException("Max formulas per thread must be at least 1: "+maxFormulasPerThread);
+		}
+		m_maxFormulasPerThread = maxFormulasPerThread;
+		m_customValueKey = FormulaExecutionPool.class.getName()+"."+m_poolIdCounter.incrementAndGet();
+	}
+
+	/**
+	 * Sets the max number of compute contexts kept open per thread. Least recently
+	 * used formulas are recycled on the next access if the number is exceeded.
+	 *
+	 * @param max max number
+	 * @return this pool
+	 */
+	public FormulaExecutionPool setMaxFormulasPerThread(int max) {
+		if (max<1) {
+			throw new IllegalArgumentException("Max formulas per thread must be at least 1: "+max);
+		}
+		m_maxFormulasPerThread = max;
+		return this;
+	}
+
+	public int getMaxFormulasPerThread() {
+		return m_maxFormulasPerThread;
+	}
+
+	/**
+	 * Sets whether date/time values returned by the pooled formulas should be
+	 * returned as {@link com.mindoo.domino.jna.NotesTimeDate} instead of being converted to {@link java.util.Calendar}.
+	 *
+	 * @param b true to prefer NotesTimeDate (false by default)
+	 * @return this pool
+	 */
+	public FormulaExecutionPool setPreferNotesTimeDates(boolean b) {
+		m_preferNotesTimeDates = b;
+		return this;
+	}
+
+	public boolean isPreferNotesTimeDates() {
+		return m_preferNotesTimeDates;
+	}
+
+	/**
+	 * Returns the pooled {@link FormulaExecution} for the formula in the current thread,
+	 * compiling the formula and starting the compute context if required.<br>
+	 * <br>
+	 * The returned object is owned by the pool and must not be recycled by the caller.
+	 * It must only be used in the current thread.
+	 *
+	 * @param formula formula
+	 * @return formula execution
+	 * @throws FormulaCompilationError if formula has wrong syntax
+	 */
+	public FormulaExecution get(String formula) throws FormulaCompilationError {
+		NotesGC.ensureRunningInAutoGC();
+
+		ThreadPool threadPool = (ThreadPool) NotesGC.getCustomValue(m_customValueKey);
+		if (threadPool==null) {
+			threadPool = new ThreadPool();
+			NotesGC.setCustomValue(m_customValueKey, threadPool);
+		}
+
+		FormulaExecution execution = threadPool.m_executions.get(formula);
+		if (execution!=null && execution.isRecycled()) {
+			threadPool.m_executions.remove(formula);
+			execution = null;
+		}
+
+		if (execution==null) {
+			execution = new FormulaExecution(formula);
+			threadPool.m_executions.put(formula, execution);
+			threadPool.trimToSize(m_maxFormulasPerThread);
+		}
+		execution.setPreferNotesTimeDates(m_preferNotesTimeDates);
+		return execution;
+	}
+
+	/**
+	 * Evaluates a formula on a note using a pooled compute context
+	 *
+	 * @param formula formula
+	 * @param note note or null
+	 * @return computation result
+	 * @throws FormulaCompilationError if formula has wrong syntax
+	 */
+	public List<Object> evaluate(String formula, NotesNote note) throws FormulaCompilationError {
+		return get(formula).evaluate(note);
+	}
+
+	/**
+	 * Evaluates a formula on a note using a pooled compute context. Provides extended information.
+	 *
+	 * @param formula formula
+	 * @param note note or null
+	 * @return computation result with flags
+	 * @throws FormulaCompilationError if formula has wrong syntax
+	 */
+	public FormulaExecutionResult evaluateExt(String formula, NotesNote note) throws FormulaCompilationError {
+		return get(formula).evaluateExt(note);
+	}
+
+	/**
+	 * Evaluates a formula on a note and returns the result as a string
+	 *
+	 * @param formula formula
+	 * @param note note or null
+	 * @return computation result as string; if the formula returns a list, we pick the first value
+	 * @throws FormulaCompilationError if formula has wrong syntax
+	 */
+	public String evaluateAsString(String formula, NotesNote note) throws FormulaCompilationError {
+		List<Object> result = evaluate(formula, note);
+		if (result.isEmpty()) {
+			return "";
+		}
+		else {
+			return result.get(0).toString();
+		}
+	}
+
+	/**
+	 * Evaluates a formula on all notes of an ID table. The notes are opened one at a time and
+	 * recycled right after the evaluation, the results are streamed to the callback.
+	 *
+	 * @param db database containing the notes
+	 * @param idTable note ids
+	 * @param formula formula
+	 * @param openFlags flags to open the notes, e.g. {@link OpenNote#SUMMARY} if the formula only reads summary items
+	 * @param callback callback to receive the results
+	 * @return number of evaluated notes
+	 * @throws FormulaCompilationError if formula has wrong syntax
+	 */
+	public int evaluate(NotesDatabase db, NotesIDTable idTable, String formula, EnumSet<OpenNote> openFlags,
+			FormulaResultCallback callback) throws FormulaCompilationError {
+		if (db==null) {
+			throw new IllegalArgumentException("Database cannot be null");
+		}
+		if (idTable==null) {
+			throw new IllegalArgumentException("ID table cannot be null");
+		}
+		if (callback==null) {
+			throw new IllegalArgumentException("Callback cannot be null");
+		}
+
+		FormulaExecution execution = get(formula);
+		EnumSet<OpenNote> noteOpenFlags = openFlags==null ? EnumSet.noneOf(OpenNote.class) : openFlags;
+		int evaluatedNotes = 0;
+
+		//read the ids upfront so that callback exceptions are not swallowed by the native enumeration
+		for (int currNoteId : idTable.toArray()) {
+			NotesNote note = db.openNoteById(currNoteId, noteOpenFlags);
+			if (note==null) {
+				if (callback.noteNotFound(currNoteId)==FormulaResultCallback.Action.Stop) {
+					break;
+				}
+				continue;
+			}
+
+			FormulaResultCallback.Action action;
+			try {
+				FormulaExecutionResult result = execution.evaluateExt(note);
+				evaluatedNotes++;
+				action = callback.resultComputed(currNoteId, result);
+			}
+			finally {
+				note.recycle();
+			}
+			if (action==FormulaResultCallback.Action.Stop) {
+				break;
+			}
+		}
+
+		return evaluatedNotes;
+	}
+
+	/**
+	 * Recycles all compute contexts of this pool in the current thread
+	 */
+	public void clear() {
+		NotesGC.ensureRunningInAutoGC();
+
+		ThreadPool threadPool = (ThreadPool) NotesGC.getCustomValue(m_customValueKey);
+		if (threadPool!=null) {
+			threadPool.dispose();
+		}
+	}
+
+	/**
+	 * Callback interface to receive the results of
+	 * {@link FormulaExecutionPool#evaluate(NotesDatabase, NotesIDTable, String, EnumSet, FormulaResultCallback)}
+	 *
+	 * @author Karsten Lehmann
+	 */
+	public static abstract class FormulaResultCallback {
+		public static enum Action {Continue, Stop};
+
+		/**
+		 * Method is called with the formula result for a note
+		 *
+		 * @param noteId note id
+		 * @param result formula result
+		 * @return either {@link Action#Continue} to go on or {@link Action#Stop}
+		 */
+		public abstract Action resultComputed(int noteId, FormulaExecutionResult result);
+
+		/**
+		 * Method is called for note ids that could not be found in the database. Default
+		 * implementation just continues.
+		 *
+		 * @param noteId note id
+		 * @return either {@link Action#Continue} to go on or {@link Action#Stop}
+		 */
+		public Action noteNotFound(int noteId) {
+			return Action.Continue;
+		}
+	}
+
+	/**
+	 * LRU map of compute contexts for a single thread, disposed by {@link NotesGC} at the
+	 * end of the auto GC block
+	 */
+	private static class ThreadPool implements IDisposableCustomValue {
+		private final LinkedHashMap<String,FormulaExecution> m_executions = new LinkedHashMap<String,FormulaExecution>(16, 0.75f, true);
+
+		private void trimToSize(int maxSize) {
+			Iterator<Entry<String,FormulaExecution>> entriesIt = m_executions.entrySet().iterator();
+			while (m_executions.size() > maxSize && entriesIt.hasNext()) {
+				Entry<String,FormulaExecution> currEntry = entriesIt.next();
+				entriesIt.remove();
+				currEntry.getValue().recycle();
+			}
+		}
+
+		@Override
+		public void dispose() {
+			for (FormulaExecution currExecution : m_executions.values()) {
+				currExecution.recycle();
+			}
+			m_executions.clear();
+		}
+	}
+}
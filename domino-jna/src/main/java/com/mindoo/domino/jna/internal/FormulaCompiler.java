@@ -13,6 +13,88 @@ import com.sun.jna.ptr.ShortByReference;
 
 public class FormulaCompiler {
 
+	/**
+	 * Copies a compiled formula into newly allocated memory
+	 * 
+	 * @param compiledFormula compiled formula
+	 * @return handle, to be freed with {@link Mem64#OSMemFree(long)}
+	 */
+	public static long b64_toHandle(byte[] compiledFormula) {
+		LongByReference retHandle = new LongByReference();
+		short result = Mem64.OSMemAlloc((short) 0, compiledFormula.length, retHandle);
+		NotesErrorUtils.checkResult(result);
+		long hFormula = retHandle.getValue();
+		
+		Pointer ptr = Mem64.OSLockObject(hFormula);
+		try {
+			ptr.write(0, compiledFormula, 0, compiledFormula.length);
+		}
+		finally {
+			Mem64.OSUnlockObject(hFormula);
+		}
+		return hFormula;
+	}
+	
+	/**
+	 * Copies a compiled formula into newly allocated memory
+	 * 
+	 * @param compiledFormula compiled formula
+	 * @return handle, to be freed with {@link Mem32#OSMemFree(int)}
+	 */
+	public static int b32_toHandle(byte[] compiledFormula) {
+		IntByReference retHandle = new IntByReference();
+		short result = Mem32.OSMemAlloc((short) 0, compiledFormula.length, retHandle);
+		NotesErrorUtils.checkResult(result);
+		int hFormula = retHandle.getValue();
+		
+		Pointer ptr = Mem32.OSLockObject(hFormula);
+		try {
+			ptr.write(0, compiledFormula, 0, compiledFormula.length);
+		}
+		finally {
+			Mem32.OSUnlockObject(hFormula);
+		}
+		return hFormula;
+	}
+	
+	/**
+	 * Reads the compiled formula stored in a memory handle, e.g. after merging column formulas.<br>
+	 * The allocated memory block may be larger than the formula, so the length returned by
+	 * NSFFormulaCompile or NSFFormulaGetSize needs to be passed.
+	 * 
+	 * @param hFormula formula handle
+	 * @param formulaLength length of the compiled formula in bytes
+	 * @return compiled formula
+	 */
+	public static byte[] b64_fromHandle(long hFormula, int formulaLength) {
+		Pointer ptr = Mem64.OSLockObject(hFormula);
+		try {
+			return ptr.getByteArray(0, formulaLength);
+		}
+		finally {
+			Mem64.OSUnlockObject(hFormula);
+		}
+	}
+	
+	/**
+	 * Reads the compiled formula stored in a memory handle, e.g. after merging column formulas.<br>
+	 * The allocated memory block may be larger than the formula, so the length returned by
+	 * NSFFormulaCompile or NSFFormulaGetSize needs to be passed.
+	 * 
+	 * @param hFormula formula handle
+	 * @param formulaLength length of the compiled formula in bytes
+	 * @return compiled formula
+	 */
+	public static byte[] b32_fromHandle(int hFormula, int formulaLength) {
+		Pointer ptr = Mem32.OSLockObject(hFormula);
+		try {
+			return ptr.getByteArray(0, formulaLength);
+		}
+		finally {
+			Mem32.OSUnlockObject(hFormula);
+		}
+	}
+
 	/**
 	 * Compiles a formula and returns the compiled binary result.
 	 * 
@@ -841,6 +841,9 @@ public interface INotesNativeAPI32 extends Library {
 	public short NSFFormulaMerge(
 			int hSrcFormula,
 			int hDestFormula);
+	public short NSFFormulaGetSize(
+			int hFormula,
+			ShortByReference retFormulaLength);
 
 	public short NSFComputeStart(
 			short Flags,
@@ -849,6 +849,9 @@ public interface INotesNativeAPI64 extends Library {
 	public short NSFFormulaMerge(
 			long hSrcFormula,
 			long hDestFormula);
+	public short NSFFormulaGetSize(
+			long hFormula,
+			ShortByReference retFormulaLength);
 	public short NSFComputeStart(
 			short Flags,
 			Pointer lpCompiledFormula,
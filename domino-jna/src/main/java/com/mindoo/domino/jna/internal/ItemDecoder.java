@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.TimeZone;
 
 import com.mindoo.domino.jna.NotesDateRange;
+import com.mindoo.domino.jna.NotesItem;
 import com.mindoo.domino.jna.NotesTimeDate;
 import com.mindoo.domino.jna.errors.NotesErrorUtils;
 import com.mindoo.domino.jna.internal.structs.NotesNumberPairStruct;
@@ -127,6 +128,109 @@ public class ItemDecoder {
 		
 		return numberValues;
 	}
+	/**
+	 * Decodes a number or number range value into a caller supplied array without boxing
+	 * 
+	 * @param dataType data type of the value
+	 * @param ptr pointer to the value data (after the data type WORD)
+	 * @param valueLength length of the value data
+	 * @param target target array
+	 * @param offset offset in target array
+	 * @return total number of values or -1 if the data type is not a number type
+	 */
+	public static int decodeNumbersInto(int dataType, Pointer ptr, int valueLength, double[] target, int offset) {
+		if (dataType == NotesItem.TYPE_NUMBER) {
+			if (offset < target.length) {
+				target[offset] = ptr.getDouble(0);
+			}
+			return 1;
+		}
+		else if (dataType == NotesItem.TYPE_NUMBER_RANGE) {
+			return valueLength==0 ? 0 : decodeNumberListInto(ptr, target, offset);
+		}
+		else {
+			return -1;
+		}
+	}
+	
+	/**
+	 * Decodes a timedate or timedate range value into a caller supplied array of
+	 * packed innards (see {@link NotesDateTimeUtils#packInnards(int, int)})
+	 * 
+	 * @param dataType data type of the value
+	 * @param ptr pointer to the value data (after the data type WORD)
+	 * @param valueLength length of the value data
+	 * @param target target array
+	 * @param offset offset in target array
+	 * @return total number of values or -1 if the data type is not a timedate type
+	 */
+	public static int decodeTimeDatesInto(int dataType, Pointer ptr, int valueLength, long[] target, int offset) {
+		if (dataType == NotesItem.TYPE_TIME) {
+			if (offset < target.length) {
+				target[offset] = NotesDateTimeUtils.packInnards(ptr.getInt(0), ptr.getInt(4));
+			}
+			return 1;
+		}
+		else if (dataType == NotesItem.TYPE_TIME_RANGE) {
+			return valueLength==0 ? 0 : decodeTimeDateListInto(ptr, target, offset);
+		}
+		else {
+			return -1;
+		}
+	}
+	
+	/**
+	 * Decodes a number range value into a caller supplied array without boxing. Range entries
+	 * are written as two values (lower, upper) after the list entries.
+	 * 
+	 * @param ptr pointer to the value data (after the data type WORD)
+	 * @param target target array
+	 * @param offset offset in target array
+	 * @return total number of values, might be larger than the space in the target array; the values that do not fit are skipped
+	 */
+	public static int decodeNumberListInto(Pointer ptr, double[] target, int offset) {
+		int listEntriesAsInt = ptr.getShort(0) & 0xffff;
+		int rangeEntriesAsInt = ptr.getShort(2) & 0xffff;
+		int total = listEntriesAsInt + 2*rangeEntriesAsInt;
+		
+		int space = Math.max(0, target.length - offset);
+		int listEntriesToRead = Math.min(listEntriesAsInt, space);
+		ptr.read(NotesConstants.rangeSize, target, offset, listEntriesToRead);
+		
+		int pairValuesToRead = Math.min(2*rangeEntriesAsInt, space - listEntriesToRead);
+		if (pairValuesToRead>0) {
+			//NUMBER_PAIR contains lower and upper as consecutive doubles
+			ptr.read(NotesConstants.rangeSize + 8*listEntriesAsInt, target, offset + listEntriesToRead, pairValuesToRead);
+		}
+		return total;
+	}
+	
+	/**
+	 * Decodes a timedate range value into a caller supplied array without creating {@link NotesTimeDate}
+	 * or {@link Calendar} objects. Each value is stored as packed innards
+	 * (see {@link NotesDateTimeUtils#packInnards(int, int)}). Range entries are written as two
+	 * values (lower, upper) after the list entries.
+	 * 
+	 * @param ptr pointer to the value data (after the data type WORD)
+	 * @param target target array
+	 * @param offset offset in target array
+	 * @return total number of values, might be larger than the space in the target array; the values that do not fit are skipped
+	 */
+	public static int decodeTimeDateListInto(Pointer ptr, long[] target, int offset) {
+		int listEntriesAsInt = ptr.getShort(0) & 0xffff;
+		int rangeEntriesAsInt = ptr.getShort(2) & 0xffff;
+		int total = listEntriesAsInt + 2*rangeEntriesAsInt;
+		
+		//TIMEDATE_PAIR contains lower and upper as consecutive TIMEDATEs, so all values have the same layout
+		int toRead = Math.min(total, Math.max(0, target.length - offset));
+		long entryOffset = NotesConstants.rangeSize;
+		for (int i=0; i<toRead; i++) {
+			target[offset + i] = NotesDateTimeUtils.packInnards(ptr.getInt(entryOffset), ptr.getInt(entryOffset + 4));
+			entryOffset += NotesConstants.timeDateSize;
+		}
+		return total;
+	}
+	
 	public static List<Object> decodeTimeDateListAsNotesTimeDate(Pointer ptr) {
 		NotesRangeStruct range = NotesRangeStruct.newInstance(ptr);
 		range.read();
@@ -13,6 +13,7 @@ import java.util.TreeMap;
 
 import com.mindoo.domino.jna.IItemTableData;
 import com.mindoo.domino.jna.IItemValueTableData;
+import com.mindoo.domino.jna.ITextValueSink;
 import com.mindoo.domino.jna.NotesCollection;
 import com.mindoo.domino.jna.NotesCollectionStats;
 import com.mindoo.domino.jna.NotesDateRange;
@@ -706,6 +707,7 @@ public class NotesLookupResultBufferDecoder {
 		private ItemValueTableDataImpl m_wrappedValueTable;
 		private Map<String,Boolean> m_itemExistence;
 		private TypedItemAccess m_typedItems;
+		private TextValueDecoder m_textValueDecoder;
 		
 		public ItemTableDataImpl(String[] itemNames, ItemValueTableDataImpl valueTable) {
 			super(valueTable.m_convertStringsLazily);
@@ -826,6 +828,73 @@ public class NotesLookupResultBufferDecoder {
 			return m_typedItems.getAsStringList(itemName, defaultValue);
 		}
 		
+		/**
+		 * Returns the index of an item
+		 * 
+		 * @param itemName item name, case insensitive
+		 * @return index or -1 if not found
+		 */
+		private int getItemIndex(String itemName) {
+			for (int i=0; i<m_itemNames.length; i++) {
+				if (m_itemNames[i].equalsIgnoreCase(itemName)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		
+		/**
+		 * Checks whether the item value can be decoded from the lookup buffer, which is
+		 * not possible anymore after it has been freed
+		 * 
+		 * @return true if buffer is available
+		 */
+		private boolean isBufferAvailable() {
+			return m_itemValueBufferPointers!=null && !isFreed() && (m_wrappedValueTable==null || !m_wrappedValueTable.isFreed());
+		}
+		
+		@Override
+		public int getAsDoubleArray(String itemName, double[] target, int offset) {
+			if (!isBufferAvailable()) {
+				return m_typedItems.getAsDoubleArray(itemName, target, offset);
+			}
+			int idx = getItemIndex(itemName);
+			if (idx==-1) {
+				return -1;
+			}
+			return ItemDecoder.decodeNumbersInto(getItemDataType(idx), m_itemValueBufferPointers[idx],
+					(int) (m_itemValueBufferSizes[idx] & 0xffff), target, offset);
+		}
+		
+		@Override
+		public int getAsInnardsArray(String itemName, long[] target, int offset) {
+			if (!isBufferAvailable()) {
+				return m_typedItems.getAsInnardsArray(itemName, target, offset);
+			}
+			int idx = getItemIndex(itemName);
+			if (idx==-1) {
+				return -1;
+			}
+			return ItemDecoder.decodeTimeDatesInto(getItemDataType(idx), m_itemValueBufferPointers[idx],
+					(int) (m_itemValueBufferSizes[idx] & 0xffff), target, offset);
+		}
+		
+		@Override
+		public int getAsTextList(String itemName, ITextValueSink sink) {
+			if (!isBufferAvailable()) {
+				return m_typedItems.getAsTextList(itemName, sink);
+			}
+			int idx = getItemIndex(itemName);
+			if (idx==-1) {
+				return -1;
+			}
+			if (m_textValueDecoder==null) {
+				m_textValueDecoder = new TextValueDecoder();
+			}
+			return m_textValueDecoder.decode(getItemDataType(idx), m_itemValueBufferPointers[idx],
+					(int) (m_itemValueBufferSizes[idx] & 0xffff), sink);
+		}
+		
 		@Override
 		public NotesTimeDate getAsTimeDate(String itemName, NotesTimeDate defaultValue) {
 			boolean oldPrefTimeDate = isPreferNotesTimeDates();
@@ -732,6 +732,9 @@ public class NotesNativeAPI32 implements INotesNativeAPI32 {
 	public native short NSFFormulaMerge(
 			int hSrcFormula,
 			int hDestFormula);
+	public native short NSFFormulaGetSize(
+			int hFormula,
+			ShortByReference retFormulaLength);
 
 	public native short NSFComputeStart(
 			short Flags,
@@ -726,6 +726,9 @@ public class NotesNativeAPI64 implements INotesNativeAPI64 {
 	public native short NSFFormulaMerge(
 			long hSrcFormula,
 			long hDestFormula);
+	public native short NSFFormulaGetSize(
+			long hFormula,
+			ShortByReference retFormulaLength);
 	public native short NSFComputeStart(
 			short Flags,
 			Pointer lpCompiledFormula,
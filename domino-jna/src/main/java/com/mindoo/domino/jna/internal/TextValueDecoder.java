@@ -0,0 +1,143 @@
+package com.mindoo.domino.jna.internal;
+
+import java.util.Arrays;
+
+import com.mindoo.domino.jna.ITextValueSink;
+import com.mindoo.domino.jna.NotesItem;
+import com.mindoo.domino.jna.utils.NotesStringUtils;
+import com.sun.jna.Pointer;
+
+/**
+ * Decodes text and text list item values into an {@link ITextValueSink}, reusing
+ * its byte and char buffers between calls. Pure ASCII text is copied without LMBCS conversion,
+ * so in the common case no objects are allocated per value.<br>
+ * <br>
+ * Instances are not thread-safe.
+ *
+ * @author Karsten Lehmann
+ */
+public class TextValueDecoder {
+	private byte[] m_data;
+	private StringBuilder m_chars;
+
+	public TextValueDecoder() {
+		m_data = new byte[256];
+		m_chars = new StringBuilder(256);
+	}
+
+	/**
+	 * Decodes a text or text list value
+	 *
+	 * @param dataType data type of the value
+	 * @param ptr pointer to the value data (after the data type WORD)
+	 * @param valueLength length of the value data
+	 * @param sink sink to receive the values
+	 * @return number of values or -1 if the data type is not a text type
+	 */
+	public int decode(int dataType, Pointer ptr, int valueLength, ITextValueSink sink) {
+		if (dataType == NotesItem.TYPE_TEXT) {
+			return decodeText(ptr, valueLength, sink);
+		}
+		else if (dataType == NotesItem.TYPE_TEXT_LIST) {
+			return decodeTextList(ptr, valueLength, sink);
+		}
+		else {
+			return -1;
+		}
+	}
+
+	/**
+	 * Decodes a {@link NotesItem#TYPE_TEXT} value
+	 *
+	 * @param ptr pointer to the value data (after the data type WORD)
+	 * @param valueLength length of the value data
+	 * @param sink sink to receive the value
+	 * @return number of values (always 1)
+	 */
+	public int decodeText(Pointer ptr, int valueLength, ITextValueSink sink) {
+		byte[] data = readData(ptr, valueLength);
+		return decodeText(data, 0, valueLength, sink);
+	}
+
+	/**
+	 * Decodes a {@link NotesItem#TYPE_TEXT} value
+	 *
+	 * @param data array with value data
+	 * @param offset offset of the value data (after the data type WORD)
+	 * @param valueLength length of the value data
+	 * @param sink sink to receive the value
+	 * @return number of values (always 1)
+	 */
+	public int decodeText(byte[] data, int offset, int valueLength, ITextValueSink sink) {
+		sink.textValue(0, toChars(data, offset, valueLength));
+		return 1;
+	}
+
+	/**
+	 * Decodes a {@link NotesItem#TYPE_TEXT_LIST} value
+	 *
+	 * @param ptr pointer to the value data (after the data type WORD)
+	 * @param valueLength length of the value data
+	 * @param sink sink to receive the values
+	 * @return number of values
+	 */
+	public int decodeTextList(Pointer ptr, int valueLength, ITextValueSink sink) {
+		if (valueLength==0) {
+			return 0;
+		}
+		byte[] data = readData(ptr, valueLength);
+		return decodeTextList(data, 0, valueLength, sink);
+	}
+
+	/**
+	 * Decodes a {@link NotesItem#TYPE_TEXT_LIST} value
+	 *
+	 * @param data array with value data
+	 * @param offset offset of the value data (after the data type WORD)
+	 * @param valueLength length of the value data
+	 * @param sink sink to receive the values
+	 * @return number of values
+	 */
+	public int decodeTextList(byte[] data, int offset, int valueLength, ITextValueSink sink) {
+		if (valueLength==0) {
+			return 0;
+		}
+		//LIST header with the number of entries, one WORD length per entry, then the text data
+		int listCount = getWord(data, offset);
+		int textOffset = offset + 2 + 2*listCount;
+		for (int i=0; i<listCount; i++) {
+			int textLength = getWord(data, offset + 2 + 2*i);
+			sink.textValue(i, toChars(data, textOffset, textLength));
+			textOffset += textLength;
+		}
+		return listCount;
+	}
+
+	private byte[] readData(Pointer ptr, int valueLength) {
+		if (m_data.length < valueLength) {
+			m_data = new byte[Math.max(valueLength, m_data.length*2)];
+		}
+		ptr.read(0, m_data, 0, valueLength);
+		return m_data;
+	}
+
+	private CharSequence toChars(byte[] data, int offset, int length) {
+		m_chars.setLength(0);
+
+		for (int i=0; i<length; i++) {
+			byte b = data[offset + i];
+			if (b < 0x20 || b > 0x7e) {
+				//LMBCS group byte, non-ASCII character or line break (\0), so we need the full conversion
+				m_chars.setLength(0);
+				m_chars.append(NotesStringUtils.fromLMBCS(Arrays.copyOfRange(data, offset, offset + length)));
+				return m_chars;
+			}
+			m_chars.append((char) b);
+		}
+		return m_chars;
+	}
+
+	private static int getWord(byte[] data, int offset) {
+		return (data[offset] & 0xff) | ((data[offset+1] & 0xff) << 8);
+	}
+}
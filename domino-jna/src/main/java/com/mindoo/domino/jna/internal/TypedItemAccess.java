@@ -6,7 +6,10 @@ import java.util.Calendar;
 import java.util.List;
 
 import com.mindoo.domino.jna.INoteSummary;
+import com.mindoo.domino.jna.ITextValueSink;
+import com.mindoo.domino.jna.NotesDateRange;
 import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
 import com.mindoo.domino.jna.utils.NotesNamingUtils;
 
 public abstract class TypedItemAccess implements INoteSummary {
@@ -403,5 +406,141 @@ public abstract class TypedItemAccess implements INoteSummary {
 			}
 		}
 		return defaultValue;
-	}	
+	}
+
+	/**
+	 * Copies a number or number list value into a caller supplied array.
+	 * Number ranges are written as two values (lower, upper).
+	 * 
+	 * @param itemName item name
+	 * @param target target array
+	 * @param offset offset in target array
+	 * @return total number of values (might be larger than the space in the target array, the values that do not fit are skipped) or -1 if the item does not exist or is not a number item
+	 */
+	public int getAsDoubleArray(String itemName, double[] target, int offset) {
+		Object val = get(itemName);
+		if (val instanceof Number) {
+			if (offset < target.length) {
+				target[offset] = ((Number) val).doubleValue();
+			}
+			return 1;
+		}
+		else if (val instanceof List) {
+			List<?> valAsList = (List<?>) val;
+			int count = 0;
+			for (int i=0; i<valAsList.size(); i++) {
+				Object currObj = valAsList.get(i);
+				if (currObj instanceof Number) {
+					if (offset + count < target.length) {
+						target[offset + count] = ((Number) currObj).doubleValue();
+					}
+					count++;
+				}
+				else if (currObj instanceof double[]) {
+					for (double currRangeVal : (double[]) currObj) {
+						if (offset + count < target.length) {
+							target[offset + count] = currRangeVal;
+						}
+						count++;
+					}
+				}
+				else {
+					return -1;
+				}
+			}
+			return count;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Copies a timedate or timedate list value into a caller supplied array of packed innards
+	 * (see {@link NotesDateTimeUtils#packInnards(int, int)}). Timedate ranges are written as two
+	 * values (lower, upper).
+	 * 
+	 * @param itemName item name
+	 * @param target target array
+	 * @param offset offset in target array
+	 * @return total number of values (might be larger than the space in the target array, the values that do not fit are skipped) or -1 if the item does not exist or is not a timedate item
+	 */
+	public int getAsInnardsArray(String itemName, long[] target, int offset) {
+		Object val = get(itemName);
+		if (val instanceof List) {
+			List<?> valAsList = (List<?>) val;
+			int count = 0;
+			for (int i=0; i<valAsList.size(); i++) {
+				int added = addPackedInnards(valAsList.get(i), target, offset + count);
+				if (added==-1) {
+					return -1;
+				}
+				count += added;
+			}
+			return count;
+		}
+		else {
+			return val==null ? -1 : addPackedInnards(val, target, offset);
+		}
+	}
+	
+	private int addPackedInnards(Object val, long[] target, int offset) {
+		if (val instanceof NotesTimeDate) {
+			if (offset < target.length) {
+				target[offset] = NotesDateTimeUtils.packInnards(((NotesTimeDate) val).getInnards());
+			}
+			return 1;
+		}
+		else if (val instanceof Calendar) {
+			if (offset < target.length) {
+				target[offset] = NotesDateTimeUtils.packInnards(NotesDateTimeUtils.calendarToInnards((Calendar) val));
+			}
+			return 1;
+		}
+		else if (val instanceof NotesDateRange) {
+			NotesDateRange range = (NotesDateRange) val;
+			addPackedInnards(range.getStartDateTime(), target, offset);
+			addPackedInnards(range.getEndDateTime(), target, offset+1);
+			return 2;
+		}
+		else if (val instanceof Object[]) {
+			Object[] range = (Object[]) val;
+			int count = 0;
+			for (int i=0; i<range.length; i++) {
+				int added = addPackedInnards(range[i], target, offset + count);
+				if (added==-1) {
+					return -1;
+				}
+				count += added;
+			}
+			return count;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Passes a text or text list value to a sink
+	 * 
+	 * @param itemName item name
+	 * @param sink sink to receive the values
+	 * @return number of values or -1 if the item does not exist or is not a text item
+	 */
+	public int getAsTextList(String itemName, ITextValueSink sink) {
+		Object val = get(itemName);
+		if (val instanceof String) {
+			sink.textValue(0, (String) val);
+			return 1;
+		}
+		else if (val instanceof List) {
+			List<?> valAsList = (List<?>) val;
+			for (int i=0; i<valAsList.size(); i++) {
+				if (!(valAsList.get(i) instanceof CharSequence)) {
+					return -1;
+				}
+			}
+			for (int i=0; i<valAsList.size(); i++) {
+				sink.textValue(i, (CharSequence) valAsList.get(i));
+			}
+			return valAsList.size();
+		}
+		return -1;
+	}
 }
@@ -8,6 +8,7 @@ import java.util.Map.Entry;
 import com.mindoo.domino.jna.errors.FormulaCompilationError;
 import com.mindoo.domino.jna.errors.INotesErrorConstants;
 import com.mindoo.domino.jna.errors.NotesErrorUtils;
+import com.mindoo.domino.jna.formula.CompiledFormulaCache;
 import com.mindoo.domino.jna.utils.NotesStringUtils;
 import com.mindoo.domino.jna.utils.PlatformUtils;
 import com.mindoo.domino.jna.utils.StringUtil;
@@ -43,12 +44,43 @@ public class ViewFormulaCompiler {
 	 * @return handle to combined formula for 64 bit
 	 */
 	public static long b64_compile(String selectionFormula, LinkedHashMap<String,String> columnItemNamesAndFormulas) {
+		//reuse compiled formula if available
+		byte[] cachedFormula = CompiledFormulaCache.get(selectionFormula, columnItemNamesAndFormulas, true);
+		if (cachedFormula!=null) {
+			if (PlatformUtils.is64Bit()) {
+				return FormulaCompiler.b64_toHandle(cachedFormula);
+			}
+			else {
+				return FormulaCompiler.b32_toHandle(cachedFormula);
+			}
+		}
+		
+		ShortByReference retFormulaLength = new ShortByReference();
+		long hFormula = compile(selectionFormula, columnItemNamesAndFormulas, retFormulaLength);
+		
+		if (CompiledFormulaCache.isEnabled()) {
+			int formulaLength = retFormulaLength.getValue() & 0xffff;
+			byte[] compiledFormula = PlatformUtils.is64Bit() ? FormulaCompiler.b64_fromHandle(hFormula, formulaLength) : FormulaCompiler.b32_fromHandle((int) hFormula, formulaLength);
+			CompiledFormulaCache.put(selectionFormula, columnItemNamesAndFormulas, true, compiledFormula);
+		}
+		return hFormula;
+	}
+	
+	/**
+	 * Compiles the selection formula and merges the column formulas into it
+	 * 
+	 * @param selectionFormula selection formula
+	 * @param columnItemNamesAndFormulas column names and formulas or null
+	 * @param retFormulaLength returns the length of the combined compiled formula
+	 * @return formula handle
+	 */
+	private static long compile(String selectionFormula, LinkedHashMap<String,String> columnItemNamesAndFormulas,
+			ShortByReference retFormulaLength) {
 		Memory formulaName = null;
 		short formulaNameLength = 0;
 		Memory selectionFormulaMem = NotesStringUtils.toLMBCS(selectionFormula, false);
 		short selectionFormulaLength = (short) (selectionFormulaMem.size() & 0xffff);
 
-		ShortByReference retFormulaLength = new ShortByReference();
 		retFormulaLength.setValue((short) 0);
 		ShortByReference retCompileError = new ShortByReference();
 		retCompileError.setValue((short) 0);
@@ -204,6 +236,15 @@ public class ViewFormulaCompiler {
 						}
 					}
 				}
+				//summary items and merged column formulas have changed the formula length
+				if (PlatformUtils.is64Bit()) {
+					result = NotesNativeAPI64.get().NSFFormulaGetSize(hViewFormula64, retFormulaLength);
+				}
+				else {
+					result = NotesNativeAPI32.get().NSFFormulaGetSize(hViewFormula32, retFormulaLength);
+				}
+				NotesErrorUtils.checkResult(result);
+				
 				//all ok!
 				errorCompilingColumns = false;
 			}
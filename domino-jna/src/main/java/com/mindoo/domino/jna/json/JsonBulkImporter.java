@@ -0,0 +1,780 @@
+package com.mindoo.domino.jna.json;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.mindoo.domino.jna.NoteWriteBatch;
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesDatabase.NoteInfo;
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.constants.ItemType;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.json.JsonReader.Token;
+import com.mindoo.domino.jna.transactions.ITransactionCallable;
+import com.mindoo.domino.jna.transactions.Transactions;
+import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
+import com.mindoo.domino.jna.utils.NotesInitUtils;
+
+/**
+ * Imports large JSON datasets into a database.<br>
+ * <br>
+ * The calling thread parses the input with a streaming {@link JsonReader} and converts each
+ * JSON object into a {@link NoteWriteBatch}. Batches of documents are handed to a pool of
+ * worker threads which are initialized for Notes API calls, open their own {@link NotesDatabase}
+ * instance and write the notes. Documents with a UNID are routed to a worker by the hash of the UNID,
+ * so all versions of a document are written by the same thread in input order. The parser blocks
+ * when the workers fall behind, so memory usage is bounded by the batch size and thread count.
+ * The workers hand the written {@link NoteWriteBatch} objects back to the parser for reuse.
+ * If a worker thread fails, the parser stops and the error is thrown.<br>
+ * <br>
+ * The input can either be a JSON array of objects, or a sequence of JSON objects separated by
+ * whitespace (e.g. newline delimited JSON). Field values are mapped to item types like this:
+ * <ul>
+ * <li>string - text; ISO 8601 strings are written as timedate for properties declared via
+ * {@link #setDateProperties(Collection)} or for all properties if {@link #setDetectDates(boolean)} is set</li>
+ * <li>number - number</li>
+ * <li>boolean - number 1 or 0</li>
+ * <li>null - removes the item</li>
+ * <li>array of strings/numbers/dates - text/number/timedate list, mixed arrays are written as text list</li>
+ * <li>nested objects and arrays containing objects/arrays are skipped</li>
+ * </ul>
+ * Property names starting with "@" (e.g. metadata written by {@link NoteJsonSerializer}) are skipped,
+ * except for the UNID property (see {@link #setUnidProperty(String)}). If a document has a UNID, the importer
+ * looks up existing notes for the whole batch with {@link NotesDatabase#getMultiNoteInfo(String[])} and
+ * updates them (upsert). Otherwise, or if only a deletion stub exists, a new note is created with that UNID.<br>
+ * <br>
+ * With {@link #setUseTransactions(boolean)}, every batch is written in a database transaction (local databases only, see
+ * {@link Transactions}) and committed or rolled back as a whole. Transactions lock the database for writes, so
+ * in this mode the worker threads mainly parallelize note preparation.
+ *
+ * @author Karsten Lehmann
+ */
+public class JsonBulkImporter {
+	private static final List<ImportDocument> END_OF_INPUT = new ArrayList<ImportDocument>(0);
+
+	private String m_server;
+	private String m_filePath;
+	private String m_asUserCanonical;
+	private int m_threadCount;
+	private int m_batchSize = 100;
+	private boolean m_useTransactions;
+	private String m_unidProperty = "@unid";
+	private boolean m_detectDates;
+	private Set<String> m_dateProperties;
+	private EnumSet<ItemType> m_itemFlags = EnumSet.of(ItemType.SUMMARY);
+	private int m_maxErrors = 100;
+	private IProgressListener m_progressListener;
+
+	/**
+	 * Creates a new importer
+	 *
+	 * @param server database server
+	 * @param filePath database filepath
+	 * @param asUserCanonical user context to open the database or null/empty string to open as ID owner, see {@link NotesDatabase#NotesDatabase(String, String, String)}
+	 */
+	public JsonBulkImporter(String server, String filePath, String asUserCanonical) {
+		m_server = server;
+		m_filePath = filePath;
+		m_asUserCanonical = asUserCanonical;
+		m_threadCount = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Callback to report import progress
+	 */
+	public static interface IProgressListener {
+
+		/**
+		 * Method is called after each written batch. Calls are made from the worker threads,
+		 * but never concurrently.
+		 *
+		 * @param stats current stats
+		 */
+		public void progress(JsonImportStats stats);
+
+	}
+
+	/**
+	 * Sets the number of worker threads that write notes (between 1 and 4 by default, depending on the CPU count)
+	 *
+	 * @param threadCount thread count
+	 * @return this importer
+	 */
+	public JsonBulkImporter setThreadCount(int threadCount) {
+		if (threadCount<1) {
+			throw new IllegalArgumentException("Thread count must be 1 or higher: "+threadCount);
+		}
+		m_threadCount = threadCount;
+		return this;
+	}
+
+	public int getThreadCount() {
+		return m_threadCount;
+	}
+
+	/**
+	 * Sets the max number of documents that are handed to a worker thread at once, resolved by UNID
+	 * at once and, with transactions enabled, committed at once (100 by default)
+	 *
+	 * @param batchSize batch size
+	 * @return this importer
+	 */
+	public JsonBulkImporter setBatchSize(int batchSize) {
+		if (batchSize<1) {
+			throw new IllegalArgumentException("Batch size must be 1 or higher: "+batchSize);
+		}
+		m_batchSize = batchSize;
+		return this;
+	}
+
+	public int getBatchSize() {
+		return m_batchSize;
+	}
+
+	/**
+	 * Sets whether each batch should be written in a database transaction (false by default)
+	 *
+	 * @param b true to use transactions
+	 * @return this importer
+	 */
+	public JsonBulkImporter setUseTransactions(boolean b) {
+		m_useTransactions = b;
+		return this;
+	}
+
+	public boolean isUseTransactions() {
+		return m_useTransactions;
+	}
+
+	/**
+	 * Sets the JSON property that contains the document UNID ("@unid" by default)
+	 *
+	 * @param propName property name or null to always create new notes
+	 * @return this importer
+	 */
+	public JsonBulkImporter setUnidProperty(String propName) {
+		m_unidProperty = propName;
+		return this;
+	}
+
+	public String getUnidProperty() {
+		return m_unidProperty;
+	}
+
+	/**
+	 * Sets whether all string values should be checked for ISO 8601 date/time
+	 * formats and written as timedate (false by default)
+	 *
+	 * @param b true to detect dates
+	 * @return this importer
+	 */
+	public JsonBulkImporter setDetectDates(boolean b) {
+		m_detectDates = b;
+		return this;
+	}
+
+	public boolean isDetectDates() {
+		return m_detectDates;
+	}
+
+	/**
+	 * Declares properties whose ISO 8601 string values should be written as timedate
+	 *
+	 * @param propNames property names, case insensitive
+	 * @return this importer
+	 */
+	public JsonBulkImporter setDateProperties(Collection<String> propNames) {
+		if (propNames==null) {
+			m_dateProperties = null;
+		}
+		else {
+			m_dateProperties = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+			m_dateProperties.addAll(propNames);
+		}
+		return this;
+	}
+
+	/**
+	 * Sets the flags for the written items ({@link ItemType#SUMMARY} by default)
+	 *
+	 * @param flags item flags
+	 * @return this importer
+	 */
+	public JsonBulkImporter setItemFlags(EnumSet<ItemType> flags) {
+		m_itemFlags = flags==null ? EnumSet.noneOf(ItemType.class) : flags.clone();
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of errors that are collected in {@link JsonImportStats#getErrors()} (100 by default)
+	 *
+	 * @param maxErrors max errors
+	 * @return this importer
+	 */
+	public JsonBulkImporter setMaxErrors(int maxErrors) {
+		m_maxErrors = maxErrors;
+		return this;
+	}
+
+	/**
+	 * Sets a listener to receive progress notifications
+	 *
+	 * @param listener listener or null
+	 * @return this importer
+	 */
+	public JsonBulkImporter setProgressListener(IProgressListener listener) {
+		m_progressListener = listener;
+		return this;
+	}
+
+	/**
+	 * Imports JSON documents from a UTF-8 encoded stream. The stream is not closed.
+	 *
+	 * @param in input stream
+	 * @return import stats
+	 * @throws IOException in case of I/O errors or malformed JSON
+	 */
+	public JsonImportStats importDocuments(InputStream in) throws IOException {
+		return importDocuments(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Imports JSON documents. The reader is not closed.<br>
+	 * <br>
+	 * Errors writing single documents or batches are counted and collected in the returned
+	 * {@link JsonImportStats}; the import continues with the next document or batch.
+	 *
+	 * @param in reader
+	 * @return import stats
+	 * @throws IOException in case of I/O errors or malformed JSON; documents parsed before the error have been written
+	 */
+	public JsonImportStats importDocuments(Reader in) throws IOException {
+		final JsonImportStats stats = new JsonImportStats(m_maxErrors);
+		//write batches of written documents, reused by the parser to keep their buffers
+		Queue<NoteWriteBatch> freeWrites = new ConcurrentLinkedQueue<NoteWriteBatch>();
+
+		List<ImportWorker> workers = new ArrayList<ImportWorker>(m_threadCount);
+		for (int i=0; i<m_threadCount; i++) {
+			ImportWorker worker = new ImportWorker(new ArrayBlockingQueue<List<ImportDocument>>(2), stats, freeWrites);
+			worker.setName("domino-jna-json-import-"+i);
+			worker.setDaemon(true);
+			workers.add(worker);
+			worker.start();
+		}
+
+		try {
+			JsonReader reader = new JsonReader(in);
+			BatchRouter router = new BatchRouter(workers);
+
+			Token token;
+			while ((token = reader.next()) != Token.END_DOCUMENT) {
+				if (token == Token.BEGIN_ARRAY) {
+					while ((token = reader.next()) != Token.END_ARRAY) {
+						if (token != Token.BEGIN_OBJECT) {
+							throw new IOException("Expected JSON object at line "+reader.getLineNumber());
+						}
+						router.add(readDocument(reader, freeWrites));
+						stats.documentParsed();
+					}
+				}
+				else if (token == Token.BEGIN_OBJECT) {
+					router.add(readDocument(reader, freeWrites));
+					stats.documentParsed();
+				}
+				else {
+					throw new IOException("Expected JSON object or array at line "+reader.getLineNumber());
+				}
+			}
+
+			router.flush();
+		}
+		finally {
+			//let the workers finish the queued batches
+			for (ImportWorker currWorker : workers) {
+				putBatch(currWorker, END_OF_INPUT, false);
+			}
+			for (ImportWorker currWorker : workers) {
+				try {
+					currWorker.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new NotesError(0, "Interrupted while waiting for the import threads", e);
+				}
+			}
+			stats.finished();
+		}
+
+		return stats;
+	}
+
+	/**
+	 * Hands a batch to a worker, waiting while its queue is full
+	 *
+	 * @param worker worker
+	 * @param batch batch
+	 * @param failOnAbort true to throw an error if the worker has failed, false to silently drop the batch
+	 */
+	private void putBatch(ImportWorker worker, List<ImportDocument> batch, boolean failOnAbort) {
+		try {
+			while (!worker.m_queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+				if (worker.m_failure!=null || !worker.isAlive()) {
+					if (failOnAbort) {
+						throw new NotesError(0, "Import thread "+worker.getName()+" has failed", worker.m_failure);
+					}
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new NotesError(0, "Interrupted while waiting for the import threads", e);
+		}
+	}
+
+	/**
+	 * Collects the parsed documents in one batch per worker thread. Documents with a UNID
+	 * always go to the same worker, documents without a UNID are distributed round robin.
+	 */
+	private class BatchRouter {
+		private List<ImportWorker> m_workers;
+		private List<List<ImportDocument>> m_batches;
+		private int m_nextWorker;
+
+		public BatchRouter(List<ImportWorker> workers) {
+			m_workers = workers;
+			m_batches = new ArrayList<List<ImportDocument>>(workers.size());
+			for (int i=0; i<workers.size(); i++) {
+				m_batches.add(new ArrayList<ImportDocument>(m_batchSize));
+			}
+		}
+
+		public void add(ImportDocument doc) {
+			int workerIdx;
+			if (doc.m_unid!=null) {
+				workerIdx = (doc.m_unid.toUpperCase(Locale.ENGLISH).hashCode() & 0x7fffffff) % m_workers.size();
+			}
+			else {
+				workerIdx = m_nextWorker;
+			}
+
+			List<ImportDocument> batch = m_batches.get(workerIdx);
+			batch.add(doc);
+			if (batch.size() >= m_batchSize) {
+				dispatch(workerIdx);
+			}
+		}
+
+		private void dispatch(int workerIdx) {
+			List<ImportDocument> batch = m_batches.get(workerIdx);
+			m_batches.set(workerIdx, new ArrayList<ImportDocument>(m_batchSize));
+			if (workerIdx == m_nextWorker) {
+				m_nextWorker = (m_nextWorker + 1) % m_workers.size();
+			}
+			putBatch(m_workers.get(workerIdx), batch, true);
+		}
+
+		/**
+		 * Hands the remaining documents to the workers
+		 */
+		public void flush() {
+			for (int i=0; i<m_batches.size(); i++) {
+				if (!m_batches.get(i).isEmpty()) {
+					dispatch(i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the properties of a JSON object after {@link Token#BEGIN_OBJECT} and converts them
+	 * to item writes
+	 *
+	 * @param reader reader
+	 * @param freeWrites write batches to reuse
+	 * @return document
+	 * @throws IOException in case of I/O errors or malformed JSON
+	 */
+	private ImportDocument readDocument(JsonReader reader, Queue<NoteWriteBatch> freeWrites) throws IOException {
+		NoteWriteBatch writes = freeWrites.poll();
+		if (writes==null) {
+			writes = new NoteWriteBatch();
+		}
+		ImportDocument doc = new ImportDocument(writes);
+
+		Token token;
+		while ((token = reader.next()) != Token.END_OBJECT) {
+			String propName = reader.getString();
+			token = reader.next();
+
+			if (m_unidProperty!=null && m_unidProperty.equals(propName)) {
+				if (token == Token.STRING) {
+					doc.m_unid = reader.getString();
+				}
+				else {
+					reader.skipValue(token);
+				}
+				continue;
+			}
+			if (propName.startsWith("@") || propName.length()==0) {
+				reader.skipValue(token);
+				continue;
+			}
+
+			boolean isDateProp = m_detectDates || (m_dateProperties!=null && m_dateProperties.contains(propName));
+
+			switch (token) {
+			case STRING:
+				writes.replaceItemValue(propName, m_itemFlags, toStringOrDate(reader.getString(), isDateProp));
+				break;
+			case NUMBER:
+				writes.replaceItemValue(propName, m_itemFlags, reader.getDouble());
+				break;
+			case BOOLEAN:
+				writes.replaceItemValue(propName, m_itemFlags, reader.getBoolean() ? 1 : 0);
+				break;
+			case NULL:
+				writes.removeItem(propName);
+				break;
+			case BEGIN_ARRAY:
+				List<Object> values = readArray(reader, isDateProp);
+				if (values!=null) {
+					writes.replaceItemValue(propName, m_itemFlags, values);
+				}
+				break;
+			default:
+				reader.skipValue(token);
+			}
+		}
+		return doc;
+	}
+
+	/**
+	 * Reads a JSON array with simple values after {@link Token#BEGIN_ARRAY}
+	 *
+	 * @param reader reader
+	 * @param isDateProp true to convert ISO 8601 strings to timedates
+	 * @return values or null if the array contains objects or arrays
+	 * @throws IOException in case of I/O errors or malformed JSON
+	 */
+	private List<Object> readArray(JsonReader reader, boolean isDateProp) throws IOException {
+		List<Object> values = new ArrayList<Object>();
+		boolean hasStrings = false;
+		boolean hasNumbers = false;
+		boolean hasDates = false;
+		boolean hasNested = false;
+
+		Token token;
+		while ((token = reader.next()) != Token.END_ARRAY) {
+			switch (token) {
+			case STRING:
+				Object val = toStringOrDate(reader.getString(), isDateProp);
+				if (val instanceof NotesTimeDate) {
+					hasDates = true;
+				}
+				else {
+					hasStrings = true;
+				}
+				values.add(val);
+				break;
+			case NUMBER:
+				values.add(reader.getDouble());
+				hasNumbers = true;
+				break;
+			case BOOLEAN:
+				values.add(reader.getBoolean() ? 1.0 : 0.0);
+				hasNumbers = true;
+				break;
+			case NULL:
+				break;
+			default:
+				hasNested = true;
+				reader.skipValue(token);
+			}
+		}
+
+		if (hasNested) {
+			return null;
+		}
+		int typeCount = (hasStrings ? 1 : 0) + (hasNumbers ? 1 : 0) + (hasDates ? 1 : 0);
+		if (typeCount > 1) {
+			//mixed content, write as text list
+			for (int i=0; i<values.size(); i++) {
+				Object currVal = values.get(i);
+				if (currVal instanceof NotesTimeDate) {
+					values.set(i, ((NotesTimeDate) currVal).toString());
+				}
+				else if (currVal instanceof Double) {
+					double dVal = ((Double) currVal).doubleValue();
+					values.set(i, dVal == Math.rint(dVal) ? Long.toString((long) dVal) : Double.toString(dVal));
+				}
+			}
+		}
+		return values;
+	}
+
+	private Object toStringOrDate(String value, boolean isDateProp) {
+		if (!isDateProp || value.length()<5 || !Character.isDigit(value.charAt(0))) {
+			return value;
+		}
+		try {
+			if (value.length()==10 && value.charAt(4)=='-') {
+				LocalDate date = LocalDate.parse(value);
+				return new NotesTimeDate(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+			}
+			else if (value.charAt(2)==':') {
+				LocalTime time = LocalTime.parse(value);
+				Calendar cal = Calendar.getInstance();
+				cal.set(Calendar.HOUR_OF_DAY, time.getHour());
+				cal.set(Calendar.MINUTE, time.getMinute());
+				cal.set(Calendar.SECOND, time.getSecond());
+				cal.set(Calendar.MILLISECOND, time.getNano() / 1000000);
+				NotesDateTimeUtils.setAnyDate(cal);
+				return new NotesTimeDate(cal);
+			}
+			else if (value.indexOf('T')!=-1) {
+				char last = value.charAt(value.length()-1);
+				if (last=='Z' || value.lastIndexOf('+')>10 || value.lastIndexOf('-')>10) {
+					return new NotesTimeDate(OffsetDateTime.parse(value).toInstant().toEpochMilli());
+				}
+				else {
+					return new NotesTimeDate(LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+				}
+			}
+		}
+		catch (DateTimeParseException e) {
+			//no date, keep the string
+		}
+		return value;
+	}
+
+	/**
+	 * Parsed JSON document
+	 */
+	private static class ImportDocument {
+		private String m_unid;
+		private NoteWriteBatch m_writes;
+
+		public ImportDocument(NoteWriteBatch writes) {
+			m_writes = writes;
+		}
+	}
+
+	/**
+	 * Worker thread that takes document batches from the queue and writes them
+	 */
+	private class ImportWorker extends Thread {
+		private BlockingQueue<List<ImportDocument>> m_queue;
+		private JsonImportStats m_stats;
+		private Queue<NoteWriteBatch> m_freeWrites;
+		private volatile Throwable m_failure;
+
+		public ImportWorker(BlockingQueue<List<ImportDocument>> queue, JsonImportStats stats, Queue<NoteWriteBatch> freeWrites) {
+			m_queue = queue;
+			m_stats = stats;
+			m_freeWrites = freeWrites;
+		}
+
+		/**
+		 * Hands the write batches of processed documents back to the parser
+		 *
+		 * @param batch documents
+		 */
+		private void releaseWrites(List<ImportDocument> batch) {
+			for (ImportDocument currDoc : batch) {
+				m_freeWrites.offer(currDoc.m_writes.clear());
+				currDoc.m_writes = null;
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				NotesInitUtils.notesInitThread();
+				try {
+					runImport();
+				}
+				finally {
+					NotesInitUtils.notesTermThread();
+				}
+			}
+			catch (Throwable e) {
+				//makes the parser stop instead of waiting for a free queue slot
+				m_failure = e;
+				m_stats.documentsFailed(0, e instanceof Exception ? (Exception) e : new NotesError(0, "Import thread failed", e));
+			}
+		}
+
+		private void runImport() throws Exception {
+			NotesGC.runWithAutoGC(new Callable<Object>() {
+
+				@Override
+				public Object call() throws Exception {
+					NotesDatabase db = null;
+					try {
+						db = new NotesDatabase(m_server, m_filePath, m_asUserCanonical);
+					}
+					catch (Exception e) {
+						m_stats.documentsFailed(0, e);
+					}
+					boolean useTransactions = db!=null && m_useTransactions && Transactions.areTransactionsSupported(db);
+
+					while (true) {
+						List<ImportDocument> batch = m_queue.take();
+						if (batch == END_OF_INPUT) {
+							break;
+						}
+						try {
+							if (db==null) {
+								//keep draining the queue so that the parser does not block
+								m_stats.documentsFailed(batch.size(), new NotesError(0, "Database could not be opened"));
+								continue;
+							}
+							writeBatch(db, batch, useTransactions, m_stats);
+						}
+						finally {
+							releaseWrites(batch);
+						}
+					}
+					return null;
+				}
+			});
+		}
+	}
+
+	private void writeBatch(NotesDatabase db, final List<ImportDocument> batch, boolean useTransactions, JsonImportStats stats) {
+		final Map<String,Integer> noteIdsByUnid = new HashMap<String,Integer>();
+		final List<ImportDocument> created = new ArrayList<ImportDocument>();
+		final List<ImportDocument> updated = new ArrayList<ImportDocument>();
+
+		try {
+			List<String> unids = new ArrayList<String>();
+			for (ImportDocument currDoc : batch) {
+				if (currDoc.m_unid!=null) {
+					unids.add(currDoc.m_unid);
+				}
+			}
+			if (!unids.isEmpty()) {
+				String[] unidsArr = unids.toArray(new String[unids.size()]);
+				NoteInfo[] infos = db.getMultiNoteInfo(unidsArr);
+				for (int i=0; i<unidsArr.length; i++) {
+					//deletion stubs cannot be opened, the document is created again with its UNID
+					if (infos[i].exists() && !infos[i].isDeleted()) {
+						noteIdsByUnid.put(unidsArr[i], infos[i].getNoteId());
+					}
+				}
+			}
+		}
+		catch (Exception e) {
+			stats.documentsFailed(batch.size(), e);
+			return;
+		}
+
+		if (useTransactions) {
+			try {
+				Transactions.runInDbTransaction(db, new ITransactionCallable<Object>() {
+
+					@Override
+					public Object runInDbTransaction(NotesDatabase db) throws Exception {
+						for (ImportDocument currDoc : batch) {
+							writeDocument(db, currDoc, noteIdsByUnid, created, updated);
+						}
+						return null;
+					}
+				});
+			}
+			catch (Exception e) {
+				stats.documentsFailed(batch.size(), e);
+				return;
+			}
+		}
+		else {
+			for (ImportDocument currDoc : batch) {
+				try {
+					writeDocument(db, currDoc, noteIdsByUnid, created, updated);
+				}
+				catch (Exception e) {
+					stats.documentsFailed(1, new NotesError(0, "Error writing document"+
+							(currDoc.m_unid!=null ? " with UNID "+currDoc.m_unid : ""), e));
+				}
+			}
+		}
+
+		for (int i=0; i<created.size(); i++) {
+			stats.documentCreated();
+		}
+		for (int i=0; i<updated.size(); i++) {
+			stats.documentUpdated();
+		}
+		stats.batchCommitted();
+
+		IProgressListener listener = m_progressListener;
+		if (listener!=null) {
+			synchronized (listener) {
+				listener.progress(stats);
+			}
+		}
+	}
+
+	private void writeDocument(NotesDatabase db, ImportDocument doc, Map<String,Integer> noteIdsByUnid,
+			List<ImportDocument> created, List<ImportDocument> updated) {
+		Integer noteId = doc.m_unid!=null ? noteIdsByUnid.get(doc.m_unid) : null;
+
+		NotesNote note;
+		if (noteId!=null) {
+			note = db.openNoteById(noteId.intValue());
+		}
+		else {
+			note = db.createNote();
+			if (doc.m_unid!=null) {
+				note.setUNID(doc.m_unid);
+			}
+		}
+		int writtenNoteId;
+		try {
+			doc.m_writes.applyTo(note);
+			note.update();
+			writtenNoteId = note.getNoteId();
+		}
+		finally {
+			note.recycle();
+		}
+
+		if (noteId!=null) {
+			updated.add(doc);
+		}
+		else {
+			created.add(doc);
+			if (doc.m_unid!=null) {
+				//the same UNID may appear again later in the batch
+				noteIdsByUnid.put(doc.m_unid, writtenNoteId);
+			}
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package com.mindoo.domino.jna.json;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress and throughput counters of a {@link JsonBulkImporter} run. The counters
+ * are updated concurrently by the import threads and can be read at any time, e.g.
+ * from a {@link JsonBulkImporter.IProgressListener}.
+ *
+ * @author Karsten Lehmann
+ */
+public class JsonImportStats {
+	private final long m_startNanos;
+	private volatile long m_endNanos;
+	private final AtomicLong m_documentsParsed = new AtomicLong();
+	private final AtomicLong m_documentsCreated = new AtomicLong();
+	private final AtomicLong m_documentsUpdated = new AtomicLong();
+	private final AtomicLong m_documentsFailed = new AtomicLong();
+	private final AtomicLong m_batchesCommitted = new AtomicLong();
+	private final int m_maxErrors;
+	private final List<Exception> m_errors;
+
+	JsonImportStats(int maxErrors) {
+		m_startNanos = System.nanoTime();
+		m_maxErrors = maxErrors;
+		m_errors = new ArrayList<Exception>();
+	}
+
+	void documentParsed() {
+		m_documentsParsed.incrementAndGet();
+	}
+
+	void documentCreated() {
+		m_documentsCreated.incrementAndGet();
+	}
+
+	void documentUpdated() {
+		m_documentsUpdated.incrementAndGet();
+	}
+
+	void batchCommitted() {
+		m_batchesCommitted.incrementAndGet();
+	}
+
+	void documentsFailed(int count, Exception e) {
+		m_documentsFailed.addAndGet(count);
+		synchronized (m_errors) {
+			if (m_errors.size() < m_maxErrors) {
+				m_errors.add(e);
+			}
+		}
+	}
+
+	void finished() {
+		m_endNanos = System.nanoTime();
+	}
+
+	/**
+	 * Returns the number of JSON documents read from the input
+	 *
+	 * @return count
+	 */
+	public long getDocumentsParsed() {
+		return m_documentsParsed.get();
+	}
+
+	/**
+	 * Returns the number of notes that have been created
+	 *
+	 * @return count
+	 */
+	public long getDocumentsCreated() {
+		return m_documentsCreated.get();
+	}
+
+	/**
+	 * Returns the number of existing notes that have been updated (found by UNID)
+	 *
+	 * @return count
+	 */
+	public long getDocumentsUpdated() {
+		return m_documentsUpdated.get();
+	}
+
+	/**
+	 * Returns the number of documents that could not be written. In transaction mode,
+	 * a failing document rolls back its whole batch, so all documents of the batch are counted.
+	 *
+	 * @return count
+	 */
+	public long getDocumentsFailed() {
+		return m_documentsFailed.get();
+	}
+
+	/**
+	 * Returns the number of successfully written batches
+	 *
+	 * @return count
+	 */
+	public long getBatchesCommitted() {
+		return m_batchesCommitted.get();
+	}
+
+	/**
+	 * Returns the number of written documents (created and updated)
+	 *
+	 * @return count
+	 */
+	public long getDocumentsWritten() {
+		return getDocumentsCreated() + getDocumentsUpdated();
+	}
+
+	/**
+	 * Returns the errors that occurred during the import, limited to
+	 * the first errors (see {@link JsonBulkImporter#setMaxErrors(int)})
+	 *
+	 * @return errors
+	 */
+	public List<Exception> getErrors() {
+		synchronized (m_errors) {
+			return new ArrayList<Exception>(m_errors);
+		}
+	}
+
+	/**
+	 * Returns the duration of the import so far, or the total duration after the import has finished
+	 *
+	 * @return duration in milliseconds
+	 */
+	public long getElapsedMillis() {
+		long end = m_endNanos!=0 ? m_endNanos : System.nanoTime();
+		return (end - m_startNanos) / 1000000;
+	}
+
+	/**
+	 * Returns the write throughput
+	 *
+	 * @return written documents per second
+	 */
+	public double getDocumentsPerSecond() {
+		long elapsed = getElapsedMillis();
+		if (elapsed==0) {
+			return 0;
+		}
+		return getDocumentsWritten() * 1000.0 / elapsed;
+	}
+
+	@Override
+	public String toString() {
+		return "JsonImportStats [parsed="+getDocumentsParsed()+", created="+getDocumentsCreated()+
+				", updated="+getDocumentsUpdated()+", failed="+getDocumentsFailed()+
+				", batches="+getBatchesCommitted()+", elapsed="+getElapsedMillis()+"ms"+
+				", docs/s="+Math.round(getDocumentsPerSecond())+"]";
+	}
+}
@@ -0,0 +1,425 @@
+package com.mindoo.domino.jna.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Minimal streaming JSON pull parser that reads tokens from a {@link Reader} without
+ * building an object tree. Call {@link #next()} to move to the next token and read
+ * its content with {@link #getString()}, {@link #getDouble()} or {@link #getBoolean()}.<br>
+ * <br>
+ * Multiple top level values may follow each other, separated by whitespace, e.g. for
+ * newline delimited JSON files.
+ *
+ * @author Karsten Lehmann
+ */
+public class JsonReader implements Closeable {
+	/** Token types returned by {@link JsonReader#next()} */
+	public static enum Token {BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT}
+
+	private static final int EMPTY_OBJECT = 1;
+	private static final int NONEMPTY_OBJECT = 2;
+	private static final int EMPTY_ARRAY = 3;
+	private static final int NONEMPTY_ARRAY = 4;
+	private static final int DANGLING_NAME = 5;
+
+	private Reader m_in;
+	private char[] m_buffer;
+	private int m_pos;
+	private int m_limit;
+	private int m_line;
+
+	private int[] m_stack;
+	private int m_stackSize;
+
+	private StringBuilder m_value;
+	private boolean m_booleanValue;
+
+	/**
+	 * Creates a new reader
+	 *
+	 * @param in source reader
+	 */
+	public JsonReader(Reader in) {
+		if (in==null) {
+			throw new IllegalArgumentException("Reader cannot be null");
+		}
+		m_in = in;
+		m_buffer = new char[8192];
+		m_line = 1;
+		m_stack = new int[16];
+		m_value = new StringBuilder();
+	}
+
+	/**
+	 * Moves to the next token
+	 *
+	 * @return token type, {@link Token#END_DOCUMENT} when the input is consumed
+	 * @throws IOException in case of I/O errors or malformed JSON
+	 */
+	public Token next() throws IOException {
+		int c = nextNonWhitespace();
+
+		if (m_stackSize==0) {
+			if (c==-1) {
+				return Token.END_DOCUMENT;
+			}
+		}
+		else {
+			int context = m_stack[m_stackSize-1];
+			switch (context) {
+			case EMPTY_ARRAY:
+				if (c==']') {
+					m_stackSize--;
+					return Token.END_ARRAY;
+				}
+				m_stack[m_stackSize-1] = NONEMPTY_ARRAY;
+				break;
+			case NONEMPTY_ARRAY:
+				if (c==']') {
+					m_stackSize--;
+					return Token.END_ARRAY;
+				}
+				if (c!=',') {
+					throw syntaxError("Expected ',' or ']'");
+				}
+				c = nextNonWhitespace();
+				break;
+			case EMPTY_OBJECT:
+			case NONEMPTY_OBJECT:
+				if (c=='}') {
+					m_stackSize--;
+					return Token.END_OBJECT;
+				}
+				if (context==NONEMPTY_OBJECT) {
+					if (c!=',') {
+						throw syntaxError("Expected ',' or '}'");
+					}
+					c = nextNonWhitespace();
+				}
+				if (c!='"') {
+					throw syntaxError("Expected property name");
+				}
+				readString();
+				m_stack[m_stackSize-1] = DANGLING_NAME;
+				return Token.NAME;
+			case DANGLING_NAME:
+				if (c!=':') {
+					throw syntaxError("Expected ':'");
+				}
+				m_stack[m_stackSize-1] = NONEMPTY_OBJECT;
+				c = nextNonWhitespace();
+				break;
+			default:
+				throw new IllegalStateException("Unknown context: "+context);
+			}
+		}
+
+		if (c==-1) {
+			throw syntaxError("Unexpected end of input");
+		}
+		return readValue(c);
+	}
+
+	/**
+	 * Skips the current value. Call this method after {@link #next()} returned {@link Token#BEGIN_OBJECT}
+	 * or {@link Token#BEGIN_ARRAY} to skip all tokens up to the matching end token. For other
+	 * tokens, the method does nothing.
+	 *
+	 * @param token token returned by the last {@link #next()} call
+	 * @throws IOException in case of I/O errors or malformed JSON
+	 */
+	public void skipValue(Token token) throws IOException {
+		if (token!=Token.BEGIN_OBJECT && token!=Token.BEGIN_ARRAY) {
+			return;
+		}
+		int depth = 1;
+		while (depth>0) {
+			Token t = next();
+			if (t==Token.BEGIN_OBJECT || t==Token.BEGIN_ARRAY) {
+				depth++;
+			}
+			else if (t==Token.END_OBJECT || t==Token.END_ARRAY) {
+				depth--;
+			}
+			else if (t==Token.END_DOCUMENT) {
+				throw syntaxError("Unexpected end of input");
+			}
+		}
+	}
+
+	/**
+	 * Returns the content of the current {@link Token#NAME} or {@link Token#STRING} token
+	 *
+	 * @return string
+	 */
+	public String getString() {
+		return m_value.toString();
+	}
+
+	/**
+	 * Returns the value of the current {@link Token#NUMBER} token
+	 *
+	 * @return number
+	 */
+	public double getDouble() {
+		return Double.parseDouble(m_value.toString());
+	}
+
+	/**
+	 * Returns the value of the current {@link Token#BOOLEAN} token
+	 *
+	 * @return boolean
+	 */
+	public boolean getBoolean() {
+		return m_booleanValue;
+	}
+
+	/**
+	 * Returns the current line number, e.g. for error messages
+	 *
+	 * @return line number, starting with 1
+	 */
+	public int getLineNumber() {
+		return m_line;
+	}
+
+	/**
+	 * Returns the nesting depth of the current position
+	 *
+	 * @return depth, 0 for top level
+	 */
+	public int getDepth() {
+		return m_stackSize;
+	}
+
+	@Override
+	public void close() throws IOException {
+		m_in.close();
+	}
+
+	private Token readValue(int c) throws IOException {
+		switch (c) {
+		case '{':
+			push(EMPTY_OBJECT);
+			return Token.BEGIN_OBJECT;
+		case '[':
+			push(EMPTY_ARRAY);
+			return Token.BEGIN_ARRAY;
+		case '"':
+			readString();
+			return Token.STRING;
+		case 't':
+			readLiteral("rue");
+			m_booleanValue = true;
+			return Token.BOOLEAN;
+		case 'f':
+			readLiteral("alse");
+			m_booleanValue = false;
+			return Token.BOOLEAN;
+		case 'n':
+			readLiteral("ull");
+			return Token.NULL;
+		default:
+			if (c=='-' || (c>='0' && c<='9')) {
+				readNumber((char) c);
+				return Token.NUMBER;
+			}
+			throw syntaxError("Unexpected character '"+(char) c+"'");
+		}
+	}
+
+	private void readLiteral(String rest) throws IOException {
+		for (int i=0; i<rest.length(); i++) {
+			int c = read();
+			if (c!=rest.charAt(i)) {
+				throw syntaxError("Invalid literal");
+			}
+		}
+	}
+
+	private void readNumber(char first) throws IOException {
+		m_value.setLength(0);
+		m_value.append(first);
+		while (true) {
+			if (m_pos==m_limit && !fill()) {
+				break;
+			}
+			char c = m_buffer[m_pos];
+			if ((c>='0' && c<='9') || c=='.' || c=='e' || c=='E' || c=='+' || c=='-') {
+				m_value.append(c);
+				m_pos++;
+			}
+			else {
+				break;
+			}
+		}
+		if (!isValidNumber(m_value)) {
+			throw syntaxError("Invalid number '"+m_value+"'");
+		}
+	}
+
+	/**
+	 * Checks the JSON number grammar: optional minus, integer part without leading zeros,
+	 * optional fraction and optional exponent
+	 *
+	 * @param num number characters
+	 * @return true if valid
+	 */
+	private static boolean isValidNumber(CharSequence num) {
+		int len = num.length();
+		int i = 0;
+		if (i<len && num.charAt(i)=='-') {
+			i++;
+		}
+		int intStart = i;
+		while (i<len && isDigit(num.charAt(i))) {
+			i++;
+		}
+		if (i==intStart || (num.charAt(intStart)=='0' && i-intStart>1)) {
+			return false;
+		}
+		if (i<len && num.charAt(i)=='.') {
+			i++;
+			int fracStart = i;
+			while (i<len && isDigit(num.charAt(i))) {
+				i++;
+			}
+			if (i==fracStart) {
+				return false;
+			}
+		}
+		if (i<len && (num.charAt(i)=='e' || num.charAt(i)=='E')) {
+			i++;
+			if (i<len && (num.charAt(i)=='+' || num.charAt(i)=='-')) {
+				i++;
+			}
+			int expStart = i;
+			while (i<len && isDigit(num.charAt(i))) {
+				i++;
+			}
+			if (i==expStart) {
+				return false;
+			}
+		}
+		return i==len;
+	}
+
+	private static boolean isDigit(char c) {
+		return c>='0' && c<='9';
+	}
+
+	private void readString() throws IOException {
+		m_value.setLength(0);
+		while (true) {
+			//copy unescaped runs in one go
+			int start = m_pos;
+			while (m_pos<m_limit) {
+				char c = m_buffer[m_pos];
+				if (c=='"' || c=='\\') {
+					break;
+				}
+				if (c=='\n') {
+					m_line++;
+				}
+				m_pos++;
+			}
+			m_value.append(m_buffer, start, m_pos-start);
+
+			if (m_pos==m_limit) {
+				if (!fill()) {
+					throw syntaxError("Unterminated string");
+				}
+				continue;
+			}
+
+			char c = m_buffer[m_pos++];
+			if (c=='"') {
+				return;
+			}
+			//escape sequence
+			int escaped = read();
+			switch (escaped) {
+			case '"':
+			case '\\':
+			case '/':
+				m_value.append((char) escaped);
+				break;
+			case 'b':
+				m_value.append('\b');
+				break;
+			case 'f':
+				m_value.append('\f');
+				break;
+			case 'n':
+				m_value.append('\n');
+				break;
+			case 'r':
+				m_value.append('\r');
+				break;
+			case 't':
+				m_value.append('\t');
+				break;
+			case 'u':
+				int code = 0;
+				for (int i=0; i<4; i++) {
+					int digit = Character.digit(read(), 16);
+					if (digit==-1) {
+						throw syntaxError("Invalid unicode escape sequence");
+					}
+					code = (code << 4) | digit;
+				}
+				m_value.append((char) code);
+				break;
+			default:
+				throw syntaxError("Invalid escape sequence");
+			}
+		}
+	}
+
+	private int nextNonWhitespace() throws IOException {
+		while (true) {
+			if (m_pos==m_limit && !fill()) {
+				return -1;
+			}
+			char c = m_buffer[m_pos++];
+			if (c=='\n') {
+				m_line++;
+			}
+			else if (c!=' ' && c!='\t' && c!='\r' && c!=0xFEFF) {
+				return c;
+			}
+		}
+	}
+
+	private int read() throws IOException {
+		if (m_pos==m_limit && !fill()) {
+			throw syntaxError("Unexpected end of input");
+		}
+		return m_buffer[m_pos++];
+	}
+
+	private boolean fill() throws IOException {
+		m_pos = 0;
+		m_limit = 0;
+		int read = m_in.read(m_buffer, 0, m_buffer.length);
+		if (read<=0) {
+			return false;
+		}
+		m_limit = read;
+		return true;
+	}
+
+	private void push(int context) {
+		if (m_stackSize == m_stack.length) {
+			m_stack = Arrays.copyOf(m_stack, m_stack.length*2);
+		}
+		m_stack[m_stackSize++] = context;
+	}
+
+	private IOException syntaxError(String msg) {
+		return new IOException(msg+" at line "+m_line);
+	}
+}
@@ -0,0 +1,308 @@
+package com.mindoo.domino.jna.json;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Minimal streaming JSON writer that writes tokens directly to a {@link Writer}
+ * without building an object tree.<br>
+ * <br>
+ * Numbers that are not finite (NaN, Infinity) are written as null, because JSON cannot represent them.
+ *
+ * @author Karsten Lehmann
+ */
+public class JsonWriter implements Closeable, Flushable {
+	private static final int EMPTY_OBJECT = 1;
+	private static final int NONEMPTY_OBJECT = 2;
+	private static final int EMPTY_ARRAY = 3;
+	private static final int NONEMPTY_ARRAY = 4;
+	private static final int DANGLING_NAME = 5;
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private Writer m_out;
+	private int[] m_stack;
+	private int m_stackSize;
+
+	/**
+	 * Creates a new writer
+	 *
+	 * @param out target writer
+	 */
+	public JsonWriter(Writer out) {
+		if (out==null) {
+			throw new IllegalArgumentException("Writer cannot be null");
+		}
+		m_out = out;
+		m_stack = new int[16];
+	}
+
+	/**
+	 * Starts a JSON object
+	 *
+	 * @return this writer
+	 * @throws IOException in case of I/O errors
+	 */
+	public JsonWriter beginObject() throws IOException {
+		beforeValue();
+		push(EMPTY_OBJECT);
+		m_out.write('{');
+		return this;
+	}
+
+	/**
+	 * Ends the current JSON object
+	 *
+	 * @return this writer
+	 * @throws IOException in case of I/O errors
+	 */
+	public JsonWriter endObject() throws IOException {
+		int context = peek();
+		if (context!=EMPTY_OBJECT && context!=NONEMPTY_OBJECT) {
+			throw new IllegalStateException("Not inside a JSON object");
+		}
+		m_stackSize--;
+		m_out.write('}');
+		return this;
+	}
+
+	/**
+	 * Starts a JSON array
+	 *
+	 * @return this writer
+	 * @throws IOException in case of I/O errors
+	 */
+	public JsonWriter beginArray() throws IOException {
+		beforeValue();
+		push(EMPTY_ARRAY);
+		m_out.write('[');
+		return this;
+	}
+
+	/**
+	 * Ends the current JSON array
+	 *
+	 * @return this writer
+	 * @throws IOException in case of I/O errors
+	 */
+	public JsonWriter endArray() throws IOException {
+		int context = peek();
+		if (context!=EMPTY_ARRAY && context!=NONEMPTY_ARRAY) {
+			throw new IllegalStateException("Not inside a JSON array");
+		}
+		m_stackSize--;
+		m_out.write(']');
+		return this;
+	}
+
+	/**
+	 * Writes a property name, must be followed by a value
+	 *
+	 * @param name name
+	 * @return this writer
+	 * @throws IOException in case of I/O errors
+	 */
+	public JsonWriter name(CharSequence name) throws IOException {
+		int context = peek();
+		if (context==NONEMPTY_OBJECT) {
+			m_out.write(',');
+		}
+		else if (context!=EMPTY_OBJECT) {
+			throw new IllegalStateException("Property names can only be written inside a JSON object");
+		}
+		m_stack[m_stackSize-1] = DANGLING_NAME;
+		writeString(name);
+		m_out.write(':');
+		return this;
+	}
+
+	/**
+	 * Writes a string value
+	 *
+	 * @param value value or null
+	 * @return this writer
+	 * @throws IOException in case of I/O errors
+	 */
+	public JsonWriter value(CharSequence value) throws IOException {
+		if (value==null) {
+			return nullValue();
+		}
+		beforeValue();
+		writeString(value);
+		return this;
+	}
+
+	/**
+	 * Writes a number value
+	 *
+	 * @param value value
+	 * @return this writer
+	 * @throws IOException in case of I/O errors
+	 */
+	public JsonWriter value(double value) throws IOException {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			return nullValue();
+		}
+		beforeValue();
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+			//write integral values without fraction
+			m_out.write(Long.toString((long) value));
+		}
+		else {
+			m_out.write(Double.toString(value));
+		}
+		return this;
+	}
+
+	/**
+	 * Writes a number value
+	 *
+	 * @param value value
+	 * @return this writer
+	 * @throws IOException in case of I/O errors
+	 */
+	public JsonWriter value(long value) throws IOException {
+		beforeValue();
+		m_out.write(Long.toString(value));
+		return this;
+	}
+
+	/**
+	 * Writes a boolean value
+	 *
+	 * @param value value
+	 * @return this writer
+	 * @throws IOException in case of I/O errors
+	 */
+	public JsonWriter value(boolean value) throws IOException {
+		beforeValue();
+		m_out.write(value ? "true" : "false");
+		return this;
+	}
+
+	/**
+	 * Writes null
+	 *
+	 * @return this writer
+	 * @throws IOException in case of I/O errors
+	 */
+	public JsonWriter nullValue() throws IOException {
+		beforeValue();
+		m_out.write("null");
+		return this;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		m_out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		m_out.close();
+	}
+
+	private void beforeValue() throws IOException {
+		if (m_stackSize==0) {
+			return;
+		}
+		int context = peek();
+		if (context==DANGLING_NAME) {
+			m_stack[m_stackSize-1] = NONEMPTY_OBJECT;
+		}
+		else if (context==EMPTY_ARRAY) {
+			m_stack[m_stackSize-1] = NONEMPTY_ARRAY;
+		}
+		else if (context==NONEMPTY_ARRAY) {
+			m_out.write(',');
+		}
+		else {
+			throw new IllegalStateException("Values inside a JSON object require a property name");
+		}
+	}
+
+	private int peek() {
+		if (m_stackSize==0) {
+			throw new IllegalStateException("JSON writer is not inside an object or array");
+		}
+		return m_stack[m_stackSize-1];
+	}
+
+	private void push(int context) {
+		if (m_stackSize == m_stack.length) {
+			m_stack = Arrays.copyOf(m_stack, m_stack.length*2);
+		}
+		m_stack[m_stackSize++] = context;
+	}
+
+	private void writeString(CharSequence value) throws IOException {
+		m_out.write('"');
+		int len = value.length();
+		int last = 0;
+		for (int i=0; i<len; i++) {
+			char c = value.charAt(i);
+			String replacement = null;
+			if (c < 0x20 || c == '"' || c == '\\' || c == 0x2028 || c == 0x2029) {
+				if (last < i) {
+					m_out.append(value, last, i);
+				}
+				last = i+1;
+
+				switch (c) {
+				case '"':
+					replacement = "\\\"";
+					break;
+				case '\\':
+					replacement = "\\\\";
+					break;
+				case '\n':
+					replacement = "\\n";
+					break;
+				case '\r':
+					replacement = "\\r";
+					break;
+				case '\t':
+					replacement = "\\t";
+					break;
+				case '\b':
+					replacement = "\\b";
+					break;
+				case '\f':
+					replacement = "\\f";
+					break;
+				default:
+					m_out.write("\\u");
+					m_out.write(HEX[(c >> 12) & 0xf]);
+					m_out.write(HEX[(c >> 8) & 0xf]);
+					m_out.write(HEX[(c >> 4) & 0xf]);
+					m_out.write(HEX[c & 0xf]);
+				}
+				if (replacement!=null) {
+					m_out.write(replacement);
+				}
+			}
+		}
+		if (last < len) {
+			m_out.append(value, last, len);
+		}
+		m_out.write('"');
+	}
+
+	/**
+	 * Unchecked wrapper for {@link IOException}s that occur in callbacks that cannot throw checked exceptions
+	 */
+	static class JsonWriterException extends RuntimeException {
+		private static final long serialVersionUID = -6125893012870361727L;
+
+		public JsonWriterException(IOException cause) {
+			super(cause);
+		}
+
+		@Override
+		public synchronized IOException getCause() {
+			return (IOException) super.getCause();
+		}
+	}
+}
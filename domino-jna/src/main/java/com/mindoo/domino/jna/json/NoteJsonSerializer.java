@@ -0,0 +1,591 @@
+package com.mindoo.domino.jna.json;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.mindoo.domino.jna.IItemTableData;
+import com.mindoo.domino.jna.ITextValueSink;
+import com.mindoo.domino.jna.NotesAttachment;
+import com.mindoo.domino.jna.NotesDateRange;
+import com.mindoo.domino.jna.NotesItem;
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.NotesNote.IItemCallback;
+import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.NotesViewEntryData;
+import com.mindoo.domino.jna.json.JsonWriter.JsonWriterException;
+import com.mindoo.domino.jna.utils.NotesDateTimeUtils;
+import com.mindoo.domino.jna.utils.NotesNamingUtils;
+
+/**
+ * Streaming serializer that writes {@link NotesNote} documents, summary buffer data
+ * ({@link IItemTableData}) and view entries ({@link NotesViewEntryData}) as JSON.<br>
+ * <br>
+ * For notes, the serializer walks the item table and decodes text, number and timedate values
+ * directly from the item value memory into the output, without building a {@link List} of
+ * Java objects per item.<br>
+ * <br>
+ * Mapping of item types:
+ * <ul>
+ * <li>{@link NotesItem#TYPE_TEXT} - string</li>
+ * <li>{@link NotesItem#TYPE_TEXT_LIST} - array of strings; names items can be abbreviated with {@link #setAbbreviateNames(boolean)}</li>
+ * <li>{@link NotesItem#TYPE_NUMBER} - number</li>
+ * <li>{@link NotesItem#TYPE_NUMBER_RANGE} - array of numbers, range entries are written as two consecutive values (lower, upper)</li>
+ * <li>{@link NotesItem#TYPE_TIME} - ISO 8601 string; "2018-05-24" for date-only values, "13:45:10" for time-only values and a UTC instant like "2018-05-24T11:45:10Z" otherwise</li>
+ * <li>{@link NotesItem#TYPE_TIME_RANGE} - array of ISO 8601 strings, range entries are written like number ranges</li>
+ * <li>{@link NotesItem#TYPE_COMPOSITE} - plain text if {@link #setRichTextAsText(boolean)} is set, skipped otherwise</li>
+ * <li>$FILE items - array of attachment metadata objects in the "@attachments" property if {@link #setIncludeAttachmentMetadata(boolean)} is set</li>
+ * </ul>
+ * Other item types are skipped. If a note contains multiple items with the same name, only the first one is written,
+ * because JSON property names should be unique.<br>
+ * <br>
+ * Instances reuse their decoding buffers and are not thread-safe.
+ *
+ * @author Karsten Lehmann
+ */
+public class NoteJsonSerializer {
+	private static final String PROP_NOTEID = "@noteid";
+	private static final String PROP_UNID = "@unid";
+	private static final String PROP_ATTACHMENTS = "@attachments";
+	private static final String PROP_POSITION = "@position";
+	private static final String PROP_CATEGORY = "@category";
+
+	private boolean m_richTextAsText;
+	private boolean m_includeAttachmentMetadata;
+	private boolean m_includeMetadata = true;
+	private boolean m_abbreviateNames;
+	private Set<String> m_itemNames;
+
+	private double[] m_numbers = new double[16];
+	private long[] m_innards = new long[16];
+
+	/**
+	 * Sets whether richtext items should be written as plain text (false by default)
+	 *
+	 * @param b true to write richtext as text
+	 * @return this serializer
+	 */
+	public NoteJsonSerializer setRichTextAsText(boolean b) {
+		m_richTextAsText = b;
+		return this;
+	}
+
+	public boolean isRichTextAsText() {
+		return m_richTextAsText;
+	}
+
+	/**
+	 * Sets whether file attachment metadata (name, size, compression, created/modified dates)
+	 * should be written to the "@attachments" property (false by default)
+	 *
+	 * @param b true to include attachment metadata
+	 * @return this serializer
+	 */
+	public NoteJsonSerializer setIncludeAttachmentMetadata(boolean b) {
+		m_includeAttachmentMetadata = b;
+		return this;
+	}
+
+	public boolean isIncludeAttachmentMetadata() {
+		return m_includeAttachmentMetadata;
+	}
+
+	/**
+	 * Sets whether note id and UNID should be written as "@noteid" and "@unid" properties (true by default)
+	 *
+	 * @param b true to include metadata
+	 * @return this serializer
+	 */
+	public NoteJsonSerializer setIncludeMetadata(boolean b) {
+		m_includeMetadata = b;
+		return this;
+	}
+
+	public boolean isIncludeMetadata() {
+		return m_includeMetadata;
+	}
+
+	/**
+	 * Sets whether the values of names, readers and authors items should be written
+	 * in abbreviated format (false by default)
+	 *
+	 * @param b true to abbreviate names
+	 * @return this serializer
+	 */
+	public NoteJsonSerializer setAbbreviateNames(boolean b) {
+		m_abbreviateNames = b;
+		return this;
+	}
+
+	public boolean isAbbreviateNames() {
+		return m_abbreviateNames;
+	}
+
+	/**
+	 * Restricts the output to the specified items
+	 *
+	 * @param itemNames item names, case insensitive or null to write all items
+	 * @return this serializer
+	 */
+	public NoteJsonSerializer setItemNames(Collection<String> itemNames) {
+		if (itemNames==null) {
+			m_itemNames = null;
+		}
+		else {
+			m_itemNames = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+			m_itemNames.addAll(itemNames);
+		}
+		return this;
+	}
+
+	/**
+	 * Writes a note as JSON object
+	 *
+	 * @param note note
+	 * @param out writer
+	 * @throws IOException in case of I/O errors
+	 */
+	public void serialize(NotesNote note, Writer out) throws IOException {
+		JsonWriter writer = new JsonWriter(out);
+		write(note, writer);
+		writer.flush();
+	}
+
+	/**
+	 * Writes a note as JSON object in UTF-8 encoding. The stream is flushed, but not closed.
+	 *
+	 * @param note note
+	 * @param out output stream
+	 * @throws IOException in case of I/O errors
+	 */
+	public void serialize(NotesNote note, OutputStream out) throws IOException {
+		serialize(note, new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Writes summary buffer data as JSON object
+	 *
+	 * @param data summary buffer data
+	 * @param out writer
+	 * @throws IOException in case of I/O errors
+	 */
+	public void serialize(IItemTableData data, Writer out) throws IOException {
+		JsonWriter writer = new JsonWriter(out);
+		write(data, writer);
+		writer.flush();
+	}
+
+	/**
+	 * Writes a view entry as JSON object
+	 *
+	 * @param entry view entry
+	 * @param out writer
+	 * @throws IOException in case of I/O errors
+	 */
+	public void serialize(NotesViewEntryData entry, Writer out) throws IOException {
+		JsonWriter writer = new JsonWriter(out);
+		write(entry, writer);
+		writer.flush();
+	}
+
+	/**
+	 * Writes a note as JSON object, e.g. as element of an array
+	 *
+	 * @param note note
+	 * @param writer JSON writer
+	 * @throws IOException in case of I/O errors
+	 */
+	public void write(final NotesNote note, final JsonWriter writer) throws IOException {
+		writer.beginObject();
+		if (m_includeMetadata) {
+			writer.name(PROP_NOTEID).value(note.getNoteId());
+			writer.name(PROP_UNID).value(note.getUNID());
+		}
+
+		final Set<String> writtenItems = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+		final Set<String> richTextItems = new LinkedHashSet<String>();
+		final List<NotesAttachment> attachments = new ArrayList<NotesAttachment>();
+
+		try {
+			note.getItems(null, new IItemCallback() {
+
+				@Override
+				public Action itemFound(NotesItem item) {
+					String itemName = item.getName();
+					int type = item.getType();
+
+					if (type == NotesItem.TYPE_OBJECT) {
+						if (m_includeAttachmentMetadata && "$FILE".equalsIgnoreCase(itemName)) {
+							for (Object currVal : item.getValues()) {
+								if (currVal instanceof NotesAttachment) {
+									attachments.add((NotesAttachment) currVal);
+								}
+							}
+						}
+						return Action.Continue;
+					}
+
+					if (m_itemNames!=null && !m_itemNames.contains(itemName)) {
+						return Action.Continue;
+					}
+					if (writtenItems.contains(itemName)) {
+						return Action.Continue;
+					}
+
+					if (type == NotesItem.TYPE_COMPOSITE) {
+						if (m_richTextAsText) {
+							//read after the item scan, the text extraction runs its own scan
+							richTextItems.add(itemName);
+							writtenItems.add(itemName);
+						}
+						return Action.Continue;
+					}
+
+					try {
+						if (writeItem(item, itemName, type, writer)) {
+							writtenItems.add(itemName);
+						}
+					}
+					catch (IOException e) {
+						throw new JsonWriterException(e);
+					}
+					return Action.Continue;
+				}
+			});
+		}
+		catch (JsonWriterException e) {
+			throw e.getCause();
+		}
+
+		for (String currRichTextItem : richTextItems) {
+			writer.name(currRichTextItem).value(note.getRichtextContentAsText(currRichTextItem));
+		}
+
+		if (!attachments.isEmpty()) {
+			writer.name(PROP_ATTACHMENTS).beginArray();
+			for (NotesAttachment currAtt : attachments) {
+				writer.beginObject();
+				writer.name("name").value(currAtt.getFileName());
+				writer.name("size").value(currAtt.getFileSize());
+				writer.name("compression").value(currAtt.getCompression()==null ? null : currAtt.getCompression().name());
+				writer.name("created");
+				writeCalendar(currAtt.getFileCreated(), writer);
+				writer.name("modified");
+				writeCalendar(currAtt.getFileModified(), writer);
+				writer.endObject();
+			}
+			writer.endArray();
+		}
+		writer.endObject();
+	}
+
+	/**
+	 * Writes summary buffer data as JSON object, e.g. as element of an array
+	 *
+	 * @param data summary buffer data
+	 * @param writer JSON writer
+	 * @throws IOException in case of I/O errors
+	 */
+	public void write(IItemTableData data, JsonWriter writer) throws IOException {
+		writer.beginObject();
+		writeItemTableData(data, writer);
+		writer.endObject();
+	}
+
+	/**
+	 * Writes a view entry as JSON object, e.g. as element of an array
+	 *
+	 * @param entry view entry
+	 * @param writer JSON writer
+	 * @throws IOException in case of I/O errors
+	 */
+	public void write(NotesViewEntryData entry, JsonWriter writer) throws IOException {
+		writer.beginObject();
+		if (m_includeMetadata) {
+			writer.name(PROP_NOTEID).value(entry.getNoteId());
+			String unid = entry.getUNID();
+			if (unid!=null) {
+				writer.name(PROP_UNID).value(unid);
+			}
+			writer.name(PROP_POSITION).value(entry.getPositionStr());
+			if (entry.isCategory()) {
+				writer.name(PROP_CATEGORY).value(true);
+			}
+		}
+
+		Iterator<String> colNames = entry.getColumnNames();
+		while (colNames.hasNext()) {
+			String currColName = colNames.next();
+			if (m_itemNames!=null && !m_itemNames.contains(currColName)) {
+				continue;
+			}
+			writer.name(currColName);
+			writeValue(entry.get(currColName), writer);
+		}
+		writer.endObject();
+	}
+
+	private void writeItemTableData(IItemTableData data, JsonWriter writer) throws IOException {
+		String[] itemNames = data.getItemNames();
+		Set<String> written = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+
+		try {
+			for (int i=0; i<itemNames.length; i++) {
+				String currItemName = itemNames[i];
+				if (m_itemNames!=null && !m_itemNames.contains(currItemName)) {
+					continue;
+				}
+				if (!written.add(currItemName)) {
+					continue;
+				}
+
+				int type = data.getItemDataType(i);
+				if (type == NotesItem.TYPE_TEXT || type == NotesItem.TYPE_TEXT_LIST) {
+					writer.name(currItemName);
+					if (type == NotesItem.TYPE_TEXT_LIST) {
+						writer.beginArray();
+					}
+					data.getAsTextList(currItemName, new TextValueWriter(writer, false));
+					if (type == NotesItem.TYPE_TEXT_LIST) {
+						writer.endArray();
+					}
+				}
+				else if (type == NotesItem.TYPE_NUMBER || type == NotesItem.TYPE_NUMBER_RANGE) {
+					int count = data.getAsDoubleArray(currItemName, m_numbers, 0);
+					if (count > m_numbers.length) {
+						m_numbers = new double[count];
+						count = data.getAsDoubleArray(currItemName, m_numbers, 0);
+					}
+					writer.name(currItemName);
+					writeNumbers(type, count, writer);
+				}
+				else if (type == NotesItem.TYPE_TIME || type == NotesItem.TYPE_TIME_RANGE) {
+					int count = data.getAsInnardsArray(currItemName, m_innards, 0);
+					if (count > m_innards.length) {
+						m_innards = new long[count];
+						count = data.getAsInnardsArray(currItemName, m_innards, 0);
+					}
+					writer.name(currItemName);
+					writeInnards(type, count, writer);
+				}
+				else {
+					writer.name(currItemName);
+					writeValue(data.get(currItemName), writer);
+				}
+			}
+		}
+		catch (JsonWriterException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Writes the name and value of a text, number or timedate item
+	 *
+	 * @return true if the item has been written, false for unsupported types
+	 */
+	private boolean writeItem(NotesItem item, String itemName, int type, JsonWriter writer) throws IOException {
+		if (type == NotesItem.TYPE_TEXT || type == NotesItem.TYPE_TEXT_LIST) {
+			boolean abbreviate = m_abbreviateNames && (item.isNames() || item.isReaders() || item.isAuthors());
+
+			writer.name(itemName);
+			if (type == NotesItem.TYPE_TEXT_LIST) {
+				writer.beginArray();
+			}
+			int count = item.getValueTextList(new TextValueWriter(writer, abbreviate));
+			if (type == NotesItem.TYPE_TEXT && count==0) {
+				writer.value("");
+			}
+			if (type == NotesItem.TYPE_TEXT_LIST) {
+				writer.endArray();
+			}
+			return true;
+		}
+		else if (type == NotesItem.TYPE_NUMBER || type == NotesItem.TYPE_NUMBER_RANGE) {
+			int count = item.getValueDoubleArray(m_numbers, 0);
+			if (count > m_numbers.length) {
+				m_numbers = new double[count];
+				count = item.getValueDoubleArray(m_numbers, 0);
+			}
+			writer.name(itemName);
+			writeNumbers(type, count, writer);
+			return true;
+		}
+		else if (type == NotesItem.TYPE_TIME || type == NotesItem.TYPE_TIME_RANGE) {
+			int count = item.getValueInnardsArray(m_innards, 0);
+			if (count > m_innards.length) {
+				m_innards = new long[count];
+				count = item.getValueInnardsArray(m_innards, 0);
+			}
+			writer.name(itemName);
+			writeInnards(type, count, writer);
+			return true;
+		}
+		else {
+			return false;
+		}
+	}
+
+	private void writeNumbers(int type, int count, JsonWriter writer) throws IOException {
+		if (type == NotesItem.TYPE_NUMBER) {
+			if (count > 0) {
+				writer.value(m_numbers[0]);
+			}
+			else {
+				writer.nullValue();
+			}
+			return;
+		}
+		writer.beginArray();
+		for (int i=0; i<count; i++) {
+			writer.value(m_numbers[i]);
+		}
+		writer.endArray();
+	}
+
+	private void writeInnards(int type, int count, JsonWriter writer) throws IOException {
+		if (type == NotesItem.TYPE_TIME) {
+			if (count > 0) {
+				writeInnards(NotesDateTimeUtils.unpackInnards(m_innards[0]), writer);
+			}
+			else {
+				writer.nullValue();
+			}
+			return;
+		}
+		writer.beginArray();
+		for (int i=0; i<count; i++) {
+			writeInnards(NotesDateTimeUtils.unpackInnards(m_innards[i]), writer);
+		}
+		writer.endArray();
+	}
+
+	private void writeInnards(int[] innards, JsonWriter writer) throws IOException {
+		boolean hasDate = NotesDateTimeUtils.hasDate(innards);
+		boolean hasTime = NotesDateTimeUtils.hasTime(innards);
+		Calendar cal = hasDate || hasTime ? NotesDateTimeUtils.innardsToCalendar(innards) : null;
+		if (cal==null) {
+			writer.nullValue();
+		}
+		else if (hasDate && hasTime) {
+			writer.value(Instant.ofEpochMilli(cal.getTimeInMillis()).toString());
+		}
+		else if (hasDate) {
+			writer.value(LocalDate.of(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH)+1, cal.get(Calendar.DAY_OF_MONTH)).toString());
+		}
+		else {
+			writer.value(LocalTime.of(cal.get(Calendar.HOUR_OF_DAY), cal.get(Calendar.MINUTE), cal.get(Calendar.SECOND),
+					cal.get(Calendar.MILLISECOND) * 1000000).toString());
+		}
+	}
+
+	private void writeCalendar(Calendar cal, JsonWriter writer) throws IOException {
+		if (cal==null) {
+			writer.nullValue();
+		}
+		else {
+			writeInnards(NotesDateTimeUtils.calendarToInnards(cal), writer);
+		}
+	}
+
+	/**
+	 * Writes a decoded value as returned by {@link IItemTableData#get(String)} or
+	 * {@link NotesViewEntryData#get(String)}
+	 *
+	 * @param value value
+	 * @param writer JSON writer
+	 * @throws IOException in case of I/O errors
+	 */
+	private void writeValue(Object value, JsonWriter writer) throws IOException {
+		if (value==null) {
+			writer.nullValue();
+		}
+		else if (value instanceof CharSequence) {
+			writer.value((CharSequence) value);
+		}
+		else if (value instanceof Number) {
+			writer.value(((Number) value).doubleValue());
+		}
+		else if (value instanceof Boolean) {
+			writer.value(((Boolean) value).booleanValue());
+		}
+		else if (value instanceof Calendar) {
+			writeCalendar((Calendar) value, writer);
+		}
+		else if (value instanceof NotesTimeDate) {
+			writeInnards(((NotesTimeDate) value).getInnards(), writer);
+		}
+		else if (value instanceof NotesDateRange) {
+			writer.beginArray();
+			writeValue(((NotesDateRange) value).getStartDateTime(), writer);
+			writeValue(((NotesDateRange) value).getEndDateTime(), writer);
+			writer.endArray();
+		}
+		else if (value instanceof double[]) {
+			writer.beginArray();
+			for (double currVal : (double[]) value) {
+				writer.value(currVal);
+			}
+			writer.endArray();
+		}
+		else if (value instanceof Object[]) {
+			writer.beginArray();
+			for (Object currVal : (Object[]) value) {
+				writeValue(currVal, writer);
+			}
+			writer.endArray();
+		}
+		else if (value instanceof Iterable) {
+			writer.beginArray();
+			for (Object currVal : (Iterable<?>) value) {
+				writeValue(currVal, writer);
+			}
+			writer.endArray();
+		}
+		else {
+			writer.value(value.toString());
+		}
+	}
+
+	/**
+	 * {@link ITextValueSink} that writes each text value as JSON string
+	 */
+	private static class TextValueWriter implements ITextValueSink {
+		private JsonWriter m_writer;
+		private boolean m_abbreviate;
+
+		public TextValueWriter(JsonWriter writer, boolean abbreviate) {
+			m_writer = writer;
+			m_abbreviate = abbreviate;
+		}
+
+		@Override
+		public void textValue(int index, CharSequence value) {
+			try {
+				if (m_abbreviate) {
+					m_writer.value(NotesNamingUtils.toAbbreviatedName(value.toString()));
+				}
+				else {
+					m_writer.value(value);
+				}
+			}
+			catch (IOException e) {
+				throw new JsonWriterException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,1062 @@
+package com.mindoo.domino.jna.sync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.mindoo.domino.jna.IItemTableData;
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesIDTable;
+import com.mindoo.domino.jna.NotesSearch;
+import com.mindoo.domino.jna.NotesSearch.ISearchMatch;
+import com.mindoo.domino.jna.NotesSearch.SearchCallback;
+import com.mindoo.domino.jna.NotesTimeDate;
+import com.mindoo.domino.jna.constants.NoteClass;
+import com.mindoo.domino.jna.constants.Search;
+import com.mindoo.domino.jna.errors.NotesError;
+import com.mindoo.domino.jna.gc.NotesGC;
+import com.mindoo.domino.jna.internal.NotesConstants;
+import com.mindoo.domino.jna.utils.NotesInitUtils;
+
+/**
+ * Service that monitors many databases for created, modified and deleted notes and
+ * dispatches the changes to {@link ChangeListener}s.<br>
+ * <br>
+ * Each database is polled with an NSF search using the end date of the previous search
+ * as <code>since</code> date, so only the changes since the last poll are read. The polling
+ * interval adapts to the rate of change: databases with changes are polled again after
+ * {@link #setMinPollInterval(long)}, the interval of idle databases is doubled up to
+ * {@link #setMaxPollInterval(long)}.<br>
+ * <br>
+ * Changes of a burst are coalesced per note (e.g. created and then modified is reported as
+ * a single {@link ChangeType#CREATED} event) and dispatched when the database is quiet again,
+ * after {@link #setMaxCoalesceDelay(long)} or when {@link #setMaxBatchSize(int)} is reached.
+ * A single search stops when the batch size is reached; the remaining changed notes are
+ * then searched by note id in chunks of the batch size, so large replays or bursts are
+ * read in batches.<br>
+ * <br>
+ * The search end date of the last successfully dispatched batch is the high-water mark of
+ * a database. It is stored in a properties file (if specified), so that a restarted feed
+ * continues where it stopped. Changes are delivered at least once: if a listener throws an
+ * exception, the batch is read and dispatched again with the next poll.<br>
+ * <br>
+ * All databases share a small number of poller threads (initialized for Notes API calls)
+ * that pick the next due database from a delay queue, so hundreds of databases can be monitored
+ * with a few threads. Listeners are called on a separate dispatch thread pool; batches of the
+ * same database are never dispatched concurrently.
+ *
+ * @author Karsten Lehmann
+ */
+public class ChangeFeed implements AutoCloseable {
+	private final Path m_stateFile;
+	private final Map<String,DbState> m_dbStates = new ConcurrentHashMap<String,DbState>();
+	private final DelayQueue<DbState> m_pollQueue = new DelayQueue<DbState>();
+	private final List<ChangeListener> m_listeners = new CopyOnWriteArrayList<ChangeListener>();
+	private final Object m_stateFileLock = new Object();
+	private Properties m_storedState;
+
+	private int m_pollerThreadCount = 2;
+	private int m_dispatchThreadCount = 2;
+	private long m_minPollIntervalMillis = 1000;
+	private long m_maxPollIntervalMillis = 60000;
+	private long m_coalesceDelayMillis = 250;
+	private long m_maxCoalesceDelayMillis = 5000;
+	private int m_maxBatchSize = 1000;
+	private long m_persistIntervalMillis = 10000;
+	private boolean m_replayFromStart;
+	private String m_asUserCanonical;
+
+	private volatile boolean m_started;
+	private volatile boolean m_closed;
+	private List<Thread> m_pollers;
+	private ExecutorService m_dispatchPool;
+	private volatile long m_lastPersistTime;
+
+	/**
+	 * Creates a new change feed
+	 *
+	 * @param stateFile properties file to store the high-water mark per database or null to start from scratch on each run
+	 */
+	public ChangeFeed(Path stateFile) {
+		m_stateFile = stateFile;
+	}
+
+	/**
+	 * Sets the number of threads polling the databases
+	 *
+	 * @param count thread count, default is 2
+	 * @return this feed
+	 */
+	public ChangeFeed setPollerThreadCount(int count) {
+		checkNotStarted();
+		if (count<1) {
+			throw new IllegalArgumentException("Poller thread count must be at least 1: "+count);
+		}
+		m_pollerThreadCount = count;
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads calling the listeners
+	 *
+	 * @param count thread count, default is 2
+	 * @return this feed
+	 */
+	public ChangeFeed setDispatchThreadCount(int count) {
+		checkNotStarted();
+		if (count<1) {
+			throw new IllegalArgumentException("Dispatch thread count must be at least 1: "+count);
+		}
+		m_dispatchThreadCount = count;
+		return this;
+	}
+
+	/**
+	 * Sets the poll interval used for databases with recent changes
+	 *
+	 * @param millis interval in milliseconds, default is 1000
+	 * @return this feed
+	 */
+	public ChangeFeed setMinPollInterval(long millis) {
+		checkNotStarted();
+		if (millis<=0) {
+			throw new IllegalArgumentException("Poll interval must be positive: "+millis);
+		}
+		m_minPollIntervalMillis = millis;
+		return this;
+	}
+
+	/**
+	 * Sets the max poll interval that idle databases back off to
+	 *
+	 * @param millis interval in milliseconds, default is 60000
+	 * @return this feed
+	 */
+	public ChangeFeed setMaxPollInterval(long millis) {
+		checkNotStarted();
+		if (millis<=0) {
+			throw new IllegalArgumentException("Poll interval must be positive: "+millis);
+		}
+		m_maxPollIntervalMillis = millis;
+		return this;
+	}
+
+	/**
+	 * Sets the delay of the follow-up poll when a poll found changes. Changes are
+	 * buffered until a follow-up poll finds no more changes.
+	 *
+	 * @param millis delay in milliseconds, default is 250
+	 * @return this feed
+	 */
+	public ChangeFeed setCoalesceDelay(long millis) {
+		checkNotStarted();
+		if (millis<0) {
+			throw new IllegalArgumentException("Coalesce delay cannot be negative: "+millis);
+		}
+		m_coalesceDelayMillis = millis;
+		return this;
+	}
+
+	/**
+	 * Sets the max time changes are buffered for a database with continuous changes
+	 * before they get dispatched
+	 *
+	 * @param millis max delay in milliseconds, default is 5000
+	 * @return this feed
+	 */
+	public ChangeFeed setMaxCoalesceDelay(long millis) {
+		checkNotStarted();
+		if (millis<0) {
+			throw new IllegalArgumentException("Max coalesce delay cannot be negative: "+millis);
+		}
+		m_maxCoalesceDelayMillis = millis;
+		return this;
+	}
+
+	/**
+	 * Sets the number of buffered changes of a database that triggers a dispatch.
+	 * This is also the max number of changes read by a single search.
+	 *
+	 * @param size batch size, default is 1000
+	 * @return this feed
+	 */
+	public ChangeFeed setMaxBatchSize(int size) {
+		checkNotStarted();
+		if (size<1) {
+			throw new IllegalArgumentException("Batch size must be at least 1: "+size);
+		}
+		m_maxBatchSize = size;
+		return this;
+	}
+
+	/**
+	 * Sets whether databases without stored high-water mark should report all existing notes
+	 * as {@link ChangeType#CREATED} on the first poll. By default, monitoring starts
+	 * at the time the database is polled the first time.
+	 *
+	 * @param b true to replay existing notes
+	 * @return this feed
+	 */
+	public ChangeFeed setReplayFromStart(boolean b) {
+		checkNotStarted();
+		m_replayFromStart = b;
+		return this;
+	}
+
+	/**
+	 * Sets the user to open the databases, by default we open the databases as server/ID user
+	 *
+	 * @param asUserCanonical username or null
+	 * @return this feed
+	 */
+	public ChangeFeed setAsUser(String asUserCanonical) {
+		checkNotStarted();
+		m_asUserCanonical = asUserCanonical;
+		return this;
+	}
+
+	private void checkNotStarted() {
+		if (m_started) {
+			throw new IllegalStateException("Change feed has already been started");
+		}
+	}
+
+	/**
+	 * Adds a listener to receive the changes
+	 *
+	 * @param listener listener
+	 * @return this feed
+	 */
+	public ChangeFeed addListener(ChangeListener listener) {
+		if (listener==null) {
+			throw new IllegalArgumentException("Listener cannot be null");
+		}
+		m_listeners.add(listener);
+		return this;
+	}
+
+	public ChangeFeed removeListener(ChangeListener listener) {
+		m_listeners.remove(listener);
+		return this;
+	}
+
+	/**
+	 * Adds a database to be monitored for changed documents
+	 *
+	 * @param server server name, empty string for local databases
+	 * @param filePath database filepath
+	 * @return this feed
+	 */
+	public ChangeFeed addDatabase(String server, String filePath) {
+		return addDatabase(server, filePath, EnumSet.of(NoteClass.DOCUMENT));
+	}
+
+	/**
+	 * Adds a database to be monitored
+	 *
+	 * @param server server name, empty string for local databases
+	 * @param filePath database filepath
+	 * @param noteClasses note classes to monitor
+	 * @return this feed
+	 */
+	public ChangeFeed addDatabase(String server, String filePath, EnumSet<NoteClass> noteClasses) {
+		if (filePath==null || filePath.length()==0) {
+			throw new IllegalArgumentException("Filepath cannot be empty");
+		}
+		if (noteClasses==null || noteClasses.isEmpty()) {
+			throw new IllegalArgumentException("Note classes cannot be empty");
+		}
+
+		String key = toKey(server, filePath);
+		DbState state = new DbState(key, server==null ? "" : server, filePath, EnumSet.copyOf(noteClasses));
+		state.m_highWaterMark = readHighWaterMark(key);
+		state.m_searchSince = state.m_highWaterMark;
+		state.m_pollInterval = m_minPollIntervalMillis;
+
+		if (m_dbStates.putIfAbsent(key, state)==null && m_started) {
+			schedule(state, 0);
+		}
+		return this;
+	}
+
+	/**
+	 * Stops monitoring a database. The stored high-water mark is kept.
+	 *
+	 * @param server server name, empty string for local databases
+	 * @param filePath database filepath
+	 * @return this feed
+	 */
+	public ChangeFeed removeDatabase(String server, String filePath) {
+		DbState state = m_dbStates.remove(toKey(server, filePath));
+		if (state!=null) {
+			synchronized (state) {
+				state.m_removed = true;
+			}
+			m_pollQueue.remove(state);
+		}
+		return this;
+	}
+
+	private static String toKey(String server, String filePath) {
+		return ((server==null ? "" : server) + "!!" + filePath.replace('\\', '/')).toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Starts the poller and dispatch threads
+	 *
+	 * @return this feed
+	 */
+	public synchronized ChangeFeed start() {
+		if (m_closed) {
+			throw new IllegalStateException("Change feed has been closed");
+		}
+		checkNotStarted();
+		m_started = true;
+
+		final AtomicInteger dispatchThreadIdx = new AtomicInteger();
+		m_dispatchPool = Executors.newFixedThreadPool(m_dispatchThreadCount, new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "ChangeFeed dispatcher "+dispatchThreadIdx.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		m_pollers = new ArrayList<Thread>(m_pollerThreadCount);
+		for (int i=0; i<m_pollerThreadCount; i++) {
+			Thread poller = new PollerThread("ChangeFeed poller "+(i+1));
+			poller.setDaemon(true);
+			m_pollers.add(poller);
+			poller.start();
+		}
+
+		for (DbState currState : m_dbStates.values()) {
+			schedule(currState, 0);
+		}
+		return this;
+	}
+
+	/**
+	 * Stops polling, waits for running dispatches to finish and stores the high-water marks
+	 */
+	@Override
+	public synchronized void close() {
+		if (m_closed) {
+			return;
+		}
+		m_closed = true;
+
+		if (m_pollers!=null) {
+			for (Thread currPoller : m_pollers) {
+				currPoller.interrupt();
+			}
+			for (Thread currPoller : m_pollers) {
+				try {
+					currPoller.join(m_maxPollIntervalMillis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		if (m_dispatchPool!=null) {
+			m_dispatchPool.shutdown();
+			try {
+				m_dispatchPool.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		m_pollQueue.clear();
+		persistHighWaterMarks();
+	}
+
+	/**
+	 * Returns the high-water mark of a database, which is the end date of the search
+	 * that produced the last successfully dispatched changes
+	 *
+	 * @param server server name, empty string for local databases
+	 * @param filePath database filepath
+	 * @return high-water mark or null if the database has not been polled yet
+	 */
+	public NotesTimeDate getHighWaterMark(String server, String filePath) {
+		DbState state = m_dbStates.get(toKey(server, filePath));
+		if (state==null) {
+			return readHighWaterMark(toKey(server, filePath));
+		}
+		synchronized (state) {
+			return state.m_highWaterMark==null ? null : new NotesTimeDate(state.m_highWaterMark.getInnards());
+		}
+	}
+
+	private void schedule(DbState state, long delayMillis) {
+		if (m_closed) {
+			return;
+		}
+		synchronized (state) {
+			if (state.m_removed) {
+				return;
+			}
+			state.m_nextPollNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+		}
+		m_pollQueue.put(state);
+	}
+
+	/**
+	 * Searches the database for changes since the last poll and decides when to poll again.<br>
+	 * <br>
+	 * NSFSearch returns the notes in note table order and not ordered by their modified date,
+	 * so a search that stops at the batch size cannot be continued from a modified date.
+	 * Instead, the ids of all notes modified since the search start are read once with
+	 * {@link NotesDatabase#getModifiedNoteTable(EnumSet, NotesTimeDate, NotesTimeDate)} and
+	 * searched in chunks by the following polls. The search start is moved to the end date
+	 * of that table after the last chunk.
+	 *
+	 * @param state database state
+	 * @return delay for next poll in milliseconds
+	 */
+	private long poll(final DbState state) {
+		NotesTimeDate since;
+		int resetCount;
+		final boolean replaying;
+		int[] pageIds;
+		final int maxEvents;
+		synchronized (state) {
+			since = state.m_searchSince==null ? null : new NotesTimeDate(state.m_searchSince.getInnards());
+			resetCount = state.m_resetCount;
+			replaying = state.m_replaying;
+			pageIds = state.m_pageIds;
+			maxEvents = m_maxBatchSize - state.m_pending.size();
+		}
+		if (maxEvents<=0) {
+			//previous batch is still being dispatched
+			dispatch(state);
+			return m_minPollIntervalMillis;
+		}
+		final boolean firstPoll = since==null && pageIds==null;
+
+		//ids of the next chunk of a search that has been stopped at the batch size
+		int[] chunkIds = null;
+		int[] remainingIds = null;
+		if (pageIds!=null) {
+			int chunkSize = Math.min(maxEvents, pageIds.length);
+			chunkIds = Arrays.copyOf(pageIds, chunkSize);
+			remainingIds = Arrays.copyOfRange(pageIds, chunkSize, pageIds.length);
+		}
+		final boolean stopAtBatchSize = chunkIds==null;
+
+		final List<ChangeEvent> events = new ArrayList<ChangeEvent>();
+		NotesTimeDate until;
+		boolean truncated = false;
+		int[] newPageIds = null;
+		NotesTimeDate tableUntil = null;
+
+		NotesDatabase db = new NotesDatabase(state.m_server, state.m_filePath, m_asUserCanonical);
+		try {
+			if (firstPoll && !m_replayFromStart) {
+				//just compute the start date for the next search
+				until = NotesSearch.search(db, null, null, "-", EnumSet.noneOf(Search.class), state.m_noteClasses,
+						NotesTimeDate.now(), new SearchCallback() {
+
+					@Override
+					public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+						return Action.Continue;
+					}
+				});
+			}
+			else {
+				final NotesTimeDate sinceFinal = since;
+				EnumSet<Search> searchFlags = since==null ? EnumSet.noneOf(Search.class) : EnumSet.of(Search.ALL_VERSIONS, Search.NOTIFYDELETIONS);
+
+				NotesIDTable searchFilter = chunkIds==null ? null : new NotesIDTable(chunkIds);
+				try {
+					until = NotesSearch.search(db, searchFilter, null, "-", searchFlags, state.m_noteClasses, since, new SearchCallback() {
+
+						@Override
+						public Action noteFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+							ChangeType type;
+							if (sinceFinal==null || replaying || searchMatch.getSeq()<=1 ||
+									new NotesTimeDate(searchMatch.getOIDNoteInnards()).isAfter(sinceFinal)) {
+								//new note or note created after the last poll (UNID contains the creation date)
+								type = ChangeType.CREATED;
+							}
+							else {
+								type = ChangeType.MODIFIED;
+							}
+							return addEvent(new ChangeEvent(type, state.m_server, state.m_filePath, searchMatch));
+						}
+
+						@Override
+						public Action deletionStubFound(NotesDatabase parentDb, ISearchMatch searchMatch, IItemTableData summaryBufferData) {
+							return addEvent(new ChangeEvent(ChangeType.DELETED, state.m_server, state.m_filePath, searchMatch));
+						}
+
+						private Action addEvent(ChangeEvent event) {
+							events.add(event);
+							if (m_closed || (stopAtBatchSize && events.size() >= maxEvents)) {
+								return Action.Stop;
+							}
+							return Action.Continue;
+						}
+					});
+				}
+				finally {
+					if (searchFilter!=null) {
+						searchFilter.recycle();
+					}
+				}
+
+				//a search stopped at the batch size returns no end date
+				truncated = !m_closed && until==null && stopAtBatchSize && !events.isEmpty();
+				if (truncated) {
+					tableUntil = new NotesTimeDate();
+					newPageIds = getModifiedNoteIds(db, state.m_noteClasses, since, tableUntil);
+					if (newPageIds.length>0) {
+						//the chunks contain the notes found so far as well, including later changes
+						events.clear();
+					}
+				}
+			}
+		}
+		finally {
+			db.recycle();
+		}
+
+		if (m_closed) {
+			//search might have been stopped early, so don't move the search start
+			return 0;
+		}
+
+		boolean dispatch = false;
+		boolean idleAdvance = false;
+		long nextDelay;
+
+		synchronized (state) {
+			if (state.m_resetCount!=resetCount) {
+				//a dispatch failed during the search, so search again from the high-water mark
+				return m_minPollIntervalMillis;
+			}
+
+			if (chunkIds!=null) {
+				if (remainingIds.length==0) {
+					//all chunks searched
+					state.m_searchSince = state.m_pageUntil;
+					state.m_pageIds = null;
+					state.m_pageUntil = null;
+					state.m_replaying = false;
+				}
+				else {
+					state.m_pageIds = remainingIds;
+				}
+			}
+			else if (truncated) {
+				if (newPageIds.length>0) {
+					//keep the search start until all chunks have been searched
+					state.m_pageIds = newPageIds;
+					state.m_pageUntil = tableUntil;
+					//a replay read in chunks reports all existing notes as created
+					state.m_replaying = since==null;
+				}
+				//otherwise the changes found are dispatched and the search is repeated from the same start
+			}
+			else {
+				state.m_searchSince = until;
+			}
+			boolean paging = state.m_pageIds!=null;
+
+			for (ChangeEvent currEvent : events) {
+				state.merge(currEvent);
+			}
+
+			if (!events.isEmpty()) {
+				if (state.m_pendingSinceMillis==0) {
+					state.m_pendingSinceMillis = System.currentTimeMillis();
+				}
+				state.m_pollInterval = m_minPollIntervalMillis;
+				//read the next chunk right away
+				nextDelay = paging ? 0 : m_coalesceDelayMillis;
+
+				if (paging || state.m_pending.size() >= m_maxBatchSize ||
+						(System.currentTimeMillis() - state.m_pendingSinceMillis) >= m_maxCoalesceDelayMillis) {
+					dispatch = true;
+				}
+			}
+			else if (paging) {
+				dispatch = !state.m_pending.isEmpty();
+				nextDelay = 0;
+			}
+			else {
+				if (!state.m_pending.isEmpty()) {
+					//burst is over
+					dispatch = true;
+					nextDelay = m_minPollIntervalMillis;
+				}
+				else {
+					if (!state.m_dispatching) {
+						//nothing to report, so the high-water mark can move on
+						state.m_highWaterMark = until;
+						idleAdvance = true;
+					}
+					state.m_pollInterval = Math.min(state.m_pollInterval * 2, m_maxPollIntervalMillis);
+					nextDelay = state.m_pollInterval;
+				}
+			}
+
+			if (firstPoll && events.isEmpty()) {
+				state.m_highWaterMark = until;
+			}
+		}
+
+		if (dispatch) {
+			dispatch(state);
+		}
+		else if (idleAdvance || firstPoll) {
+			persistHighWaterMarksIfDue();
+		}
+		return nextDelay;
+	}
+
+	/**
+	 * Reads the ids of all notes modified since the start of a search that has been stopped
+	 * at the batch size
+	 *
+	 * @param db database
+	 * @param noteClasses note classes
+	 * @param since start date of the search or null for a replay
+	 * @param retUntil returns the end date to continue after all ids have been searched
+	 * @return sorted note ids
+	 */
+	private static int[] getModifiedNoteIds(NotesDatabase db, EnumSet<NoteClass> noteClasses, NotesTimeDate since,
+			NotesTimeDate retUntil) {
+		NotesTimeDate modifiedSince = since;
+		if (modifiedSince==null) {
+			//all existing notes without deletions
+			modifiedSince = new NotesTimeDate();
+			modifiedSince.setMinimum();
+		}
+		NotesIDTable idTable = db.getModifiedNoteTable(noteClasses, modifiedSince, retUntil);
+		int[] noteIds;
+		try {
+			noteIds = idTable.toArray();
+		}
+		finally {
+			idTable.recycle();
+		}
+
+		//remove the deletion flag, NSFSearch finds the stubs by their note id
+		for (int i=0; i<noteIds.length; i++) {
+			noteIds[i] = (int) (noteIds[i] & ~NotesConstants.RRV_DELETED);
+		}
+		Arrays.sort(noteIds);
+		return noteIds;
+	}
+
+	/**
+	 * Hands the pending changes of a database to the dispatch pool, unless a batch of
+	 * the same database is currently being dispatched
+	 *
+	 * @param state database state
+	 */
+	private void dispatch(final DbState state) {
+		final List<ChangeEvent> batch;
+		final NotesTimeDate batchUntil;
+
+		synchronized (state) {
+			if (state.m_dispatching || state.m_pending.isEmpty()) {
+				return;
+			}
+			state.m_dispatching = true;
+			batch = Collections.unmodifiableList(new ArrayList<ChangeEvent>(state.m_pending.values()));
+			batchUntil = state.m_searchSince;
+			state.m_pending = new LinkedHashMap<String,ChangeEvent>();
+			state.m_pendingSinceMillis = 0;
+		}
+
+		m_dispatchPool.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				Throwable error = null;
+				for (ChangeListener currListener : m_listeners) {
+					try {
+						currListener.changesDetected(state.m_server, state.m_filePath, batch);
+					}
+					catch (Throwable t) {
+						error = t;
+						notifyError(state, t);
+					}
+				}
+
+				synchronized (state) {
+					state.m_dispatching = false;
+					if (error==null) {
+						state.m_highWaterMark = batchUntil;
+					}
+					else {
+						//read the changes again on the next poll
+						state.m_searchSince = state.m_highWaterMark;
+						state.m_resetCount++;
+						state.m_pageIds = null;
+						state.m_pageUntil = null;
+						state.m_replaying = false;
+						state.m_pending.clear();
+						state.m_pendingSinceMillis = 0;
+					}
+				}
+				if (error==null) {
+					persistHighWaterMarks();
+				}
+			}
+		});
+	}
+
+	private void notifyError(DbState state, Throwable t) {
+		for (ChangeListener currListener : m_listeners) {
+			try {
+				currListener.errorOccurred(state.m_server, state.m_filePath, t);
+			}
+			catch (Throwable e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	private NotesTimeDate readHighWaterMark(String key) {
+		if (m_stateFile==null) {
+			return null;
+		}
+		synchronized (m_stateFileLock) {
+			if (m_storedState==null) {
+				//load the state file once, it is rewritten from memory afterwards
+				m_storedState = new Properties();
+				if (Files.exists(m_stateFile)) {
+					try (InputStream in = Files.newInputStream(m_stateFile)) {
+						m_storedState.load(in);
+					}
+					catch (IOException e) {
+						throw new NotesError(0, "Error reading change feed state from "+m_stateFile, e);
+					}
+				}
+			}
+			String innardsStr = m_storedState.getProperty(key);
+			if (innardsStr==null) {
+				return null;
+			}
+			String[] parts = innardsStr.split(",");
+			if (parts.length!=2) {
+				return null;
+			}
+			return new NotesTimeDate(new int[] {(int) Long.parseLong(parts[0], 16), (int) Long.parseLong(parts[1], 16)});
+		}
+	}
+
+	private void persistHighWaterMarksIfDue() {
+		if ((System.currentTimeMillis() - m_lastPersistTime) >= m_persistIntervalMillis) {
+			persistHighWaterMarksIfDue();
+		}
+	}
+
+	/**
+	 * Writes the high-water marks of all databases to the state file. Entries of databases
+	 * that are no longer monitored are kept.
+	 */
+	private void persistHighWaterMarks() {
+		if (m_stateFile==null) {
+			return;
+		}
+		synchronized (m_stateFileLock) {
+			m_lastPersistTime = System.currentTimeMillis();
+
+			if (m_storedState==null) {
+				readHighWaterMark("");
+			}
+			Properties props = m_storedState;
+			try {
+				for (DbState currState : m_dbStates.values()) {
+					NotesTimeDate hwm;
+					synchronized (currState) {
+						hwm = currState.m_highWaterMark;
+					}
+					if (hwm!=null) {
+						int[] innards = hwm.getInnards();
+						props.setProperty(currState.m_key, Integer.toHexString(innards[0])+","+Integer.toHexString(innards[1]));
+					}
+				}
+
+				Path parentDir = m_stateFile.toAbsolutePath().getParent();
+				if (parentDir!=null) {
+					Files.createDirectories(parentDir);
+				}
+				Path tmpFile = m_stateFile.resolveSibling(m_stateFile.getFileName()+".tmp");
+				try (OutputStream out = Files.newOutputStream(tmpFile)) {
+					props.store(out, "ChangeFeed high-water marks");
+				}
+				Files.move(tmpFile, m_stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			catch (IOException e) {
+				throw new NotesError(0, "Error writing change feed state to "+m_stateFile, e);
+			}
+		}
+	}
+
+	/**
+	 * Thread that polls the databases that are due
+	 */
+	private class PollerThread extends Thread {
+
+		private PollerThread(String name) {
+			super(name);
+		}
+
+		@Override
+		public void run() {
+			NotesInitUtils.notesInitThread();
+			try {
+				while (!m_closed) {
+					final DbState state;
+					try {
+						state = m_pollQueue.take();
+					} catch (InterruptedException e) {
+						break;
+					}
+
+					long nextDelay;
+					try {
+						nextDelay = NotesGC.runWithAutoGC(new Callable<Long>() {
+
+							@Override
+							public Long call() throws Exception {
+								return poll(state);
+							}
+						});
+					}
+					catch (Throwable t) {
+						if (m_closed) {
+							break;
+						}
+						notifyError(state, t);
+
+						//database might be offline, back off
+						synchronized (state) {
+							state.m_pollInterval = Math.min(state.m_pollInterval * 2, m_maxPollIntervalMillis);
+							nextDelay = state.m_pollInterval;
+						}
+					}
+					schedule(state, nextDelay);
+				}
+			}
+			finally {
+				NotesInitUtils.notesTermThread();
+			}
+		}
+	}
+
+	/**
+	 * Poll state of a monitored database
+	 */
+	private static class DbState implements Delayed {
+		private final String m_key;
+		private final String m_server;
+		private final String m_filePath;
+		private final EnumSet<NoteClass> m_noteClasses;
+
+		private NotesTimeDate m_highWaterMark;
+		private NotesTimeDate m_searchSince;
+		private LinkedHashMap<String,ChangeEvent> m_pending = new LinkedHashMap<String,ChangeEvent>();
+		private long m_pendingSinceMillis;
+		private boolean m_dispatching;
+		private boolean m_replaying;
+		private int[] m_pageIds;
+		private NotesTimeDate m_pageUntil;
+		private int m_resetCount;
+		private boolean m_removed;
+		private long m_pollInterval;
+		private volatile long m_nextPollNanos;
+
+		private DbState(String key, String server, String filePath, EnumSet<NoteClass> noteClasses) {
+			m_key = key;
+			m_server = server;
+			m_filePath = filePath;
+			m_noteClasses = noteClasses;
+		}
+
+		/**
+		 * Coalesces a change with the pending change of the same note
+		 *
+		 * @param event new change
+		 */
+		private void merge(ChangeEvent event) {
+			String unid = event.getOID().getUNID();
+			ChangeEvent pendingEvent = m_pending.remove(unid);
+
+			if (pendingEvent==null) {
+				m_pending.put(unid, event);
+			}
+			else if (pendingEvent.getType()==ChangeType.CREATED) {
+				if (event.getType()!=ChangeType.DELETED) {
+					//still a new note for the listeners
+					m_pending.put(unid, event.withType(ChangeType.CREATED));
+				}
+				//created and deleted within the same batch: nothing to report
+			}
+			else if (pendingEvent.getType()==ChangeType.DELETED && event.getType()==ChangeType.CREATED) {
+				m_pending.put(unid, event.withType(ChangeType.MODIFIED));
+			}
+			else {
+				m_pending.put(unid, event);
+			}
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(m_nextPollNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed o) {
+			if (o==this) {
+				return 0;
+			}
+			long diff = getDelay(TimeUnit.NANOSECONDS) - o.getDelay(TimeUnit.NANOSECONDS);
+			return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+		}
+	}
+
+	/**
+	 * Type of change
+	 */
+	public static enum ChangeType {CREATED, MODIFIED, DELETED}
+
+	/**
+	 * Immutable change of a single note
+	 *
+	 * @author Karsten Lehmann
+	 */
+	public static class ChangeEvent {
+		private final ChangeType m_type;
+		private final String m_server;
+		private final String m_filePath;
+		private final int m_noteId;
+		private final NotesOriginatorIdData m_oid;
+		private final EnumSet<NoteClass> m_noteClass;
+		private final NotesTimeDate m_modified;
+
+		private ChangeEvent(ChangeType type, String server, String filePath, ISearchMatch searchMatch) {
+			this(type, server, filePath, searchMatch.getNoteId(), searchMatch.getOIDData(),
+					searchMatch.getNoteClass(), searchMatch.getNoteModified());
+		}
+
+		private ChangeEvent(ChangeType type, String server, String filePath, int noteId, NotesOriginatorIdData oid,
+				EnumSet<NoteClass> noteClass, NotesTimeDate modified) {
+			m_type = type;
+			m_server = server;
+			m_filePath = filePath;
+			m_noteId = noteId;
+			m_oid = oid;
+			m_noteClass = noteClass;
+			m_modified = modified;
+		}
+
+		private ChangeEvent withType(ChangeType type) {
+			return new ChangeEvent(type, m_server, m_filePath, m_noteId, m_oid, m_noteClass, m_modified);
+		}
+
+		public ChangeType getType() {
+			return m_type;
+		}
+
+		public String getServer() {
+			return m_server;
+		}
+
+		public String getFilePath() {
+			return m_filePath;
+		}
+
+		public int getNoteId() {
+			return m_noteId;
+		}
+
+		/**
+		 * Returns the originator id of the note with UNID, sequence number and sequence time
+		 *
+		 * @return originator id
+		 */
+		public NotesOriginatorIdData getOID() {
+			return m_oid;
+		}
+
+		public EnumSet<NoteClass> getNoteClass() {
+			return EnumSet.copyOf(m_noteClass);
+		}
+
+		/**
+		 * Returns the "modified in this file" date of the note
+		 *
+		 * @return modified date
+		 */
+		public NotesTimeDate getModified() {
+			return m_modified==null ? null : new NotesTimeDate(m_modified.getInnards());
+		}
+
+		@Override
+		public String toString() {
+			return "ChangeEvent [type="+m_type+", server="+m_server+", filepath="+m_filePath+", noteid="+m_noteId+
+					", unid="+m_oid.getUNID()+", seq="+m_oid.getSequence()+"]";
+		}
+	}
+
+	/**
+	 * Listener to receive the changes of the monitored databases. Methods are
+	 * called on the dispatch threads of the feed.
+	 *
+	 * @author Karsten Lehmann
+	 */
+	public static abstract class ChangeListener {
+
+		/**
+		 * Implement this method to receive a batch of coalesced changes of a database.
+		 * Throw an exception to get the changes dispatched again.
+		 *
+		 * @param server server of the database
+		 * @param filePath filepath of the database
+		 * @param events changes, one per note
+		 */
+		public abstract void changesDetected(String server, String filePath, List<ChangeEvent> events);
+
+		/**
+		 * Override this method to get notified about errors polling a database or
+		 * dispatching its changes
+		 *
+		 * @param server server of the database
+		 * @param filePath filepath of the database
+		 * @param t error
+		 */
+		public void errorOccurred(String server, String filePath, Throwable t) {
+		}
+	}
+}
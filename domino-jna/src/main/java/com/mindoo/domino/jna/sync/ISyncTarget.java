@@ -6,6 +6,8 @@ import java.util.Map;
 import java.util.logging.Level;
 
 import com.mindoo.domino.jna.IItemTableData;
+import com.mindoo.domino.jna.NoteItemChanges;
+import com.mindoo.domino.jna.NoteItemFingerprint;
 import com.mindoo.domino.jna.NotesCollection;
 import com.mindoo.domino.jna.NotesIDTable;
 import com.mindoo.domino.jna.NotesNote;
@@ -151,6 +153,40 @@ public interface ISyncTarget<CTX> {
 	 */
 	public TargetResult noteChangedMatchingFormula(CTX ctx, NotesOriginatorIdData oid, IItemTableData summaryBufferData, NotesNote note);
 
+	/**
+	 * Override this method to receive item level change sets in
+	 * {@link #noteChangedMatchingFormula(Object, NotesOriginatorIdData, IItemTableData, NotesNote, NoteItemChanges)}.
+	 * Return the fingerprint stored for the note during the last sync, e.g. restored via
+	 * {@link NoteItemFingerprint#fromByteArray(byte[])}. Only used if {@link #getWhichDataToRead()}
+	 * returns {@link DataToRead#NoteWithAllItems} or {@link DataToRead#NoteWithSummaryItems}.
+	 * 
+	 * @param ctx sync context
+	 * @param oid originator id of the changed note
+	 * @return fingerprint or null if unknown (default)
+	 */
+	public default NoteItemFingerprint getPreviousItemFingerprint(CTX ctx, NotesOriginatorIdData oid) {
+		return null;
+	}
+	
+	/**
+	 * Variant of {@link #noteChangedMatchingFormula(Object, NotesOriginatorIdData, IItemTableData, NotesNote)}
+	 * that is called instead of it when {@link #getPreviousItemFingerprint(Object, NotesOriginatorIdData)}
+	 * returned a fingerprint. The default implementation ignores the change set.<br>
+	 * <br>
+	 * Store {@link NoteItemChanges#getFingerprint()} to compute the changes of the next revision.
+	 * 
+	 * @param ctx sync context
+	 * @param oid originator id containing the UNID, sequence number and sequence date ("modified initially") of the note
+	 * @param summaryBufferData always null, since the change set requires the note
+	 * @param note note
+	 * @param changes added, removed and changed items since the previous fingerprint
+	 * @return flag whether the note got added, removed or updated in the target, used for statistics
+	 */
+	public default TargetResult noteChangedMatchingFormula(CTX ctx, NotesOriginatorIdData oid, IItemTableData summaryBufferData,
+			NotesNote note, NoteItemChanges changes) {
+		return noteChangedMatchingFormula(ctx, oid, summaryBufferData, note);
+	}
+
 	/**
 	 * The method is called for every note that changed since the last sync end date and
 	 * that currently does not match the selection formula. Add code here to remove the note's data
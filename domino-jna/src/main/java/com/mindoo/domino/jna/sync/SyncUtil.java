@@ -12,6 +12,8 @@ import java.util.Set;
 import java.util.logging.Level;
 
 import com.mindoo.domino.jna.IItemTableData;
+import com.mindoo.domino.jna.NoteItemChanges;
+import com.mindoo.domino.jna.NoteItemFingerprint;
 import com.mindoo.domino.jna.NotesDatabase;
 import com.mindoo.domino.jna.NotesIDTable;
 import com.mindoo.domino.jna.NotesNote;
@@ -336,7 +338,15 @@ public class SyncUtil {
 							}
 						}
 						
-						TargetResult tResult = target.noteChangedMatchingFormula(ctx, oidData, summaryBufferData, note);
+						TargetResult tResult;
+						NoteItemFingerprint prevFingerprint = note==null ? null : target.getPreviousItemFingerprint(ctx, oidData);
+						if (prevFingerprint!=null) {
+							NoteItemChanges changes = note.getItemChanges(prevFingerprint);
+							tResult = target.noteChangedMatchingFormula(ctx, oidData, summaryBufferData, note, changes);
+						}
+						else {
+							tResult = target.noteChangedMatchingFormula(ctx, oidData, summaryBufferData, note);
+						}
 						if (tResult==TargetResult.Added)
 							addedToTarget[0]++;
 						else if (tResult==TargetResult.Removed)
@@ -35,9 +35,11 @@ import com.sun.jna.ptr.LongByReference;
 public class LZ1CompressOutputStream extends OutputStream implements IAllocatedMemory {
 	private OutputStream m_out;
 	
-	private byte[] m_uncompressedBuffer;
+	private int m_bufferSize;
 	private DisposableMemory m_uncompressedBufferMem;
 	private int m_uncompressedBufferPos;
+	private byte[] m_singleByteBuffer;
+	private int m_singleByteBufferPos;
 	
 	private byte[] m_compressedBuffer;
 	private DisposableMemory m_compressedBufferMem;
@@ -62,9 +64,11 @@ public class LZ1CompressOutputStream extends OutputStream implements IAllocatedM
 	public LZ1CompressOutputStream(OutputStream out, int bufferSize) {
 		m_out = out;
 		
-		//buffer for the uncompressed data
-		m_uncompressedBuffer = new byte[bufferSize];
+		//buffer for the uncompressed data; byte ranges are written directly, without staging them in a byte array
+		m_bufferSize = bufferSize;
 		m_uncompressedBufferMem = new DisposableMemory(bufferSize);
+		//single byte writes are collected on the heap and copied in bulk
+		m_singleByteBuffer = new byte[Math.min(bufferSize, 4096)];
 		
 		//buffer for the LZ1 compressed data
 		m_compressedBuffer = new byte[bufferSize+1];
@@ -136,11 +140,33 @@ public class LZ1CompressOutputStream extends OutputStream implements IAllocatedM
 	
 	@Override
 	public void flush() throws IOException {
+		copySingleBytes();
+		compressBuffer();
+	}
+	
+	/**
+	 * Copies the bytes collected by {@link #write(int)} to the native input buffer
+	 */
+	private void copySingleBytes() {
+		if (m_singleByteBufferPos==0)
+			return;
+		
+		m_uncompressedBufferMem.write(m_uncompressedBufferPos, m_singleByteBuffer, 0, m_singleByteBufferPos);
+		m_uncompressedBufferPos += m_singleByteBufferPos;
+		m_singleByteBufferPos = 0;
+	}
+	
+	/**
+	 * Compresses the content of the native input buffer and writes the result
+	 * to the output stream
+	 * 
+	 * @throws IOException in case of I/O errors
+	 */
+	private void compressBuffer() throws IOException {
 		if (m_uncompressedBufferPos==0)
 			return;
 		
-		m_uncompressedBufferMem.write(0, m_uncompressedBuffer, 0, m_uncompressedBufferPos);
-		m_compressedBufferMem.clear();
+		//no need to clear the output buffer, we only read the produced bytes
 		short result;
 		if (PlatformUtils.is64Bit()) {
 			IntByReference retOutSize = new IntByReference();
@@ -168,13 +194,40 @@ public class LZ1CompressOutputStream extends OutputStream implements IAllocatedM
 		if (isFreed())
 			throw new IllegalStateException("Memory already freed");
 
-		m_uncompressedBuffer[m_uncompressedBufferPos++] = (byte) (b & 0xff);
+		m_singleByteBuffer[m_singleByteBufferPos++] = (byte) (b & 0xff);
 		
-		//check if end of buffer os reached
-		if (m_uncompressedBufferPos==m_uncompressedBuffer.length) {
+		//check if end of buffer is reached
+		if (m_uncompressedBufferPos + m_singleByteBufferPos == m_bufferSize) {
 			//compress buffer data and reset buffer position to 0
 			flush();
 		}
+		else if (m_singleByteBufferPos==m_singleByteBuffer.length) {
+			copySingleBytes();
+		}
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (isFreed())
+			throw new IllegalStateException("Memory already freed");
+		if (off<0 || len<0 || len>b.length-off)
+			throw new IndexOutOfBoundsException();
+		
+		//keep the order of previous single byte writes
+		copySingleBytes();
+		
+		//copy whole ranges into the native buffer instead of writing byte by byte
+		while (len>0) {
+			int count = Math.min(len, m_bufferSize - m_uncompressedBufferPos);
+			m_uncompressedBufferMem.write(m_uncompressedBufferPos, b, off, count);
+			m_uncompressedBufferPos += count;
+			off += count;
+			len -= count;
+			
+			if (m_uncompressedBufferPos==m_bufferSize) {
+				compressBuffer();
+			}
+		}
 	}
 
 }
@@ -329,4 +329,39 @@ public class NotesDateTimeUtils {
 		return InnardsConverter.decodeInnards(innards);
 	}
 
+	/**
+	 * Packs the two innard values of a date/time into a single long, e.g. to store many
+	 * date/time values in a long[] array without allocating {@link NotesTimeDate} objects.
+	 * Innards[0] (time part) is stored in the lower, Innards[1] (date part) in the upper 32 bits.
+	 * 
+	 * @param innards0 Innards[0]
+	 * @param innards1 Innards[1]
+	 * @return packed value
+	 */
+	public static long packInnards(int innards0, int innards1) {
+		return (((long) innards1) << 32) | (innards0 & 0xffffffffL);
+	}
+	
+	/**
+	 * Packs the innard values of a date/time into a single long
+	 * 
+	 * @param innards array with 2 innard values
+	 * @return packed value
+	 */
+	public static long packInnards(int[] innards) {
+		if (innards.length!=2)
+			throw new IllegalArgumentException("Invalid innard size: "+innards.length+", expected 2");
+		return packInnards(innards[0], innards[1]);
+	}
+	
+	/**
+	 * Reverts {@link #packInnards(int, int)}
+	 * 
+	 * @param packedInnards packed value
+	 * @return array with 2 innard values
+	 */
+	public static int[] unpackInnards(long packedInnards) {
+		return new int[] {(int) (packedInnards & 0xffffffffL), (int) (packedInnards >>> 32)};
+	}
+
 }
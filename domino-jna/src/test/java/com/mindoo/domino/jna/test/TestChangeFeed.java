@@ -0,0 +1,270 @@
+package com.mindoo.domino.jna.test;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesDatabase.Encryption;
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.constants.AclLevel;
+import com.mindoo.domino.jna.sync.ChangeFeed;
+import com.mindoo.domino.jna.sync.ChangeFeed.ChangeEvent;
+import com.mindoo.domino.jna.sync.ChangeFeed.ChangeListener;
+import com.mindoo.domino.jna.sync.ChangeFeed.ChangeType;
+import com.mindoo.domino.jna.utils.IDUtils;
+
+import lotus.domino.Session;
+
+/**
+ * Tests cases for the batching of {@link ChangeFeed}
+ *
+ * @author Karsten Lehmann
+ */
+public class TestChangeFeed extends BaseJNATestClass {
+
+	/**
+	 * Listener collecting the dispatched batches
+	 */
+	private static class BatchCollector extends ChangeListener {
+		private final List<List<ChangeEvent>> m_batches = Collections.synchronizedList(new ArrayList<List<ChangeEvent>>());
+		private volatile Throwable m_error;
+
+		@Override
+		public void changesDetected(String server, String filePath, List<ChangeEvent> events) {
+			m_batches.add(events);
+		}
+
+		@Override
+		public void errorOccurred(String server, String filePath, Throwable t) {
+			m_error = t;
+		}
+
+		private Set<String> getUNIDs(ChangeType type) {
+			Set<String> unids = new HashSet<String>();
+			synchronized (m_batches) {
+				for (List<ChangeEvent> currBatch : m_batches) {
+					for (ChangeEvent currEvent : currBatch) {
+						if (currEvent.getType()==type) {
+							unids.add(currEvent.getOID().getUNID());
+						}
+					}
+				}
+			}
+			return unids;
+		}
+
+		private void waitFor(ChangeType type, Set<String> expectedUnids) throws InterruptedException {
+			long timeout = System.currentTimeMillis() + 60000;
+			while (!getUNIDs(type).containsAll(expectedUnids)) {
+				if (m_error!=null) {
+					throw new AssertionError("Error polling the database", m_error);
+				}
+				if (System.currentTimeMillis() > timeout) {
+					Assert.fail("Timeout waiting for "+expectedUnids.size()+" changes of type "+type+", received "+getUNIDs(type).size());
+				}
+				Thread.sleep(50);
+			}
+		}
+
+		private void assertBatchSize(int maxBatchSize) {
+			synchronized (m_batches) {
+				Assert.assertTrue("Changes have been dispatched in more than one batch", m_batches.size() > 1);
+				for (List<ChangeEvent> currBatch : m_batches) {
+					Assert.assertTrue("Batch size "+currBatch.size()+" is within the limit", currBatch.size() <= maxBatchSize);
+				}
+			}
+		}
+	}
+
+	private static Set<String> createNotes(NotesDatabase db, int count) {
+		return createNotes(db, count, null);
+	}
+
+	private static Set<String> createNotes(NotesDatabase db, int count, List<Integer> retNoteIds) {
+		Set<String> unids = new HashSet<String>();
+		for (int i=0; i<count; i++) {
+			NotesNote note = db.createNote();
+			note.replaceItemValue("Form", "Test");
+			note.replaceItemValue("Index", i);
+			note.update();
+			unids.add(note.getUNID());
+			if (retNoteIds!=null) {
+				retNoteIds.add(note.getNoteId());
+			}
+			note.recycle();
+		}
+		return unids;
+	}
+
+	private static void waitForFirstPoll(ChangeFeed feed, String server, String filePath) throws InterruptedException {
+		long timeout = System.currentTimeMillis() + 60000;
+		while (feed.getHighWaterMark(server, filePath)==null) {
+			Assert.assertTrue("First poll done", System.currentTimeMillis() < timeout);
+			Thread.sleep(10);
+		}
+		Thread.sleep(50);
+	}
+
+	/**
+	 * Replays the existing notes of a database in several searches that stop at the batch size
+	 */
+	@Test
+	public void testChangeFeed_replayInBatches() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+				String server = "";
+				String filePath = "test/tmpdb_changefeed_"+timestamp+".nsf";
+
+				NotesDatabase.createDatabase(server, filePath, Encryption.None, "Temp db "+timestamp,
+						AclLevel.DESIGNER, IDUtils.getIdUsername(), false);
+				NotesDatabase db = new NotesDatabase(server, filePath, "");
+				try {
+					Set<String> unids = createNotes(db, 250);
+
+					BatchCollector collector = new BatchCollector();
+					ChangeFeed feed = new ChangeFeed(null)
+							.setReplayFromStart(true)
+							.setMaxBatchSize(40)
+							.setMinPollInterval(10)
+							.setCoalesceDelay(10)
+							.addListener(collector)
+							.addDatabase(server, filePath)
+							.start();
+					try {
+						collector.waitFor(ChangeType.CREATED, unids);
+					}
+					finally {
+						feed.close();
+					}
+
+					collector.assertBatchSize(40);
+					Assert.assertTrue("Replayed notes are reported as created", collector.getUNIDs(ChangeType.MODIFIED).isEmpty());
+					Assert.assertNotNull(feed.getHighWaterMark(server, filePath));
+				}
+				finally {
+					db.recycle();
+					NotesDatabase.deleteDatabase(server, filePath);
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Checks that a burst of changes after the first poll is read in batches
+	 */
+	@Test
+	public void testChangeFeed_burstInBatches() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+				String server = "";
+				String filePath = "test/tmpdb_changefeed_burst_"+timestamp+".nsf";
+
+				NotesDatabase.createDatabase(server, filePath, Encryption.None, "Temp db "+timestamp,
+						AclLevel.DESIGNER, IDUtils.getIdUsername(), false);
+				NotesDatabase db = new NotesDatabase(server, filePath, "");
+				try {
+					BatchCollector collector = new BatchCollector();
+					ChangeFeed feed = new ChangeFeed(null)
+							.setMaxBatchSize(25)
+							.setMinPollInterval(10)
+							.setMaxPollInterval(100)
+							.setCoalesceDelay(10)
+							.addListener(collector)
+							.addDatabase(server, filePath)
+							.start();
+					try {
+						waitForFirstPoll(feed, server, filePath);
+
+						Set<String> unids = createNotes(db, 120);
+						collector.waitFor(ChangeType.CREATED, unids);
+					}
+					finally {
+						feed.close();
+					}
+
+					collector.assertBatchSize(25);
+				}
+				finally {
+					db.recycle();
+					NotesDatabase.deleteDatabase(server, filePath);
+				}
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Modifies notes with high note ids before notes with low note ids, so that the search
+	 * order (note ids) differs from the order of the modified dates
+	 */
+	@Test
+	public void testChangeFeed_modifiedOutOfIdOrder() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+				String server = "";
+				String filePath = "test/tmpdb_changefeed_order_"+timestamp+".nsf";
+
+				NotesDatabase.createDatabase(server, filePath, Encryption.None, "Temp db "+timestamp,
+						AclLevel.DESIGNER, IDUtils.getIdUsername(), false);
+				NotesDatabase db = new NotesDatabase(server, filePath, "");
+				try {
+					List<Integer> noteIds = new ArrayList<Integer>();
+					Set<String> unids = createNotes(db, 30, noteIds);
+
+					BatchCollector collector = new BatchCollector();
+					ChangeFeed feed = new ChangeFeed(null)
+							.setMaxBatchSize(4)
+							//the poll after the first one runs after all changes have been made
+							.setMinPollInterval(2000)
+							.setMaxPollInterval(4000)
+							.setCoalesceDelay(10)
+							.setMaxCoalesceDelay(60000)
+							.addListener(collector)
+							.addDatabase(server, filePath)
+							.start();
+					try {
+						waitForFirstPoll(feed, server, filePath);
+
+						//newest notes first, the oldest note gets the latest modified date
+						for (int i=noteIds.size()-1; i>=0; i--) {
+							NotesNote note = db.openNoteById(noteIds.get(i));
+							note.replaceItemValue("Changed", i);
+							note.update();
+							note.recycle();
+							Thread.sleep(20);
+						}
+						collector.waitFor(ChangeType.MODIFIED, unids);
+					}
+					finally {
+						feed.close();
+					}
+
+					collector.assertBatchSize(4);
+				}
+				finally {
+					db.recycle();
+					NotesDatabase.deleteDatabase(server, filePath);
+				}
+				return null;
+			}
+		});
+	}
+}
@@ -0,0 +1,147 @@
+package com.mindoo.domino.jna.test;
+
+import java.util.LinkedHashMap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.formula.CompiledFormulaCache;
+import com.mindoo.domino.jna.formula.CompiledFormulaCache.CacheStats;
+
+/**
+ * Tests cases for the LRU eviction and the cache keys of {@link CompiledFormulaCache}
+ *
+ * @author Karsten Lehmann
+ */
+public class TestCompiledFormulaCache {
+	private long m_oldMaxSize;
+
+	@Before
+	public void setUp() {
+		m_oldMaxSize = CompiledFormulaCache.getMaxSizeInBytes();
+		CompiledFormulaCache.setEnabled(true);
+		CompiledFormulaCache.clear();
+	}
+
+	@After
+	public void tearDown() {
+		CompiledFormulaCache.setMaxSizeInBytes(m_oldMaxSize);
+		CompiledFormulaCache.clear();
+	}
+
+	private static LinkedHashMap<String,String> columns(String... namesAndFormulas) {
+		LinkedHashMap<String,String> columns = new LinkedHashMap<String,String>();
+		for (int i=0; i<namesAndFormulas.length; i+=2) {
+			columns.put(namesAndFormulas[i], namesAndFormulas[i+1]);
+		}
+		return columns;
+	}
+
+	@Test
+	public void testCompiledFormulaCache_eviction() {
+		CompiledFormulaCache.setMaxSizeInBytes(100);
+
+		byte[] data1 = new byte[40];
+		byte[] data2 = new byte[40];
+		byte[] data3 = new byte[40];
+		CompiledFormulaCache.put("f1", null, true, data1);
+		CompiledFormulaCache.put("f2", null, true, data2);
+		Assert.assertEquals(80, CompiledFormulaCache.getStats().getSizeInBytes());
+
+		//touch f1 so that f2 becomes the least recently used entry
+		Assert.assertSame(data1, CompiledFormulaCache.get("f1", null, true));
+		CompiledFormulaCache.put("f3", null, true, data3);
+
+		CacheStats stats = CompiledFormulaCache.getStats();
+		Assert.assertEquals(1, stats.getEvictions());
+		Assert.assertEquals(2, stats.getEntryCount());
+		Assert.assertEquals(80, stats.getSizeInBytes());
+		Assert.assertNull("Least recently used entry has been evicted", CompiledFormulaCache.get("f2", null, true));
+		Assert.assertSame(data1, CompiledFormulaCache.get("f1", null, true));
+		Assert.assertSame(data3, CompiledFormulaCache.get("f3", null, true));
+
+		//replacing an entry updates the size instead of adding to it
+		CompiledFormulaCache.put("f3", null, true, new byte[10]);
+		Assert.assertEquals(50, CompiledFormulaCache.getStats().getSizeInBytes());
+
+		//entries larger than the whole cache are not stored and do not evict others
+		CompiledFormulaCache.put("big", null, true, new byte[101]);
+		Assert.assertNull(CompiledFormulaCache.get("big", null, true));
+		Assert.assertEquals(2, CompiledFormulaCache.getStats().getEntryCount());
+
+		//shrinking the cache evicts immediately
+		CompiledFormulaCache.setMaxSizeInBytes(20);
+		stats = CompiledFormulaCache.getStats();
+		Assert.assertEquals(1, stats.getEntryCount());
+		Assert.assertEquals(10, stats.getSizeInBytes());
+		Assert.assertNotNull("Most recently used entry is kept", CompiledFormulaCache.get("f3", null, true));
+
+		CompiledFormulaCache.setMaxSizeInBytes(0);
+		Assert.assertEquals(0, CompiledFormulaCache.getStats().getEntryCount());
+		Assert.assertEquals(0, CompiledFormulaCache.getStats().getSizeInBytes());
+	}
+
+	@Test
+	public void testCompiledFormulaCache_keys() {
+		byte[] data = new byte[] {1};
+		CompiledFormulaCache.put("Aa", null, true, data);
+
+		Assert.assertEquals("Aa".hashCode(), "BB".hashCode());
+		Assert.assertNull("Formulas with the same hash code are different keys", CompiledFormulaCache.get("BB", null, true));
+		Assert.assertNull("Search and compute formulas are different keys", CompiledFormulaCache.get("Aa", null, false));
+		Assert.assertNull("Column formulas are part of the key", CompiledFormulaCache.get("Aa", columns("a", "b"), true));
+		Assert.assertNull("Empty and null formula are different keys", CompiledFormulaCache.get("", null, true));
+		Assert.assertSame(data, CompiledFormulaCache.get("Aa", null, true));
+
+		byte[] dataColumns1 = new byte[] {2};
+		byte[] dataColumns2 = new byte[] {3};
+		CompiledFormulaCache.put("Form=\"Person\"", columns("a", "bc"), true, dataColumns1);
+		CompiledFormulaCache.put("Form=\"Person\"", columns("ab", "c"), true, dataColumns2);
+		Assert.assertSame("Names and formulas are not concatenated", dataColumns1,
+				CompiledFormulaCache.get("Form=\"Person\"", columns("a", "bc"), true));
+		Assert.assertSame(dataColumns2, CompiledFormulaCache.get("Form=\"Person\"", columns("ab", "c"), true));
+		Assert.assertNull(CompiledFormulaCache.get("Form=\"Person\"", columns("x", "1", "y", "2"), true));
+		CompiledFormulaCache.put("Form=\"Person\"", columns("x", "1", "y", "2"), true, dataColumns1);
+		Assert.assertNull("Column order is part of the key",
+				CompiledFormulaCache.get("Form=\"Person\"", columns("y", "2", "x", "1"), true));
+		Assert.assertNull("Empty column map differs from null", CompiledFormulaCache.get("Form=\"Person\"", columns(), true));
+
+		byte[] dataNull = new byte[] {4};
+		CompiledFormulaCache.put(null, null, false, dataNull);
+		Assert.assertSame(dataNull, CompiledFormulaCache.get(null, null, false));
+
+		CacheStats stats = CompiledFormulaCache.getStats();
+		Assert.assertEquals(5, stats.getEntryCount());
+		Assert.assertEquals(4, stats.getHits());
+		Assert.assertEquals(7, stats.getMisses());
+		Assert.assertEquals(4.0 / 11, stats.getHitRate(), 0.0001);
+	}
+
+	@Test
+	public void testCompiledFormulaCache_disable() {
+		CompiledFormulaCache.put("f1", null, true, new byte[] {1});
+		CompiledFormulaCache.put("f2", null, true, new byte[0]);
+		Assert.assertEquals("Empty compiled formulas are ignored", 1, CompiledFormulaCache.getStats().getEntryCount());
+
+		CompiledFormulaCache.setEnabled(false);
+		try {
+			Assert.assertEquals("Disabling clears the cache", 0, CompiledFormulaCache.getStats().getEntryCount());
+			CompiledFormulaCache.put("f1", null, true, new byte[] {1});
+			Assert.assertNull(CompiledFormulaCache.get("f1", null, true));
+			Assert.assertEquals(0, CompiledFormulaCache.getStats().getMisses());
+		}
+		finally {
+			CompiledFormulaCache.setEnabled(true);
+		}
+
+		try {
+			CompiledFormulaCache.setMaxSizeInBytes(-1);
+			Assert.fail("Negative max size is rejected");
+		}
+		catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package com.mindoo.domino.jna.test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.json.JsonReader;
+import com.mindoo.domino.jna.json.JsonReader.Token;
+import com.mindoo.domino.jna.json.JsonWriter;
+
+/**
+ * Tests cases for the streaming {@link JsonReader}
+ *
+ * @author Karsten Lehmann
+ */
+public class TestJsonReader {
+
+	private static String readString(String json) throws IOException {
+		JsonReader reader = new JsonReader(new StringReader(json));
+		Assert.assertEquals(Token.STRING, reader.next());
+		String value = reader.getString();
+		Assert.assertEquals(Token.END_DOCUMENT, reader.next());
+		return value;
+	}
+
+	private static double readNumber(String json) throws IOException {
+		JsonReader reader = new JsonReader(new StringReader(json));
+		Assert.assertEquals(Token.NUMBER, reader.next());
+		double value = reader.getDouble();
+		Assert.assertEquals(Token.END_DOCUMENT, reader.next());
+		return value;
+	}
+
+	private static void assertMalformed(String json) {
+		JsonReader reader = new JsonReader(new StringReader(json));
+		try {
+			Token token;
+			while ((token = reader.next()) != Token.END_DOCUMENT) {
+				reader.skipValue(token);
+			}
+			Assert.fail("Malformed JSON not detected: "+json);
+		}
+		catch (IOException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void testJsonReader_escapes() throws IOException {
+		Assert.assertEquals("abc", readString("\"abc\""));
+		Assert.assertEquals("", readString("\"\""));
+		Assert.assertEquals("a\"b\\c/d", readString("\"a\\\"b\\\\c\\/d\""));
+		Assert.assertEquals("\b\f\n\r\t", readString("\"\\b\\f\\n\\r\\t\""));
+		Assert.assertEquals("\u00e4\u0000", readString("\"\\u00E4\\u0000\""));
+
+		//strings longer than the read buffer
+		StringBuilder longValue = new StringBuilder();
+		for (int i=0; i<3000; i++) {
+			longValue.append("ab\"c");
+		}
+		StringWriter out = new StringWriter();
+		new JsonWriter(out).value(longValue);
+		Assert.assertEquals(longValue.toString(), readString(out.toString()));
+	}
+
+	@Test
+	public void testJsonReader_surrogates() throws IOException {
+		String emoji = new String(Character.toChars(0x1F600));
+		Assert.assertEquals("Escaped surrogate pair", emoji, readString("\"\\ud83d\\ude00\""));
+		Assert.assertEquals("Unescaped surrogate pair", emoji, readString("\""+emoji+"\""));
+		Assert.assertEquals("Mixed", "x"+emoji+"y", readString("\"x\\uD83D"+emoji.charAt(1)+"y\""));
+	}
+
+	@Test
+	public void testJsonReader_numbers() throws IOException {
+		Assert.assertEquals(0, readNumber("0"), 0);
+		Assert.assertEquals(-0.0, readNumber("-0"), 0);
+		Assert.assertEquals(42, readNumber("42"), 0);
+		Assert.assertEquals(-1.5, readNumber("-1.5"), 0);
+		Assert.assertEquals(1.5e10, readNumber("1.5e10"), 0);
+		Assert.assertEquals(2e-3, readNumber("2E-3"), 0);
+		Assert.assertEquals(1e5, readNumber("1e+5"), 0);
+		Assert.assertEquals(9007199254740993.0, readNumber("9007199254740993"), 0);
+
+		JsonReader reader = new JsonReader(new StringReader("[1,-2.5e1]"));
+		Assert.assertEquals(Token.BEGIN_ARRAY, reader.next());
+		Assert.assertEquals(Token.NUMBER, reader.next());
+		Assert.assertEquals(1, reader.getDouble(), 0);
+		Assert.assertEquals(Token.NUMBER, reader.next());
+		Assert.assertEquals(-25, reader.getDouble(), 0);
+		Assert.assertEquals(Token.END_ARRAY, reader.next());
+		Assert.assertEquals(Token.END_DOCUMENT, reader.next());
+	}
+
+	@Test
+	public void testJsonReader_structure() throws IOException {
+		JsonReader reader = new JsonReader(new StringReader("{\"a\": [true, false, null], \"b\": {}}\n{\"c\": \"d\"}"));
+		Assert.assertEquals(Token.BEGIN_OBJECT, reader.next());
+		Assert.assertEquals(Token.NAME, reader.next());
+		Assert.assertEquals("a", reader.getString());
+		Assert.assertEquals(Token.BEGIN_ARRAY, reader.next());
+		Assert.assertEquals(2, reader.getDepth());
+		Assert.assertEquals(Token.BOOLEAN, reader.next());
+		Assert.assertTrue(reader.getBoolean());
+		Assert.assertEquals(Token.BOOLEAN, reader.next());
+		Assert.assertFalse(reader.getBoolean());
+		Assert.assertEquals(Token.NULL, reader.next());
+		Assert.assertEquals(Token.END_ARRAY, reader.next());
+		Assert.assertEquals(Token.NAME, reader.next());
+		Assert.assertEquals("b", reader.getString());
+		Token token = reader.next();
+		Assert.assertEquals(Token.BEGIN_OBJECT, token);
+		reader.skipValue(token);
+		Assert.assertEquals(Token.END_OBJECT, reader.next());
+
+		//newline delimited JSON
+		Assert.assertEquals(Token.BEGIN_OBJECT, reader.next());
+		Assert.assertEquals(2, reader.getLineNumber());
+		Assert.assertEquals(Token.NAME, reader.next());
+		Assert.assertEquals(Token.STRING, reader.next());
+		Assert.assertEquals("d", reader.getString());
+		Assert.assertEquals(Token.END_OBJECT, reader.next());
+		Assert.assertEquals(Token.END_DOCUMENT, reader.next());
+	}
+
+	@Test
+	public void testJsonReader_malformed() {
+		assertMalformed("\"unterminated");
+		assertMalformed("\"\\x\"");
+		assertMalformed("\"\\u12G4\"");
+		assertMalformed("\"\\u12");
+		assertMalformed("[1,]");
+		assertMalformed("[1 2]");
+		assertMalformed("{\"a\" 1}");
+		assertMalformed("{\"a\":1,}");
+		assertMalformed("{a:1}");
+		assertMalformed("{\"a\":1");
+		assertMalformed("[");
+		assertMalformed("tru");
+		assertMalformed("nul");
+		assertMalformed("x");
+		assertMalformed("-");
+		assertMalformed("01");
+		assertMalformed("1.");
+		assertMalformed(".5");
+		assertMalformed("1e");
+		assertMalformed("1.2.3");
+		assertMalformed("1-2");
+	}
+}
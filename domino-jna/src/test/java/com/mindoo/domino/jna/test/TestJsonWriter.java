@@ -0,0 +1,91 @@
+package com.mindoo.domino.jna.test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.json.JsonWriter;
+
+/**
+ * Tests cases for the string escaping and number formatting of {@link JsonWriter}
+ *
+ * @author Karsten Lehmann
+ */
+public class TestJsonWriter {
+
+	private static String writeValue(String value) throws IOException {
+		StringWriter out = new StringWriter();
+		new JsonWriter(out).value(value);
+		return out.toString();
+	}
+
+	private static String writeValue(double value) throws IOException {
+		StringWriter out = new StringWriter();
+		new JsonWriter(out).value(value);
+		return out.toString();
+	}
+
+	@Test
+	public void testJsonWriter_escaping() throws IOException {
+		Assert.assertEquals("\"abc\"", writeValue("abc"));
+		Assert.assertEquals("\"\"", writeValue(""));
+		Assert.assertEquals("\"a\\\"b\\\\c\"", writeValue("a\"b\\c"));
+		Assert.assertEquals("\"\\n\\r\\t\\b\\f\"", writeValue("\n\r\t\b\f"));
+		Assert.assertEquals("\"\\u0000\\u001f\"", writeValue("\u0000\u001f"));
+		Assert.assertEquals("Line and paragraph separators are escaped for JavaScript", "\"\\u2028\\u2029\"",
+				writeValue("\u2028\u2029"));
+		Assert.assertEquals("Non ASCII characters are written as is", "\"äöü 😀\"",
+				writeValue("äöü 😀"));
+		Assert.assertEquals("/ is not escaped", "\"a/b\"", writeValue("a/b"));
+		Assert.assertEquals("null", writeValue((String) null));
+	}
+
+	@Test
+	public void testJsonWriter_numbers() throws IOException {
+		Assert.assertEquals("Integral values are written without fraction", "42", writeValue(42.0));
+		Assert.assertEquals("-7", writeValue(-7.0));
+		Assert.assertEquals("0", writeValue(0.0));
+		Assert.assertEquals("0", writeValue(-0.0));
+		Assert.assertEquals("1.5", writeValue(1.5));
+		Assert.assertEquals("-0.001", writeValue(-0.001));
+		Assert.assertEquals("999999999999999", writeValue(999999999999999.0));
+		Assert.assertEquals("Large values use the exponent format", "1.0E15", writeValue(1e15));
+		Assert.assertEquals("1.0E-10", writeValue(1e-10));
+		Assert.assertEquals("Non finite values are written as null", "null", writeValue(Double.NaN));
+		Assert.assertEquals("null", writeValue(Double.POSITIVE_INFINITY));
+		Assert.assertEquals("null", writeValue(Double.NEGATIVE_INFINITY));
+
+		StringWriter out = new StringWriter();
+		new JsonWriter(out).value(Long.MIN_VALUE);
+		Assert.assertEquals(Long.toString(Long.MIN_VALUE), out.toString());
+	}
+
+	@Test
+	public void testJsonWriter_structure() throws IOException {
+		StringWriter out = new StringWriter();
+		JsonWriter writer = new JsonWriter(out);
+		writer.beginObject()
+		.name("a\"b").value(1)
+		.name("list").beginArray().value("x").value(true).nullValue().beginObject().endObject().endArray()
+		.name("empty").beginArray().endArray()
+		.endObject();
+		Assert.assertEquals("{\"a\\\"b\":1,\"list\":[\"x\",true,null,{}],\"empty\":[]}", out.toString());
+
+		try {
+			new JsonWriter(new StringWriter()).beginObject().value("missing name");
+			Assert.fail("Values inside objects require a name");
+		}
+		catch (IllegalStateException e) {
+			//expected
+		}
+		try {
+			new JsonWriter(new StringWriter()).beginArray().endObject();
+			Assert.fail("Mismatched end is rejected");
+		}
+		catch (IllegalStateException e) {
+			//expected
+		}
+	}
+}
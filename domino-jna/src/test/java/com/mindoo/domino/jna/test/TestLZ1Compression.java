@@ -82,5 +82,51 @@ public class TestLZ1Compression extends BaseJNATestClass {
 			}
 		});
 	}
+
+	@Test
+	public void testBulkWritesMatchSingleByteWrites() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				byte[] data = new byte[250000];
+				for (int i=0; i<data.length; i++) {
+					data[i] = (byte) ((i / 7) % 31);
+				}
+				
+				//use a buffer size that does not divide the data size to get a partial last block
+				ByteArrayOutputStream bulkOut = new ByteArrayOutputStream();
+				LZ1CompressOutputStream lz1BulkOut = new LZ1CompressOutputStream(bulkOut, 30000);
+				try {
+					//write in uneven slices that cross the block boundaries
+					int offset = 0;
+					while (offset < data.length) {
+						int len = Math.min(12345, data.length - offset);
+						lz1BulkOut.write(data, offset, len);
+						offset += len;
+					}
+				}
+				finally {
+					lz1BulkOut.close();
+				}
+				
+				ByteArrayOutputStream singleOut = new ByteArrayOutputStream();
+				LZ1CompressOutputStream lz1SingleOut = new LZ1CompressOutputStream(singleOut, 30000);
+				try {
+					for (int i=0; i<data.length; i++) {
+						lz1SingleOut.write(data[i]);
+					}
+				}
+				finally {
+					lz1SingleOut.close();
+				}
+				
+				Assert.assertArrayEquals("Bulk writes produce the same compressed data as single byte writes",
+						singleOut.toByteArray(), bulkOut.toByteArray());
+				
+				return null;
+			}
+		});
+	}
 	
 }
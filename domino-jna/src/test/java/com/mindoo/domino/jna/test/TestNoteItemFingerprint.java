@@ -0,0 +1,140 @@
+package com.mindoo.domino.jna.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.NoteItemChanges;
+import com.mindoo.domino.jna.NoteItemFingerprint;
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesItem;
+import com.mindoo.domino.jna.NotesNote;
+
+import lotus.domino.Session;
+
+/**
+ * Tests cases for {@link NoteItemFingerprint} serialization and item change detection
+ *
+ * @author Karsten Lehmann
+ */
+public class TestNoteItemFingerprint extends BaseJNATestClass {
+
+	private static byte[] createFingerprintData(int version, int noteSeq, int itemSeq) throws IOException {
+		ByteArrayOutputStream bOut = new ByteArrayOutputStream();
+		DataOutputStream dataOut = new DataOutputStream(bOut);
+		dataOut.writeByte(version);
+		if (version>=2) {
+			dataOut.writeInt(noteSeq);
+		}
+		dataOut.writeInt(2);
+
+		dataOut.writeUTF("Firstname");
+		dataOut.writeShort(NotesItem.TYPE_TEXT);
+		if (version>=2) {
+			dataOut.writeShort(itemSeq);
+		}
+		else {
+			dataOut.writeByte(itemSeq);
+		}
+		dataOut.writeInt(5);
+		dataOut.writeInt(1);
+		dataOut.writeLong(0x0123456789abcdefL);
+
+		dataOut.writeUTF("Lastname");
+		dataOut.writeShort(NotesItem.TYPE_TEXT);
+		if (version>=2) {
+			dataOut.writeShort(1);
+		}
+		else {
+			dataOut.writeByte(1);
+		}
+		dataOut.writeInt(6);
+		dataOut.writeInt(2);
+		dataOut.writeLong(-1L);
+		dataOut.flush();
+		return bOut.toByteArray();
+	}
+
+	@Test
+	public void testFingerprint_serialization() throws IOException {
+		byte[] data = createFingerprintData(2, 1000, 300);
+		NoteItemFingerprint fingerprint = NoteItemFingerprint.fromByteArray(data);
+
+		Assert.assertEquals(Arrays.asList("Firstname", "Lastname"), Arrays.asList(fingerprint.getItemNames().toArray()));
+		Assert.assertEquals(1000, fingerprint.getNoteSeq());
+		Assert.assertEquals("Sequence numbers above 255 are kept", 300, fingerprint.getItemSeq("firstname"));
+		Assert.assertEquals(NotesItem.TYPE_TEXT, fingerprint.getItemType("Lastname"));
+		Assert.assertEquals(0x0123456789abcdefL, fingerprint.getItemHash("FIRSTNAME"));
+		Assert.assertEquals(-1L, fingerprint.getItemHash("Lastname"));
+		Assert.assertEquals(-1, fingerprint.getItemSeq("Missing"));
+		Assert.assertTrue("Serialization round trip", Arrays.equals(data, fingerprint.toByteArray()));
+
+		NoteItemFingerprint restored = NoteItemFingerprint.fromByteArray(fingerprint.toByteArray());
+		Assert.assertFalse("Identical fingerprints have no changes", restored.diff(fingerprint).hasChanges());
+
+		//data of the first format version has no note sequence number
+		NoteItemFingerprint fingerprintV1 = NoteItemFingerprint.fromByteArray(createFingerprintData(1, 0, 200));
+		Assert.assertEquals(-1, fingerprintV1.getNoteSeq());
+		Assert.assertEquals(200, fingerprintV1.getItemSeq("Firstname"));
+		Assert.assertFalse(fingerprintV1.diff(fingerprint).hasChanges());
+
+		try {
+			NoteItemFingerprint.fromByteArray(new byte[] {99});
+			Assert.fail("Unknown format version is rejected");
+		}
+		catch (IllegalArgumentException e) {
+			//expected
+		}
+		try {
+			NoteItemFingerprint.fromByteArray(Arrays.copyOf(data, data.length-3));
+			Assert.fail("Truncated data is rejected");
+		}
+		catch (IllegalArgumentException e) {
+			//expected
+		}
+	}
+
+	@Test
+	public void testFingerprint_diff() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase db = getFakeNamesDb();
+				NotesNote note = db.createNote();
+				note.replaceItemValue("Unchanged", "abc");
+				note.replaceItemValue("SameLength", "abc");
+				note.replaceItemValue("OtherLength", "abc");
+				note.replaceItemValue("Removed", 1);
+
+				NoteItemFingerprint before = NoteItemFingerprint.fromByteArray(note.getItemFingerprint().toByteArray());
+
+				note.replaceItemValue("SameLength", "xyz");
+				note.replaceItemValue("OtherLength", "abcdef");
+				note.removeItem("Removed");
+				note.replaceItemValue("Added", 2);
+
+				//fingerprint without previous data hashes all values
+				NoteItemChanges changes = note.getItemFingerprint().diff(before);
+				Assert.assertEquals(Arrays.asList("Added"), Arrays.asList(changes.getAddedItems().toArray()));
+				Assert.assertEquals(Arrays.asList("Removed"), Arrays.asList(changes.getRemovedItems().toArray()));
+				Assert.assertEquals(Arrays.asList("OtherLength", "SameLength"), Arrays.asList(changes.getChangedItems().toArray()));
+
+				NoteItemChanges changes2 = note.getItemChanges(before);
+				Assert.assertTrue(changes2.getAddedItems().contains("Added"));
+				Assert.assertTrue(changes2.getRemovedItems().contains("Removed"));
+				Assert.assertTrue(changes2.getChangedItems().contains("OtherLength"));
+				Assert.assertFalse(changes2.getChangedItems().contains("Unchanged"));
+
+				Assert.assertFalse("No changes against the own fingerprint",
+						note.getItemChanges(changes2.getFingerprint()).hasChanges());
+				note.recycle();
+				return null;
+			}
+		});
+	}
+}
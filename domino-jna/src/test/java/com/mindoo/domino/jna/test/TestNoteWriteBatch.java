@@ -0,0 +1,140 @@
+package com.mindoo.domino.jna.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.NoteWriteBatch;
+import com.mindoo.domino.jna.NotesDatabase;
+import com.mindoo.domino.jna.NotesNote;
+import com.mindoo.domino.jna.errors.NotesError;
+
+import lotus.domino.Session;
+
+/**
+ * Tests cases for {@link NoteWriteBatch}
+ *
+ * @author Karsten Lehmann
+ */
+public class TestNoteWriteBatch extends BaseJNATestClass {
+
+	/**
+	 * Collects more data than fits into the initial 4096 byte buffer, applies it and
+	 * reuses the grown batch for a second note
+	 */
+	@Test
+	public void testNoteWriteBatch_bufferGrowthAndReuse() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase db = getFakeNamesDb();
+
+				StringBuilder longText = new StringBuilder();
+				for (int i=0; i<1000; i++) {
+					longText.append("0123456789");
+				}
+				List<String> textList = new ArrayList<String>();
+				for (int i=0; i<500; i++) {
+					textList.add("Value "+i+" äöü");
+				}
+
+				NoteWriteBatch batch = new NoteWriteBatch();
+				batch.replaceItemValue("LongText", longText.toString())
+				.replaceItemValue("TextList", textList)
+				.replaceItemValue("Number", 42)
+				.replaceItemValue("NumberList", Arrays.asList(1, 2.5, 3));
+
+				Assert.assertEquals("All writes are collected", 4, batch.size());
+				Assert.assertTrue("Buffer has grown beyond its initial size", batch.getEncodedSize() > 4096);
+
+				NotesNote note1 = db.createNote();
+				note1.replaceItemValue("TextList", "old value");
+				note1.appendItemValue("TextList", "second old value");
+				batch.applyTo(note1);
+
+				Assert.assertEquals(longText.toString(), note1.getItemValueString("LongText"));
+				Assert.assertEquals("Replace removes all existing items with the same name", textList,
+						note1.getItemValueStringList("TextList"));
+				Assert.assertEquals(42, note1.getItemValueDouble("Number"), 0);
+				Assert.assertEquals(Arrays.asList((Object) 1.0, 2.5, 3.0), note1.getItemValue("NumberList"));
+				note1.recycle();
+
+				batch.clear();
+				Assert.assertEquals(0, batch.size());
+				Assert.assertEquals(0, batch.getEncodedSize());
+
+				NotesNote note2 = db.createNote();
+				note2.replaceItemValue("Obsolete", "abc");
+				batch.replaceItemValue("Form", "Person").removeItem("Obsolete");
+				batch.applyTo(note2);
+
+				Assert.assertEquals("Person", note2.getItemValueString("Form"));
+				Assert.assertFalse("Item has been removed", note2.hasItem("Obsolete"));
+				Assert.assertFalse("Writes of the previous note are not applied again", note2.hasItem("LongText"));
+				note2.recycle();
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Checks that errors of the collected writes are reported to the caller
+	 */
+	@Test
+	public void testNoteWriteBatch_errorPropagation() {
+		runWithSession(new IDominoCallable<Object>() {
+
+			@Override
+			public Object call(Session session) throws Exception {
+				NotesDatabase db = getFakeNamesDb();
+				NoteWriteBatch batch = new NoteWriteBatch();
+
+				try {
+					batch.replaceItemValue("", "abc");
+					Assert.fail("Empty item names are rejected");
+				}
+				catch (IllegalArgumentException e) {
+					//expected
+				}
+				try {
+					batch.appendItemValue("Field", null);
+					Assert.fail("Null values cannot be appended");
+				}
+				catch (IllegalArgumentException e) {
+					//expected
+				}
+				Assert.assertEquals("Rejected writes are not collected", 0, batch.size());
+
+				//unsupported value types are rejected before anything is written
+				batch.replaceItemValue("Before", "abc");
+				try {
+					batch.replaceItemValue("Invalid", new Object());
+					Assert.fail("Unsupported value type is reported");
+				}
+				catch (IllegalArgumentException e) {
+					//expected
+				}
+				Assert.assertEquals("Unsupported value is not collected", 1, batch.size());
+				NotesNote note = db.createNote();
+				note.replaceItemValue("Invalid", "old");
+				batch.applyTo(note);
+				Assert.assertEquals("abc", note.getItemValueString("Before"));
+				Assert.assertEquals("Existing item is kept", "old", note.getItemValueString("Invalid"));
+				note.recycle();
+
+				try {
+					batch.applyTo(note);
+					Assert.fail("Recycled note is reported");
+				}
+				catch (NotesError e) {
+					//expected
+				}
+				return null;
+			}
+		});
+	}
+}
@@ -0,0 +1,78 @@
+package com.mindoo.domino.jna.test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.mindoo.domino.jna.NotesCollection.Direction;
+import com.mindoo.domino.jna.NotesCollectionCursor;
+
+/**
+ * Tests cases for the string representation of {@link NotesCollectionCursor}
+ *
+ * @author Karsten Lehmann
+ */
+public class TestNotesCollectionCursor {
+
+	private static NotesCollectionCursor roundTrip(NotesCollectionCursor cursor) {
+		String cursorStr = cursor.toString();
+		Assert.assertTrue("Cursor string is URL safe: "+cursorStr, cursorStr.matches("[A-Za-z0-9_=-]+"));
+		return NotesCollectionCursor.parse(cursorStr);
+	}
+
+	@Test
+	public void testCursor_documentEntry() {
+		NotesCollectionCursor cursor = new NotesCollectionCursor("0123456789ABCDEF0123456789ABCDEF", "1.2.3", 0x1f2a,
+				"Key|with|separators", 42, "lastname", Direction.Descending);
+		NotesCollectionCursor restored = roundTrip(cursor);
+
+		Assert.assertEquals("0123456789ABCDEF0123456789ABCDEF", restored.getViewUNID());
+		Assert.assertEquals("1.2.3", restored.getPosition());
+		Assert.assertEquals(0x1f2a, restored.getNoteId());
+		Assert.assertEquals("Key|with|separators", restored.getSortKey());
+		Assert.assertEquals(42, restored.getIndexModifiedSequenceNo());
+		Assert.assertEquals("lastname", restored.getSortColumn());
+		Assert.assertEquals(Direction.Descending, restored.getSortDirection());
+
+		NotesCollectionCursor numberCursor = roundTrip(new NotesCollectionCursor(null, "5", 4, 12, 1));
+		Assert.assertEquals(12.0, numberCursor.getSortKey());
+		Assert.assertNull(numberCursor.getSortColumn());
+		Assert.assertNull(numberCursor.getSortDirection());
+	}
+
+	@Test
+	public void testCursor_categoryEntry() {
+		//category note ids have bit 31 set
+		int categoryNoteId = 0x80000014;
+		NotesCollectionCursor cursor = new NotesCollectionCursor("0123456789ABCDEF0123456789ABCDEF", "2", categoryNoteId,
+				"Category", 7);
+		NotesCollectionCursor restored = roundTrip(cursor);
+
+		Assert.assertEquals(categoryNoteId, restored.getNoteId());
+		Assert.assertEquals("2", restored.getPosition());
+		Assert.assertEquals("Category", restored.getSortKey());
+		Assert.assertEquals(cursor.toString(), restored.toString());
+	}
+
+	@Test
+	public void testCursor_invalid() {
+		String[] invalidCursors = new String[] {
+				"",
+				"not base64!",
+				Base64.getUrlEncoder().encodeToString("1|a|b|c|d|e|f|g".getBytes(StandardCharsets.UTF_8)),
+				Base64.getUrlEncoder().encodeToString("2|a|1|xyz|1|||".getBytes(StandardCharsets.UTF_8)),
+				Base64.getUrlEncoder().encodeToString("2|a|1|100000000|1|||".getBytes(StandardCharsets.UTF_8))
+		};
+		for (String currCursor : invalidCursors) {
+			try {
+				NotesCollectionCursor.parse(currCursor);
+				Assert.fail("Invalid cursor is rejected: "+currCursor);
+			}
+			catch (IllegalArgumentException e) {
+				//expected
+			}
+		}
+	}
+}